@@ -0,0 +1,136 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.CachingForecasterProxy.withLimitedCache;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of a size-limited {@link CachingForecasterProxy} under a skewed
+ * workload, where a mix of hits and misses keeps the cache evicting entries, for each
+ * {@link EvictionPolicy} and a range of cache sizes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EvictionChurnBenchmark {
+
+  private static final int WORKLOAD_SIZE = 1 << 16;
+  private static final double ZIPF_EXPONENT = 0.9;
+
+  @Param({"1", "8", "32", "62"})
+  public int maxCacheSize;
+
+  @Param({"FIFO", "LRU", "LFU", "WINDOW_TINY_LFU"})
+  public EvictionPolicy evictionPolicy;
+
+  private final int[] workload = new int[WORKLOAD_SIZE];
+  private Forecaster proxy;
+
+  /**
+   * Creates the proxy, and generates a workload where the popularity of each query follows a
+   * Zipf distribution.
+   */
+  @Setup
+  public void createProxy() {
+    Forecast forecast = new Forecast("Sunny", 20);
+    proxy = withLimitedCache((region, day) -> forecast, maxCacheSize, evictionPolicy);
+
+    double[] cumulativeWeights = new double[ForecastCache.CAPACITY];
+    double total = 0;
+    for (int rank = 0; rank < ForecastCache.CAPACITY; rank++) {
+      total += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+      cumulativeWeights[rank] = total;
+    }
+    Random random = new Random(0);
+    for (int i = 0; i < WORKLOAD_SIZE; i++) {
+      double weight = random.nextDouble() * total;
+      int rank = 0;
+      while (cumulativeWeights[rank] < weight) {
+        rank++;
+      }
+      workload[i] = rank;
+    }
+  }
+
+  /**
+   * The position of each benchmark thread in the workload.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private int position = new Random().nextInt(WORKLOAD_SIZE);
+
+    /**
+     * Moves on to the next position in the workload.
+     *
+     * @return the next position
+     */
+    int next() {
+      position = (position + 1) & (WORKLOAD_SIZE - 1);
+      return position;
+    }
+  }
+
+  /**
+   * Looks up the next query of the workload on a single thread.
+   *
+   * @param cursor the position of the benchmark thread in the workload
+   * @return the {@link Forecast}
+   */
+  @Benchmark
+  @Threads(1)
+  public Forecast singleThread(Cursor cursor) {
+    return lookUp(cursor);
+  }
+
+  /**
+   * Looks up the next query of the workload on each of four threads.
+   *
+   * @param cursor the position of the benchmark thread in the workload
+   * @return the {@link Forecast}
+   */
+  @Benchmark
+  @Threads(4)
+  public Forecast fourThreads(Cursor cursor) {
+    return lookUp(cursor);
+  }
+
+  /**
+   * Looks up the next query of the workload on each of sixteen threads.
+   *
+   * @param cursor the position of the benchmark thread in the workload
+   * @return the {@link Forecast}
+   */
+  @Benchmark
+  @Threads(16)
+  public Forecast sixteenThreads(Cursor cursor) {
+    return lookUp(cursor);
+  }
+
+  /**
+   * Looks up the next query of the workload through the proxy.
+   *
+   * @param cursor the position of the benchmark thread in the workload
+   * @return the {@link Forecast}
+   */
+  private Forecast lookUp(Cursor cursor) {
+    int index = workload[cursor.next()];
+    return proxy.forecastFor(ForecastCache.regionOf(index), ForecastCache.dayOf(index));
+  }
+}
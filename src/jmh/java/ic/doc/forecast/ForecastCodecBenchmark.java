@@ -0,0 +1,105 @@
+package ic.doc.forecast;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of encoding and decoding forecasts with a {@link ForecastCodec}, one at a
+ * time and as full grids, with and without the summaries in its dictionary.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ForecastCodecBenchmark {
+
+  private static final String SUMMARY = "Light rain, clearing later";
+
+  @Param({"true", "false"})
+  public boolean dictionary;
+
+  private final Forecast forecast = new Forecast(SUMMARY, 14);
+  private final ForecastGrid grid = new ForecastGrid();
+  private ForecastCodec codec;
+  private ByteBuffer forecastBuffer;
+  private ByteBuffer gridBuffer;
+
+  /**
+   * Creates the codec, a full grid of forecasts, and buffers holding their encodings.
+   */
+  @Setup
+  public void createCodec() {
+    codec = new ForecastCodec(dictionary ? List.of(SUMMARY) : List.of());
+    for (Region region : Region.values()) {
+      for (Day day : Day.values()) {
+        grid.put(region, day, forecast);
+      }
+    }
+
+    forecastBuffer = ByteBuffer.allocateDirect(codec.encodedSize(forecast));
+    codec.encode(Region.LONDON, Day.MONDAY, forecast, forecastBuffer);
+    gridBuffer = ByteBuffer.allocateDirect(codec.encodedSize(grid));
+    codec.encode(grid, gridBuffer);
+  }
+
+  /**
+   * Encodes a single forecast.
+   *
+   * @return the buffer holding the encoding
+   */
+  @Benchmark
+  public ByteBuffer encodeForecast() {
+    forecastBuffer.clear();
+    codec.encode(Region.LONDON, Day.MONDAY, forecast, forecastBuffer);
+    return forecastBuffer;
+  }
+
+  /**
+   * Decodes a single forecast.
+   *
+   * @param blackhole the sink for the decoded forecast
+   */
+  @Benchmark
+  public void decodeForecast(Blackhole blackhole) {
+    forecastBuffer.rewind();
+    codec.decode(forecastBuffer, (region, day, decoded) -> blackhole.consume(decoded));
+  }
+
+  /**
+   * Encodes a full grid of forecasts.
+   *
+   * @return the buffer holding the encoding
+   */
+  @Benchmark
+  public ByteBuffer encodeGrid() {
+    gridBuffer.clear();
+    codec.encode(grid, gridBuffer);
+    return gridBuffer;
+  }
+
+  /**
+   * Decodes a full grid of forecasts.
+   *
+   * @return the decoded grid
+   */
+  @Benchmark
+  public ForecastGrid decodeGrid() {
+    gridBuffer.rewind();
+    return codec.decodeGrid(gridBuffer);
+  }
+}
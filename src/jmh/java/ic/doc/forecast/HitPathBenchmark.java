@@ -0,0 +1,119 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.CachingForecasterProxy.withLimitedCache;
+import static ic.doc.forecast.CachingForecasterProxy.withUnlimitedCache;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of cache hits through a {@link CachingForecasterProxy}, whose cache has
+ * been populated beforehand, on one thread and under contention from four and sixteen. The limited
+ * cache is one entry short of holding every query, so that hits are reported to its
+ * {@link EvictionPolicy}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HitPathBenchmark {
+
+  private static final int QUERIES = ForecastCache.CAPACITY - 1;
+
+  @Param({"unlimited", "limited"})
+  public String cache;
+
+  private Forecaster proxy;
+
+  /**
+   * Creates the proxy, and populates its cache with every query which is looked up.
+   */
+  @Setup
+  public void populateCache() {
+    Forecaster upstream = (region, day) -> new Forecast("Sunny", 20);
+    proxy = cache.equals("unlimited") ? withUnlimitedCache(upstream)
+        : withLimitedCache(upstream, QUERIES, EvictionPolicy.WINDOW_TINY_LFU);
+    for (int index = 0; index < QUERIES; index++) {
+      proxy.forecastFor(ForecastCache.regionOf(index), ForecastCache.dayOf(index));
+    }
+  }
+
+  /**
+   * The query each benchmark thread looks up, which cycles through the regions and days.
+   */
+  @State(Scope.Thread)
+  public static class Query {
+
+    private int index;
+
+    /**
+     * Moves on to the next query.
+     *
+     * @return the slot index of the next query
+     */
+    int next() {
+      index = (index + 1) % QUERIES;
+      return index;
+    }
+  }
+
+  /**
+   * Looks up a cached query on a single thread.
+   *
+   * @param query the query state of the benchmark thread
+   * @return the cached {@link Forecast}
+   */
+  @Benchmark
+  @Threads(1)
+  public Forecast singleThread(Query query) {
+    return lookUp(query);
+  }
+
+  /**
+   * Looks up a cached query on each of four threads.
+   *
+   * @param query the query state of the benchmark thread
+   * @return the cached {@link Forecast}
+   */
+  @Benchmark
+  @Threads(4)
+  public Forecast fourThreads(Query query) {
+    return lookUp(query);
+  }
+
+  /**
+   * Looks up a cached query on each of sixteen threads.
+   *
+   * @param query the query state of the benchmark thread
+   * @return the cached {@link Forecast}
+   */
+  @Benchmark
+  @Threads(16)
+  public Forecast sixteenThreads(Query query) {
+    return lookUp(query);
+  }
+
+  /**
+   * Looks up the next query of a benchmark thread through the proxy.
+   *
+   * @param query the query state of the benchmark thread
+   * @return the cached {@link Forecast}
+   */
+  private Forecast lookUp(Query query) {
+    int index = query.next();
+    return proxy.forecastFor(ForecastCache.regionOf(index), ForecastCache.dayOf(index));
+  }
+}
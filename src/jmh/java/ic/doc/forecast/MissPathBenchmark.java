@@ -0,0 +1,147 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.CachingForecasterProxy.withLimitedCache;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Measures the overhead the {@link CachingForecasterProxy} adds to cache misses, by comparing it
+ * against calling a zero-latency fake upstream {@link Forecaster} directly. The proxy's cache only
+ * holds a single entry, and each thread cycles through its own share of the queries, of at least
+ * two, so every lookup misses: a thread's previous lookup always evicted the entry for its current
+ * query, and no other thread ever caches that query, or has a request for it in flight.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MissPathBenchmark {
+
+  private final Forecast forecast = new Forecast("Sunny", 20);
+  private final Forecaster upstream = (region, day) -> forecast;
+  private Forecaster proxy;
+
+  /**
+   * Creates the proxy, with a cache too small to ever hit.
+   */
+  @Setup
+  public void createProxy() {
+    proxy = withLimitedCache(upstream, 1);
+  }
+
+  /**
+   * The query each benchmark thread looks up, which cycles through the thread's own share of the
+   * regions and days: every query whose slot index leaves the thread's index as the remainder
+   * when divided by the number of threads.
+   */
+  @State(Scope.Thread)
+  public static class Query {
+
+    private int first;
+    private int stride;
+    private int index;
+
+    /**
+     * Picks the share of the queries of a benchmark thread.
+     *
+     * @param threads the parameters of the benchmark thread
+     * @throws IllegalStateException if there are too many threads to give each two queries
+     */
+    @Setup
+    public void pickShare(ThreadParams threads) {
+      stride = threads.getThreadCount();
+      if (stride * 2 > ForecastCache.CAPACITY) {
+        throw new IllegalStateException("Too many threads to give each two queries");
+      }
+      first = threads.getThreadIndex();
+      index = first;
+    }
+
+    /**
+     * Moves on to the next query of the share.
+     *
+     * @return the slot index of the next query
+     */
+    int next() {
+      index += stride;
+      if (index >= ForecastCache.CAPACITY) {
+        index = first;
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Calls the fake upstream directly, as a baseline.
+   *
+   * @param query the query state of the benchmark thread
+   * @return the upstream {@link Forecast}
+   */
+  @Benchmark
+  @Threads(1)
+  public Forecast upstreamOnly(Query query) {
+    int index = query.next();
+    return upstream.forecastFor(ForecastCache.regionOf(index), ForecastCache.dayOf(index));
+  }
+
+  /**
+   * Misses the cache on a single thread.
+   *
+   * @param query the query state of the benchmark thread
+   * @return the upstream {@link Forecast}
+   */
+  @Benchmark
+  @Threads(1)
+  public Forecast singleThread(Query query) {
+    return lookUp(query);
+  }
+
+  /**
+   * Misses the cache on each of four threads.
+   *
+   * @param query the query state of the benchmark thread
+   * @return the upstream {@link Forecast}
+   */
+  @Benchmark
+  @Threads(4)
+  public Forecast fourThreads(Query query) {
+    return lookUp(query);
+  }
+
+  /**
+   * Misses the cache on each of sixteen threads.
+   *
+   * @param query the query state of the benchmark thread
+   * @return the upstream {@link Forecast}
+   */
+  @Benchmark
+  @Threads(16)
+  public Forecast sixteenThreads(Query query) {
+    return lookUp(query);
+  }
+
+  /**
+   * Looks up the next query of a benchmark thread through the proxy.
+   *
+   * @param query the query state of the benchmark thread
+   * @return the upstream {@link Forecast}
+   */
+  private Forecast lookUp(Query query) {
+    int index = query.next();
+    return proxy.forecastFor(ForecastCache.regionOf(index), ForecastCache.dayOf(index));
+  }
+}
@@ -0,0 +1,66 @@
+package ic.doc.forecast;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of adapting calls to a zero-latency fake {@link com.weather.Forecaster},
+ * with and without recording their latencies in {@link ForecasterMetrics}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WeatherForecasterAdapterBenchmark {
+
+  private final com.weather.Forecast forecast = new com.weather.Forecast("Sunny", 20);
+  private final com.weather.Forecaster upstream = new com.weather.Forecaster() {
+    @Override
+    public com.weather.Forecast forecastFor(com.weather.Region region, com.weather.Day day) {
+      return forecast;
+    }
+  };
+  private final Forecaster adapter = WeatherForecasterAdapter.adapt(upstream);
+  private final Forecaster measuredAdapter =
+      WeatherForecasterAdapter.adapt(upstream, new ForecasterMetrics());
+
+  /**
+   * Calls the fake upstream directly, as a baseline.
+   *
+   * @return the upstream forecast
+   */
+  @Benchmark
+  public com.weather.Forecast upstreamOnly() {
+    return upstream.forecastFor(com.weather.Region.LONDON, com.weather.Day.MONDAY);
+  }
+
+  /**
+   * Calls the fake upstream through the adapter.
+   *
+   * @return the adapted {@link Forecast}
+   */
+  @Benchmark
+  public Forecast adapted() {
+    return adapter.forecastFor(Region.LONDON, Day.MONDAY);
+  }
+
+  /**
+   * Calls the fake upstream through an adapter which records the call's latency.
+   *
+   * @return the adapted {@link Forecast}
+   */
+  @Benchmark
+  public Forecast adaptedWithMetrics() {
+    return measuredAdapter.forecastFor(Region.LONDON, Day.MONDAY);
+  }
+}
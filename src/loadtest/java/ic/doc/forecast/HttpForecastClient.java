@@ -0,0 +1,207 @@
+package ic.doc.forecast;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A {@link Forecaster} which fetches forecasts from a {@link ForecastHttpServer}, so that load
+ * tests can measure the whole HTTP front-end rather than just the cache behind it. Each thread
+ * keeps its own connection alive for all of its requests, as a front-end proxy would, and only
+ * reconnects if the connection breaks.
+ */
+final class HttpForecastClient implements Forecaster, AutoCloseable {
+
+  /**
+   * A connection kept alive by a single thread.
+   *
+   * @param socket the socket of the connection
+   * @param input  the buffered input of the socket
+   * @param output the output of the socket
+   */
+  private record Connection(Socket socket, InputStream input, OutputStream output) {
+  }
+
+  private final InetSocketAddress address;
+  private final ThreadLocal<Connection> connections = new ThreadLocal<>();
+  private final Queue<Socket> sockets = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Constructs a client for the server listening on an address.
+   *
+   * @param address the address of the {@link ForecastHttpServer}
+   * @throws NullPointerException if {@code address} is null
+   */
+  HttpForecastClient(InetSocketAddress address) {
+    if (address == null) {
+      throw new NullPointerException("address cannot be null");
+    }
+
+    this.address = address;
+  }
+
+  @Override
+  public Forecast forecastFor(Region region, Day day) {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+    if (day == null) {
+      throw new NullPointerException("day cannot be null");
+    }
+
+    try {
+      Connection connection = connection();
+      try {
+        connection.output().write(("GET /forecast/" + region + "/" + day + " HTTP/1.1\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII));
+        connection.output().flush();
+        return parseForecast(readBody(connection.input()));
+      } catch (IOException | RuntimeException e) {
+        // the connection may be left mid-response, so it cannot be reused
+        connections.remove();
+        connection.socket().close();
+        throw e;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Closes every connection opened by the client.
+   */
+  @Override
+  public void close() {
+    for (Socket socket = sockets.poll(); socket != null; socket = sockets.poll()) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // the connection is being discarded anyway
+      }
+    }
+  }
+
+  /**
+   * Returns the calling thread's connection, opening it first if there is none.
+   *
+   * @return the connection
+   * @throws IOException if the connection cannot be opened
+   */
+  private Connection connection() throws IOException {
+    Connection connection = connections.get();
+    if (connection == null) {
+      Socket socket = new Socket(address.getAddress(), address.getPort());
+      sockets.add(socket);
+      connection = new Connection(socket, new BufferedInputStream(socket.getInputStream()),
+          socket.getOutputStream());
+      connections.set(connection);
+    }
+    return connection;
+  }
+
+  /**
+   * Reads a response from a connection, and returns its body.
+   *
+   * @param input the input of the connection
+   * @return the body of the response
+   * @throws IOException           if the response cannot be read
+   * @throws IllegalStateException if the response is not successful
+   */
+  private static String readBody(InputStream input) throws IOException {
+    String status = readLine(input);
+    if (!status.startsWith("HTTP/1.1 200 ")) {
+      throw new IllegalStateException("Forecast request failed: " + status);
+    }
+
+    int contentLength = -1;
+    for (String header = readLine(input); !header.isEmpty(); header = readLine(input)) {
+      if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+        contentLength = Integer.parseInt(header.substring(15).trim());
+      }
+    }
+    if (contentLength < 0) {
+      throw new IllegalStateException("Forecast response has no Content-Length");
+    }
+    return new String(input.readNBytes(contentLength), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads a line of a response head, without its line terminator.
+   *
+   * @param input the input of the connection
+   * @return the line
+   * @throws IOException if the connection closes before the end of the line
+   */
+  private static String readLine(InputStream input) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    for (int c = input.read(); c != '\n'; c = input.read()) {
+      if (c < 0) {
+        throw new IOException("Connection closed mid-response");
+      }
+      if (c != '\r') {
+        line.write(c);
+      }
+    }
+    return line.toString(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Parses the fields of a single {@link Forecast} from the JSON the server encodes it as.
+   *
+   * @param json the JSON object
+   * @return the {@link Forecast}
+   */
+  private static Forecast parseForecast(String json) {
+    int summaryStart = json.indexOf("\"summary\":\"") + 11;
+    int summaryEnd = json.indexOf("\",\"temperature\":", summaryStart);
+    int temperatureEnd = json.indexOf(",\"stale\":", summaryEnd);
+    if (summaryStart < 11 || summaryEnd < 0 || temperatureEnd < 0) {
+      throw new IllegalStateException("Malformed forecast: " + json);
+    }
+
+    return new Forecast(unescape(json.substring(summaryStart, summaryEnd)),
+        Integer.parseInt(json.substring(summaryEnd + 16, temperatureEnd)),
+        json.startsWith("true", temperatureEnd + 9));
+  }
+
+  /**
+   * Undoes the escaping of a JSON string.
+   *
+   * @param escaped the contents of the JSON string
+   * @return the string
+   */
+  private static String unescape(String escaped) {
+    if (escaped.indexOf('\\') < 0) {
+      return escaped;
+    }
+
+    StringBuilder unescaped = new StringBuilder(escaped.length());
+    for (int i = 0; i < escaped.length(); i++) {
+      char c = escaped.charAt(i);
+      if (c != '\\') {
+        unescaped.append(c);
+        continue;
+      }
+      char next = escaped.charAt(++i);
+      switch (next) {
+        case 'n' -> unescaped.append('\n');
+        case 'r' -> unescaped.append('\r');
+        case 't' -> unescaped.append('\t');
+        case 'u' -> {
+          unescaped.append((char) Integer.parseInt(escaped.substring(i + 1, i + 5), 16));
+          i += 4;
+        }
+        default -> unescaped.append(next);
+      }
+    }
+    return unescaped.toString();
+  }
+}
@@ -0,0 +1,127 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * A model of how popular each query is, from which a load test draws the queries it makes.
+ * Queries are drawn as slot indices, as used by {@link ForecastCache}. Models may change over the
+ * course of a run, so are given the time elapsed since it started.
+ */
+@FunctionalInterface
+interface KeyPopularity {
+
+  /**
+   * An offset coprime with the number of queries, so that shifting a hot spot by it repeatedly
+   * visits every query before returning to the first.
+   */
+  int HOT_SPOT_SHIFT = 17;
+
+  /**
+   * Draws the next query to make.
+   *
+   * @param random       the source of randomness, which is never shared between threads
+   * @param elapsedNanos the time since the run started, in nanoseconds
+   * @return the slot index of the query
+   */
+  int nextIndex(RandomGenerator random, long elapsedNanos);
+
+  /**
+   * Makes every query equally popular.
+   *
+   * @return the key popularity model
+   */
+  static KeyPopularity uniform() {
+    return (random, elapsedNanos) -> random.nextInt(ForecastCache.CAPACITY);
+  }
+
+  /**
+   * Makes the popularity of queries follow a Zipf distribution, where the {@code k}th most popular
+   * query is made in proportion to {@code 1 / k^exponent}. Which queries are the most popular is
+   * shuffled by a seed, so that they are not all for the same {@link Region}.
+   *
+   * @param exponent the skew of the distribution. Zero makes every query equally popular
+   * @param seed     the seed deciding which queries are the most popular
+   * @return the key popularity model
+   * @throws IllegalArgumentException if {@code exponent} is negative
+   */
+  static KeyPopularity zipf(double exponent, long seed) throws IllegalArgumentException {
+    return shiftingHotSpot(exponent, seed, null);
+  }
+
+  /**
+   * Makes the popularity of queries follow a Zipf distribution, like
+   * {@link #zipf(double, long)}, but moves the most popular queries to different ones every
+   * period, as happens when the weather news moves on to another part of the country.
+   *
+   * @param exponent the skew of the distribution. Zero makes every query equally popular
+   * @param seed     the seed deciding which queries are the most popular at first
+   * @param period   optional time after which the most popular queries move, or null if they
+   *                 never do
+   * @return the key popularity model
+   * @throws IllegalArgumentException if {@code exponent} is negative, or {@code period} is not
+   *                                  positive
+   */
+  static KeyPopularity shiftingHotSpot(double exponent, long seed, Duration period)
+      throws IllegalArgumentException {
+    if (!(exponent >= 0)) {
+      throw new IllegalArgumentException("Zipf exponent cannot be negative");
+    }
+    if (period != null && (period.isNegative() || period.isZero())) {
+      throw new IllegalArgumentException("Hot spot period must be positive");
+    }
+
+    // the cumulative popularity of the most popular queries, by rank
+    double[] cumulative = new double[ForecastCache.CAPACITY];
+    double total = 0;
+    for (int rank = 0; rank < cumulative.length; rank++) {
+      total += 1 / Math.pow(rank + 1, exponent);
+      cumulative[rank] = total;
+    }
+
+    // shuffle which query holds each rank
+    int[] queries = new int[ForecastCache.CAPACITY];
+    SplittableRandom shuffle = new SplittableRandom(seed);
+    for (int i = 0; i < queries.length; i++) {
+      int j = shuffle.nextInt(i + 1);
+      queries[i] = queries[j];
+      queries[j] = i;
+    }
+
+    double sum = total;
+    long periodNanos = period == null ? Long.MAX_VALUE : period.toNanos();
+    return (random, elapsedNanos) -> {
+      int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      rank = Math.min(rank < 0 ? -rank - 1 : rank, cumulative.length - 1);
+      long shift = elapsedNanos / periodNanos * HOT_SPOT_SHIFT;
+      return (int) ((queries[rank] + shift) % ForecastCache.CAPACITY);
+    };
+  }
+
+  /**
+   * Parses a key popularity model from its description, which is one of {@code uniform},
+   * {@code zipf:<exponent>}, or {@code hotspot:<exponent>:<period>}, where the period is written
+   * as described by {@link LoadTest#parseDuration(String)}.
+   *
+   * @param description the description
+   * @param seed        the seed deciding which queries are the most popular
+   * @return the key popularity model
+   * @throws IllegalArgumentException if the description is not valid
+   */
+  static KeyPopularity parse(String description, long seed) throws IllegalArgumentException {
+    String[] parts = description.split(":");
+    try {
+      return switch (parts[0]) {
+        case "uniform" -> uniform();
+        case "zipf" -> zipf(Double.parseDouble(parts[1]), seed);
+        case "hotspot" -> shiftingHotSpot(Double.parseDouble(parts[1]), seed,
+            LoadTest.parseDuration(parts[2]));
+        default -> throw new IllegalArgumentException("Unknown key popularity: " + description);
+      };
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Incomplete key popularity: " + description, e);
+    }
+  }
+}
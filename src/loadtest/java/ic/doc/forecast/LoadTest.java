@@ -0,0 +1,279 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.dayOf;
+import static ic.doc.forecast.ForecastCache.regionOf;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * A load test harness for {@link Forecaster} chains, used to size caches and thread pools from
+ * measurements rather than guesswork. Threads, either platform or virtual, make requests for
+ * queries drawn from a {@link KeyPopularity} model, either as fast as they can, or at a fixed
+ * arrival rate. After a warm-up, it measures the throughput, the latency percentiles, the cache
+ * hit ratio, and the number of calls made to the forecast service.
+ * <p>
+ * At a fixed arrival rate, latencies are measured from when each request was due to start, rather
+ * than when it did start, so that a chain which falls behind is not flattered by the requests it
+ * delayed. Run from the command line, through {@code gradle loadTest}, it drives a
+ * {@link CachingForecasterProxy} in front of a {@link SimulatedWeatherForecaster}, so that runs
+ * are repeatable offline, and with {@code --http} it makes the requests through a
+ * {@link ForecastHttpServer} on the loopback interface, to measure the HTTP front-end too, e.g.
+ * <pre>
+ * gradle loadTest -PloadTest.args="--threads=200 --rate=20000 --popularity=zipf:1.2
+ *     --cache-size=32 --eviction=LRU --latency=80ms --jitter=40ms"
+ * </pre>
+ */
+final class LoadTest {
+
+  private static final String USAGE = """
+      Options, all of which are optional:
+        --threads=<n>             the number of threads making requests (64)
+        --platform-threads        use platform threads, rather than virtual threads
+        --warm-up=<duration>      how long to run before measuring (5s)
+        --duration=<duration>     how long to measure for (10s)
+        --rate=<n>                requests per second, or 0 for as fast as possible (0)
+        --popularity=<model>      uniform, zipf:<exponent> or hotspot:<exponent>:<period> (zipf:1)
+        --seed=<n>                the seed of the random queries and forecasts (0)
+        --cache-size=<n>          the maximum cache size (63, i.e. unlimited)
+        --eviction=<policy>       FIFO, LRU, LFU or WINDOW_TINY_LFU (FIFO)
+        --ttl=<duration>          the time-to-live of cache entries (1h)
+        --latency=<duration>      the least latency of the simulated forecast service (50ms)
+        --jitter=<duration>       the most extra latency of the simulated forecast service (0s)
+        --trace=<file>            record a trace of the requests, for replaying with replayTrace
+        --http                    make the requests over HTTP, through a ForecastHttpServer
+      Durations are written like 500ms, 30s, 5m, 1h, or in ISO-8601 like PT30S.
+      """;
+
+  private LoadTest() {
+  }
+
+  /**
+   * Runs a load test against a configured {@link CachingForecasterProxy} in front of a
+   * {@link SimulatedWeatherForecaster}, and prints its outcome.
+   *
+   * @param args the command line options, as described by {@code --help}
+   * @throws InterruptedException if interrupted while waiting for the run to finish
+   * @throws IOException          if the trace cannot be written, or the server cannot be started
+   */
+  public static void main(String[] args) throws InterruptedException, IOException {
+    LoadTestOptions options = LoadTestOptions.defaults();
+    int threads = options.threads();
+    boolean virtualThreads = options.virtualThreads();
+    Duration warmUp = options.warmUp();
+    Duration duration = options.duration();
+    double arrivalRate = options.arrivalRate();
+    String popularity = "zipf:1";
+    long seed = options.seed();
+    int cacheSize = ForecastCache.CAPACITY;
+    EvictionPolicy evictionPolicy = EvictionPolicy.FIFO;
+    Duration timeToLive = Duration.ofHours(1);
+    Duration latency = Duration.ofMillis(50);
+    Duration jitter = Duration.ZERO;
+    Path trace = null;
+    boolean http = false;
+
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      String name = equals < 0 ? arg : arg.substring(0, equals);
+      String value = equals < 0 ? "" : arg.substring(equals + 1);
+      switch (name) {
+        case "--threads" -> threads = Integer.parseInt(value);
+        case "--platform-threads" -> virtualThreads = false;
+        case "--warm-up" -> warmUp = parseDuration(value);
+        case "--duration" -> duration = parseDuration(value);
+        case "--rate" -> arrivalRate = Double.parseDouble(value);
+        case "--popularity" -> popularity = value;
+        case "--seed" -> seed = Long.parseLong(value);
+        case "--cache-size" -> cacheSize = Integer.parseInt(value);
+        case "--eviction" -> evictionPolicy =
+            EvictionPolicy.valueOf(value.toUpperCase(Locale.ROOT));
+        case "--ttl" -> timeToLive = parseDuration(value);
+        case "--latency" -> latency = parseDuration(value);
+        case "--jitter" -> jitter = parseDuration(value);
+        case "--trace" -> trace = Path.of(value);
+        case "--http" -> http = true;
+        case "--help" -> {
+          System.out.print(USAGE);
+          return;
+        }
+        default -> throw new IllegalArgumentException("Unknown option " + arg + "\n" + USAGE);
+      }
+    }
+
+    options = new LoadTestOptions(threads, virtualThreads, warmUp, duration, arrivalRate,
+        KeyPopularity.parse(popularity, seed), seed);
+    SimulatedWeatherForecaster upstream = new SimulatedWeatherForecaster(latency, jitter, seed);
+    ForecasterMetrics metrics = new ForecasterMetrics();
+    CachingForecasterProxy proxy = new CachingForecasterProxy(
+        WeatherForecasterAdapter.adapt(upstream, metrics), cacheSize,
+        CacheOptions.defaults().withMetrics(metrics).withTimeToLive(timeToLive)
+            .withEvictionPolicy(evictionPolicy), null);
+
+    if (http && trace != null) {
+      throw new IllegalArgumentException("--trace cannot be combined with --http\n" + USAGE);
+    }
+    if (http) {
+      try (ForecastHttpServer server = new ForecastHttpServer(proxy,
+              new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+          HttpForecastClient client = new HttpForecastClient(server.address())) {
+        System.out.print(run(client, options, metrics, upstream::calls).format());
+      }
+      return;
+    }
+    if (trace == null) {
+      System.out.print(run(proxy, options, metrics, upstream::calls).format());
+      return;
+    }
+    try (TraceRecorder recorder = new TraceRecorder(proxy, trace)) {
+      System.out.print(run(recorder, options, metrics, upstream::calls).format());
+      System.out.printf("trace dropped   %d calls%n", recorder.droppedCalls());
+    }
+  }
+
+  /**
+   * Runs a load test against a {@link Forecaster} chain.
+   *
+   * @param forecaster    the {@link Forecaster} chain
+   * @param options       the shape of the load
+   * @param metrics       optional {@link ForecasterMetrics} the chain records its cache hits and
+   *                      misses in
+   * @param upstreamCalls optional counter of the calls the chain makes to the forecast service
+   * @return the outcome of the run
+   * @throws NullPointerException if {@code forecaster} or {@code options} is null
+   * @throws InterruptedException if interrupted while waiting for the run to finish
+   */
+  static LoadTestReport run(Forecaster forecaster, LoadTestOptions options,
+      ForecasterMetrics metrics, LongSupplier upstreamCalls) throws InterruptedException {
+    if (forecaster == null) {
+      throw new NullPointerException("forecaster cannot be null");
+    }
+    if (options == null) {
+      throw new NullPointerException("options cannot be null");
+    }
+
+    long start = System.nanoTime();
+    long measureFrom = start + options.warmUp().toNanos();
+    long end = measureFrom + options.duration().toNanos();
+    LatencyHistogram latencies = new LatencyHistogram();
+    LongAdder requests = new LongAdder();
+    LongAdder failures = new LongAdder();
+
+    Thread.Builder builder = options.virtualThreads()
+        ? Thread.ofVirtual().name("load-", 0) : Thread.ofPlatform().name("load-", 0);
+    List<Thread> workers = new ArrayList<>(options.threads());
+    for (int i = 0; i < options.threads(); i++) {
+      int worker = i;
+      workers.add(builder.start(() -> makeRequests(forecaster, options, worker, start,
+          measureFrom, end, latencies, requests, failures)));
+    }
+
+    // only count the cache and forecast service activity after the warm-up
+    LockSupport.parkNanos(measureFrom - System.nanoTime());
+    long baseHits = metrics == null ? 0 : metrics.getHits();
+    long baseMisses = metrics == null ? 0 : metrics.getMisses();
+    long baseUpstreamCalls = upstreamCalls == null ? 0 : upstreamCalls.getAsLong();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    // a chain which fell behind finishes its backlog after the end of the run, which counts too
+    Duration elapsed = Duration.ofNanos(Math.max(System.nanoTime(), end) - measureFrom);
+    return new LoadTestReport(requests.sum(), failures.sum(), elapsed, latencies,
+        metrics == null ? 0 : metrics.getHits() - baseHits,
+        metrics == null ? 0 : metrics.getMisses() - baseMisses,
+        upstreamCalls == null ? 0 : upstreamCalls.getAsLong() - baseUpstreamCalls);
+  }
+
+  /**
+   * Makes requests from a single thread until the end of the run, recording those due after the
+   * warm-up.
+   *
+   * @param forecaster  the {@link Forecaster} chain
+   * @param options     the shape of the load
+   * @param worker      the number of the thread, from zero
+   * @param start       when the run started, in {@link System#nanoTime()} terms
+   * @param measureFrom when the warm-up ends
+   * @param end         when the run ends
+   * @param latencies   the histogram to record latencies in
+   * @param requests    the counter of requests made
+   * @param failures    the counter of requests which failed
+   */
+  private static void makeRequests(Forecaster forecaster, LoadTestOptions options, int worker,
+      long start, long measureFrom, long end, LatencyHistogram latencies, LongAdder requests,
+      LongAdder failures) {
+    SplittableRandom random = new SplittableRandom(options.seed() + worker);
+
+    // at a fixed arrival rate, each thread makes its share of the requests, staggered evenly
+    long interval = options.arrivalRate() == 0 ? 0
+        : (long) (options.threads() * 1e9 / options.arrivalRate());
+    long next = start + interval * worker / options.threads();
+    while (true) {
+      long due;
+      if (interval == 0) {
+        due = System.nanoTime();
+      } else {
+        LockSupport.parkNanos(next - System.nanoTime());
+        due = next;
+        next += interval;
+      }
+      if (due >= end) {
+        return;
+      }
+
+      int index = options.popularity().nextIndex(random, due - start);
+      boolean failed = false;
+      try {
+        forecaster.forecastFor(regionOf(index), dayOf(index));
+      } catch (RuntimeException e) {
+        failed = true;
+      }
+      long latency = System.nanoTime() - due;
+
+      if (due >= measureFrom) {
+        requests.increment();
+        latencies.record(latency);
+        if (failed) {
+          failures.increment();
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses a duration written like {@code 500ms}, {@code 30s}, {@code 5m} or {@code 1h}, or in
+   * ISO-8601 like {@code PT30S}. A bare number is taken as a number of seconds.
+   *
+   * @param value the written duration
+   * @return the duration
+   * @throws IllegalArgumentException if the duration cannot be parsed
+   */
+  static Duration parseDuration(String value) throws IllegalArgumentException {
+    try {
+      if (value.startsWith("P") || value.startsWith("p")) {
+        return Duration.parse(value);
+      }
+      if (value.endsWith("ms")) {
+        return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+      }
+      long amount = Long.parseLong(value.replaceFirst("[smh]$", ""));
+      return switch (value.charAt(value.length() - 1)) {
+        case 'm' -> Duration.ofMinutes(amount);
+        case 'h' -> Duration.ofHours(amount);
+        default -> Duration.ofSeconds(amount);
+      };
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid duration: " + value, e);
+    }
+  }
+}
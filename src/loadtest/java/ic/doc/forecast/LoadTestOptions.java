@@ -0,0 +1,120 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+
+/**
+ * A record representing the shape of the load a {@link LoadTest} applies to a {@link Forecaster}.
+ *
+ * @param threads        the number of threads making requests
+ * @param virtualThreads whether the threads are virtual threads, rather than platform threads
+ * @param warmUp         how long to make requests for before measuring them, so that the cache
+ *                       is measured in its steady state
+ * @param duration       how long to measure requests for, after warming up
+ * @param arrivalRate    the total number of requests to start per second, spread evenly over the
+ *                       threads, or zero for each thread to start its next request as soon as its
+ *                       last one completes
+ * @param popularity     the {@link KeyPopularity} model the queries are drawn from
+ * @param seed           the seed of the random queries, so that runs can be repeated
+ */
+record LoadTestOptions(int threads, boolean virtualThreads, Duration warmUp, Duration duration,
+    double arrivalRate, KeyPopularity popularity, long seed) {
+
+  /**
+   * Constructs a set of load test options.
+   *
+   * @throws NullPointerException     if any of {@code warmUp}, {@code duration} or
+   *                                  {@code popularity} are null
+   * @throws IllegalArgumentException if {@code threads} is not greater than zero, if
+   *                                  {@code warmUp} is negative, if {@code duration} is not
+   *                                  positive, or if {@code arrivalRate} is negative
+   */
+  LoadTestOptions {
+    if (warmUp == null) {
+      throw new NullPointerException("warmUp cannot be null");
+    }
+    if (duration == null) {
+      throw new NullPointerException("duration cannot be null");
+    }
+    if (popularity == null) {
+      throw new NullPointerException("popularity cannot be null");
+    }
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Number of threads must be greater than zero");
+    }
+    if (warmUp.isNegative()) {
+      throw new IllegalArgumentException("Warm-up cannot be negative");
+    }
+    if (duration.isNegative() || duration.isZero()) {
+      throw new IllegalArgumentException("Duration must be positive");
+    }
+    if (!(arrivalRate >= 0)) {
+      throw new IllegalArgumentException("Arrival rate cannot be negative");
+    }
+  }
+
+  /**
+   * Provides the default load test options, where 64 virtual threads make requests as fast as
+   * they can for ten seconds, after a five second warm-up, with queries drawn from a Zipf
+   * distribution with an exponent of one.
+   *
+   * @return the default load test options
+   */
+  static LoadTestOptions defaults() {
+    return new LoadTestOptions(64, true, Duration.ofSeconds(5), Duration.ofSeconds(10), 0,
+        KeyPopularity.zipf(1, 0), 0);
+  }
+
+  /**
+   * Copies these options, but with a different number and kind of threads.
+   *
+   * @param threads        the number of threads making requests
+   * @param virtualThreads whether the threads are virtual threads
+   * @return the new options
+   * @throws IllegalArgumentException if {@code threads} is not greater than zero
+   */
+  LoadTestOptions withThreads(int threads, boolean virtualThreads) {
+    return new LoadTestOptions(threads, virtualThreads, warmUp, duration, arrivalRate, popularity,
+        seed);
+  }
+
+  /**
+   * Copies these options, but with a different warm-up and measured duration.
+   *
+   * @param warmUp   how long to make requests for before measuring them
+   * @param duration how long to measure requests for
+   * @return the new options
+   * @throws NullPointerException     if {@code warmUp} or {@code duration} is null
+   * @throws IllegalArgumentException if {@code warmUp} is negative, or {@code duration} is not
+   *                                  positive
+   */
+  LoadTestOptions withDuration(Duration warmUp, Duration duration) {
+    return new LoadTestOptions(threads, virtualThreads, warmUp, duration, arrivalRate, popularity,
+        seed);
+  }
+
+  /**
+   * Copies these options, but with a different arrival rate.
+   *
+   * @param arrivalRate the total number of requests to start per second, or zero for as many as
+   *                    the threads can make
+   * @return the new options
+   * @throws IllegalArgumentException if {@code arrivalRate} is negative
+   */
+  LoadTestOptions withArrivalRate(double arrivalRate) {
+    return new LoadTestOptions(threads, virtualThreads, warmUp, duration, arrivalRate, popularity,
+        seed);
+  }
+
+  /**
+   * Copies these options, but with a different {@link KeyPopularity} model, and seed.
+   *
+   * @param popularity the {@link KeyPopularity} model
+   * @param seed       the seed of the random queries
+   * @return the new options
+   * @throws NullPointerException if {@code popularity} is null
+   */
+  LoadTestOptions withPopularity(KeyPopularity popularity, long seed) {
+    return new LoadTestOptions(threads, virtualThreads, warmUp, duration, arrivalRate, popularity,
+        seed);
+  }
+}
@@ -0,0 +1,71 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+
+/**
+ * A record representing the outcome of a {@link LoadTest}, over the measured part of the run.
+ *
+ * @param requests      the number of requests completed
+ * @param failures      the number of those requests which failed
+ * @param elapsed       how long the measured requests took to complete
+ * @param latencies     the {@link LatencyHistogram} of request latencies, measured from when each
+ *                      request was due to start, so that a backlog of requests counts against them
+ * @param hits          the number of cache hits
+ * @param misses        the number of cache misses
+ * @param upstreamCalls the number of calls made to the forecast service
+ */
+record LoadTestReport(long requests, long failures, Duration elapsed, LatencyHistogram latencies,
+    long hits, long misses, long upstreamCalls) {
+
+  private static final double NANOS_PER_MILLI = 1e6;
+
+  /**
+   * Works out the rate at which requests were completed.
+   *
+   * @return the number of requests completed per second
+   */
+  double throughput() {
+    return requests / (elapsed.toNanos() / 1e9);
+  }
+
+  /**
+   * Works out the proportion of requests which hit the cache.
+   *
+   * @return the hit ratio, or zero if no requests were recorded by the cache
+   */
+  double hitRatio() {
+    return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+  }
+
+  /**
+   * Describes the outcome in a human-readable table.
+   *
+   * @return the description
+   */
+  String format() {
+    return String.format("""
+        requests        %d (%d failed)
+        throughput      %.1f requests/s
+        latency p50     %.3f ms
+        latency p90     %.3f ms
+        latency p99     %.3f ms
+        latency p99.9   %.3f ms
+        latency max     %.3f ms
+        hit ratio       %.4f (%d hits, %d misses)
+        upstream calls  %d
+        """, requests, failures, throughput(), millis(latencies.valueAtPercentile(0.5)),
+        millis(latencies.valueAtPercentile(0.9)), millis(latencies.valueAtPercentile(0.99)),
+        millis(latencies.valueAtPercentile(0.999)), millis(latencies.getMaxNanos()), hitRatio(),
+        hits, misses, upstreamCalls);
+  }
+
+  /**
+   * Converts a latency to milliseconds.
+   *
+   * @param nanos the latency in nanoseconds
+   * @return the latency in milliseconds
+   */
+  private static double millis(long nanos) {
+    return nanos / NANOS_PER_MILLI;
+  }
+}
@@ -0,0 +1,259 @@
+package ic.doc.forecast;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * An offline simulator which works out the miss ratio of a trace recorded by a
+ * {@link TraceRecorder} for every possible cache size and {@link EvictionPolicy} at once, so that
+ * {@code maxCacheSize} and the eviction policy of a {@link CachingForecasterProxy} can be chosen
+ * from data, and writes the miss-ratio curves out as CSV.
+ * <p>
+ * There are only {@link ForecastCache#CAPACITY} distinct queries, so rather than estimating the
+ * curves from stack distances or a sample of the queries, the trace is fed through a simulated
+ * cache for every size and policy in a single pass, each driven by the same {@link Evictor} as the
+ * proxy. The curves are therefore exact, including for {@link EvictionPolicy#FIFO}, which is not a
+ * stack algorithm, and with the time-to-live modelled, under which no policy is. Entries expire a
+ * fixed time after they were fetched, and are removed as soon as they expire, as they are by the
+ * proxy, so that they no longer take up room. Background refreshes and stale grace periods are not
+ * modelled.
+ * <p>
+ * Run from the command line, through {@code gradle simulateMissRatios}, e.g.
+ * <pre>
+ * gradle simulateMissRatios -PsimulateMissRatios.args="forecasts.trace --output=curves.csv"
+ * </pre>
+ */
+final class MissRatioSimulator {
+
+  private static final String USAGE = """
+      Usage: <trace file> [options], where the options, all of which are optional, are:
+        --ttl=<duration>          the time-to-live of cache entries (1h)
+        --policies=<policies>     comma-separated eviction policies to compare (all of them)
+        --output=<file>           the CSV file to write the curves to (standard output)
+      Durations are written like 500ms, 30s, 5m, 1h, or in ISO-8601 like PT30S.
+      """;
+  private static final String CSV_HEADER =
+      "policy,cache_size,requests,hits,misses,miss_ratio,misses_per_hour";
+  private static final int NO_SLOT = ForecastCache.CAPACITY;
+  private static final double NANOS_PER_HOUR = Duration.ofHours(1).toNanos();
+
+  /**
+   * A simulated size-limited cache, which tracks which queries it holds and when each expires,
+   * without holding any forecasts. Occupied slots are linked in the order they were fetched, which
+   * is also the order in which they expire.
+   */
+  private static final class SimulatedCache {
+
+    final EvictionPolicy policy;
+    final int size;
+    final Evictor evictor;
+    final boolean[] occupied = new boolean[ForecastCache.CAPACITY];
+    final long[] expiryNanos = new long[ForecastCache.CAPACITY];
+    final int[] next = new int[ForecastCache.CAPACITY + 1];
+    final int[] previous = new int[ForecastCache.CAPACITY + 1];
+    long hits;
+    long misses;
+
+    /**
+     * Constructs an empty simulated cache.
+     *
+     * @param policy the {@link EvictionPolicy}
+     * @param size   the maximum number of entries
+     */
+    SimulatedCache(EvictionPolicy policy, int size) {
+      this.policy = policy;
+      this.size = size;
+      this.evictor = size < ForecastCache.CAPACITY ? policy.newEvictor(size) : null;
+      next[NO_SLOT] = NO_SLOT;
+      previous[NO_SLOT] = NO_SLOT;
+    }
+
+    /**
+     * Looks up a query, fetching it on a miss, after removing every entry which has expired.
+     *
+     * @param index      the slot index of the query
+     * @param nowNanos   the time of the lookup
+     * @param timeToLive the time-to-live of entries, in nanoseconds
+     */
+    void access(int index, long nowNanos, long timeToLive) {
+      while (next[NO_SLOT] != NO_SLOT && nowNanos > expiryNanos[next[NO_SLOT]]) {
+        int expired = next[NO_SLOT];
+        remove(expired);
+        if (evictor != null) {
+          evictor.recordRemoval(expired);
+        }
+      }
+
+      if (occupied[index]) {
+        hits++;
+        if (evictor != null) {
+          evictor.recordAccess(index);
+        }
+        return;
+      }
+
+      misses++;
+      occupied[index] = true;
+      expiryNanos[index] = nowNanos + timeToLive;
+      previous[index] = previous[NO_SLOT];
+      next[index] = NO_SLOT;
+      next[previous[NO_SLOT]] = index;
+      previous[NO_SLOT] = index;
+      if (evictor != null) {
+        int victim = evictor.recordInsertion(index);
+        if (victim != Evictor.NONE) {
+          remove(victim);
+        }
+      }
+    }
+
+    /**
+     * Removes an entry, without telling the {@link Evictor}.
+     *
+     * @param index the slot index of the entry
+     */
+    private void remove(int index) {
+      occupied[index] = false;
+      next[previous[index]] = next[index];
+      previous[next[index]] = previous[index];
+    }
+  }
+
+  /**
+   * A record representing the outcome of a simulation.
+   *
+   * @param caches the simulated caches, by policy and then by size
+   * @param span   the time between the first and last calls in the trace
+   */
+  private record Simulation(List<SimulatedCache> caches, Duration span) {
+  }
+
+  private MissRatioSimulator() {
+  }
+
+  /**
+   * Simulates a trace against every cache size and the chosen eviction policies, and writes the
+   * miss-ratio curves out as CSV.
+   *
+   * @param args the trace file, followed by the options described by {@code --help}
+   * @throws IOException if the trace cannot be read, or the curves cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    Path trace = null;
+    Duration timeToLive = Duration.ofHours(1);
+    Set<EvictionPolicy> policies = EnumSet.allOf(EvictionPolicy.class);
+    Path output = null;
+
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      String name = equals < 0 ? arg : arg.substring(0, equals);
+      String value = equals < 0 ? "" : arg.substring(equals + 1);
+      switch (name) {
+        case "--ttl" -> timeToLive = LoadTest.parseDuration(value);
+        case "--policies" -> {
+          policies = EnumSet.noneOf(EvictionPolicy.class);
+          for (String policy : value.split(",")) {
+            policies.add(EvictionPolicy.valueOf(policy.trim().toUpperCase(Locale.ROOT)));
+          }
+        }
+        case "--output" -> output = Path.of(value);
+        case "--help" -> {
+          System.out.print(USAGE);
+          return;
+        }
+        default -> {
+          if (name.startsWith("--") || trace != null) {
+            throw new IllegalArgumentException("Unknown option " + arg + "\n" + USAGE);
+          }
+          trace = Path.of(arg);
+        }
+      }
+    }
+    if (trace == null) {
+      throw new IllegalArgumentException("No trace file given\n" + USAGE);
+    }
+
+    long start = System.nanoTime();
+    Simulation simulation = simulate(trace, timeToLive, policies);
+    if (output == null) {
+      PrintWriter writer = new PrintWriter(System.out, false, StandardCharsets.UTF_8);
+      writeCsv(writer, simulation);
+      writer.flush();
+    } else {
+      try (Writer writer = Files.newBufferedWriter(output)) {
+        writeCsv(writer, simulation);
+      }
+    }
+    System.err.printf("simulated %d caches in %s%n", simulation.caches().size(),
+        Duration.ofNanos(System.nanoTime() - start));
+  }
+
+  /**
+   * Feeds a trace through a simulated cache of every size, for each of a set of eviction
+   * policies, in a single pass.
+   *
+   * @param trace      the trace file
+   * @param timeToLive the time-to-live of entries
+   * @param policies   the eviction policies
+   * @return the outcome of the simulation
+   * @throws IOException if the trace cannot be read
+   */
+  private static Simulation simulate(Path trace, Duration timeToLive,
+      Set<EvictionPolicy> policies) throws IOException {
+    List<SimulatedCache> caches = new ArrayList<>();
+    for (EvictionPolicy policy : policies) {
+      for (int size = 1; size <= ForecastCache.CAPACITY; size++) {
+        caches.add(new SimulatedCache(policy, size));
+      }
+    }
+    SimulatedCache[] simulated = caches.toArray(new SimulatedCache[0]);
+
+    // time never moves backwards, even if calls were traced slightly out of order
+    long ttlNanos = timeToLive.toNanos();
+    long[] bounds = {Long.MAX_VALUE, Long.MIN_VALUE};
+    ForecastTrace.read(trace, call -> {
+      long now = Math.max(bounds[1], ForecastTrace.toEpochNanos(call.timestamp()));
+      bounds[0] = Math.min(bounds[0], now);
+      bounds[1] = now;
+      int index = ForecastCache.indexOf(call.region(), call.day());
+      for (SimulatedCache cache : simulated) {
+        cache.access(index, now, ttlNanos);
+      }
+    });
+
+    Duration span = caches.isEmpty() || bounds[0] > bounds[1]
+        ? Duration.ZERO : Duration.ofNanos(bounds[1] - bounds[0]);
+    return new Simulation(caches, span);
+  }
+
+  /**
+   * Writes the miss-ratio curves of the simulated caches as CSV, with a row for each policy and
+   * cache size, giving the miss ratio and the rate of calls the cache would make to the forecast
+   * service.
+   *
+   * @param writer     the writer to write the CSV to
+   * @param simulation the outcome of the simulation
+   * @throws IOException if the CSV cannot be written
+   */
+  private static void writeCsv(Writer writer, Simulation simulation) throws IOException {
+    writer.write(CSV_HEADER + "\n");
+    double hours = simulation.span().toNanos() / NANOS_PER_HOUR;
+    for (SimulatedCache cache : simulation.caches()) {
+      long requests = cache.hits + cache.misses;
+      writer.write(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.6f,%.1f\n", cache.policy,
+          cache.size, requests, cache.hits, cache.misses,
+          requests == 0 ? 0 : (double) cache.misses / requests,
+          hours == 0 ? 0 : cache.misses / hours));
+    }
+  }
+}
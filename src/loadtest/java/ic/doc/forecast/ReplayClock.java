@@ -0,0 +1,40 @@
+package ic.doc.forecast;
+
+import java.time.Instant;
+import java.time.InstantSource;
+
+/**
+ * A virtual {@link InstantSource} for replaying traces, whose time is moved to the time of each
+ * traced call as it is replayed, so that a trace replays as fast as the cache can serve it, while
+ * the cache still sees its entries expire as they did when it was recorded. Time never moves
+ * backwards, even if calls were traced slightly out of order.
+ */
+final class ReplayClock implements InstantSource {
+
+  private volatile Instant now;
+
+  /**
+   * Constructs a virtual {@link InstantSource} starting at a given time.
+   *
+   * @param start the starting time
+   */
+  ReplayClock(Instant start) {
+    this.now = start;
+  }
+
+  @Override
+  public Instant instant() {
+    return now;
+  }
+
+  /**
+   * Moves the time forward to a given time, unless it is already later.
+   *
+   * @param time the time to move to
+   */
+  void advanceTo(Instant time) {
+    if (time.isAfter(now)) {
+      now = time;
+    }
+  }
+}
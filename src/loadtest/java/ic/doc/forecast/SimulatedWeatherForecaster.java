@@ -0,0 +1,83 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in for the real {@link com.weather.Forecaster}, so that load tests can run offline and
+ * be repeated. Every call sleeps for a configurable latency, plus up to some random jitter, before
+ * returning a forecast derived from the query and the hour of the simulation, so that forecasts
+ * change over time like real ones. Sleeping parks virtual threads rather than blocking a carrier
+ * thread, so it does not distort runs on virtual threads.
+ */
+final class SimulatedWeatherForecaster extends com.weather.Forecaster {
+
+  private static final String[] SUMMARIES = {
+      "Sunny", "Cloudy", "Rain", "Drizzle", "Snow", "Fog", "Thunderstorms", "Windy"};
+  private static final int MIN_TEMPERATURE = -5;
+  private static final int MAX_TEMPERATURE = 35;
+  private static final long NANOS_PER_HOUR = Duration.ofHours(1).toNanos();
+
+  private final long latencyNanos;
+  private final long jitterNanos;
+  private final long seed;
+  private final long startNanos = System.nanoTime();
+  private final AtomicLong calls = new AtomicLong();
+
+  /**
+   * Constructs a simulated forecast service.
+   *
+   * @param latency the least time each call takes
+   * @param jitter  the most extra time each call may take, chosen at random
+   * @param seed    the seed of the random jitter and forecasts
+   * @throws NullPointerException     if {@code latency} or {@code jitter} is null
+   * @throws IllegalArgumentException if {@code latency} or {@code jitter} is negative
+   */
+  SimulatedWeatherForecaster(Duration latency, Duration jitter, long seed) {
+    if (latency == null) {
+      throw new NullPointerException("latency cannot be null");
+    }
+    if (jitter == null) {
+      throw new NullPointerException("jitter cannot be null");
+    }
+    if (latency.isNegative() || jitter.isNegative()) {
+      throw new IllegalArgumentException("Latency cannot be negative");
+    }
+
+    this.latencyNanos = latency.toNanos();
+    this.jitterNanos = jitter.toNanos();
+    this.seed = seed;
+  }
+
+  @Override
+  public com.weather.Forecast forecastFor(com.weather.Region region, com.weather.Day day) {
+    long call = calls.incrementAndGet();
+    long sleepNanos = latencyNanos
+        + (jitterNanos == 0 ? 0 : new SplittableRandom(seed + call).nextLong(jitterNanos + 1));
+    if (sleepNanos > 0) {
+      try {
+        Thread.sleep(Duration.ofNanos(sleepNanos));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while simulating the forecast service", e);
+      }
+    }
+
+    // the same query gets the same forecast for an hour of the simulation at a time
+    long hour = (System.nanoTime() - startNanos) / NANOS_PER_HOUR;
+    SplittableRandom forecast = new SplittableRandom(
+        seed ^ (region.ordinal() * 7L + day.ordinal() << 32) ^ hour);
+    return new com.weather.Forecast(SUMMARIES[forecast.nextInt(SUMMARIES.length)],
+        forecast.nextInt(MIN_TEMPERATURE, MAX_TEMPERATURE + 1));
+  }
+
+  /**
+   * Counts the calls made to the simulated forecast service so far.
+   *
+   * @return the number of calls
+   */
+  long calls() {
+    return calls.get();
+  }
+}
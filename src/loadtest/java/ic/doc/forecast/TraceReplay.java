@@ -0,0 +1,155 @@
+package ic.doc.forecast;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * A tool which replays a trace recorded by a {@link TraceRecorder} against a
+ * {@link CachingForecasterProxy}, so that cache sizes, eviction policies and time-to-lives can be
+ * compared on real access patterns offline. The proxy keeps time with a {@link ReplayClock}, which
+ * jumps straight to the time of each traced call, so an hour-long trace replays in seconds. The
+ * proxied forecast service is a {@link SimulatedWeatherForecaster} with no latency, whose calls
+ * are counted.
+ * <p>
+ * Run from the command line, through {@code gradle replayTrace}, e.g.
+ * <pre>
+ * gradle replayTrace -PreplayTrace.args="forecasts.trace --cache-size=32 --eviction=LRU"
+ * </pre>
+ */
+final class TraceReplay {
+
+  private static final String USAGE = """
+      Usage: <trace file> [options], where the options, all of which are optional, are:
+        --cache-size=<n>          the maximum cache size (63, i.e. unlimited)
+        --eviction=<policy>       FIFO, LRU, LFU or WINDOW_TINY_LFU (FIFO)
+        --ttl=<duration>          the time-to-live of cache entries (1h)
+      Durations are written like 500ms, 30s, 5m, 1h, or in ISO-8601 like PT30S.
+      """;
+
+  /**
+   * A record representing the outcome of a replay.
+   *
+   * @param calls         the number of calls replayed
+   * @param tracedHits    the number of calls which hit the cache when the trace was recorded
+   * @param hits          the number of calls which hit the cache when replayed
+   * @param upstreamCalls the number of calls made to the forecast service when replayed
+   * @param span          the time between the first and last traced calls
+   * @param elapsed       how long the replay took
+   */
+  record ReplayReport(long calls, long tracedHits, long hits, long upstreamCalls, Duration span,
+      Duration elapsed) {
+
+    /**
+     * Describes the outcome in a human-readable table.
+     *
+     * @return the description
+     */
+    String format() {
+      return String.format("""
+          calls           %d
+          traced hits     %.4f
+          replayed hits   %.4f
+          upstream calls  %d
+          trace span      %s
+          replay time     %s (%.0fx real time)
+          """, calls, ratio(tracedHits), ratio(hits), upstreamCalls, span, elapsed,
+          (double) span.toNanos() / Math.max(elapsed.toNanos(), 1));
+    }
+
+    /**
+     * Works out the proportion of calls a number of them makes up.
+     *
+     * @param count the number of calls
+     * @return the proportion of all calls, or zero if there were none
+     */
+    private double ratio(long count) {
+      return calls == 0 ? 0 : (double) count / calls;
+    }
+  }
+
+  private TraceReplay() {
+  }
+
+  /**
+   * Replays a trace against a configured {@link CachingForecasterProxy}, and prints its outcome.
+   *
+   * @param args the trace file, followed by the options described by {@code --help}
+   * @throws IOException if the trace cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    Path trace = null;
+    int cacheSize = ForecastCache.CAPACITY;
+    EvictionPolicy evictionPolicy = EvictionPolicy.FIFO;
+    Duration timeToLive = Duration.ofHours(1);
+
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      String name = equals < 0 ? arg : arg.substring(0, equals);
+      String value = equals < 0 ? "" : arg.substring(equals + 1);
+      switch (name) {
+        case "--cache-size" -> cacheSize = Integer.parseInt(value);
+        case "--eviction" -> evictionPolicy =
+            EvictionPolicy.valueOf(value.toUpperCase(Locale.ROOT));
+        case "--ttl" -> timeToLive = LoadTest.parseDuration(value);
+        case "--help" -> {
+          System.out.print(USAGE);
+          return;
+        }
+        default -> {
+          if (name.startsWith("--") || trace != null) {
+            throw new IllegalArgumentException("Unknown option " + arg + "\n" + USAGE);
+          }
+          trace = Path.of(arg);
+        }
+      }
+    }
+    if (trace == null) {
+      throw new IllegalArgumentException("No trace file given\n" + USAGE);
+    }
+
+    CacheOptions options =
+        CacheOptions.defaults().withTimeToLive(timeToLive).withEvictionPolicy(evictionPolicy);
+    System.out.print(replay(trace, cacheSize, options).format());
+  }
+
+  /**
+   * Replays a trace against a {@link CachingForecasterProxy}, in front of a
+   * {@link SimulatedWeatherForecaster} with no latency, keeping time with a {@link ReplayClock}.
+   *
+   * @param trace     the trace file
+   * @param cacheSize the maximum cache size
+   * @param options   the {@link CacheOptions} to configure the cache with
+   * @return the outcome of the replay
+   * @throws IOException if the trace cannot be read
+   */
+  static ReplayReport replay(Path trace, int cacheSize, CacheOptions options)
+      throws IOException {
+    SimulatedWeatherForecaster upstream =
+        new SimulatedWeatherForecaster(Duration.ZERO, Duration.ZERO, 0);
+    ReplayClock clock = new ReplayClock(Instant.EPOCH);
+    CachingForecasterProxy proxy = new CachingForecasterProxy(
+        WeatherForecasterAdapter.adapt(upstream, options.metrics()), cacheSize, options, clock);
+
+    long[] tracedHits = new long[1];
+    Instant[] first = new Instant[1];
+    long start = System.nanoTime();
+    long calls = ForecastTrace.read(trace, call -> {
+      if (first[0] == null) {
+        first[0] = call.timestamp();
+      }
+      if (call.hit()) {
+        tracedHits[0]++;
+      }
+      clock.advanceTo(call.timestamp());
+      proxy.forecastFor(call.region(), call.day());
+    });
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    Duration span = first[0] == null ? Duration.ZERO : Duration.between(first[0], clock.instant());
+    return new ReplayReport(calls, tracedHits[0], options.metrics().getHits(), upstream.calls(),
+        span, elapsed);
+  }
+}
@@ -0,0 +1,331 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.indexOf;
+
+import ic.doc.forecast.ForecastCache.Entry;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A proxy around {@link AsyncForecaster} objects which caches responses for an hour, after which
+ * they will be evicted from the cache. The time-to-live can be configured through
+ * {@link CacheOptions}, and an optional cache size limit can be supplied.
+ * <p>
+ * This is the asynchronous counterpart of {@link CachingForecasterProxy}, and shares its
+ * behaviour: cache hits return an already completed future, concurrent cache misses for the same
+ * query share a single request to the proxied {@link AsyncForecaster}, and entries can be
+ * refreshed ahead of expiry or served stale as configured by {@link CacheOptions}. Since requests
+ * are already asynchronous, background refreshes do not use the configured refresh executor. The
+ * circuit breaker of {@link CacheOptions} is not supported, and is rejected rather than ignored.
+ */
+public final class AsyncCachingForecasterProxy implements AsyncForecaster {
+
+  private static final int NO_MAX_CACHE_SIZE = 0;
+
+  private final AsyncForecaster forecaster;
+  private final ForecastCache cache;
+  private final AtomicReferenceArray<CompletableFuture<Forecast>> inFlightRequests =
+      new AtomicReferenceArray<>(ForecastCache.CAPACITY);
+  private final InstantSource instantSource;
+  private final ForecastExpiry expiry;
+  private final ForecasterMetrics metrics;
+  private final Duration refreshAhead;
+
+  /**
+   * Constructs a caching {@link AsyncForecaster} proxy with a cache of limited size. Old entries
+   * are evicted if the cache size reaches that limit.
+   *
+   * @param forecaster    the {@link AsyncForecaster} object being proxied
+   * @param maxCacheSize  the maximum cache size. Must be greater than zero
+   * @param options       optional {@link CacheOptions} object to configure the cache with
+   * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
+   * @throws NullPointerException     if {@code forecaster} is null
+   * @throws IllegalArgumentException if {@code maxCacheSize} is less than zero, or if
+   *                                  {@code options} configure a circuit breaker
+   */
+  public AsyncCachingForecasterProxy(AsyncForecaster forecaster, int maxCacheSize,
+      CacheOptions options, InstantSource instantSource) {
+    if (forecaster == null) {
+      throw new NullPointerException("Forecaster cannot be null");
+    }
+    if (maxCacheSize <= NO_MAX_CACHE_SIZE) {
+      throw new IllegalArgumentException("Cache size must be greater than zero");
+    }
+    options = options == null ? CacheOptions.defaults() : options;
+    if (options.circuitBreaker() != null) {
+      throw new IllegalArgumentException("Circuit breakers are not supported by the async proxy");
+    }
+
+    this.forecaster = forecaster;
+    this.cache = new ForecastCache(maxCacheSize, options.evictionPolicy(), options.metrics(),
+        options.staleGrace());
+    this.instantSource = instantSource == null ? InstantSource.system() : instantSource;
+    this.expiry = options.expiry();
+    this.metrics = options.metrics();
+    this.refreshAhead = options.refreshAhead();
+  }
+
+  /**
+   * Constructs a caching {@link AsyncForecaster} proxy with a cache unlimited size. No old entry
+   * will ever get evicted, so all repeated requests always hit the cache.
+   *
+   * @param forecaster    the {@link AsyncForecaster} object being proxied
+   * @param options       optional {@link CacheOptions} object to configure the cache with
+   * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
+   * @throws NullPointerException     if {@code forecaster} is null
+   * @throws IllegalArgumentException if {@code options} configure a circuit breaker
+   */
+  public AsyncCachingForecasterProxy(AsyncForecaster forecaster, CacheOptions options,
+      InstantSource instantSource) {
+    this(forecaster, ForecastCache.CAPACITY, options, instantSource);
+  }
+
+  /**
+   * Creates a caching {@link AsyncForecaster} proxy with a cache of limited size. Old entries are
+   * evicted if the cache size reaches that limit.
+   *
+   * @param forecaster    the {@link AsyncForecaster} object being proxied
+   * @param maxCacheSize  the maximum cache size. Must be greater than zero
+   * @param options       optional {@link CacheOptions} object to configure the cache with
+   * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
+   * @throws NullPointerException     if {@code forecaster} is null
+   * @throws IllegalArgumentException if {@code maxCacheSize} is less than zero, or if
+   *                                  {@code options} configure a circuit breaker
+   */
+  public static AsyncForecaster withLimitedCache(AsyncForecaster forecaster, int maxCacheSize,
+      CacheOptions options, InstantSource instantSource)
+      throws NullPointerException, IllegalArgumentException {
+    return new AsyncCachingForecasterProxy(forecaster, maxCacheSize, options, instantSource);
+  }
+
+  /**
+   * Creates a caching {@link AsyncForecaster} proxy with a cache of limited size. Entries are
+   * evicted according to an {@link EvictionPolicy} if the cache size reaches that limit.
+   *
+   * @param forecaster     the {@link AsyncForecaster} object being proxied
+   * @param maxCacheSize   the maximum cache size. Must be greater than zero
+   * @param evictionPolicy the {@link EvictionPolicy} used to choose which entries to evict
+   * @throws NullPointerException     if {@code forecaster} or {@code evictionPolicy} is null
+   * @throws IllegalArgumentException if {@code maxCacheSize} is less than zero
+   */
+  public static AsyncForecaster withLimitedCache(AsyncForecaster forecaster, int maxCacheSize,
+      EvictionPolicy evictionPolicy) throws NullPointerException, IllegalArgumentException {
+    return new AsyncCachingForecasterProxy(forecaster, maxCacheSize,
+        CacheOptions.defaults().withEvictionPolicy(evictionPolicy), null);
+  }
+
+  /**
+   * Creates a caching {@link AsyncForecaster} proxy with a cache of limited size. Old entries are
+   * evicted if the cache size reaches that limit.
+   *
+   * @param forecaster   the {@link AsyncForecaster} object being proxied
+   * @param maxCacheSize the maximum cache size. Must be greater than zero
+   * @throws NullPointerException     if {@code forecaster} is null
+   * @throws IllegalArgumentException if {@code maxCacheSize} is less than zero
+   */
+  public static AsyncForecaster withLimitedCache(AsyncForecaster forecaster, int maxCacheSize)
+      throws NullPointerException, IllegalArgumentException {
+    return new AsyncCachingForecasterProxy(forecaster, maxCacheSize, null, null);
+  }
+
+  /**
+   * Creates a caching {@link AsyncForecaster} proxy with a cache unlimited size. No old entry will
+   * ever get evicted, so all repeated requests always hit the cache.
+   *
+   * @param forecaster    the {@link AsyncForecaster} object being proxied
+   * @param options       optional {@link CacheOptions} object to configure the cache with
+   * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
+   * @throws NullPointerException     if {@code forecaster} is null
+   * @throws IllegalArgumentException if {@code options} configure a circuit breaker
+   */
+  public static AsyncForecaster withUnlimitedCache(AsyncForecaster forecaster,
+      CacheOptions options, InstantSource instantSource)
+      throws NullPointerException, IllegalArgumentException {
+    return new AsyncCachingForecasterProxy(forecaster, options, instantSource);
+  }
+
+  /**
+   * Creates a caching {@link AsyncForecaster} proxy with a cache unlimited size. No old entry will
+   * ever get evicted, so all repeated requests always hit the cache.
+   *
+   * @param forecaster the {@link AsyncForecaster} object being proxied
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  public static AsyncForecaster withUnlimitedCache(AsyncForecaster forecaster)
+      throws NullPointerException {
+    return new AsyncCachingForecasterProxy(forecaster, null, null);
+  }
+
+  /**
+   * Returns the {@link ForecasterMetrics} in which this proxy records its cache hits, misses,
+   * evictions and expirations, as configured by {@link CacheOptions}.
+   *
+   * @return the {@link ForecasterMetrics}
+   */
+  public ForecasterMetrics metrics() {
+    return metrics;
+  }
+
+  @Override
+  public CompletableFuture<Forecast> forecastFor(Region region, Day day) {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+    if (day == null) {
+      throw new NullPointerException("day cannot be null");
+    }
+
+    // check if query is in cache, and if it is a cache hit, complete immediately
+    Forecast forecast = hitCache(region, day);
+    if (forecast != null) {
+      return CompletableFuture.completedFuture(forecast);
+    }
+    metrics.recordMiss();
+
+    // if it is a cache miss, depend on the in-flight request for the same query,
+    // making that request first if there is none; callers get their own copy of the
+    // request, so that cancelling it does not affect other callers
+    return request(region, day).copy();
+  }
+
+  /**
+   * Returns the in-flight request for a given {@link Region} and {@link Day}, making that request
+   * to the proxied {@link AsyncForecaster} first if there is none. The response is added to the
+   * cache before the request completes.
+   *
+   * @param region the given {@link Region}
+   * @param day    the given {@link Day}
+   * @return the in-flight request
+   */
+  private CompletableFuture<Forecast> request(Region region, Day day) {
+    int index = indexOf(region, day);
+    CompletableFuture<Forecast> request = new CompletableFuture<>();
+    while (!inFlightRequests.compareAndSet(index, null, request)) {
+      CompletableFuture<Forecast> inFlightRequest = inFlightRequests.get(index);
+      if (inFlightRequest != null) {
+        return inFlightRequest;
+      }
+    }
+
+    // a request for the same query may have completed since the cache was checked,
+    // in which case its entry is not yet due to be refreshed
+    Forecast forecast = hitFreshCache(index);
+    if (forecast != null) {
+      inFlightRequests.compareAndSet(index, request, null);
+      request.complete(forecast);
+      return request;
+    }
+
+    CompletableFuture<Forecast> response;
+    try {
+      response = forecaster.forecastFor(region, day);
+      if (response == null) {
+        throw new NullPointerException("Forecaster returned a null future");
+      }
+    } catch (RuntimeException | Error e) {
+      inFlightRequests.compareAndSet(index, request, null);
+      request.completeExceptionally(e);
+      return request;
+    }
+
+    response.whenComplete((result, failure) -> {
+      // the slot is always freed and the request always completed, even if caching the response
+      // fails, so that later callers for the same query are never left waiting on it forever
+      Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+          ? failure.getCause() : failure;
+      try {
+        // add the new entry to the cache, before anyone can observe the request completing
+        if (cause == null) {
+          cacheResponse(index, region, day, result);
+        }
+      } catch (RuntimeException | Error e) {
+        cause = e;
+      } finally {
+        inFlightRequests.compareAndSet(index, request, null);
+        if (cause == null) {
+          request.complete(result);
+        } else {
+          request.completeExceptionally(cause);
+        }
+      }
+    });
+    return request;
+  }
+
+  /**
+   * Adds a response from the proxied {@link AsyncForecaster} to the cache, timestamped now. A
+   * response already flagged as stale, such as a fallback served by the proxied forecaster itself,
+   * is passed on to the caller, but is not cached.
+   *
+   * @param index    the slot index of the query
+   * @param region   the given {@link Region}
+   * @param day      the given {@link Day}
+   * @param forecast the {@link Forecast} the response completed with
+   * @throws NullPointerException if {@code forecast} is null
+   */
+  private void cacheResponse(int index, Region region, Day day, Forecast forecast) {
+    if (forecast == null) {
+      throw new NullPointerException("Forecaster returned a null forecast");
+    }
+    if (forecast.stale()) {
+      return;
+    }
+
+    Instant timestamp = instantSource.instant();
+    cache.put(Entry.of(index, forecast, timestamp, expiry.timeToLive(region, day, forecast),
+        refreshAhead));
+    cache.removeExpired(timestamp);
+  }
+
+  /**
+   * Checks the cache for a {@link Forecast} associated with a given {@link Region} and {@link Day},
+   * and returns it if found and not expired. Otherwise, returns null.
+   * <p>
+   * If the entry is due to be refreshed, a background refresh is started, and the entry is still
+   * returned. This includes entries which have expired, but are still within the stale
+   * grace window.
+   *
+   * @param region the given {@link Region}
+   * @param day    the given {@link Day}
+   * @return the cached {@link Forecast}, or null if not found or expired
+   */
+  private Forecast hitCache(Region region, Day day) {
+    // if it is a cache miss, return early, without reading the clock
+    int index = indexOf(region, day);
+    if (cache.get(index) == null) {
+      return null;
+    }
+
+    Instant now = instantSource.instant();
+    Entry forecastEntry = cache.hit(index, now);
+    if (forecastEntry == null) {
+      return null;
+    }
+
+    // if the entry is due to be refreshed, then refresh it in the background and return it anyway
+    if (forecastEntry.isRefreshDueAt(now)) {
+      request(region, day);
+    }
+    return forecastEntry.forecast();
+  }
+
+  /**
+   * Checks the cache for a {@link Forecast} associated with a given slot index, and returns it if
+   * found and not yet due to be refreshed. Otherwise, returns null. Unlike
+   * {@link #hitCache(Region, Day)}, this never serves stale entries or triggers refreshes.
+   *
+   * @param index the slot index of the query
+   * @return the cached {@link Forecast}, or null if not found or due to be refreshed
+   */
+  private Forecast hitFreshCache(int index) {
+    if (cache.get(index) == null) {
+      return null;
+    }
+    Entry forecastEntry = cache.getFresh(index, instantSource.instant());
+    return forecastEntry == null ? null : forecastEntry.forecast();
+  }
+}
@@ -0,0 +1,19 @@
+package ic.doc.forecast;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An interface representing the capacity to provide weather forecasts for a given region and day,
+ * without blocking the caller while the forecast is being produced.
+ */
+public interface AsyncForecaster {
+
+  /**
+   * Provides a forecast for a given region and day, asynchronously.
+   *
+   * @param region the region
+   * @param day    the day
+   * @return a future which completes with the forecast for that {@code region} and {@code day}
+   */
+  CompletableFuture<Forecast> forecastFor(Region region, Day day);
+}
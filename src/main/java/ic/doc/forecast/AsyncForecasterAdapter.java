@@ -0,0 +1,83 @@
+package ic.doc.forecast;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Adapts blocking {@link Forecaster} objects to the {@link AsyncForecaster} interface, by running
+ * each call on an {@link Executor}. By default, every call runs on its own virtual thread, so that
+ * callers blocked on a slow forecast service do not tie up platform threads.
+ */
+public final class AsyncForecasterAdapter implements AsyncForecaster {
+
+  private static final Executor VIRTUAL_THREADS = Thread::startVirtualThread;
+
+  private final Forecaster forecaster;
+  private final Executor executor;
+
+  /**
+   * Constructs an {@link AsyncForecaster} object which runs calls to a blocking {@link Forecaster}
+   * object on an {@link Executor}.
+   *
+   * @param forecaster the blocking {@link Forecaster} object
+   * @param executor   optional {@link Executor} to run the calls on. Defaults to virtual threads
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  public AsyncForecasterAdapter(Forecaster forecaster, Executor executor) {
+    if (forecaster == null) {
+      throw new NullPointerException("forecaster cannot be null");
+    }
+
+    this.forecaster = forecaster;
+    this.executor = executor == null ? VIRTUAL_THREADS : executor;
+  }
+
+  /**
+   * Creates an {@link AsyncForecaster} object from a given blocking {@link Forecaster} object, with
+   * every call running on its own virtual thread.
+   *
+   * @param forecaster the blocking {@link Forecaster} object
+   * @return the {@link AsyncForecaster} object
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  public static AsyncForecaster adapt(Forecaster forecaster) {
+    return new AsyncForecasterAdapter(forecaster, null);
+  }
+
+  /**
+   * Creates an {@link AsyncForecaster} object from a given blocking {@link Forecaster} object, with
+   * every call running on the given {@link Executor}.
+   *
+   * @param forecaster the blocking {@link Forecaster} object
+   * @param executor   the {@link Executor} to run the calls on
+   * @return the {@link AsyncForecaster} object
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  public static AsyncForecaster adapt(Forecaster forecaster, Executor executor) {
+    return new AsyncForecasterAdapter(forecaster, executor);
+  }
+
+  /**
+   * Creates an {@link AsyncForecaster} object from a given {@link com.weather.Forecaster} object,
+   * with every call running on its own virtual thread.
+   *
+   * @param weatherForecaster the {@link com.weather.Forecaster} object
+   * @return the {@link AsyncForecaster} object
+   * @throws NullPointerException if {@code weatherForecaster} is null
+   */
+  public static AsyncForecaster adapt(com.weather.Forecaster weatherForecaster) {
+    return new AsyncForecasterAdapter(WeatherForecasterAdapter.adapt(weatherForecaster), null);
+  }
+
+  @Override
+  public CompletableFuture<Forecast> forecastFor(Region region, Day day) {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+    if (day == null) {
+      throw new NullPointerException("day cannot be null");
+    }
+
+    return CompletableFuture.supplyAsync(() -> forecaster.forecastFor(region, day), executor);
+  }
+}
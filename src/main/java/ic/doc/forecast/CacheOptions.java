@@ -0,0 +1,195 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * A record representing the optional behaviours of a {@link CachingForecasterProxy}. The defaults
+ * disable all of them, so that entries are only ever fetched by the caller which misses the cache.
+ *
+ * @param expiry          the {@link ForecastExpiry} deciding how long each entry stays in the cache
+ * @param refreshAhead    how long before expiry a cache hit triggers a background refresh of the
+ *                        entry. Zero disables refresh-ahead. Entries whose time-to-live is shorter
+ *                        than this are due to be refreshed as soon as they are fetched
+ * @param staleGrace      how long after expiry an entry may still be served, while a background
+ *                        refresh of it is in flight. Zero disables serving stale entries
+ * @param refreshExecutor the {@link Executor} on which background refreshes are run
+ * @param bulkParallelism the maximum number of requests a bulk query makes in parallel
+ * @param evictionPolicy  the {@link EvictionPolicy} of a size-limited cache. Ignored by caches of
+ *                        unlimited size
+ * @param metrics         the {@link ForecasterMetrics} in which the cache records its behaviour
+ * @param circuitBreaker  the {@link CircuitBreakerOptions} of the circuit breaker around the
+ *                        forecast service, or null to call it unconditionally. Not supported
+ *                        by {@link AsyncCachingForecasterProxy}, which rejects it with an
+ *                        {@link IllegalArgumentException}
+ */
+public record CacheOptions(ForecastExpiry expiry, Duration refreshAhead, Duration staleGrace,
+    Executor refreshExecutor, int bulkParallelism, EvictionPolicy evictionPolicy,
+    ForecasterMetrics metrics, CircuitBreakerOptions circuitBreaker) {
+
+  private static final int DEFAULT_BULK_PARALLELISM = 8;
+  private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(1);
+  private static final ForecastExpiry DEFAULT_EXPIRY =
+      ForecastExpiry.afterWrite(DEFAULT_TIME_TO_LIVE);
+
+  /**
+   * Constructs a set of cache options.
+   *
+   * @throws NullPointerException     if any of the components, other than
+   *                                  {@code circuitBreaker}, are null
+   * @throws IllegalArgumentException if any of the durations are negative, or if
+   *                                  {@code bulkParallelism} is not greater than zero
+   */
+  public CacheOptions {
+    if (expiry == null) {
+      throw new NullPointerException("expiry cannot be null");
+    }
+    if (refreshAhead == null) {
+      throw new NullPointerException("refreshAhead cannot be null");
+    }
+    if (staleGrace == null) {
+      throw new NullPointerException("staleGrace cannot be null");
+    }
+    if (refreshExecutor == null) {
+      throw new NullPointerException("refreshExecutor cannot be null");
+    }
+    if (evictionPolicy == null) {
+      throw new NullPointerException("evictionPolicy cannot be null");
+    }
+    if (metrics == null) {
+      throw new NullPointerException("metrics cannot be null");
+    }
+    if (refreshAhead.isNegative()) {
+      throw new IllegalArgumentException("Refresh-ahead window cannot be negative");
+    }
+    if (staleGrace.isNegative()) {
+      throw new IllegalArgumentException("Stale grace window cannot be negative");
+    }
+    if (bulkParallelism <= 0) {
+      throw new IllegalArgumentException("Bulk parallelism must be greater than zero");
+    }
+  }
+
+  /**
+   * Provides the default cache options, where entries stay in the cache for an hour after they
+   * were fetched, are never refreshed in the background, and are never served once expired.
+   * Background refreshes, if enabled, run on virtual threads, and bulk queries make up to eight
+   * requests in parallel. Size-limited caches evict the oldest entries first, and the forecast
+   * service is called without a circuit breaker. Each call provides a new, empty set of
+   * {@link ForecasterMetrics}, which is shared by all options copied from it.
+   *
+   * @return the default cache options
+   */
+  public static CacheOptions defaults() {
+    return new CacheOptions(DEFAULT_EXPIRY, Duration.ZERO, Duration.ZERO,
+        Thread::startVirtualThread, DEFAULT_BULK_PARALLELISM, EvictionPolicy.FIFO,
+        new ForecasterMetrics(), null);
+  }
+
+  /**
+   * Copies these options, but with every entry staying in the cache for the same time after it was
+   * fetched.
+   *
+   * @param timeToLive the time-to-live of every cache entry. Must be positive
+   * @return the new options
+   * @throws NullPointerException     if {@code timeToLive} is null
+   * @throws IllegalArgumentException if {@code timeToLive} is not positive
+   */
+  public CacheOptions withTimeToLive(Duration timeToLive)
+      throws NullPointerException, IllegalArgumentException {
+    return withExpiry(ForecastExpiry.afterWrite(timeToLive));
+  }
+
+  /**
+   * Copies these options, but with a different {@link ForecastExpiry}, so that each entry can stay
+   * in the cache for a different time.
+   *
+   * @param expiry the {@link ForecastExpiry} deciding how long each entry stays in the cache
+   * @return the new options
+   */
+  public CacheOptions withExpiry(ForecastExpiry expiry) {
+    return new CacheOptions(expiry, refreshAhead, staleGrace, refreshExecutor, bulkParallelism,
+        evictionPolicy, metrics, circuitBreaker);
+  }
+
+  /**
+   * Copies these options, but with a different refresh-ahead window.
+   *
+   * @param refreshAhead how long before expiry a cache hit triggers a background refresh
+   * @return the new options
+   */
+  public CacheOptions withRefreshAhead(Duration refreshAhead) {
+    return new CacheOptions(expiry, refreshAhead, staleGrace, refreshExecutor, bulkParallelism,
+        evictionPolicy, metrics, circuitBreaker);
+  }
+
+  /**
+   * Copies these options, but with a different stale grace window.
+   *
+   * @param staleGrace how long after expiry an entry may still be served while it is refreshed
+   * @return the new options
+   */
+  public CacheOptions withStaleGrace(Duration staleGrace) {
+    return new CacheOptions(expiry, refreshAhead, staleGrace, refreshExecutor, bulkParallelism,
+        evictionPolicy, metrics, circuitBreaker);
+  }
+
+  /**
+   * Copies these options, but with a different background refresh {@link Executor}.
+   *
+   * @param refreshExecutor the {@link Executor} on which background refreshes are run
+   * @return the new options
+   */
+  public CacheOptions withRefreshExecutor(Executor refreshExecutor) {
+    return new CacheOptions(expiry, refreshAhead, staleGrace, refreshExecutor, bulkParallelism,
+        evictionPolicy, metrics, circuitBreaker);
+  }
+
+  /**
+   * Copies these options, but with a different bulk query parallelism limit.
+   *
+   * @param bulkParallelism the maximum number of requests a bulk query makes in parallel
+   * @return the new options
+   */
+  public CacheOptions withBulkParallelism(int bulkParallelism) {
+    return new CacheOptions(expiry, refreshAhead, staleGrace, refreshExecutor, bulkParallelism,
+        evictionPolicy, metrics, circuitBreaker);
+  }
+
+  /**
+   * Copies these options, but with a different {@link EvictionPolicy}.
+   *
+   * @param evictionPolicy the {@link EvictionPolicy} of a size-limited cache
+   * @return the new options
+   */
+  public CacheOptions withEvictionPolicy(EvictionPolicy evictionPolicy) {
+    return new CacheOptions(expiry, refreshAhead, staleGrace, refreshExecutor, bulkParallelism,
+        evictionPolicy, metrics, circuitBreaker);
+  }
+
+  /**
+   * Copies these options, but with a different set of {@link ForecasterMetrics}, so that they can
+   * be shared with other forecasters.
+   *
+   * @param metrics the {@link ForecasterMetrics} in which the cache records its behaviour
+   * @return the new options
+   */
+  public CacheOptions withMetrics(ForecasterMetrics metrics) {
+    return new CacheOptions(expiry, refreshAhead, staleGrace, refreshExecutor, bulkParallelism,
+        evictionPolicy, metrics, circuitBreaker);
+  }
+
+  /**
+   * Copies these options, but with a circuit breaker around the forecast service, so that while it
+   * is failing, the last known forecasts are served, flagged as stale, instead. Only
+   * {@link CachingForecasterProxy} supports a circuit breaker; {@link AsyncCachingForecasterProxy}
+   * rejects options which configure one.
+   *
+   * @param circuitBreaker the {@link CircuitBreakerOptions}, or null to disable the circuit breaker
+   * @return the new options
+   */
+  public CacheOptions withCircuitBreaker(CircuitBreakerOptions circuitBreaker) {
+    return new CacheOptions(expiry, refreshAhead, staleGrace, refreshExecutor, bulkParallelism,
+        evictionPolicy, metrics, circuitBreaker);
+  }
+}
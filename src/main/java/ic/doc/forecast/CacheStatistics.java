@@ -0,0 +1,46 @@
+package ic.doc.forecast;
+
+import javax.management.MXBean;
+
+/**
+ * The management interface through which the cache counters of {@link ForecasterMetrics} are
+ * exposed over JMX.
+ */
+@MXBean
+public interface CacheStatistics {
+
+  /**
+   * Counts the lookups which were served from the cache.
+   *
+   * @return the number of cache hits
+   */
+  long getHits();
+
+  /**
+   * Counts the lookups which could not be served from the cache.
+   *
+   * @return the number of cache misses
+   */
+  long getMisses();
+
+  /**
+   * Computes the proportion of lookups which were served from the cache.
+   *
+   * @return the hit ratio, between zero and one, or zero if there have been no lookups
+   */
+  double getHitRatio();
+
+  /**
+   * Counts the entries which were evicted to keep a size-limited cache within its limit.
+   *
+   * @return the number of evictions
+   */
+  long getEvictions();
+
+  /**
+   * Counts the entries which were removed from the cache because they had expired.
+   *
+   * @return the number of expirations
+   */
+  long getExpirations();
+}
@@ -0,0 +1,109 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms up a caching {@link Forecaster}, such as a {@link CachingForecasterProxy}, by fetching the
+ * forecast for every {@link Region} and {@link Day} in parallel, so that the first callers for each
+ * query do not have to wait on the slow forecast service.
+ */
+public final class CacheWarmer {
+
+  private static final Executor VIRTUAL_THREADS = Thread::startVirtualThread;
+
+  private CacheWarmer() {
+  }
+
+  /**
+   * Starts warming up a caching {@link Forecaster} in the background, with at most
+   * {@code concurrency} fetches in flight at once. The returned readiness future completes once
+   * every entry has been fetched, or once the deadline passes, whichever is sooner. Fetches which
+   * have not started by the deadline are abandoned, while those already in flight are left to
+   * complete and populate the cache in the background.
+   *
+   * @param forecaster  the caching {@link Forecaster} to warm up
+   * @param concurrency the maximum number of fetches in flight at once. Must be greater than zero
+   * @param deadline    the maximum time to wait for the warm-up to complete
+   * @return a future which completes with a {@link WarmUpReport} once the warm-up is over
+   * @throws NullPointerException     if {@code forecaster} or {@code deadline} is null
+   * @throws IllegalArgumentException if {@code concurrency} is not greater than zero
+   */
+  public static CompletableFuture<WarmUpReport> warmUp(Forecaster forecaster, int concurrency,
+      Duration deadline) {
+    if (forecaster == null) {
+      throw new NullPointerException("forecaster cannot be null");
+    }
+    if (deadline == null) {
+      throw new NullPointerException("deadline cannot be null");
+    }
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("Concurrency must be greater than zero");
+    }
+
+    return CompletableFuture.supplyAsync(() -> fetchAll(forecaster, concurrency, deadline),
+        VIRTUAL_THREADS);
+  }
+
+  /**
+   * Fetches every entry in parallel, and waits for all of them to complete, or for the deadline to
+   * pass, whichever is sooner.
+   *
+   * @param forecaster  the caching {@link Forecaster} to warm up
+   * @param concurrency the maximum number of fetches in flight at once
+   * @param deadline    the maximum time to wait for the warm-up to complete
+   * @return the {@link WarmUpReport} describing how the warm-up went
+   */
+  private static WarmUpReport fetchAll(Forecaster forecaster, int concurrency, Duration deadline) {
+    long start = System.nanoTime();
+    Semaphore permits = new Semaphore(concurrency);
+    AtomicBoolean expired = new AtomicBoolean();
+    AtomicInteger populated = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+
+    // start a fetch for every entry, each on its own virtual thread
+    List<CompletableFuture<Void>> fetches = new ArrayList<>(ForecastCache.CAPACITY);
+    for (Region region : Region.values()) {
+      for (Day day : Day.values()) {
+        fetches.add(CompletableFuture.runAsync(() -> {
+          permits.acquireUninterruptibly();
+          try {
+            if (!expired.get()) {
+              forecaster.forecastFor(region, day);
+              populated.incrementAndGet();
+            }
+          } catch (RuntimeException e) {
+            failed.incrementAndGet();
+          } finally {
+            permits.release();
+          }
+        }, VIRTUAL_THREADS));
+      }
+    }
+
+    // wait for all the fetches, but no longer than the deadline
+    try {
+      CompletableFuture.allOf(fetches.toArray(CompletableFuture[]::new))
+          .get(deadline.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException | ExecutionException e) {
+      expired.set(true);
+    } catch (InterruptedException e) {
+      expired.set(true);
+      Thread.currentThread().interrupt();
+    }
+
+    int fetched = populated.get();
+    int unsuccessful = failed.get();
+    return new WarmUpReport(fetched, unsuccessful, fetches.size() - fetched - unsuccessful,
+        Duration.ofNanos(System.nanoTime() - start));
+  }
+}
@@ -1,27 +1,86 @@
 package ic.doc.forecast;
 
+import static ic.doc.forecast.ForecastCache.dayOf;
+import static ic.doc.forecast.ForecastCache.indexOf;
+import static ic.doc.forecast.ForecastCache.regionOf;
+
+import ic.doc.forecast.CircuitBreaker.Permission;
+import ic.doc.forecast.ForecastCache.Entry;
 import ic.doc.util.Pair;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.InstantSource;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A proxy around {@link Forecaster} objects which caches responses for an hour, after which they
- * will be evicted from the cache. An optional cache size limit can be supplied.
+ * will be evicted from the cache. The time-to-live can be configured for all entries or for each
+ * entry through {@link CacheOptions}. An optional cache size limit can be supplied, along with the
+ * {@link EvictionPolicy} used to choose which entries to evict once it is reached.
+ * <p>
+ * The proxy is thread-safe, so a single instance can be shared between many threads. Cache hits
+ * are served by lock-free reads from a {@link ForecastCache}, which performs no hashing and no
+ * allocation, while cache writes are serialised behind a lock. Expired entries are reclaimed
+ * proactively by a timing wheel, which is advanced as the cache is used, so the cache only holds
+ * on to live entries. Concurrent cache misses for the same query are
+ * coalesced, so that only one request is made to the proxied {@link Forecaster} at a time for each
+ * query, with the other callers waiting for its result.
+ * <p>
+ * Through {@link CacheOptions}, the proxy can also refresh entries in the background shortly
+ * before they expire, and keep serving expired entries for a grace period while they are being
+ * refreshed, so that callers of frequently used queries never wait on the proxied
+ * {@link Forecaster}.
+ * <p>
+ * Bulk queries are served from the cache where possible, with all the cache misses being requested
+ * from the proxied {@link Forecaster} in parallel, up to a configurable parallelism limit.
+ * <p>
+ * The cache entries can be saved to a memory-mapped snapshot file in the background, and loaded
+ * back from it when the proxy is next constructed, so that restarts do not throw away fresh
+ * forecasts.
+ * <p>
+ * A circuit breaker can be placed around the proxied {@link Forecaster} through
+ * {@link CacheOptions}, which stops calling it once too many calls fail or are slow. While the
+ * circuit is open, cache misses are served the last known {@link Forecast} for the query, even past
+ * its time-to-live, flagged as {@link Forecast#stale() stale}. Likewise, forecasts which the
+ * proxied {@link Forecaster} itself flags as stale, such as a {@link HedgingForecaster} timeout
+ * fallback, are served to the caller but never cached or published.
+ * <p>
+ * Rather than polling for changes, callers can subscribe to the {@link ForecastPublisher} returned
+ * by {@link #updates()}, which pushes forecasts as soon as a fetch changes them.
  */
 public final class CachingForecasterProxy implements Forecaster {
 
   private static final int NO_MAX_CACHE_SIZE = 0;
-  private static final Duration ONE_HOUR = Duration.ofHours(1);
 
   private final Forecaster forecaster;
-  private final int maxCacheSize;
-  private final HashMap<Pair<Region, Day>, Pair<Forecast, Instant>> cache;
-  private final Deque<Pair<Pair<Region, Day>, Instant>> cacheEvictionQueue = new LinkedList<>();
+  private final ForecastCache cache;
+  private final AtomicReferenceArray<CompletableFuture<Forecast>> inFlightRequests =
+      new AtomicReferenceArray<>(ForecastCache.CAPACITY);
   private final InstantSource instantSource;
+  private final ForecastExpiry expiry;
+  private final ForecasterMetrics metrics;
+  private final Duration refreshAhead;
+  private final Executor refreshExecutor;
+  private final int bulkParallelism;
+  private final CircuitBreaker circuitBreaker;
+  private final AtomicReferenceArray<Entry> lastKnownForecasts;
+  private volatile ForecastPublisher publisher;
 
   /**
    * Constructs a caching {@link Forecaster} proxy with a cache of limited size. Old entries are
@@ -29,11 +88,12 @@ public final class CachingForecasterProxy implements Forecaster {
    *
    * @param forecaster    the {@link Forecaster} object being proxied
    * @param maxCacheSize  the maximum cache size. Must be greater than zero
+   * @param options       optional {@link CacheOptions} object to configure the cache with
    * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
    * @throws NullPointerException     if {@code forecaster} is null
    * @throws IllegalArgumentException if {@code maxCacheSize} is less than zero
    */
-  public CachingForecasterProxy(Forecaster forecaster, int maxCacheSize,
+  public CachingForecasterProxy(Forecaster forecaster, int maxCacheSize, CacheOptions options,
       InstantSource instantSource) {
     if (forecaster == null) {
       throw new NullPointerException("Forecaster cannot be null");
@@ -41,11 +101,53 @@ public final class CachingForecasterProxy implements Forecaster {
     if (maxCacheSize <= NO_MAX_CACHE_SIZE) {
       throw new IllegalArgumentException("Cache size must be greater than zero");
     }
+    options = options == null ? CacheOptions.defaults() : options;
 
     this.forecaster = forecaster;
-    this.maxCacheSize = maxCacheSize;
-    this.cache = new HashMap<>();
+    this.cache = new ForecastCache(maxCacheSize, options.evictionPolicy(), options.metrics(),
+        options.staleGrace());
     this.instantSource = instantSource == null ? InstantSource.system() : instantSource;
+    this.expiry = options.expiry();
+    this.metrics = options.metrics();
+    this.refreshAhead = options.refreshAhead();
+    this.refreshExecutor = options.refreshExecutor();
+    this.bulkParallelism = options.bulkParallelism();
+
+    // the last known forecasts are only needed as a fallback while the circuit is open
+    boolean hasCircuitBreaker = options.circuitBreaker() != null;
+    this.circuitBreaker = hasCircuitBreaker
+        ? new CircuitBreaker(options.circuitBreaker(), this.instantSource) : null;
+    this.lastKnownForecasts =
+        hasCircuitBreaker ? new AtomicReferenceArray<>(ForecastCache.CAPACITY) : null;
+  }
+
+  /**
+   * Constructs a caching {@link Forecaster} proxy with a cache of limited size. Old entries are
+   * evicted if the cache size reaches that limit.
+   *
+   * @param forecaster    the {@link Forecaster} object being proxied
+   * @param maxCacheSize  the maximum cache size. Must be greater than zero
+   * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
+   * @throws NullPointerException     if {@code forecaster} is null
+   * @throws IllegalArgumentException if {@code maxCacheSize} is less than zero
+   */
+  public CachingForecasterProxy(Forecaster forecaster, int maxCacheSize,
+      InstantSource instantSource) {
+    this(forecaster, maxCacheSize, null, instantSource);
+  }
+
+  /**
+   * Constructs a caching {@link Forecaster} proxy with a cache unlimited size. No old entry will
+   * ever get evicted, so all repeated requests always hit the cache.
+   *
+   * @param forecaster    the {@link Forecaster} object being proxied
+   * @param options       optional {@link CacheOptions} object to configure the cache with
+   * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  public CachingForecasterProxy(Forecaster forecaster, CacheOptions options,
+      InstantSource instantSource) {
+    this(forecaster, ForecastCache.CAPACITY, options, instantSource);
   }
 
   /**
@@ -57,14 +159,24 @@ public final class CachingForecasterProxy implements Forecaster {
    * @throws NullPointerException if {@code forecaster} is null
    */
   public CachingForecasterProxy(Forecaster forecaster, InstantSource instantSource) {
-    if (forecaster == null) {
-      throw new NullPointerException("Forecaster cannot be null");
-    }
+    this(forecaster, null, instantSource);
+  }
 
-    this.forecaster = forecaster;
-    this.maxCacheSize = NO_MAX_CACHE_SIZE;
-    this.cache = new HashMap<>();
-    this.instantSource = instantSource == null ? InstantSource.system() : instantSource;
+  /**
+   * Creates a caching {@link Forecaster} proxy with a cache of limited size. Old entries are
+   * evicted if the cache size reaches that limit.
+   *
+   * @param forecaster    the {@link Forecaster} object being proxied
+   * @param maxCacheSize  the maximum cache size. Must be greater than zero
+   * @param options       optional {@link CacheOptions} object to configure the cache with
+   * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
+   * @throws NullPointerException     if {@code forecaster} is null
+   * @throws IllegalArgumentException if {@code maxCacheSize} is less than zero
+   */
+  public static Forecaster withLimitedCache(Forecaster forecaster, int maxCacheSize,
+      CacheOptions options, InstantSource instantSource)
+      throws NullPointerException, IllegalArgumentException {
+    return new CachingForecasterProxy(forecaster, maxCacheSize, options, instantSource);
   }
 
   /**
@@ -82,6 +194,22 @@ public final class CachingForecasterProxy implements Forecaster {
     return new CachingForecasterProxy(forecaster, maxCacheSize, instantSource);
   }
 
+  /**
+   * Creates a caching {@link Forecaster} proxy with a cache of limited size. Entries are evicted
+   * according to an {@link EvictionPolicy} if the cache size reaches that limit.
+   *
+   * @param forecaster     the {@link Forecaster} object being proxied
+   * @param maxCacheSize   the maximum cache size. Must be greater than zero
+   * @param evictionPolicy the {@link EvictionPolicy} used to choose which entries to evict
+   * @throws NullPointerException     if {@code forecaster} or {@code evictionPolicy} is null
+   * @throws IllegalArgumentException if {@code maxCacheSize} is less than zero
+   */
+  public static Forecaster withLimitedCache(Forecaster forecaster, int maxCacheSize,
+      EvictionPolicy evictionPolicy) throws NullPointerException, IllegalArgumentException {
+    return new CachingForecasterProxy(forecaster, maxCacheSize,
+        CacheOptions.defaults().withEvictionPolicy(evictionPolicy), null);
+  }
+
   /**
    * Creates a caching {@link Forecaster} proxy with a cache of limited size. Old entries are
    * evicted if the cache size reaches that limit.
@@ -96,6 +224,20 @@ public final class CachingForecasterProxy implements Forecaster {
     return new CachingForecasterProxy(forecaster, maxCacheSize, null);
   }
 
+  /**
+   * Creates a caching {@link Forecaster} proxy with a cache unlimited size. No old entry will ever
+   * get evicted, so all repeated requests always hit the cache.
+   *
+   * @param forecaster    the {@link Forecaster} object being proxied
+   * @param options       optional {@link CacheOptions} object to configure the cache with
+   * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  public static Forecaster withUnlimitedCache(Forecaster forecaster, CacheOptions options,
+      InstantSource instantSource) throws NullPointerException {
+    return new CachingForecasterProxy(forecaster, options, instantSource);
+  }
+
   /**
    * Creates a caching {@link Forecaster} proxy with a cache unlimited size. No old entry will ever
    * get evicted, so all repeated requests always hit the cache.
@@ -120,6 +262,67 @@ public final class CachingForecasterProxy implements Forecaster {
     return new CachingForecasterProxy(forecaster, null);
   }
 
+  /**
+   * Returns the {@link ForecasterMetrics} in which this proxy records its cache hits, misses,
+   * evictions and expirations, as configured by {@link CacheOptions}.
+   *
+   * @return the {@link ForecasterMetrics}
+   */
+  public ForecasterMetrics metrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns the {@link ForecastPublisher} which pushes changes to the forecasts in this proxy's
+   * cache to its subscribers. It is created on first use, so proxies with no subscribers do not
+   * track changes at all.
+   *
+   * @return the {@link ForecastPublisher}
+   */
+  public ForecastPublisher updates() {
+    ForecastPublisher current = publisher;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (publisher == null) {
+        publisher = new ForecastPublisher(cache);
+      }
+      return publisher;
+    }
+  }
+
+  /**
+   * Looks up the cache entry in a slot, regardless of whether it has expired, so that a
+   * {@link TieredForecaster} can copy it into its per-thread caches.
+   *
+   * @param index the slot index
+   * @return the cache entry, or null if the slot is empty
+   */
+  Entry cachedEntry(int index) {
+    return cache.get(index);
+  }
+
+  /**
+   * Returns the version of the cache, which changes whenever any cache entry is added or removed,
+   * so that a {@link TieredForecaster} can tell whether its copies of entries are still current.
+   *
+   * @return the cache version
+   */
+  long cacheVersion() {
+    return cache.version();
+  }
+
+  /**
+   * Returns the {@link InstantSource} this proxy keeps time with, so that a
+   * {@link TieredForecaster} can expire its copies of entries at the same time.
+   *
+   * @return the {@link InstantSource}
+   */
+  InstantSource instantSource() {
+    return instantSource;
+  }
+
   @Override
   public Forecast forecastFor(Region region, Day day) {
     if (region == null) {
@@ -136,52 +339,454 @@ public final class CachingForecasterProxy implements Forecaster {
     if (forecast != null) {
       return forecast;
     }
+    return forecastOnMiss(region, day);
+  }
+
+  /**
+   * Serves a query which has just missed the cache, as {@link #forecastFor(Region, Day)} does, so
+   * that a {@link TieredForecaster} which checked the cache with {@link #hitEntry(Region, Day)}
+   * can tell its own L2 hits from misses.
+   *
+   * @param region the given {@link Region}
+   * @param day    the given {@link Day}
+   * @return the {@link Forecast}
+   */
+  Forecast forecastOnMiss(Region region, Day day) {
+    metrics.recordMiss();
+
+    // if it is a cache miss, either join the in-flight request for the same query,
+    // or become the caller responsible for making that request
+    int index = indexOf(region, day);
+    CompletableFuture<Forecast> request = new CompletableFuture<>();
+    while (!inFlightRequests.compareAndSet(index, null, request)) {
+      CompletableFuture<Forecast> inFlightRequest = inFlightRequests.get(index);
+      if (inFlightRequest != null) {
+        return awaitRequest(inFlightRequest);
+      }
+    }
+
+    try {
+      // a request for the same query may have completed since the cache was checked
+      Forecast forecast = hitFreshCache(index);
+      if (forecast == null) {
+        forecast = requestForecast(region, day);
+      }
+      request.complete(forecast);
+      return forecast;
+    } catch (RuntimeException | Error e) {
+      request.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlightRequests.compareAndSet(index, request, null);
+    }
+  }
+
+  /**
+   * Saves a snapshot of the cache entries, and the times at which they were fetched, to a file.
+   * The snapshot is written on a background virtual thread, so never delays callers.
+   *
+   * @param path the file to save the snapshot to
+   * @return a future which completes with the number of entries saved, or with an
+   *     {@link IOException} if the snapshot could not be written
+   * @throws NullPointerException if {@code path} is null
+   */
+  public CompletableFuture<Integer> saveSnapshot(Path path) {
+    if (path == null) {
+      throw new NullPointerException("path cannot be null");
+    }
+
+    CompletableFuture<Integer> saved = new CompletableFuture<>();
+    Thread.startVirtualThread(() -> {
+      try {
+        List<Entry> entries = cache.entries();
+        ForecastSnapshot.write(path, entries);
+        saved.complete(entries.size());
+      } catch (IOException | RuntimeException e) {
+        saved.completeExceptionally(e);
+      }
+    });
+    return saved;
+  }
+
+  /**
+   * Loads the cache entries saved to a snapshot file by {@link #saveSnapshot(Path)}. Entries which
+   * have expired are dropped, as are entries older than the one their slot already holds, and
+   * the remaining entries are added to the cache oldest first, so that a size-limited cache keeps
+   * the most recent ones. A missing snapshot file is not an error, since there is nothing to load
+   * on the first start.
+   *
+   * @param path the file to load the snapshot from
+   * @return the number of entries added to the cache
+   * @throws NullPointerException if {@code path} is null
+   * @throws IOException          if the snapshot exists, but cannot be read or is corrupt
+   */
+  public int loadSnapshot(Path path) throws IOException {
+    if (path == null) {
+      throw new NullPointerException("path cannot be null");
+    }
+
+    Instant now = instantSource.instant();
+    List<Entry> entries = new ArrayList<>();
+    try {
+      ForecastSnapshot.read(path, (index, forecast, timestamp) -> {
+        // even expired forecasts are worth keeping as a fallback while the circuit is open
+        Entry forecastEntry = newEntry(index, forecast, timestamp);
+        if (lastKnownForecasts != null) {
+          lastKnownForecasts.accumulateAndGet(index, forecastEntry, CachingForecasterProxy::newer);
+        }
+        if (!forecastEntry.isExpiredAt(now)) {
+          entries.add(forecastEntry);
+        }
+      });
+    } catch (NoSuchFileException e) {
+      return 0;
+    }
+
+    // forecasts fetched since the proxy started are newer than the snapshot, so are kept
+    entries.sort(Comparator.comparing(Entry::timestamp));
+    int loaded = 0;
+    for (Entry entry : entries) {
+      if (cache.putIfNewer(entry)) {
+        loaded++;
+      }
+    }
+    return loaded;
+  }
+
+  @Override
+  public ForecastGrid forecastsFor(Set<Region> regions, Set<Day> days) {
+    if (regions == null) {
+      throw new NullPointerException("regions cannot be null");
+    }
+    if (days == null) {
+      throw new NullPointerException("days cannot be null");
+    }
+
+    // serve all the cache hits first, collecting the cache misses
+    ForecastGrid forecasts = new ForecastGrid();
+    List<Pair<Region, Day>> misses = new ArrayList<>();
+    for (Region region : regions) {
+      for (Day day : days) {
+        Forecast forecast = hitCache(region, day);
+        if (forecast != null) {
+          forecasts.put(region, day, forecast);
+        } else {
+          misses.add(Pair.of(region, day));
+        }
+      }
+    }
+
+    // then request all the cache misses in parallel, caching each of them as they complete
+    requestInParallel(misses, forecasts);
+    return forecasts;
+  }
+
+  /**
+   * Requests forecasts for a list of queries in parallel, each on its own virtual thread, but with
+   * no more than {@code bulkParallelism} requests in flight at once. Each request goes through
+   * {@link #forecastFor(Region, Day)}, so is cached and coalesced with concurrent requests for the
+   * same query. Returns once every request has completed.
+   *
+   * @param queries   the queries to request forecasts for
+   * @param forecasts the grid to add the forecasts to
+   * @throws CancellationException if interrupted while waiting for the requests to complete
+   */
+  private void requestInParallel(List<Pair<Region, Day>> queries, ForecastGrid forecasts) {
+    if (queries.isEmpty()) {
+      return;
+    }
+
+    // closing the executor waits for all the requests to complete
+    Semaphore permits = new Semaphore(bulkParallelism);
+    List<Future<Forecast>> requests = new ArrayList<>(queries.size());
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (Pair<Region, Day> query : queries) {
+        requests.add(executor.submit(() -> {
+          permits.acquire();
+          try {
+            return forecastFor(query.first(), query.second());
+          } finally {
+            permits.release();
+          }
+        }));
+      }
+    }
+
+    for (int i = 0; i < queries.size(); i++) {
+      Future<Forecast> request = requests.get(i);
+      switch (request.state()) {
+        case SUCCESS -> forecasts.put(queries.get(i).first(), queries.get(i).second(),
+            request.resultNow());
+        case FAILED -> {
+          if (request.exceptionNow() instanceof RuntimeException e) {
+            throw e;
+          }
+          if (request.exceptionNow() instanceof Error e) {
+            throw e;
+          }
+          throw new CancellationException("Interrupted while requesting forecasts");
+        }
+        default -> throw new CancellationException("Interrupted while requesting forecasts");
+      }
+    }
+  }
+
+  /**
+   * Calls the internal forecast service, through the circuit breaker if there is one, and adds its
+   * response to the cache.
+   *
+   * @param region the given {@link Region}
+   * @param day    the given {@link Day}
+   * @return the {@link Forecast} returned by the internal forecast service
+   */
+  private Forecast requestForecast(Region region, Day day) {
+    if (circuitBreaker != null) {
+      return requestThroughCircuitBreaker(region, day);
+    }
+
+    // call the internal forecast service, and cache its response
+    return cacheForecast(region, day, forecaster.forecastFor(region, day));
+  }
+
+  /**
+   * Calls the internal forecast service through the circuit breaker, and adds its response to the
+   * cache. If the circuit is open, or the call fails and opens it, the last known {@link Forecast}
+   * is served instead, flagged as stale, and is not cached.
+   *
+   * @param region the given {@link Region}
+   * @param day    the given {@link Day}
+   * @return the {@link Forecast} returned by the internal forecast service, or the last known one
+   * @throws ForecastUnavailableException if the circuit is open, and there is no last known
+   *                                      {@link Forecast}
+   */
+  private Forecast requestThroughCircuitBreaker(Region region, Day day) {
+    int index = indexOf(region, day);
+    Permission permission = circuitBreaker.tryAcquire();
+    if (permission == Permission.DENIED) {
+      return lastKnownForecast(index, null);
+    }
+
+    long start = System.nanoTime();
+    Forecast forecast;
+    try {
+      forecast = forecaster.forecastFor(region, day);
+    } catch (RuntimeException | Error e) {
+      circuitBreaker.record(permission, System.nanoTime() - start, true);
+      if (circuitBreaker.state() == CircuitBreaker.State.CLOSED) {
+        throw e;
+      }
+      return lastKnownForecast(index, e);
+    }
+    circuitBreaker.record(permission, System.nanoTime() - start, false);
+    return cacheForecast(region, day, forecast);
+  }
+
+  /**
+   * Finds the last known {@link Forecast} for a query, to serve while the circuit is open.
+   *
+   * @param index the slot index of the query
+   * @param cause the failure which opened the circuit, if any
+   * @return the last known {@link Forecast}, flagged as stale
+   * @throws ForecastUnavailableException if there is no last known {@link Forecast}
+   */
+  private Forecast lastKnownForecast(int index, Throwable cause) {
+    Entry lastKnown = lastKnownForecasts.get(index);
+    if (lastKnown == null) {
+      throw new ForecastUnavailableException(
+          "Forecast service circuit is open, and there is no last known forecast", cause);
+    }
+    return lastKnown.forecast().asStale();
+  }
+
+  /**
+   * Adds a response from the internal forecast service to the cache, timestamped now, and
+   * remembers it as the last known {@link Forecast} if there is a circuit breaker. A response
+   * already flagged as stale, such as a fallback served by the internal forecast service itself,
+   * is passed on to the caller, but is neither cached nor published.
+   *
+   * @param region   the given {@link Region}
+   * @param day      the given {@link Day}
+   * @param forecast the {@link Forecast} returned by the internal forecast service
+   * @return the {@link Forecast}
+   */
+  private Forecast cacheForecast(Region region, Day day, Forecast forecast) {
+    if (isStale(forecast)) {
+      return forecast;
+    }
 
-    // if it is a cache miss, call the internal forecast service,
-    // and record the time at which it completes
-    forecast = forecaster.forecastFor(region, day);
+    // record the time at which the internal forecast service call completed
     Instant timestamp = instantSource.instant();
 
-    // if the cache size is limited, and that limit has already been reached,
-    // evict an old entry to make space for the new one
-    if (maxCacheSize != NO_MAX_CACHE_SIZE && cache.size() == maxCacheSize) {
-      cache.remove(cacheEvictionQueue.removeFirst());
+    // add the new entry to the cache, replacing any expired entry for the same query;
+    // if the cache size is limited, this evicts another entry to make space for it
+    int index = indexOf(region, day);
+    Entry entry = newEntry(index, forecast, timestamp);
+    if (lastKnownForecasts != null) {
+      lastKnownForecasts.set(index, entry);
     }
+    cache.put(entry);
+    cache.removeExpired(timestamp);
 
-    // add the new entry to the cache and return the result
-    cache.put(Pair.of(region, day), Pair.of(forecast, timestamp));
-    cacheEvictionQueue.addLast(Pair.of(Pair.of(region, day), timestamp));
+    // only push the forecast once it is cached, so subscribers never see it before other callers
+    ForecastPublisher current = publisher;
+    if (current != null) {
+      current.publish(index, forecast);
+    }
     return forecast;
   }
 
+  /**
+   * Checks whether a response from the internal forecast service is flagged as stale, so must not
+   * be cached or remembered as the last known {@link Forecast}.
+   *
+   * @param forecast the {@link Forecast} returned by the internal forecast service
+   * @return true if the {@link Forecast} is stale, false otherwise
+   */
+  private static boolean isStale(Forecast forecast) {
+    return forecast != null && forecast.stale();
+  }
+
+  /**
+   * Picks the more recently fetched of two entries for the same slot.
+   *
+   * @param current the entry the slot holds, or null if it is empty
+   * @param loaded  the entry which may replace it
+   * @return {@code current}, unless it is null or was fetched before {@code loaded}
+   */
+  private static Entry newer(Entry current, Entry loaded) {
+    return current != null && !current.timestamp().isBefore(loaded.timestamp()) ? current : loaded;
+  }
+
+  /**
+   * Makes a cache entry for a {@link Forecast}, which expires once its time-to-live has passed
+   * since it was fetched.
+   *
+   * @param index     the slot index of the query
+   * @param forecast  the {@link Forecast}
+   * @param timestamp the time at which the {@link Forecast} was fetched
+   * @return the cache entry
+   */
+  private Entry newEntry(int index, Forecast forecast, Instant timestamp) {
+    Duration timeToLive = expiry.timeToLive(regionOf(index), dayOf(index), forecast);
+    return Entry.of(index, forecast, timestamp, timeToLive, refreshAhead);
+  }
+
+  /**
+   * Starts refreshing the cache entry for a given {@link Region} and {@link Day} in the
+   * background, unless a request for it is already in flight. Callers which miss the cache while
+   * the refresh is in flight wait for its result.
+   *
+   * @param region the given {@link Region}
+   * @param day    the given {@link Day}
+   */
+  private void refreshInBackground(Region region, Day day) {
+    int index = indexOf(region, day);
+    if (inFlightRequests.get(index) != null) {
+      return;
+    }
+
+    CompletableFuture<Forecast> request = new CompletableFuture<>();
+    if (!inFlightRequests.compareAndSet(index, null, request)) {
+      return;
+    }
+
+    try {
+      refreshExecutor.execute(() -> {
+        try {
+          request.complete(requestForecast(region, day));
+        } catch (RuntimeException | Error e) {
+          // the current entry is kept, and any callers waiting on the refresh see the failure
+          request.completeExceptionally(e);
+        } finally {
+          inFlightRequests.compareAndSet(index, request, null);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      request.completeExceptionally(e);
+      inFlightRequests.compareAndSet(index, request, null);
+    }
+  }
+
+  /**
+   * Waits for an in-flight request made by another caller to complete, and returns its result. If
+   * that request failed, the same exception is thrown to this caller.
+   *
+   * @param request the in-flight request
+   * @return the {@link Forecast} returned by the request
+   */
+  private static Forecast awaitRequest(CompletableFuture<Forecast> request) {
+    try {
+      return request.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
   /**
    * Checks the cache for a {@link Forecast} associated with a given {@link Region} and {@link Day},
-   * and returns it if found and not older than an hour. Otherwise, returns null.
+   * and returns it if found and not expired. Otherwise, returns null.
+   * <p>
+   * If the entry is due to be refreshed, a background refresh is started, and the entry is still
+   * returned. This includes entries which have expired, but are still within the stale
+   * grace window.
    *
    * @param region the given {@link Region}
    * @param day    the given {@link Day}
-   * @return the cached {@link Forecast}, or null if not found or older than one hour
+   * @return the cached {@link Forecast}, or null if not found or expired
    */
   private Forecast hitCache(Region region, Day day) {
-    Pair<Region, Day> forecastQuery = Pair.of(region, day);
-    Pair<Forecast, Instant> forecastEntry = cache.get(forecastQuery);
+    Entry forecastEntry = hitEntry(region, day);
+    return forecastEntry == null ? null : forecastEntry.forecast();
+  }
 
-    // if it is a cache miss, return early
-    if (forecastEntry == null) {
+  /**
+   * Checks the cache for the entry associated with a given {@link Region} and {@link Day}, exactly
+   * as {@link #hitCache(Region, Day)} does, but returns the entry itself. A miss is not recorded,
+   * as the caller is expected to follow it with {@link #forecastOnMiss(Region, Day)}.
+   *
+   * @param region the given {@link Region}
+   * @param day    the given {@link Day}
+   * @return the cache entry served, or null if not found or expired
+   */
+  Entry hitEntry(Region region, Day day) {
+    // if it is a cache miss, return early, without reading the clock
+    int index = indexOf(region, day);
+    if (cache.get(index) == null) {
       return null;
     }
 
-    // if the entry is old, then trigger cleanup and return early
     Instant now = instantSource.instant();
-    if (forecastEntry.second().plus(ONE_HOUR).isBefore(now)) {
-      while (!cacheEvictionQueue.isEmpty() && cacheEvictionQueue.peekFirst().second().plus(ONE_HOUR)
-          .isBefore(now)) {
-        cacheEvictionQueue.removeFirst();
-      }
+    Entry forecastEntry = cache.hit(index, now);
+    if (forecastEntry == null) {
       return null;
     }
 
-    // the cached entry is still fresh, so return it
-    return forecastEntry.first();
+    // if the entry is due to be refreshed, then refresh it in the background and return it anyway
+    if (forecastEntry.isRefreshDueAt(now)) {
+      refreshInBackground(region, day);
+    }
+    return forecastEntry;
+  }
+
+  /**
+   * Checks the cache for a {@link Forecast} associated with a given slot index, and returns it if
+   * found and not yet due to be refreshed. Otherwise, returns null. Unlike
+   * {@link #hitCache(Region, Day)}, this never serves stale entries or triggers refreshes.
+   *
+   * @param index the slot index of the query
+   * @return the cached {@link Forecast}, or null if not found or due to be refreshed
+   */
+  private Forecast hitFreshCache(int index) {
+    if (cache.get(index) == null) {
+      return null;
+    }
+    Entry forecastEntry = cache.getFresh(index, instantSource.instant());
+    return forecastEntry == null ? null : forecastEntry.forecast();
   }
 }
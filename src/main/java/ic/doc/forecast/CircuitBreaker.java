@@ -0,0 +1,148 @@
+package ic.doc.forecast;
+
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free circuit breaker, which stops calls to the forecast service once too many of them
+ * fail or are slow. The circuit starts closed, letting every call through, and counts the calls,
+ * failures and slow calls in consecutive windows of a fixed number of calls, all packed into a
+ * single atomic {@code long}. Once a window is full, the circuit opens if the failure rate or slow
+ * call rate reached its threshold, and otherwise starts a new window.
+ * <p>
+ * While open, every call is denied, until the open duration has passed. A single probe call is
+ * then let through, which closes the circuit if it succeeds quickly, and opens it again otherwise.
+ * <p>
+ * On the success path, checking and recording a call costs one volatile read and one atomic add.
+ */
+final class CircuitBreaker {
+
+  /**
+   * The states of the circuit.
+   */
+  enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  /**
+   * The outcomes of asking for permission to make a call.
+   */
+  enum Permission {
+    DENIED, CALL, PROBE
+  }
+
+  private static final int COUNT_BITS = 21;
+  private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+  private static final long CALL = 1L;
+  private static final long FAILURE = 1L << COUNT_BITS;
+  private static final long SLOW_CALL = 1L << (COUNT_BITS * 2);
+
+  private final CircuitBreakerOptions options;
+  private final InstantSource instantSource;
+  private final long slowCallNanos;
+  private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+  private final AtomicLong window = new AtomicLong();
+  private volatile Instant openedAt = Instant.MIN;
+
+  /**
+   * Constructs a closed circuit breaker.
+   *
+   * @param options       the {@link CircuitBreakerOptions}
+   * @param instantSource the {@link InstantSource} used to time how long the circuit stays open
+   */
+  CircuitBreaker(CircuitBreakerOptions options, InstantSource instantSource) {
+    this.options = options;
+    this.instantSource = instantSource;
+    this.slowCallNanos = options.slowCallDuration().toNanos();
+  }
+
+  /**
+   * Returns the current state of the circuit.
+   *
+   * @return the {@link State}
+   */
+  State state() {
+    return state.get();
+  }
+
+  /**
+   * Asks for permission to make a call. Calls are always permitted while the circuit is closed.
+   * Once it has been open for long enough, exactly one caller is permitted a probe call, and every
+   * other call is denied until the outcome of the probe has been recorded.
+   *
+   * @return the {@link Permission}
+   */
+  Permission tryAcquire() {
+    State current = state.get();
+    if (current == State.CLOSED) {
+      return Permission.CALL;
+    }
+    if (current == State.OPEN
+        && !instantSource.instant().isBefore(openedAt.plus(options.openDuration()))
+        && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+      return Permission.PROBE;
+    }
+    return Permission.DENIED;
+  }
+
+  /**
+   * Records the outcome of a permitted call, which may open or close the circuit.
+   *
+   * @param permission the {@link Permission} the call was made with
+   * @param nanos      the latency of the call in nanoseconds
+   * @param failed     whether the call failed
+   */
+  void record(Permission permission, long nanos, boolean failed) {
+    boolean slow = nanos >= slowCallNanos;
+    if (permission == Permission.PROBE) {
+      if (failed || slow) {
+        open();
+      } else {
+        window.set(0);
+        state.set(State.CLOSED);
+      }
+      return;
+    }
+
+    // calls which were let through before the circuit opened no longer count
+    if (permission != Permission.CALL || state.get() != State.CLOSED) {
+      return;
+    }
+    long counts = window.addAndGet(CALL + (failed ? FAILURE : 0) + (slow ? SLOW_CALL : 0));
+    while ((counts & COUNT_MASK) >= options.windowSize()) {
+      // exactly one caller wins the race to close off the full window
+      if (window.compareAndSet(counts, 0)) {
+        if (isTripped(counts) && state.get() == State.CLOSED) {
+          open();
+        }
+        return;
+      }
+      counts = window.get();
+    }
+  }
+
+  /**
+   * Checks whether the failure rate or slow call rate of a full window reached its threshold.
+   *
+   * @param counts the packed counts of the window
+   * @return true if the circuit should open, false otherwise
+   */
+  private boolean isTripped(long counts) {
+    double calls = counts & COUNT_MASK;
+    long failures = (counts >>> COUNT_BITS) & COUNT_MASK;
+    long slowCalls = (counts >>> (COUNT_BITS * 2)) & COUNT_MASK;
+    return failures >= calls * options.failureRateThreshold()
+        || slowCalls >= calls * options.slowCallRateThreshold();
+  }
+
+  /**
+   * Opens the circuit, starting the open duration from now.
+   */
+  private void open() {
+    // the time must be published before the state, so that no caller probes too early
+    openedAt = instantSource.instant();
+    state.set(State.OPEN);
+  }
+}
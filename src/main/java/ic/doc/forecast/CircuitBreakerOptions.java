@@ -0,0 +1,116 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+
+/**
+ * A record representing the behaviour of the circuit breaker which a
+ * {@link CachingForecasterProxy} places around the forecast service.
+ *
+ * @param failureRateThreshold  the proportion of failed calls in a window at which the circuit
+ *                              opens. Must be greater than zero, and at most one
+ * @param slowCallRateThreshold the proportion of slow calls in a window at which the circuit
+ *                              opens. Must be greater than zero, and at most one
+ * @param slowCallDuration      how long a call must take to count as slow. Must be positive
+ * @param windowSize            the number of calls over which the failure and slow call rates are
+ *                              measured. Must be greater than zero
+ * @param openDuration          how long the circuit stays open, before a probe call is let through
+ *                              to check whether the forecast service has recovered
+ */
+public record CircuitBreakerOptions(double failureRateThreshold, double slowCallRateThreshold,
+    Duration slowCallDuration, int windowSize, Duration openDuration) {
+
+  private static final int MAX_WINDOW_SIZE = (1 << 20) - 1;
+  private static final CircuitBreakerOptions DEFAULTS = new CircuitBreakerOptions(0.5, 0.5,
+      Duration.ofSeconds(15), 20, Duration.ofSeconds(30));
+
+  /**
+   * Constructs a set of circuit breaker options.
+   *
+   * @throws NullPointerException     if any of the durations are null
+   * @throws IllegalArgumentException if either threshold is not greater than zero and at most one,
+   *                                  if either duration is not positive, or if {@code windowSize}
+   *                                  is not greater than zero
+   */
+  public CircuitBreakerOptions {
+    if (slowCallDuration == null) {
+      throw new NullPointerException("slowCallDuration cannot be null");
+    }
+    if (openDuration == null) {
+      throw new NullPointerException("openDuration cannot be null");
+    }
+    if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+      throw new IllegalArgumentException("Failure rate threshold must be between zero and one");
+    }
+    if (!(slowCallRateThreshold > 0 && slowCallRateThreshold <= 1)) {
+      throw new IllegalArgumentException("Slow call rate threshold must be between zero and one");
+    }
+    if (slowCallDuration.isNegative() || slowCallDuration.isZero()) {
+      throw new IllegalArgumentException("Slow call duration must be positive");
+    }
+    if (windowSize <= 0 || windowSize > MAX_WINDOW_SIZE) {
+      throw new IllegalArgumentException("Window size must be greater than zero");
+    }
+    if (openDuration.isNegative() || openDuration.isZero()) {
+      throw new IllegalArgumentException("Open duration must be positive");
+    }
+  }
+
+  /**
+   * Provides the default circuit breaker options, where the circuit opens once half of the last
+   * twenty calls have failed, or have taken fifteen seconds or more. That is well above the ten
+   * seconds a healthy forecast service can take, so normal load never opens the circuit, and only
+   * a service slower than usual counts as slow. The circuit stays open for thirty seconds before
+   * probing the forecast service.
+   *
+   * @return the default circuit breaker options
+   */
+  public static CircuitBreakerOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Copies these options, but with a different failure rate threshold.
+   *
+   * @param failureRateThreshold the proportion of failed calls at which the circuit opens
+   * @return the new options
+   */
+  public CircuitBreakerOptions withFailureRateThreshold(double failureRateThreshold) {
+    return new CircuitBreakerOptions(failureRateThreshold, slowCallRateThreshold,
+        slowCallDuration, windowSize, openDuration);
+  }
+
+  /**
+   * Copies these options, but with a different slow call rate threshold and slow call duration.
+   *
+   * @param slowCallRateThreshold the proportion of slow calls at which the circuit opens
+   * @param slowCallDuration      how long a call must take to count as slow
+   * @return the new options
+   */
+  public CircuitBreakerOptions withSlowCalls(double slowCallRateThreshold,
+      Duration slowCallDuration) {
+    return new CircuitBreakerOptions(failureRateThreshold, slowCallRateThreshold,
+        slowCallDuration, windowSize, openDuration);
+  }
+
+  /**
+   * Copies these options, but with a different window size.
+   *
+   * @param windowSize the number of calls over which the rates are measured
+   * @return the new options
+   */
+  public CircuitBreakerOptions withWindowSize(int windowSize) {
+    return new CircuitBreakerOptions(failureRateThreshold, slowCallRateThreshold,
+        slowCallDuration, windowSize, openDuration);
+  }
+
+  /**
+   * Copies these options, but with a different open duration.
+   *
+   * @param openDuration how long the circuit stays open before probing the forecast service
+   * @return the new options
+   */
+  public CircuitBreakerOptions withOpenDuration(Duration openDuration) {
+    return new CircuitBreakerOptions(failureRateThreshold, slowCallRateThreshold,
+        slowCallDuration, windowSize, openDuration);
+  }
+}
@@ -0,0 +1,27 @@
+package ic.doc.forecast;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A record representing a node of a cluster sharing a {@link PartitionedForecaster} cache, and the
+ * address on which it serves forecasts to the other nodes.
+ *
+ * @param id      the name uniquely identifying the node within the cluster
+ * @param address the address on which the node serves forecasts
+ */
+public record ClusterMember(String id, InetSocketAddress address) {
+
+  /**
+   * Constructs a cluster member.
+   *
+   * @throws NullPointerException if {@code id} or {@code address} is null
+   */
+  public ClusterMember {
+    if (id == null) {
+      throw new NullPointerException("id cannot be null");
+    }
+    if (address == null) {
+      throw new NullPointerException("address cannot be null");
+    }
+  }
+}
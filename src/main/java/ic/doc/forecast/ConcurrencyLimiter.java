@@ -0,0 +1,280 @@
+package ic.doc.forecast;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A decorator around a {@link Forecaster} object, which bounds the number of requests in flight to
+ * the forecast service, and adapts that bound to how the service is coping. Requests over the limit
+ * wait in a bounded queue for another request to finish, and are shed with a
+ * {@link ForecastUnavailableException} if the queue is full, or if they wait too long.
+ * <p>
+ * The limit adapts by additive increase and multiplicative decrease, using latency as the signal of
+ * congestion. Requests are sampled in windows of ten: the mean latency of the successful requests
+ * in a window is compared against a long-term average of the windows before it. A window whose
+ * mean is more than twice the long-term average cuts the limit by a tenth, while any other window
+ * raises it by one, as long as the limit was actually being used. A failed request cuts the limit
+ * straight away, but the limit is cut at most once per window, and failures never count towards
+ * the latency averages, so that a fast failure cannot pass for a fast service. The long-term
+ * average follows every window slowly, so a service which has permanently slowed down is
+ * eventually taken as the new normal.
+ */
+public final class ConcurrencyLimiter implements Forecaster, LimiterStatistics {
+
+  private static final double LATENCY_TOLERANCE = 2.0;
+  private static final double BACKOFF_RATIO = 0.9;
+  private static final int WINDOW_SIZE = 10;
+  private static final double LONG_TERM_WEIGHT = 0.1;
+
+  private final Forecaster forecaster;
+  private final LimiterOptions options;
+  private final Lock lock = new ReentrantLock(true);
+  private final Condition requestFinished = lock.newCondition();
+  private final LongAdder shed = new LongAdder();
+
+  // guarded by the lock, but volatile so that they can be monitored without it
+  private volatile int limit;
+  private volatile int inFlight;
+  private volatile int queueDepth;
+
+  // guarded by the lock
+  private double longTermNanos = Double.NaN;
+  private int windowSamples;
+  private int windowSuccesses;
+  private long windowNanos;
+  private int windowMaxInFlight;
+  private boolean windowBackedOff;
+
+  /**
+   * Constructs a concurrency-limiting {@link Forecaster} decorator.
+   *
+   * @param forecaster the {@link Forecaster} object to limit requests to
+   * @param options    optional {@link LimiterOptions} object to configure the limiter with
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  public ConcurrencyLimiter(Forecaster forecaster, LimiterOptions options) {
+    if (forecaster == null) {
+      throw new NullPointerException("Forecaster cannot be null");
+    }
+
+    this.forecaster = forecaster;
+    this.options = options == null ? LimiterOptions.defaults() : options;
+    this.limit = this.options.initialLimit();
+  }
+
+  /**
+   * Creates a concurrency-limiting {@link Forecaster} decorator.
+   *
+   * @param forecaster the {@link Forecaster} object to limit requests to
+   * @param options    optional {@link LimiterOptions} object to configure the limiter with
+   * @return the concurrency-limiting {@link Forecaster}
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  public static ConcurrencyLimiter limit(Forecaster forecaster, LimiterOptions options)
+      throws NullPointerException {
+    return new ConcurrencyLimiter(forecaster, options);
+  }
+
+  /**
+   * Creates a concurrency-limiting {@link Forecaster} decorator around the forecast service, with
+   * the default {@link LimiterOptions}.
+   *
+   * @param weatherForecaster the {@link com.weather.Forecaster} object to limit requests to
+   * @return the concurrency-limiting {@link Forecaster}
+   * @throws NullPointerException if {@code weatherForecaster} is null
+   */
+  public static ConcurrencyLimiter limit(com.weather.Forecaster weatherForecaster)
+      throws NullPointerException {
+    return new ConcurrencyLimiter(WeatherForecasterAdapter.adapt(weatherForecaster), null);
+  }
+
+  @Override
+  public Forecast forecastFor(Region region, Day day) {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+    if (day == null) {
+      throw new NullPointerException("day cannot be null");
+    }
+
+    acquire();
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      Forecast forecast = forecaster.forecastFor(region, day);
+      failed = false;
+      return forecast;
+    } finally {
+      release(System.nanoTime() - start, failed);
+    }
+  }
+
+  @Override
+  public int getLimit() {
+    return limit;
+  }
+
+  @Override
+  public int getInFlight() {
+    return inFlight;
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  @Override
+  public long getShed() {
+    return shed.sum();
+  }
+
+  /**
+   * Registers this limiter with the platform MBean server, as a {@link LimiterStatistics} MBean
+   * tagged with a name.
+   *
+   * @param name the name distinguishing this limiter from others
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the MBean cannot be registered
+   */
+  public void registerMBean(String name) throws NullPointerException, JMException {
+    ManagementFactory.getPlatformMBeanServer()
+        .registerMBean(this, objectName(name));
+  }
+
+  /**
+   * Unregisters this limiter from the platform MBean server, after it was registered by
+   * {@link #registerMBean(String)} with the same name.
+   *
+   * @param name the name the limiter was registered with
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the MBean cannot be unregistered
+   */
+  public void unregisterMBean(String name) throws NullPointerException, JMException {
+    ManagementFactory.getPlatformMBeanServer()
+        .unregisterMBean(objectName(name));
+  }
+
+  /**
+   * Makes the JMX object name the limiter with a name is registered under by
+   * {@link #registerMBean(String)}.
+   *
+   * @param name the name of the limiter
+   * @return the object name
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the name is malformed
+   */
+  static ObjectName objectName(String name) throws JMException {
+    return MBeanNames.objectName("ConcurrencyLimiter", name);
+  }
+
+  /**
+   * Waits until a request can be sent without exceeding the limit, and counts it as in flight.
+   *
+   * @throws ForecastUnavailableException if the queue is full, if the request waits too long, or
+   *                                      if interrupted while waiting
+   */
+  private void acquire() {
+    lock.lock();
+    try {
+      if (inFlight < limit) {
+        inFlight++;
+        return;
+      }
+      if (queueDepth >= options.maxQueueSize()) {
+        shed.increment();
+        throw new ForecastUnavailableException("Too many concurrent forecast requests");
+      }
+
+      queueDepth++;
+      try {
+        long remainingNanos = options.maxQueueWait().toNanos();
+        while (inFlight >= limit) {
+          if (remainingNanos <= 0) {
+            shed.increment();
+            throw new ForecastUnavailableException("Timed out queueing for the forecast service");
+          }
+          remainingNanos = requestFinished.awaitNanos(remainingNanos);
+        }
+        inFlight++;
+      } finally {
+        queueDepth--;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ForecastUnavailableException("Interrupted queueing for the forecast service", e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Counts a finished request as no longer in flight, adapts the limit to how it went, and wakes
+   * the next queued request, which now fits within the limit.
+   *
+   * @param nanos  the latency of the request in nanoseconds
+   * @param failed whether the request failed
+   */
+  private void release(long nanos, boolean failed) {
+    lock.lock();
+    try {
+      windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+      inFlight--;
+
+      if (failed) {
+        backOff();
+      } else {
+        windowNanos += nanos;
+        windowSuccesses++;
+      }
+      if (++windowSamples >= WINDOW_SIZE) {
+        closeWindow();
+      }
+
+      requestFinished.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Compares the mean latency of the current window against the long-term average, adapts the
+   * limit accordingly, folds the window into the long-term average, and starts a new window.
+   */
+  private void closeWindow() {
+    if (windowSuccesses > 0) {
+      double shortTermNanos = (double) windowNanos / windowSuccesses;
+      if (Double.isNaN(longTermNanos)) {
+        longTermNanos = shortTermNanos;
+      } else if (shortTermNanos > longTermNanos * LATENCY_TOLERANCE) {
+        backOff();
+      }
+      longTermNanos += (shortTermNanos - longTermNanos) * LONG_TERM_WEIGHT;
+    }
+    if (!windowBackedOff && windowMaxInFlight * 2 >= limit) {
+      limit = Math.min(options.maxLimit(), limit + 1);
+      requestFinished.signal();
+    }
+
+    windowSamples = 0;
+    windowSuccesses = 0;
+    windowNanos = 0;
+    windowMaxInFlight = 0;
+    windowBackedOff = false;
+  }
+
+  /**
+   * Cuts the limit by a tenth, unless it has already been cut during the current window.
+   */
+  private void backOff() {
+    if (!windowBackedOff) {
+      windowBackedOff = true;
+      limit = Math.max(options.minLimit(), (int) (limit * BACKOFF_RATIO));
+    }
+  }
+}
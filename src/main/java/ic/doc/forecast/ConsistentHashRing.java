@@ -0,0 +1,121 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.dayOf;
+import static ic.doc.forecast.ForecastCache.regionOf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An immutable consistent hash ring, assigning each combination of {@link Region} and {@link Day}
+ * to an owning {@link ClusterMember}. Every member is placed on the ring at many points, so that
+ * queries are spread evenly, and adding or removing a member only moves the queries it gains or
+ * loses. Points and queries are hashed from their names rather than ordinals, so that every node
+ * agrees on the owners, even across versions which add new regions or days.
+ * <p>
+ * There are only a few dozen queries, so the owner of every query is worked out up front, and
+ * looking one up is a single array read.
+ */
+final class ConsistentHashRing {
+
+  private static final int POINTS_PER_MEMBER = 128;
+  private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+  private static final long FNV_PRIME = 0x100000001B3L;
+
+  private final ClusterMember[] owners = new ClusterMember[ForecastCache.CAPACITY];
+
+  /**
+   * Constructs a ring over a set of cluster members.
+   *
+   * @param members the cluster members
+   * @throws NullPointerException     if {@code members} or any of its members are null
+   * @throws IllegalArgumentException if there are no members, or two members share an id
+   */
+  ConsistentHashRing(Collection<ClusterMember> members) {
+    if (members.isEmpty()) {
+      throw new IllegalArgumentException("Cluster must have at least one member");
+    }
+
+    // place every member at many points around the ring, sorted by position
+    int pointCount = members.size() * POINTS_PER_MEMBER;
+    long[] positions = new long[pointCount];
+    ClusterMember[] pointOwners = new ClusterMember[pointCount];
+    Set<String> ids = new HashSet<>();
+    int point = 0;
+    for (ClusterMember member : members) {
+      if (!ids.add(member.id())) {
+        throw new IllegalArgumentException("Cluster member ids must be unique: " + member.id());
+      }
+      for (int i = 0; i < POINTS_PER_MEMBER; i++) {
+        positions[point] = hash(member.id() + "#" + i);
+        pointOwners[point] = member;
+        point++;
+      }
+    }
+    sortByPosition(positions, pointOwners);
+
+    // each query is owned by the first point at or after its own position, wrapping around
+    for (int index = 0; index < owners.length; index++) {
+      long position = hash(regionOf(index) + "/" + dayOf(index));
+      int found = Arrays.binarySearch(positions, position);
+      int ceiling = found >= 0 ? found : -found - 1;
+      owners[index] = pointOwners[ceiling == pointCount ? 0 : ceiling];
+    }
+  }
+
+  /**
+   * Finds the member owning a query.
+   *
+   * @param index the slot index of the query
+   * @return the owning {@link ClusterMember}
+   */
+  ClusterMember ownerOf(int index) {
+    return owners[index];
+  }
+
+  /**
+   * Hashes a name to a position on the ring, with 64-bit FNV-1a over its UTF-8 bytes, followed by
+   * the MurmurHash3 finaliser, so that similar names are spread far apart.
+   *
+   * @param name the name
+   * @return the position
+   */
+  static long hash(String name) {
+    long hash = FNV_OFFSET_BASIS;
+    for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+      hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * Sorts the points of the ring by position, keeping each owner alongside its point.
+   *
+   * @param positions   the positions of the points
+   * @param pointOwners the owners of the points
+   */
+  private static void sortByPosition(long[] positions, ClusterMember[] pointOwners) {
+    Integer[] order = new Integer[positions.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(positions[a], positions[b]));
+
+    long[] sortedPositions = new long[positions.length];
+    ClusterMember[] sortedOwners = new ClusterMember[pointOwners.length];
+    for (int i = 0; i < order.length; i++) {
+      sortedPositions[i] = positions[order[i]];
+      sortedOwners[i] = pointOwners[order[i]];
+    }
+    System.arraycopy(sortedPositions, 0, positions, 0, positions.length);
+    System.arraycopy(sortedOwners, 0, pointOwners, 0, pointOwners.length);
+  }
+}
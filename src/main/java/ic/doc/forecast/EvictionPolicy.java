@@ -0,0 +1,59 @@
+package ic.doc.forecast;
+
+/**
+ * The policies by which a size-limited cache chooses which entry to evict when it is full. Every
+ * policy evicts in constant time, and the default is {@link #FIFO}.
+ */
+public enum EvictionPolicy {
+
+  /**
+   * Evicts the entry which was added to the cache, or last replaced in it, the longest time ago,
+   * regardless of how often it is used.
+   */
+  FIFO {
+    @Override
+    Evictor newEvictor(int maxSize) {
+      return new FifoEvictor(maxSize);
+    }
+  },
+
+  /**
+   * Evicts the least recently used entry.
+   */
+  LRU {
+    @Override
+    Evictor newEvictor(int maxSize) {
+      return new LruEvictor(maxSize);
+    }
+  },
+
+  /**
+   * Evicts the least frequently used entry, breaking ties by evicting the least recently used one.
+   */
+  LFU {
+    @Override
+    Evictor newEvictor(int maxSize) {
+      return new LfuEvictor(maxSize);
+    }
+  },
+
+  /**
+   * Admits new entries through a small LRU window, after which they must be used more frequently
+   * than the entry they would replace in the main cache to be kept. Frequencies are estimated by a
+   * sketch which is periodically aged, so the policy adapts as the workload changes.
+   */
+  WINDOW_TINY_LFU {
+    @Override
+    Evictor newEvictor(int maxSize) {
+      return new WindowTinyLfuEvictor(maxSize);
+    }
+  };
+
+  /**
+   * Creates the bookkeeping for this policy, for a cache of a given size limit.
+   *
+   * @param maxSize the maximum number of entries. Must be greater than zero
+   * @return the new {@link Evictor}
+   */
+  abstract Evictor newEvictor(int maxSize);
+}
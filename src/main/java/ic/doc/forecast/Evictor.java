@@ -0,0 +1,45 @@
+package ic.doc.forecast;
+
+/**
+ * The bookkeeping of an {@link EvictionPolicy} for a size-limited {@link ForecastCache}. An evictor
+ * tracks which slots are occupied, and is told about every change to them, so that it can choose
+ * which slot to evict when a new entry does not fit. Evictors are not thread-safe, so callers must
+ * synchronise access to them.
+ */
+interface Evictor {
+
+  /**
+   * The slot index returned when no entry needs to be evicted.
+   */
+  int NONE = -1;
+
+  /**
+   * Records that an entry has been added to a previously empty slot, and chooses an entry to evict
+   * if the cache is now over its size limit. The newly added entry is never chosen.
+   *
+   * @param index the slot index of the new entry
+   * @return the slot index of the entry to evict, or {@link #NONE} if nothing needs evicting
+   */
+  int recordInsertion(int index);
+
+  /**
+   * Records that an entry has been replaced by a newer one in the same slot.
+   *
+   * @param index the slot index of the entry
+   */
+  void recordUpdate(int index);
+
+  /**
+   * Records that an occupied slot has been read by a cache hit.
+   *
+   * @param index the slot index of the entry
+   */
+  void recordAccess(int index);
+
+  /**
+   * Records that an entry has been removed from its slot for some reason other than eviction.
+   *
+   * @param index the slot index of the entry
+   */
+  void recordRemoval(int index);
+}
@@ -0,0 +1,43 @@
+package ic.doc.forecast;
+
+/**
+ * The {@link Evictor} for {@link EvictionPolicy#FIFO}, which keeps slots in a single queue ordered
+ * by when their entries were written.
+ */
+final class FifoEvictor implements Evictor {
+
+  private static final int QUEUE = 0;
+
+  private final int maxSize;
+  private final SlotLists lists = new SlotLists(1);
+
+  /**
+   * Constructs the bookkeeping for a cache of a given size limit.
+   *
+   * @param maxSize the maximum number of entries
+   */
+  FifoEvictor(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public int recordInsertion(int index) {
+    int victim = lists.size(QUEUE) < maxSize ? NONE : lists.removeFirst(QUEUE);
+    lists.moveToLast(QUEUE, index);
+    return victim;
+  }
+
+  @Override
+  public void recordUpdate(int index) {
+    lists.moveToLast(QUEUE, index);
+  }
+
+  @Override
+  public void recordAccess(int index) {
+  }
+
+  @Override
+  public void recordRemoval(int index) {
+    lists.remove(index);
+  }
+}
@@ -1,11 +1,32 @@
 package ic.doc.forecast;
 
 /**
- * A record representing what a weather forecast is, containing a summary and a temperature.
+ * A record representing what a weather forecast is, containing a summary and a temperature. A
+ * forecast may be flagged as stale, when it is served past its time-to-live because the forecast
+ * service is unavailable.
  *
  * @param summary     the summary
  * @param temperature the temperature
+ * @param stale       whether the forecast is being served past its time-to-live
  */
-public record Forecast(String summary, int temperature) {
+public record Forecast(String summary, int temperature, boolean stale) {
 
+  /**
+   * Constructs a fresh forecast.
+   *
+   * @param summary     the summary
+   * @param temperature the temperature
+   */
+  public Forecast(String summary, int temperature) {
+    this(summary, temperature, false);
+  }
+
+  /**
+   * Copies this forecast, but flagged as stale.
+   *
+   * @return the stale forecast
+   */
+  public Forecast asStale() {
+    return stale ? this : new Forecast(summary, temperature, true);
+  }
 }
@@ -0,0 +1,446 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * A thread-safe store of cached {@link Forecast} objects, with exactly one slot for every
+ * combination of {@link Region} and {@link Day}. Slots are indexed densely by the ordinals of the
+ * {@link Region} and {@link Day}, and held in an atomic reference array, so looking up an entry
+ * performs no hashing and no allocation. An optional size limit can be supplied, in which case
+ * entries are evicted according to an {@link EvictionPolicy}. Expired entries are reclaimed by a
+ * {@link TimerWheel}, so the store only holds on to live entries, although expired entries can be
+ * kept for a stale grace period, during which they may still be served while being refreshed.
+ * <p>
+ * Reads are lock-free, while writes are serialised behind a lock, so that the {@link TimerWheel}
+ * and {@link Evictor} always agree with the slots. Hits are only reported to the {@link Evictor},
+ * and expired entries only reclaimed on reads, if the lock is free, so a busy store may put these
+ * off rather than making readers wait.
+ */
+final class ForecastCache {
+
+  private static final Region[] REGIONS = Region.values();
+  private static final Day[] DAYS = Day.values();
+
+  /**
+   * The number of slots in the store, i.e. the number of distinct queries which can be cached.
+   */
+  static final int CAPACITY = REGIONS.length * DAYS.length;
+
+  /**
+   * A cached {@link Forecast}, along with its slot index and the times at which it was fetched, at
+   * which it should be refreshed, and at which it expires.
+   *
+   * @param index     the slot index of the entry
+   * @param forecast  the cached {@link Forecast}
+   * @param timestamp the time at which the {@link Forecast} was fetched
+   * @param refreshAt the time after which the entry is due to be refreshed
+   * @param expiry    the time after which the entry is considered expired
+   */
+  record Entry(int index, Forecast forecast, Instant timestamp, Instant refreshAt,
+      Instant expiry) {
+
+    /**
+     * Makes an entry for a newly fetched {@link Forecast}, which expires after its time-to-live,
+     * and is due to be refreshed a while before then. Neither time is ever before the fetch time.
+     *
+     * @param index        the slot index of the entry
+     * @param forecast     the fetched {@link Forecast}
+     * @param timestamp    the time at which the {@link Forecast} was fetched
+     * @param timeToLive   how long after it was fetched the entry expires
+     * @param refreshAhead how long before it expires the entry is due to be refreshed
+     * @return the new entry
+     */
+    static Entry of(int index, Forecast forecast, Instant timestamp, Duration timeToLive,
+        Duration refreshAhead) {
+      Instant expiry = timeToLive.isNegative() ? timestamp : timestamp.plus(timeToLive);
+      Instant refreshAt = expiry.minus(refreshAhead);
+      return new Entry(index, forecast, timestamp,
+          refreshAt.isBefore(timestamp) ? timestamp : refreshAt, expiry);
+    }
+
+    /**
+     * Checks whether the entry is due to be refreshed. This is always the case once it has
+     * expired.
+     *
+     * @param now the current time
+     * @return true if the entry is due to be refreshed, false otherwise
+     */
+    boolean isRefreshDueAt(Instant now) {
+      return now.isAfter(refreshAt);
+    }
+
+    /**
+     * Checks whether the entry has expired.
+     *
+     * @param now the current time
+     * @return true if the entry has expired, false otherwise
+     */
+    boolean isExpiredAt(Instant now) {
+      return now.isAfter(expiry);
+    }
+  }
+
+  private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(CAPACITY);
+  private final AtomicInteger size = new AtomicInteger();
+  private final Evictor evictor;
+  private final ForecasterMetrics metrics;
+  private final Duration staleGrace;
+  private final TimerWheel timerWheel = new TimerWheel();
+  private final IntConsumer expireSlot = this::expireSlot;
+  private final Lock lock = new ReentrantLock();
+  private volatile long nextExpiryTick = Long.MIN_VALUE;
+  private volatile long version;
+
+  /**
+   * Constructs a store which holds at most {@code maxSize} entries, evicting the oldest entries
+   * first. A limit of at least {@link #CAPACITY} means the store is effectively unlimited, and
+   * never evicts entries.
+   *
+   * @param maxSize the maximum number of entries. Must be greater than zero
+   * @throws IllegalArgumentException if {@code maxSize} is not greater than zero
+   */
+  ForecastCache(int maxSize) {
+    this(maxSize, EvictionPolicy.FIFO, new ForecasterMetrics());
+  }
+
+  /**
+   * Constructs a store which holds at most {@code maxSize} entries, evicting entries according to
+   * an {@link EvictionPolicy}. A limit of at least {@link #CAPACITY} means the store is effectively
+   * unlimited, and never evicts entries.
+   *
+   * @param maxSize        the maximum number of entries. Must be greater than zero
+   * @param evictionPolicy the {@link EvictionPolicy}
+   * @param metrics        the {@link ForecasterMetrics} to record evictions and expirations in
+   * @throws IllegalArgumentException if {@code maxSize} is not greater than zero
+   */
+  ForecastCache(int maxSize, EvictionPolicy evictionPolicy, ForecasterMetrics metrics) {
+    this(maxSize, evictionPolicy, metrics, Duration.ZERO);
+  }
+
+  /**
+   * Constructs a store which holds at most {@code maxSize} entries, evicting entries according to
+   * an {@link EvictionPolicy}, and which keeps expired entries for a stale grace period. A limit of
+   * at least {@link #CAPACITY} means the store is effectively unlimited, and never evicts entries.
+   *
+   * @param maxSize        the maximum number of entries. Must be greater than zero
+   * @param evictionPolicy the {@link EvictionPolicy}
+   * @param metrics        the {@link ForecasterMetrics} to record hits, evictions and expirations
+   *                       in
+   * @param staleGrace     how long after expiry an entry may still be served while it is
+   *                       refreshed
+   * @throws IllegalArgumentException if {@code maxSize} is not greater than zero
+   */
+  ForecastCache(int maxSize, EvictionPolicy evictionPolicy, ForecasterMetrics metrics,
+      Duration staleGrace) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Cache size must be greater than zero");
+    }
+
+    // unlimited stores have a slot for every entry, so never need to evict anything
+    this.evictor = maxSize < CAPACITY ? evictionPolicy.newEvictor(maxSize) : null;
+    this.metrics = metrics;
+    this.staleGrace = staleGrace;
+  }
+
+  /**
+   * Computes the slot index associated with a {@link Region} and {@link Day}.
+   *
+   * @param region the {@link Region}
+   * @param day    the {@link Day}
+   * @return the slot index
+   */
+  static int indexOf(Region region, Day day) {
+    return region.ordinal() * DAYS.length + day.ordinal();
+  }
+
+  /**
+   * Recovers the {@link Region} associated with a slot index.
+   *
+   * @param index the slot index
+   * @return the {@link Region}
+   */
+  static Region regionOf(int index) {
+    return REGIONS[index / DAYS.length];
+  }
+
+  /**
+   * Recovers the {@link Day} associated with a slot index.
+   *
+   * @param index the slot index
+   * @return the {@link Day}
+   */
+  static Day dayOf(int index) {
+    return DAYS[index % DAYS.length];
+  }
+
+  /**
+   * Looks up the entry in a slot, regardless of whether it has expired.
+   *
+   * @param index the slot index
+   * @return the entry, or null if the slot is empty
+   */
+  Entry get(int index) {
+    return entries.get(index);
+  }
+
+  /**
+   * Looks up the entry in a slot for a caller, and returns it if it can still be served: either it
+   * has not expired, or it has but is still within the stale grace period. The hit is recorded,
+   * and the caller is expected to refresh the entry if it is due to be refreshed. An entry which
+   * can no longer be served is removed, and null returned.
+   *
+   * @param index the slot index
+   * @param now   the current time
+   * @return the entry, or null if the slot is empty or its entry can no longer be served
+   */
+  Entry hit(int index, Instant now) {
+    Entry entry = entries.get(index);
+    if (entry == null) {
+      return null;
+    }
+
+    // reclaim any entries which have expired since the store was last cleaned up
+    removeExpired(now);
+
+    // if the entry is old, then trigger cleanup and return early
+    if (entry.isExpiredAt(now) && !isWithinStaleGrace(entry, now)) {
+      remove(entry);
+      removeExpired(now);
+      return null;
+    }
+
+    recordHit(index);
+    metrics.recordHit();
+    return entry;
+  }
+
+  /**
+   * Looks up the entry in a slot, and returns it only if it is not yet due to be refreshed. Unlike
+   * {@link #hit(int, Instant)}, this never returns stale entries and records no hit, so it suits
+   * checking whether a request has just refreshed the entry.
+   *
+   * @param index the slot index
+   * @param now   the current time
+   * @return the entry, or null if the slot is empty or its entry is due to be refreshed
+   */
+  Entry getFresh(int index, Instant now) {
+    Entry entry = entries.get(index);
+    return entry == null || entry.isRefreshDueAt(now) ? null : entry;
+  }
+
+  /**
+   * Reports a cache hit on a slot to the {@link EvictionPolicy} of a size-limited store. The hit is
+   * dropped if another thread is currently writing to the store.
+   *
+   * @param index the slot index
+   */
+  void recordHit(int index) {
+    if (evictor != null && lock.tryLock()) {
+      try {
+        // the entry may have been evicted since it was read
+        if (entries.get(index) != null) {
+          evictor.recordAccess(index);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Stores an entry in its slot, replacing any previous entry, and schedules it to expire. If the
+   * store is size-limited, and that limit has been reached, then another entry is evicted to make
+   * space for it.
+   *
+   * @param entry the entry
+   */
+  void put(Entry entry) {
+    int index = entry.index();
+    lock.lock();
+    try {
+      Entry previous = entries.getAndSet(index, entry);
+      timerWheel.schedule(index, toNanos(entry.timestamp()), toNanos(entry.expiry()));
+      if (previous == null) {
+        size.incrementAndGet();
+      }
+
+      // unlimited stores have a slot for every entry, so never need to evict anything
+      if (evictor == null) {
+        return;
+      }
+      if (previous != null) {
+        evictor.recordUpdate(index);
+        return;
+      }
+      int victim = evictor.recordInsertion(index);
+      if (victim != Evictor.NONE) {
+        entries.set(victim, null);
+        size.decrementAndGet();
+        timerWheel.cancel(victim);
+        metrics.recordEviction();
+      }
+    } finally {
+      // only bumped once every slot is up to date, so readers of the new version see them all
+      version++;
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stores an entry in its slot, like {@link #put(Entry)}, but only if the slot is empty or holds
+   * an entry fetched before it, so that an older copy of a {@link Forecast}, such as one restored
+   * from a snapshot, never replaces a newer one.
+   *
+   * @param entry the entry
+   * @return true if the entry was stored, false if the slot holds a newer entry
+   */
+  boolean putIfNewer(Entry entry) {
+    lock.lock();
+    try {
+      Entry current = entries.get(entry.index());
+      if (current != null && !current.timestamp().isBefore(entry.timestamp())) {
+        return false;
+      }
+      put(entry);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes an expired entry from its slot, but only if the slot still holds that exact entry.
+   *
+   * @param entry the entry
+   * @return true if the entry was removed, false otherwise
+   */
+  boolean remove(Entry entry) {
+    int index = entry.index();
+    lock.lock();
+    try {
+      if (!entries.compareAndSet(index, entry, null)) {
+        return false;
+      }
+
+      size.decrementAndGet();
+      version++;
+      timerWheel.cancel(index);
+      if (evictor != null) {
+        evictor.recordRemoval(index);
+      }
+      metrics.recordExpiration();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes all the entries which have expired, and are no longer within the stale grace period,
+   * by advancing the {@link TimerWheel} to the current time less the grace period. This is cheap
+   * enough to call on every read, since the wheel only needs advancing about once a second, and is
+   * skipped entirely if another thread is writing to the store.
+   *
+   * @param now the current time
+   */
+  void removeExpired(Instant now) {
+    long cutoffNanos = toNanos(staleGrace.isZero() ? now : now.minus(staleGrace));
+    if (cutoffNanos < nextExpiryTick || !lock.tryLock()) {
+      return;
+    }
+
+    try {
+      timerWheel.advance(cutoffNanos, expireSlot);
+      nextExpiryTick = timerWheel.nextTickNanos();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Lists the entries currently held in the store, including expired ones, in slot order.
+   *
+   * @return the entries
+   */
+  List<Entry> entries() {
+    List<Entry> currentEntries = new ArrayList<>(size());
+    for (int index = 0; index < CAPACITY; index++) {
+      Entry entry = entries.get(index);
+      if (entry != null) {
+        currentEntries.add(entry);
+      }
+    }
+    return currentEntries;
+  }
+
+  /**
+   * Returns the version of the store, which changes whenever any slot is written to or emptied,
+   * and otherwise stays the same. Reading it is a single volatile read of a rarely written field,
+   * so it is a cheap way to check that copies of entries are still current.
+   *
+   * @return the version
+   */
+  long version() {
+    return version;
+  }
+
+  /**
+   * Counts the entries currently held in the store, including expired ones.
+   *
+   * @return the number of entries
+   */
+  int size() {
+    return size.get();
+  }
+
+  /**
+   * Checks whether an expired entry may still be served while it is being refreshed.
+   *
+   * @param entry the expired entry
+   * @param now   the current time
+   * @return true if the entry is within the stale grace period, false otherwise
+   */
+  private boolean isWithinStaleGrace(Entry entry, Instant now) {
+    return !staleGrace.isZero() && !entry.isExpiredAt(now.minus(staleGrace));
+  }
+
+  /**
+   * Empties a slot whose entry has expired, after the {@link TimerWheel} has cancelled its
+   * schedule. Must be called while holding the lock.
+   *
+   * @param index the slot index
+   */
+  private void expireSlot(int index) {
+    entries.set(index, null);
+    size.decrementAndGet();
+    version++;
+    if (evictor != null) {
+      evictor.recordRemoval(index);
+    }
+    metrics.recordExpiration();
+  }
+
+  /**
+   * Converts an {@link Instant} to nanoseconds since the epoch, saturating at the bounds of a
+   * {@code long} for instants too far away to represent.
+   *
+   * @param instant the {@link Instant}
+   * @return the number of nanoseconds since the epoch
+   */
+  private static long toNanos(Instant instant) {
+    try {
+      return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L),
+          instant.getNano());
+    } catch (ArithmeticException e) {
+      return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+  }
+}
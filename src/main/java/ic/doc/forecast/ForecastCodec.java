@@ -0,0 +1,379 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.dayOf;
+import static ic.doc.forecast.ForecastCache.indexOf;
+import static ic.doc.forecast.ForecastCache.regionOf;
+
+import ic.doc.util.TriConsumer;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary codec for forecasts, which encodes them directly into, and decodes them directly
+ * from, {@link ByteBuffer} objects. The codec is immutable, so a single instance can be shared
+ * between many threads.
+ * <p>
+ * Each forecast is encoded as:
+ * <ul>
+ *   <li>a header byte, holding the slot index derived from the ordinals of its {@link Region} and
+ *   {@link Day} in the low six bits, and flags for whether it is stale, and whether its summary is
+ *   a dictionary reference, in the high two bits;</li>
+ *   <li>its temperature, as a zig-zag encoded varint, so that small temperatures of either sign
+ *   take a single byte;</li>
+ *   <li>its summary, as either the varint index of the summary in a dictionary shared by both
+ *   ends, or a varint byte length followed by the summary in UTF-8.</li>
+ * </ul>
+ * A grid of forecasts is encoded as a varint count, followed by each of its forecasts.
+ */
+public final class ForecastCodec {
+
+  private static final int INDEX_BITS = 6;
+  private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+  private static final int STALE_FLAG = 1 << INDEX_BITS;
+  private static final int DICTIONARY_FLAG = 1 << (INDEX_BITS + 1);
+  private static final int MAX_VARINT_BYTES = 5;
+
+  private final String[] dictionary;
+  private final Map<String, Integer> dictionaryIndices = new HashMap<>();
+
+  /**
+   * Constructs a codec, with a dictionary of common summaries which are encoded as references
+   * rather than as text. Both ends must use the same dictionary, in the same order.
+   *
+   * @param dictionary the common summaries, which may be empty
+   * @throws NullPointerException if {@code dictionary} or any of its summaries are null
+   */
+  public ForecastCodec(List<String> dictionary) {
+    if (dictionary == null) {
+      throw new NullPointerException("dictionary cannot be null");
+    }
+
+    this.dictionary = dictionary.toArray(String[]::new);
+    for (int i = 0; i < this.dictionary.length; i++) {
+      if (this.dictionary[i] == null) {
+        throw new NullPointerException("dictionary summaries cannot be null");
+      }
+      dictionaryIndices.putIfAbsent(this.dictionary[i], i);
+    }
+  }
+
+  /**
+   * Computes the exact number of bytes a {@link Forecast} is encoded in.
+   *
+   * @param forecast the {@link Forecast}
+   * @return the encoded size in bytes
+   * @throws NullPointerException if {@code forecast} is null
+   */
+  public int encodedSize(Forecast forecast) {
+    int size = 1 + varintSize(zigZag(forecast.temperature()));
+    Integer reference = dictionaryIndices.get(forecast.summary());
+    if (reference != null) {
+      return size + varintSize(reference);
+    }
+    int length = utf8Length(forecast.summary());
+    return size + varintSize(length) + length;
+  }
+
+  /**
+   * Computes the exact number of bytes a {@link ForecastGrid} is encoded in.
+   *
+   * @param grid the {@link ForecastGrid}
+   * @return the encoded size in bytes
+   * @throws NullPointerException if {@code grid} is null
+   */
+  public int encodedSize(ForecastGrid grid) {
+    int[] size = {varintSize(grid.size())};
+    grid.forEach((region, day, forecast) -> size[0] += encodedSize(forecast));
+    return size[0];
+  }
+
+  /**
+   * Encodes a {@link Forecast} for a {@link Region} and {@link Day} into a buffer, at its current
+   * position, and advances the position past it.
+   *
+   * @param region   the {@link Region}
+   * @param day      the {@link Day}
+   * @param forecast the {@link Forecast}
+   * @param buffer   the buffer to encode into
+   * @throws NullPointerException    if any of the arguments are null
+   * @throws BufferOverflowException if the buffer does not have enough space remaining, in which
+   *                                 case its position is left unchanged
+   */
+  public void encode(Region region, Day day, Forecast forecast, ByteBuffer buffer) {
+    int start = buffer.position();
+    try {
+      put(indexOf(region, day), forecast, buffer);
+    } catch (BufferOverflowException e) {
+      buffer.position(start);
+      throw e;
+    }
+  }
+
+  /**
+   * Encodes every {@link Forecast} in a {@link ForecastGrid} into a buffer, at its current
+   * position, and advances the position past them.
+   *
+   * @param grid   the {@link ForecastGrid}
+   * @param buffer the buffer to encode into
+   * @throws NullPointerException    if any of the arguments are null
+   * @throws BufferOverflowException if the buffer does not have enough space remaining, in which
+   *                                 case its position is left unchanged
+   */
+  public void encode(ForecastGrid grid, ByteBuffer buffer) {
+    int start = buffer.position();
+    try {
+      putVarint(grid.size(), buffer);
+      grid.forEach((region, day, forecast) -> put(indexOf(region, day), forecast, buffer));
+    } catch (BufferOverflowException e) {
+      buffer.position(start);
+      throw e;
+    }
+  }
+
+  /**
+   * Decodes a single {@link Forecast} from a buffer, at its current position, passing it along
+   * with its {@link Region} and {@link Day} to a consumer, and advances the position past it.
+   *
+   * @param buffer   the buffer to decode from
+   * @param consumer the consumer of the decoded {@link Forecast}
+   * @throws NullPointerException     if any of the arguments are null
+   * @throws BufferUnderflowException if the buffer ends part way through the {@link Forecast}
+   * @throws IllegalArgumentException if the encoding is corrupt
+   */
+  public void decode(ByteBuffer buffer, TriConsumer<Region, Day, Forecast> consumer) {
+    int header = Byte.toUnsignedInt(buffer.get());
+    int index = header & INDEX_MASK;
+    if (index >= ForecastCache.CAPACITY) {
+      throw new IllegalArgumentException("Corrupt forecast encoding: invalid slot index " + index);
+    }
+    int temperature = unZigZag(getVarint(buffer));
+    String summary = (header & DICTIONARY_FLAG) != 0 ? getReference(buffer) : getUtf8(buffer);
+    consumer.accept(regionOf(index), dayOf(index),
+        new Forecast(summary, temperature, (header & STALE_FLAG) != 0));
+  }
+
+  /**
+   * Decodes a {@link ForecastGrid} from a buffer, at its current position, and advances the
+   * position past it.
+   *
+   * @param buffer the buffer to decode from
+   * @return the decoded {@link ForecastGrid}
+   * @throws NullPointerException     if {@code buffer} is null
+   * @throws BufferUnderflowException if the buffer ends part way through the grid
+   * @throws IllegalArgumentException if the encoding is corrupt
+   */
+  public ForecastGrid decodeGrid(ByteBuffer buffer) {
+    int count = getVarint(buffer);
+    if (count < 0 || count > ForecastCache.CAPACITY) {
+      throw new IllegalArgumentException("Corrupt forecast encoding: invalid grid size " + count);
+    }
+
+    ForecastGrid grid = new ForecastGrid();
+    for (int i = 0; i < count; i++) {
+      decode(buffer, grid::put);
+    }
+    return grid;
+  }
+
+  /**
+   * Writes a single {@link Forecast} into a buffer.
+   *
+   * @param index    the slot index of the {@link Forecast}
+   * @param forecast the {@link Forecast}
+   * @param buffer   the buffer to write into
+   */
+  private void put(int index, Forecast forecast, ByteBuffer buffer) {
+    String summary = forecast.summary();
+    Integer reference = dictionaryIndices.get(summary);
+    int header = index | (forecast.stale() ? STALE_FLAG : 0)
+        | (reference != null ? DICTIONARY_FLAG : 0);
+    buffer.put((byte) header);
+    putVarint(zigZag(forecast.temperature()), buffer);
+    if (reference != null) {
+      putVarint(reference, buffer);
+    } else {
+      putVarint(utf8Length(summary), buffer);
+      putUtf8(summary, buffer);
+    }
+  }
+
+  /**
+   * Reads a summary encoded as a dictionary reference from a buffer.
+   *
+   * @param buffer the buffer to read from
+   * @return the summary
+   */
+  private String getReference(ByteBuffer buffer) {
+    int reference = getVarint(buffer);
+    if (reference < 0 || reference >= dictionary.length) {
+      throw new IllegalArgumentException(
+          "Corrupt forecast encoding: invalid dictionary reference " + reference);
+    }
+    return dictionary[reference];
+  }
+
+  /**
+   * Reads a summary encoded as length-prefixed UTF-8 from a buffer. Heap buffers are decoded in
+   * place, while direct buffers have to be copied out first.
+   *
+   * @param buffer the buffer to read from
+   * @return the summary
+   */
+  private static String getUtf8(ByteBuffer buffer) {
+    int length = getVarint(buffer);
+    if (length < 0) {
+      throw new IllegalArgumentException("Corrupt forecast encoding: invalid summary length");
+    }
+    if (length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+
+    if (buffer.hasArray()) {
+      String summary = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+          StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+      return summary;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes a string into a buffer as UTF-8, one character at a time, so that no intermediate byte
+   * array is needed. Unpaired surrogates are replaced with {@code '?'}, as {@link String#getBytes}
+   * does.
+   *
+   * @param string the string
+   * @param buffer the buffer to write into
+   */
+  private static void putUtf8(String string, ByteBuffer buffer) {
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if (c < 0x80) {
+        buffer.put((byte) c);
+      } else if (c < 0x800) {
+        buffer.put((byte) (0xC0 | (c >> 6)));
+        buffer.put((byte) (0x80 | (c & 0x3F)));
+      } else if (!Character.isSurrogate(c)) {
+        buffer.put((byte) (0xE0 | (c >> 12)));
+        buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (c & 0x3F)));
+      } else if (isSurrogatePair(string, i)) {
+        int codePoint = Character.toCodePoint(c, string.charAt(++i));
+        buffer.put((byte) (0xF0 | (codePoint >> 18)));
+        buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+      } else {
+        buffer.put((byte) '?');
+      }
+    }
+  }
+
+  /**
+   * Counts the bytes a string takes up in UTF-8, as written by
+   * {@link #putUtf8(String, ByteBuffer)}.
+   *
+   * @param string the string
+   * @return the number of bytes
+   */
+  private static int utf8Length(String string) {
+    int length = string.length();
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if (c < 0x80) {
+        continue;
+      }
+      if (c < 0x800) {
+        length += 1;
+      } else if (!Character.isSurrogate(c)) {
+        length += 2;
+      } else if (isSurrogatePair(string, i)) {
+        // both chars of the pair together take up four bytes
+        length += 2;
+        i++;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Checks whether a string holds a valid surrogate pair at an index.
+   *
+   * @param string the string
+   * @param index  the index of the high surrogate
+   * @return true if there is a surrogate pair at the index, false otherwise
+   */
+  private static boolean isSurrogatePair(String string, int index) {
+    return Character.isHighSurrogate(string.charAt(index)) && index + 1 < string.length()
+        && Character.isLowSurrogate(string.charAt(index + 1));
+  }
+
+  /**
+   * Writes an unsigned varint into a buffer, seven bits per byte, least significant first.
+   *
+   * @param value  the value, treated as unsigned
+   * @param buffer the buffer to write into
+   */
+  private static void putVarint(int value, ByteBuffer buffer) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  /**
+   * Reads an unsigned varint from a buffer.
+   *
+   * @param buffer the buffer to read from
+   * @return the value
+   */
+  private static int getVarint(ByteBuffer buffer) {
+    int value = 0;
+    for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+      byte b = buffer.get();
+      value |= (b & 0x7F) << (i * 7);
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Corrupt forecast encoding: varint is too long");
+  }
+
+  /**
+   * Counts the bytes an unsigned varint takes up.
+   *
+   * @param value the value, treated as unsigned
+   * @return the number of bytes
+   */
+  private static int varintSize(int value) {
+    return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+  }
+
+  /**
+   * Maps a signed value to an unsigned one, so that values close to zero stay small.
+   *
+   * @param value the signed value
+   * @return the zig-zag encoded value
+   */
+  private static int zigZag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  /**
+   * Reverses {@link #zigZag(int)}.
+   *
+   * @param value the zig-zag encoded value
+   * @return the signed value
+   */
+  private static int unZigZag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
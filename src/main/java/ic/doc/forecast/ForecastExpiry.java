@@ -0,0 +1,42 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+
+/**
+ * A functional interface which decides how long each {@link Forecast} stays in a cache after it
+ * was fetched. A time-to-live which is zero or negative means the entry expires immediately.
+ */
+@FunctionalInterface
+public interface ForecastExpiry {
+
+  /**
+   * Decides how long a newly fetched {@link Forecast} stays in the cache.
+   *
+   * @param region   the {@link Region} of the query
+   * @param day      the {@link Day} of the query
+   * @param forecast the fetched {@link Forecast}
+   * @return the time-to-live of the cache entry. Must not be null
+   */
+  Duration timeToLive(Region region, Day day, Forecast forecast);
+
+  /**
+   * Creates an expiry where every {@link Forecast} stays in the cache for the same time after it
+   * was fetched.
+   *
+   * @param timeToLive the time-to-live of every cache entry. Must be positive
+   * @return the new expiry
+   * @throws NullPointerException     if {@code timeToLive} is null
+   * @throws IllegalArgumentException if {@code timeToLive} is not positive
+   */
+  static ForecastExpiry afterWrite(Duration timeToLive)
+      throws NullPointerException, IllegalArgumentException {
+    if (timeToLive == null) {
+      throw new NullPointerException("timeToLive cannot be null");
+    }
+    if (timeToLive.isNegative() || timeToLive.isZero()) {
+      throw new IllegalArgumentException("Time-to-live must be positive");
+    }
+
+    return (region, day, forecast) -> timeToLive;
+  }
+}
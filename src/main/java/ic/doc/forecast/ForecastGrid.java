@@ -0,0 +1,102 @@
+package ic.doc.forecast;
+
+import ic.doc.util.TriConsumer;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A grid of {@link Forecast} objects, indexed by {@link Region} and {@link Day}, as returned by
+ * bulk forecast queries. It is backed by nested {@link EnumMap} objects, so it is iterated in the
+ * declaration order of {@link Region} and {@link Day}.
+ */
+public final class ForecastGrid {
+
+  private final EnumMap<Region, EnumMap<Day, Forecast>> forecasts = new EnumMap<>(Region.class);
+  private int size;
+
+  /**
+   * Looks up the {@link Forecast} for a given {@link Region} and {@link Day}.
+   *
+   * @param region the {@link Region}
+   * @param day    the {@link Day}
+   * @return the {@link Forecast}, or null if the grid does not contain one
+   */
+  public Forecast get(Region region, Day day) {
+    EnumMap<Day, Forecast> regionForecasts = forecasts.get(region);
+    return regionForecasts == null ? null : regionForecasts.get(day);
+  }
+
+  /**
+   * Adds the {@link Forecast} for a given {@link Region} and {@link Day}, replacing any previous
+   * one.
+   *
+   * @param region   the {@link Region}
+   * @param day      the {@link Day}
+   * @param forecast the {@link Forecast}
+   * @throws NullPointerException if any of the arguments are null
+   */
+  public void put(Region region, Day day, Forecast forecast) {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+    if (day == null) {
+      throw new NullPointerException("day cannot be null");
+    }
+    if (forecast == null) {
+      throw new NullPointerException("forecast cannot be null");
+    }
+
+    EnumMap<Day, Forecast> regionForecasts = forecasts.computeIfAbsent(region,
+        r -> new EnumMap<>(Day.class));
+    if (regionForecasts.put(day, forecast) == null) {
+      size++;
+    }
+  }
+
+  /**
+   * Provides a read-only view of the {@link Forecast} objects for a given {@link Region}.
+   *
+   * @param region the {@link Region}
+   * @return the {@link Forecast} objects for that {@code region}, indexed by {@link Day}
+   */
+  public Map<Day, Forecast> forRegion(Region region) {
+    EnumMap<Day, Forecast> regionForecasts = forecasts.get(region);
+    return regionForecasts == null ? Map.of() : Collections.unmodifiableMap(regionForecasts);
+  }
+
+  /**
+   * Counts the {@link Forecast} objects in the grid.
+   *
+   * @return the number of {@link Forecast} objects
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Calls an action for every {@link Forecast} in the grid, in {@link Region} and then
+   * {@link Day} order.
+   *
+   * @param action the action, accepting the {@link Region}, {@link Day} and {@link Forecast}
+   */
+  public void forEach(TriConsumer<Region, Day, Forecast> action) {
+    forecasts.forEach((region, regionForecasts) -> regionForecasts.forEach(
+        (day, forecast) -> action.accept(region, day, forecast)));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ForecastGrid grid && forecasts.equals(grid.forecasts);
+  }
+
+  @Override
+  public int hashCode() {
+    return forecasts.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return forecasts.toString();
+  }
+}
@@ -0,0 +1,689 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.indexOf;
+
+import ic.doc.forecast.ForecastCache.Entry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A small embedded HTTP/1.1 server exposing a {@link CachingForecasterProxy} as JSON, handling
+ * every connection on its own virtual thread. It serves three kinds of resource:
+ * <ul>
+ *   <li>{@code GET /forecast/{region}/{day}}, a single {@link Forecast}</li>
+ *   <li>{@code GET /forecast/{region}}, the {@link Forecast} objects of a {@link Region} for the
+ *   whole week</li>
+ *   <li>{@code GET /forecast}, the whole grid of {@link Forecast} objects</li>
+ * </ul>
+ * Region and day names are matched case-insensitively, with hyphens standing in for underscores.
+ * <p>
+ * Connections are kept alive between requests, unless the client asks otherwise, and each
+ * response is written out in one go. Response bodies are kept encoded alongside the cache entries
+ * they were built from, so that cache hits are served without encoding anything again. Every
+ * response carries an {@code ETag}, so that clients can revalidate with {@code If-None-Match},
+ * and a {@code Cache-Control} header allowing it to be cached for as long as its cache entries
+ * have left to live.
+ */
+public final class ForecastHttpServer implements AutoCloseable {
+
+  private static final String CONTEXT = "/forecast";
+  private static final String JSON = "application/json; charset=utf-8";
+  private static final String TEXT = "text/plain; charset=utf-8";
+  private static final Duration IDLE_TIMEOUT = Duration.ofSeconds(60);
+  private static final int MAX_LINE_CHARS = 8192;
+  private static final int MAX_HEADERS = 100;
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final Region[] REGIONS = Region.values();
+  private static final Set<Region> ALL_REGIONS = EnumSet.allOf(Region.class);
+  private static final Set<Day> ALL_DAYS = EnumSet.allOf(Day.class);
+
+  /**
+   * The parts of a request which the server acts on.
+   *
+   * @param method      the request method
+   * @param path        the request path, without any query string
+   * @param ifNoneMatch the {@code If-None-Match} header, or null if there is none
+   * @param keepAlive   whether the connection should be kept alive after the response
+   */
+  private record Request(String method, String path, String ifNoneMatch, boolean keepAlive) {
+  }
+
+  /**
+   * An encoded response body, along with its entity tag, and the time at which the first of the
+   * cache entries it was built from expires.
+   *
+   * @param body   the encoded body
+   * @param etag   the entity tag
+   * @param expiry the time after which the body should no longer be cached, or null if it should
+   *               not be cached at all
+   */
+  private record Body(byte[] body, String etag, Instant expiry) {
+
+    /**
+     * Encodes a response body, tagging it with a hash of its contents.
+     *
+     * @param json   the body
+     * @param expiry the time after which the body should no longer be cached, or null if it should
+     *               not be cached at all
+     * @return the encoded body
+     */
+    static Body of(String json, Instant expiry) {
+      byte[] body = json.getBytes(StandardCharsets.UTF_8);
+      long hash = FNV_OFFSET_BASIS;
+      for (byte b : body) {
+        hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+      }
+      return new Body(body, '"' + Long.toHexString(hash) + '"', expiry);
+    }
+  }
+
+  /**
+   * A response body built from a single cache entry.
+   *
+   * @param entry the cache entry
+   * @param body  the encoded body
+   */
+  private record EncodedEntry(Entry entry, Body body) {
+  }
+
+  /**
+   * A response body built from several cache entries, along with the version of the cache they
+   * were read at.
+   *
+   * @param version the cache version
+   * @param body    the encoded body
+   */
+  private record EncodedGrid(long version, Body body) {
+  }
+
+  private final CachingForecasterProxy proxy;
+  private final ServerSocket serverSocket;
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+  private final AtomicReferenceArray<EncodedEntry> encodedEntries =
+      new AtomicReferenceArray<>(ForecastCache.CAPACITY);
+  private final AtomicReferenceArray<EncodedGrid> encodedRegions =
+      new AtomicReferenceArray<>(REGIONS.length);
+  private volatile EncodedGrid encodedGrid;
+
+  /**
+   * Constructs a server for a {@link CachingForecasterProxy}, and starts listening for requests.
+   *
+   * @param proxy   the {@link CachingForecasterProxy} to serve forecasts from
+   * @param address the address to listen on, where a port of zero picks any free port
+   * @throws NullPointerException if any of the arguments are null
+   * @throws IOException          if the server cannot listen on {@code address}
+   */
+  public ForecastHttpServer(CachingForecasterProxy proxy, InetSocketAddress address)
+      throws IOException {
+    if (proxy == null) {
+      throw new NullPointerException("proxy cannot be null");
+    }
+    if (address == null) {
+      throw new NullPointerException("address cannot be null");
+    }
+
+    this.proxy = proxy;
+    this.serverSocket = new ServerSocket();
+    this.serverSocket.bind(address);
+    Thread.ofVirtual().name("forecast-http").start(this::acceptConnections);
+  }
+
+  /**
+   * Returns the address the server is listening on, including the port picked if the server was
+   * asked to listen on port zero.
+   *
+   * @return the address
+   */
+  public InetSocketAddress address() {
+    return new InetSocketAddress(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+  }
+
+  /**
+   * Stops listening for requests, and closes every connection, without waiting for in-flight
+   * requests to complete.
+   *
+   * @throws IOException if the listening socket cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    connections.forEach(socket -> {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // the connection is being discarded anyway
+      }
+    });
+  }
+
+  /**
+   * Accepts connections until the listening socket is closed, serving each on its own virtual
+   * thread.
+   */
+  private void acceptConnections() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout((int) IDLE_TIMEOUT.toMillis());
+        connections.add(socket);
+        Thread.ofVirtual().start(() -> serveConnection(socket));
+      } catch (SocketException e) {
+        // the listening socket has been closed
+        return;
+      } catch (IOException e) {
+        // a failed connection attempt does not stop the server from accepting others
+      }
+    }
+  }
+
+  /**
+   * Serves requests over a single connection, until either side closes it, or it is left idle for
+   * too long.
+   *
+   * @param socket the connection
+   */
+  private void serveConnection(Socket socket) {
+    try (socket) {
+      InputStream input = new BufferedInputStream(socket.getInputStream());
+      OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+      while (true) {
+        Request request;
+        try {
+          request = readRequest(input);
+        } catch (ProtocolException e) {
+          sendError(output, false, 400, e.getMessage(), false);
+          output.flush();
+          return;
+        }
+        if (request == null) {
+          return;
+        }
+
+        handle(request, output);
+        output.flush();
+        if (!request.keepAlive()) {
+          return;
+        }
+      }
+    } catch (IOException e) {
+      // the client has closed the connection, or the server is shutting down; either way, only
+      // this connection is affected
+    } finally {
+      connections.remove(socket);
+    }
+  }
+
+  /**
+   * Reads the next request from a connection, skipping over its body, which is never needed.
+   *
+   * @param input the input stream of the connection
+   * @return the request, or null if the client closed the connection between requests
+   * @throws ProtocolException if the request cannot be parsed
+   * @throws IOException       if the request cannot be read
+   */
+  private static Request readRequest(InputStream input) throws IOException {
+    String requestLine = readLine(input);
+    if (requestLine == null) {
+      return null;
+    }
+    String[] parts = requestLine.split(" ");
+    if (parts.length != 3 || !parts[2].startsWith("HTTP/1.")) {
+      throw new ProtocolException("Malformed request line");
+    }
+
+    // HTTP/1.1 connections are kept alive unless the client asks otherwise, but HTTP/1.0 ones
+    // are never kept alive, to save negotiating it
+    boolean keepAlive = !parts[2].equals("HTTP/1.0");
+    String ifNoneMatch = null;
+    long contentLength = 0;
+    int headers = 0;
+    for (String line = readHeaderLine(input); !line.isEmpty(); line = readHeaderLine(input)) {
+      int colon = line.indexOf(':');
+      if (colon <= 0 || ++headers > MAX_HEADERS) {
+        throw new ProtocolException("Malformed request headers");
+      }
+
+      String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+      String value = line.substring(colon + 1).trim();
+      switch (name) {
+        case "connection" -> keepAlive &= !value.toLowerCase(Locale.ROOT).contains("close");
+        case "if-none-match" -> ifNoneMatch = value;
+        case "content-length" -> contentLength = parseContentLength(value);
+        case "transfer-encoding" -> throw new ProtocolException(
+            "Request bodies are not supported");
+        default -> {
+          // every other header is ignored
+        }
+      }
+    }
+    input.skipNBytes(contentLength);
+
+    int query = parts[1].indexOf('?');
+    return new Request(parts[0], query < 0 ? parts[1] : parts[1].substring(0, query),
+        ifNoneMatch, keepAlive);
+  }
+
+  /**
+   * Reads a header line of a request, or the empty line ending the headers, from a connection.
+   *
+   * @param input the input stream of the connection
+   * @return the line, without its terminator
+   * @throws ProtocolException if the line is too long, or the connection is closed before the end
+   *                           of the headers
+   * @throws IOException       if the line cannot be read
+   */
+  private static String readHeaderLine(InputStream input) throws IOException {
+    String line = readLine(input);
+    if (line == null) {
+      throw new ProtocolException("Truncated request");
+    }
+    return line;
+  }
+
+  /**
+   * Reads a single CRLF-terminated line from a connection.
+   *
+   * @param input the input stream of the connection
+   * @return the line, without its terminator, or null if the connection was closed before any of
+   *     it was read
+   * @throws ProtocolException if the line is too long, or the connection is closed
+   *                           part-way through it
+   * @throws IOException       if the line cannot be read
+   */
+  private static String readLine(InputStream input) throws IOException {
+    StringBuilder line = new StringBuilder();
+    for (int b = input.read(); b != '\n'; b = input.read()) {
+      if (b == -1) {
+        if (line.isEmpty()) {
+          return null;
+        }
+        throw new ProtocolException("Truncated request");
+      }
+      if (line.length() == MAX_LINE_CHARS) {
+        throw new ProtocolException("Request line too long");
+      }
+      line.append((char) b);
+    }
+    int end = line.length() > 0 && line.charAt(line.length() - 1) == '\r'
+        ? line.length() - 1 : line.length();
+    return line.substring(0, end);
+  }
+
+  /**
+   * Parses the {@code Content-Length} header of a request.
+   *
+   * @param value the header value
+   * @return the length of the request body
+   * @throws ProtocolException if the header is not a valid length
+   */
+  private static long parseContentLength(String value) throws ProtocolException {
+    try {
+      long contentLength = Long.parseLong(value);
+      if (contentLength < 0) {
+        throw new ProtocolException("Malformed content length");
+      }
+      return contentLength;
+    } catch (NumberFormatException e) {
+      throw new ProtocolException("Malformed content length");
+    }
+  }
+
+  /**
+   * Handles a single request, writing its response without flushing it.
+   *
+   * @param request the request
+   * @param output  the output stream of the connection
+   * @throws IOException if the response cannot be written
+   */
+  private void handle(Request request, OutputStream output) throws IOException {
+    boolean head = request.method().equals("HEAD");
+    if (!head && !request.method().equals("GET")) {
+      sendError(output, false, 405, "Method not allowed", request.keepAlive());
+      return;
+    }
+    if (!request.path().startsWith(CONTEXT)) {
+      sendError(output, head, 404, "Not found", request.keepAlive());
+      return;
+    }
+
+    Body body;
+    try {
+      body = route(request.path());
+    } catch (ForecastUnavailableException e) {
+      sendError(output, head, 503, "Forecast unavailable", request.keepAlive());
+      return;
+    } catch (RuntimeException e) {
+      sendError(output, head, 502, "Forecast service failed", request.keepAlive());
+      return;
+    }
+    if (body == null) {
+      sendError(output, head, 404, "Not found", request.keepAlive());
+      return;
+    }
+    send(output, head, request, body);
+  }
+
+  /**
+   * Finds the response body for a request path.
+   *
+   * @param path the request path
+   * @return the response body, or null if the path does not name a resource
+   */
+  private Body route(String path) {
+    String rest = path.substring(CONTEXT.length());
+    if (!rest.isEmpty() && rest.charAt(0) != '/') {
+      return null;
+    }
+    String[] segments = rest.length() <= 1 ? new String[0] : rest.substring(1).split("/");
+
+    return switch (segments.length) {
+      case 0 -> gridBody();
+      case 1 -> {
+        Region region = parse(Region.class, segments[0]);
+        yield region == null ? null : regionBody(region);
+      }
+      case 2 -> {
+        Region region = parse(Region.class, segments[0]);
+        Day day = parse(Day.class, segments[1]);
+        yield region == null || day == null ? null : forecastBody(region, day);
+      }
+      default -> null;
+    };
+  }
+
+  /**
+   * Finds the response body for a single query, reusing the body previously encoded for its cache
+   * entry if it is still current.
+   *
+   * @param region the queried {@link Region}
+   * @param day    the queried {@link Day}
+   * @return the response body
+   */
+  private Body forecastBody(Region region, Day day) {
+    Forecast forecast = proxy.forecastFor(region, day);
+    int index = indexOf(region, day);
+    Entry entry = proxy.cachedEntry(index);
+
+    // the forecast may not have come from the cache, e.g. if it was evicted straight away
+    if (entry == null || entry.forecast() != forecast) {
+      return Body.of(forecastJson(region, day, forecast), null);
+    }
+
+    EncodedEntry encoded = encodedEntries.get(index);
+    if (encoded == null || encoded.entry() != entry) {
+      encoded = new EncodedEntry(entry,
+          Body.of(forecastJson(region, day, forecast), entry.expiry()));
+      encodedEntries.set(index, encoded);
+    }
+    return encoded.body();
+  }
+
+  /**
+   * Finds the response body for the week of a {@link Region}, reusing the body previously
+   * encoded for it if the cache has not changed since.
+   *
+   * @param region the queried {@link Region}
+   * @return the response body
+   */
+  private Body regionBody(Region region) {
+    ForecastGrid forecasts = proxy.forecastsFor(EnumSet.of(region), ALL_DAYS);
+    long version = proxy.cacheVersion();
+    EncodedGrid encoded = encodedRegions.get(region.ordinal());
+    if (encoded != null && encoded.version() == version) {
+      return encoded.body();
+    }
+
+    StringBuilder json = new StringBuilder("{\"region\":\"").append(region)
+        .append("\",\"forecasts\":");
+    appendWeek(json, region, forecasts);
+    Body body = Body.of(json.append('}').toString(), expiryOf(EnumSet.of(region), forecasts));
+    if (body.expiry() != null) {
+      encodedRegions.set(region.ordinal(), new EncodedGrid(version, body));
+    }
+    return body;
+  }
+
+  /**
+   * Finds the response body for the whole grid, reusing the body previously encoded for it if the
+   * cache has not changed since.
+   *
+   * @return the response body
+   */
+  private Body gridBody() {
+    ForecastGrid forecasts = proxy.forecastsFor(ALL_REGIONS, ALL_DAYS);
+    long version = proxy.cacheVersion();
+    EncodedGrid encoded = encodedGrid;
+    if (encoded != null && encoded.version() == version) {
+      return encoded.body();
+    }
+
+    StringBuilder json = new StringBuilder("{");
+    for (Region region : REGIONS) {
+      json.append(region.ordinal() == 0 ? "\"" : ",\"").append(region).append("\":");
+      appendWeek(json, region, forecasts);
+    }
+    Body body = Body.of(json.append('}').toString(), expiryOf(ALL_REGIONS, forecasts));
+    if (body.expiry() != null) {
+      encodedGrid = new EncodedGrid(version, body);
+    }
+    return body;
+  }
+
+  /**
+   * Finds the time after which a response built from a grid of forecasts should no longer be
+   * cached, which is when the first of their cache entries expires. This is read after the cache
+   * version, so a body cached under that version is never newer than the cache.
+   *
+   * @param regions   the queried regions
+   * @param forecasts the grid of forecasts
+   * @return the expiry, or null if any forecast did not come from the cache, or is stale
+   */
+  private Instant expiryOf(Set<Region> regions, ForecastGrid forecasts) {
+    Instant expiry = Instant.MAX;
+    for (Region region : regions) {
+      for (Day day : ALL_DAYS) {
+        Forecast forecast = forecasts.get(region, day);
+        Entry entry = proxy.cachedEntry(indexOf(region, day));
+        if (entry == null || entry.forecast() != forecast || forecast.stale()) {
+          return null;
+        }
+        expiry = entry.expiry().isBefore(expiry) ? entry.expiry() : expiry;
+      }
+    }
+    return expiry;
+  }
+
+  /**
+   * Writes a response body, or just its headers if the client already holds the same body, or has
+   * only asked for the headers.
+   *
+   * @param output  the output stream of the connection
+   * @param head    whether only the headers were asked for
+   * @param request the request
+   * @param body    the response body
+   * @throws IOException if the response cannot be written
+   */
+  private void send(OutputStream output, boolean head, Request request, Body body)
+      throws IOException {
+    String ifNoneMatch = request.ifNoneMatch();
+    String headers = "ETag: " + body.etag() + "\r\nCache-Control: " + cacheControl(body.expiry())
+        + "\r\n";
+    if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(body.etag()))) {
+      writeHead(output, 304, headers, request.keepAlive());
+      return;
+    }
+
+    writeHead(output, 200, headers + "Content-Type: " + JSON + "\r\nContent-Length: "
+        + body.body().length + "\r\n", request.keepAlive());
+    if (!head) {
+      output.write(body.body());
+    }
+  }
+
+  /**
+   * Builds the {@code Cache-Control} header for a response, allowing it to be cached until the
+   * first of its cache entries expires.
+   *
+   * @param expiry the time after which the response should no longer be cached, or null if it
+   *               should not be cached at all
+   * @return the header value
+   */
+  private String cacheControl(Instant expiry) {
+    if (expiry == null) {
+      return "no-cache";
+    }
+    Duration remaining = Duration.between(proxy.instantSource().instant(), expiry);
+    return "max-age=" + Math.max(0, remaining.getSeconds());
+  }
+
+  /**
+   * Writes a plain text error response, which is never cached.
+   *
+   * @param output    the output stream of the connection
+   * @param head      whether only the headers were asked for
+   * @param status    the status code
+   * @param message   the error message
+   * @param keepAlive whether the connection will be kept alive after the response
+   * @throws IOException if the response cannot be written
+   */
+  private static void sendError(OutputStream output, boolean head, int status, String message,
+      boolean keepAlive) throws IOException {
+    byte[] body = message.getBytes(StandardCharsets.UTF_8);
+    writeHead(output, status, (status == 405 ? "Allow: GET, HEAD\r\n" : "")
+        + "Cache-Control: no-store\r\nContent-Type: " + TEXT + "\r\nContent-Length: "
+        + body.length + "\r\n", keepAlive);
+    if (!head) {
+      output.write(body);
+    }
+  }
+
+  /**
+   * Writes the status line and headers of a response.
+   *
+   * @param output    the output stream of the connection
+   * @param status    the status code
+   * @param headers   the CRLF-terminated headers
+   * @param keepAlive whether the connection will be kept alive after the response
+   * @throws IOException if the response cannot be written
+   */
+  private static void writeHead(OutputStream output, int status, String headers,
+      boolean keepAlive) throws IOException {
+    String reason = switch (status) {
+      case 200 -> "OK";
+      case 304 -> "Not Modified";
+      case 400 -> "Bad Request";
+      case 404 -> "Not Found";
+      case 405 -> "Method Not Allowed";
+      case 502 -> "Bad Gateway";
+      case 503 -> "Service Unavailable";
+      default -> "Unknown";
+    };
+    output.write(("HTTP/1.1 " + status + " " + reason + "\r\n" + headers
+        + (keepAlive ? "" : "Connection: close\r\n") + "\r\n")
+        .getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  /**
+   * Parses a path segment as the name of an enum constant, case-insensitively, and with hyphens
+   * standing in for underscores.
+   *
+   * @param type    the enum type
+   * @param segment the path segment
+   * @param <E>     the enum type
+   * @return the enum constant, or null if there is none with that name
+   */
+  private static <E extends Enum<E>> E parse(Class<E> type, String segment) {
+    try {
+      return Enum.valueOf(type, segment.replace('-', '_').toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Encodes a single {@link Forecast} as a JSON object, along with the query it answers.
+   *
+   * @param region   the queried {@link Region}
+   * @param day      the queried {@link Day}
+   * @param forecast the {@link Forecast}
+   * @return the JSON object
+   */
+  private static String forecastJson(Region region, Day day, Forecast forecast) {
+    StringBuilder json = new StringBuilder("{\"region\":\"").append(region)
+        .append("\",\"day\":\"").append(day).append("\",");
+    appendFields(json, forecast);
+    return json.append('}').toString();
+  }
+
+  /**
+   * Appends the {@link Forecast} objects of a {@link Region} to some JSON, as an object indexed by
+   * {@link Day}.
+   *
+   * @param json      the JSON to append to
+   * @param region    the {@link Region}
+   * @param forecasts the grid of forecasts
+   */
+  private static void appendWeek(StringBuilder json, Region region, ForecastGrid forecasts) {
+    json.append('{');
+    boolean first = true;
+    for (Day day : ALL_DAYS) {
+      Forecast forecast = forecasts.get(region, day);
+      if (forecast == null) {
+        continue;
+      }
+      json.append(first ? "\"" : ",\"").append(day).append("\":{");
+      appendFields(json, forecast);
+      json.append('}');
+      first = false;
+    }
+    json.append('}');
+  }
+
+  /**
+   * Appends the fields of a {@link Forecast} to a JSON object.
+   *
+   * @param json     the JSON to append to
+   * @param forecast the {@link Forecast}
+   */
+  private static void appendFields(StringBuilder json, Forecast forecast) {
+    json.append("\"summary\":\"");
+    String summary = forecast.summary();
+    for (int i = 0; i < summary.length(); i++) {
+      char c = summary.charAt(i);
+      switch (c) {
+        case '"' -> json.append("\\\"");
+        case '\\' -> json.append("\\\\");
+        case '\n' -> json.append("\\n");
+        case '\r' -> json.append("\\r");
+        case '\t' -> json.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+        }
+      }
+    }
+    json.append("\",\"temperature\":").append(forecast.temperature())
+        .append(",\"stale\":").append(forecast.stale());
+  }
+}
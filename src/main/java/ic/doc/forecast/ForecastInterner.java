@@ -0,0 +1,238 @@
+package ic.doc.forecast;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A bounded, thread-safe interning table for {@link Forecast} summaries, and optionally for whole
+ * {@link Forecast} objects, so that the many identical forecasts held by caches share a single
+ * canonical instance. The forecast service only uses a small vocabulary of summaries, so a single
+ * interner can be shared between the adapters of many proxies and tenants.
+ * <p>
+ * The interner caps its own memory at a budget of estimated bytes. Once the budget is used up, new
+ * summaries and forecasts are no longer admitted, while those already interned keep being shared.
+ * The estimates assume a 64-bit JVM with compressed pointers.
+ */
+public final class ForecastInterner implements InternerStatistics {
+
+  private static final long DEFAULT_MAX_BYTES = 1 << 20;
+  private static final int ARRAY_HEADER_BYTES = 16;
+  private static final int STRING_BYTES = 24;
+  private static final int FORECAST_BYTES = 24;
+  private static final int TABLE_ENTRY_BYTES = 32 + 4;
+
+  private final ConcurrentHashMap<String, String> summaries = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Forecast, Forecast> forecasts;
+  private final long maxBytes;
+  private final AtomicLong bytesUsed = new AtomicLong();
+  private final LongAdder bytesSaved = new LongAdder();
+
+  /**
+   * Constructs an interner with a memory budget.
+   *
+   * @param maxBytes        the cap on the estimated memory held by the interner. Must be greater
+   *                        than zero
+   * @param internForecasts whether to intern whole {@link Forecast} objects, as well as summaries
+   * @throws IllegalArgumentException if {@code maxBytes} is not greater than zero
+   */
+  public ForecastInterner(long maxBytes, boolean internForecasts) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Interner memory budget must be greater than zero");
+    }
+
+    this.maxBytes = maxBytes;
+    this.forecasts = internForecasts ? new ConcurrentHashMap<>() : null;
+  }
+
+  /**
+   * Constructs an interner of both summaries and whole {@link Forecast} objects, which holds on to
+   * at most a mebibyte.
+   */
+  public ForecastInterner() {
+    this(DEFAULT_MAX_BYTES, true);
+  }
+
+  /**
+   * Finds the canonical instance of a {@link Forecast}, interning it if there is none yet and the
+   * memory budget allows. If whole {@link Forecast} objects are not interned, or the budget is used
+   * up, a {@link Forecast} sharing the canonical summary is returned instead, where possible.
+   *
+   * @param forecast the {@link Forecast}
+   * @return an equal {@link Forecast}, sharing as much as possible with other interned forecasts
+   * @throws NullPointerException if {@code forecast} is null
+   */
+  public Forecast intern(Forecast forecast) {
+    if (forecasts != null) {
+      Forecast canonical = forecasts.get(forecast);
+      if (canonical != null) {
+        if (canonical != forecast) {
+          bytesSaved.add(FORECAST_BYTES + (canonical.summary() != forecast.summary()
+              ? stringBytes(forecast.summary()) : 0));
+        }
+        return canonical;
+      }
+    }
+
+    String summary = intern(forecast.summary());
+    if (summary != forecast.summary()) {
+      forecast = new Forecast(summary, forecast.temperature(), forecast.stale());
+    }
+    if (forecasts == null || !reserve(TABLE_ENTRY_BYTES + FORECAST_BYTES)) {
+      return forecast;
+    }
+
+    Forecast canonical = forecasts.putIfAbsent(forecast, forecast);
+    if (canonical == null) {
+      return forecast;
+    }
+    release(TABLE_ENTRY_BYTES + FORECAST_BYTES);
+    bytesSaved.add(FORECAST_BYTES);
+    return canonical;
+  }
+
+  /**
+   * Finds the canonical instance of a summary, interning it if there is none yet and the memory
+   * budget allows.
+   *
+   * @param summary the summary
+   * @return an equal summary, which is the canonical instance if there is one
+   * @throws NullPointerException if {@code summary} is null
+   */
+  public String intern(String summary) {
+    String canonical = summaries.get(summary);
+    if (canonical == null) {
+      long cost = TABLE_ENTRY_BYTES + stringBytes(summary);
+      if (!reserve(cost)) {
+        return summary;
+      }
+      canonical = summaries.putIfAbsent(summary, summary);
+      if (canonical == null) {
+        return summary;
+      }
+      release(cost);
+    }
+
+    if (canonical != summary) {
+      bytesSaved.add(stringBytes(summary));
+    }
+    return canonical;
+  }
+
+  @Override
+  public int getSize() {
+    return summaries.size() + (forecasts == null ? 0 : forecasts.size());
+  }
+
+  @Override
+  public long getBytesUsed() {
+    return bytesUsed.get();
+  }
+
+  @Override
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  @Override
+  public long getBytesSaved() {
+    return bytesSaved.sum();
+  }
+
+  /**
+   * Registers this interner with the platform MBean server, as an {@link InternerStatistics} MBean
+   * tagged with a name.
+   *
+   * @param name the name distinguishing this interner from others
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the MBean cannot be registered
+   */
+  public void registerMBean(String name) throws NullPointerException, JMException {
+    ManagementFactory.getPlatformMBeanServer()
+        .registerMBean(this, objectName(name));
+  }
+
+  /**
+   * Unregisters this interner from the platform MBean server, after it was registered by
+   * {@link #registerMBean(String)} with the same name.
+   *
+   * @param name the name the interner was registered with
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the MBean cannot be unregistered
+   */
+  public void unregisterMBean(String name) throws NullPointerException, JMException {
+    ManagementFactory.getPlatformMBeanServer()
+        .unregisterMBean(objectName(name));
+  }
+
+  /**
+   * Makes the JMX object name the interner with a name is registered under by
+   * {@link #registerMBean(String)}.
+   *
+   * @param name the name of the interner
+   * @return the object name
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the name is malformed
+   */
+  static ObjectName objectName(String name) throws JMException {
+    return MBeanNames.objectName("ForecastInterner", name);
+  }
+
+  /**
+   * Reserves part of the memory budget for a new table entry.
+   *
+   * @param bytes the estimated size of the entry
+   * @return true if the budget allowed the reservation, false otherwise
+   */
+  private boolean reserve(long bytes) {
+    long used;
+    do {
+      used = bytesUsed.get();
+      if (used + bytes > maxBytes) {
+        return false;
+      }
+    } while (!bytesUsed.compareAndSet(used, used + bytes));
+    return true;
+  }
+
+  /**
+   * Gives back a reservation which was not needed, because another thread interned the same
+   * object first.
+   *
+   * @param bytes the estimated size of the entry
+   */
+  private void release(long bytes) {
+    bytesUsed.addAndGet(-bytes);
+  }
+
+  /**
+   * Estimates the memory held by a string, assuming compact strings, where strings with only
+   * Latin-1 characters take up a byte per character, and other strings two.
+   *
+   * @param string the string
+   * @return the estimated number of bytes
+   */
+  private static long stringBytes(String string) {
+    int bytesPerChar = 1;
+    for (int i = 0; i < string.length(); i++) {
+      if (string.charAt(i) > 0xFF) {
+        bytesPerChar = 2;
+        break;
+      }
+    }
+    return STRING_BYTES + align(ARRAY_HEADER_BYTES + (long) string.length() * bytesPerChar);
+  }
+
+  /**
+   * Rounds a size up to the eight byte alignment of objects on the heap.
+   *
+   * @param bytes the unaligned size
+   * @return the aligned size
+   */
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+}
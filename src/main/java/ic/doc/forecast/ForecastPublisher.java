@@ -0,0 +1,235 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.dayOf;
+import static ic.doc.forecast.ForecastCache.regionOf;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link Flow.Publisher} of changes to the forecasts cached by a {@link CachingForecasterProxy},
+ * obtained from {@link CachingForecasterProxy#updates()}. Whenever the proxy fetches a
+ * {@link Forecast} whose summary or temperature differs from the one it last cached for the same
+ * query, subscribers are pushed a {@link ForecastUpdate}. Fetches which return the same forecast
+ * as before are not pushed, so subscribers can stop polling for changes. Subscribers can listen to
+ * every query, or only to those for a {@link Region} and/or {@link Day}, through
+ * {@link #updatesFor(Region, Day)}.
+ * <p>
+ * Backpressure is honoured: subscribers are never pushed more updates than they have requested.
+ * Updates which a subscriber has not yet requested are held for it, but only the latest update
+ * for each query, so a slow subscriber skips straight to the latest forecasts once it catches up,
+ * and never holds more than one update per query. The proxy only ever hands updates over, and
+ * never waits for subscribers, whose updates are delivered on virtual threads.
+ */
+public final class ForecastPublisher implements Flow.Publisher<ForecastUpdate> {
+
+  private static final Executor EXECUTOR = Thread::startVirtualThread;
+
+  private final AtomicReferenceArray<Forecast> lastForecasts =
+      new AtomicReferenceArray<>(ForecastCache.CAPACITY);
+  private final List<ForecastSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+  /**
+   * A subscription to the updates for some queries. Updates are held in a slot per query until
+   * they are requested, so a newer update for the same query replaces the one being held, and the
+   * slots are delivered in the order they were filled. Deliveries are run on virtual threads, by at
+   * most one thread at a time, so the subscriber is signalled serially.
+   */
+  private final class ForecastSubscription implements Flow.Subscription {
+
+    private final Flow.Subscriber<? super ForecastUpdate> subscriber;
+    private final Region region;
+    private final Day day;
+    private final AtomicReferenceArray<ForecastUpdate> pending =
+        new AtomicReferenceArray<>(ForecastCache.CAPACITY);
+    private final Queue<Integer> pendingOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger scheduled = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+
+    /**
+     * Constructs a subscription to the updates for some queries.
+     *
+     * @param subscriber the subscriber
+     * @param region     optional {@link Region} to only push the updates of
+     * @param day        optional {@link Day} to only push the updates of
+     */
+    ForecastSubscription(Flow.Subscriber<? super ForecastUpdate> subscriber, Region region,
+        Day day) {
+      this.subscriber = subscriber;
+      this.region = region;
+      this.day = day;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        error = new IllegalArgumentException("Number of requested updates must be positive");
+      } else {
+        demand.getAndAccumulate(n, (current, added) -> {
+          long total = current + added;
+          return total < 0 ? Long.MAX_VALUE : total;
+        });
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      subscriptions.remove(this);
+    }
+
+    /**
+     * Hands over an update, holding it until the subscriber requests it, if it concerns the
+     * queries subscribed to.
+     *
+     * @param index  the slot index of the query
+     * @param update the update
+     */
+    void offer(int index, ForecastUpdate update) {
+      if ((region != null && region != update.region()) || (day != null && day != update.day())) {
+        return;
+      }
+      if (pending.getAndSet(index, update) == null) {
+        pendingOrder.offer(index);
+      }
+      schedule();
+    }
+
+    /**
+     * Makes sure deliveries are run, unless they are already running, in which case they pick up
+     * the latest demand and updates before they finish.
+     */
+    private void schedule() {
+      if (scheduled.getAndIncrement() != 0) {
+        return;
+      }
+      try {
+        EXECUTOR.execute(this::deliver);
+      } catch (RejectedExecutionException e) {
+        cancel();
+      }
+    }
+
+    /**
+     * Delivers as many held updates as the subscriber has requested, until there is nothing left
+     * to deliver which was scheduled before it started.
+     */
+    private void deliver() {
+      int missed = 1;
+      do {
+        if (error != null && !cancelled) {
+          cancel();
+          subscriber.onError(error);
+        }
+
+        while (!cancelled && demand.get() > 0) {
+          Integer index = pendingOrder.poll();
+          if (index == null) {
+            break;
+          }
+
+          ForecastUpdate update = pending.getAndSet(index, null);
+          if (demand.get() != Long.MAX_VALUE) {
+            demand.decrementAndGet();
+          }
+          try {
+            subscriber.onNext(update);
+          } catch (RuntimeException e) {
+            // a subscriber which fails has its subscription cancelled, rather than hold up others
+            cancel();
+          }
+        }
+        missed = scheduled.addAndGet(-missed);
+      } while (missed != 0);
+    }
+  }
+
+  /**
+   * Constructs a publisher which delivers updates on virtual threads, and knows of the forecasts
+   * currently cached, so that only later changes to them are pushed.
+   *
+   * @param cache the cache whose current forecasts are known
+   */
+  ForecastPublisher(ForecastCache cache) {
+    for (ForecastCache.Entry entry : cache.entries()) {
+      lastForecasts.set(entry.index(), entry.forecast());
+    }
+  }
+
+  /**
+   * Subscribes to the updates for every query.
+   *
+   * @param subscriber the subscriber
+   * @throws NullPointerException if {@code subscriber} is null
+   */
+  @Override
+  public void subscribe(Flow.Subscriber<? super ForecastUpdate> subscriber) {
+    subscribe(subscriber, null, null);
+  }
+
+  /**
+   * Subscribes to the updates for some queries.
+   *
+   * @param subscriber the subscriber
+   * @param region     optional {@link Region} to only push the updates of
+   * @param day        optional {@link Day} to only push the updates of
+   * @throws NullPointerException if {@code subscriber} is null
+   */
+  private void subscribe(Flow.Subscriber<? super ForecastUpdate> subscriber, Region region,
+      Day day) {
+    if (subscriber == null) {
+      throw new NullPointerException("subscriber cannot be null");
+    }
+
+    ForecastSubscription subscription = new ForecastSubscription(subscriber, region, day);
+    subscriber.onSubscribe(subscription);
+    subscriptions.add(subscription);
+
+    // the subscription may have been cancelled before it was added, so could not remove itself
+    if (subscription.cancelled) {
+      subscriptions.remove(subscription);
+    }
+  }
+
+  /**
+   * Provides a {@link Flow.Publisher} of the updates for a {@link Region} and/or {@link Day}.
+   *
+   * @param region optional {@link Region} to only push the updates of
+   * @param day    optional {@link Day} to only push the updates of
+   * @return the publisher
+   */
+  public Flow.Publisher<ForecastUpdate> updatesFor(Region region, Day day) {
+    return subscriber -> subscribe(subscriber, region, day);
+  }
+
+  /**
+   * Publishes a {@link Forecast} newly fetched for a query, pushing it to the subscribers to that
+   * query if its summary or temperature differ from the last one fetched.
+   *
+   * @param index    the slot index of the query
+   * @param forecast the {@link Forecast}
+   */
+  void publish(int index, Forecast forecast) {
+    Forecast last = lastForecasts.getAndSet(index, forecast);
+    if (last != null && last.temperature() == forecast.temperature()
+        && last.summary().equals(forecast.summary())) {
+      return;
+    }
+
+    ForecastUpdate update = new ForecastUpdate(regionOf(index), dayOf(index), forecast);
+    for (ForecastSubscription subscription : subscriptions) {
+      subscription.offer(index, update);
+    }
+  }
+}
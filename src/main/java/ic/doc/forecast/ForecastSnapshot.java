@@ -0,0 +1,122 @@
+package ic.doc.forecast;
+
+import ic.doc.forecast.ForecastCache.Entry;
+import ic.doc.util.TriConsumer;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes snapshots of cache entries as compact binary files, through memory-mapped
+ * buffers. A snapshot starts with a magic number and an entry count, followed by each entry as its
+ * slot index, fetch timestamp, temperature, and length-prefixed UTF-8 summary.
+ */
+final class ForecastSnapshot {
+
+  private static final int MAGIC = 0x46435331;
+  private static final int HEADER_BYTES = Integer.BYTES * 2;
+  private static final int ENTRY_BYTES = Byte.BYTES + Long.BYTES + Integer.BYTES * 2 + Short.BYTES;
+  private static final int MAX_SUMMARY_BYTES = 0xFFFF;
+
+  private ForecastSnapshot() {
+  }
+
+  /**
+   * Writes a snapshot of cache entries to a file. The snapshot is written to a temporary file
+   * first, and then moved into place, so that an existing snapshot is never left half-written.
+   *
+   * @param path    the file to write the snapshot to
+   * @param entries the cache entries
+   * @throws IOException if the snapshot cannot be written
+   */
+  static void write(Path path, List<Entry> entries) throws IOException {
+    // encode the summaries up front, so that the exact size of the snapshot is known
+    List<byte[]> summaries = new ArrayList<>(entries.size());
+    long size = HEADER_BYTES;
+    for (Entry entry : entries) {
+      byte[] summary = entry.forecast().summary().getBytes(StandardCharsets.UTF_8);
+      if (summary.length > MAX_SUMMARY_BYTES) {
+        throw new IOException("Forecast summary is too long to snapshot");
+      }
+      summaries.add(summary);
+      size += ENTRY_BYTES + summary.length;
+    }
+
+    Path absolutePath = path.toAbsolutePath();
+    Path temporaryPath = Files.createTempFile(absolutePath.getParent(),
+        absolutePath.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.READ,
+          StandardOpenOption.WRITE)) {
+        MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, size);
+        buffer.putInt(MAGIC).putInt(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+          Entry entry = entries.get(i);
+          buffer.put((byte) entry.index())
+              .putLong(entry.timestamp().getEpochSecond())
+              .putInt(entry.timestamp().getNano())
+              .putInt(entry.forecast().temperature())
+              .putShort((short) summaries.get(i).length)
+              .put(summaries.get(i));
+        }
+        buffer.force();
+      }
+      Files.move(temporaryPath, absolutePath, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporaryPath);
+    }
+  }
+
+  /**
+   * Reads a snapshot of cache entries from a file, passing each entry's slot index,
+   * {@link Forecast} and fetch timestamp to a consumer.
+   *
+   * @param path     the file to read the snapshot from
+   * @param consumer the consumer of the entries
+   * @return the number of entries read
+   * @throws IOException if the snapshot cannot be read, or is corrupt
+   */
+  static int read(Path path, TriConsumer<Integer, Forecast, Instant> consumer)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a forecast cache snapshot: " + path);
+      }
+
+      int count = buffer.getInt();
+      for (int i = 0; i < count; i++) {
+        int index = buffer.get();
+        Instant timestamp;
+        try {
+          timestamp = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        } catch (DateTimeException | ArithmeticException e) {
+          throw new IOException("Corrupt forecast cache snapshot: " + path, e);
+        }
+        int temperature = buffer.getInt();
+        byte[] summary = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(summary);
+        if (index < 0 || index >= ForecastCache.CAPACITY) {
+          throw new IOException("Corrupt forecast cache snapshot: " + path);
+        }
+        consumer.accept(index, new Forecast(new String(summary, StandardCharsets.UTF_8),
+            temperature), timestamp);
+      }
+      return count;
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated forecast cache snapshot: " + path, e);
+    }
+  }
+}
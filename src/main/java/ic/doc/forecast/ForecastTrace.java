@@ -0,0 +1,149 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.dayOf;
+import static ic.doc.forecast.ForecastCache.regionOf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes traces of {@link Forecaster#forecastFor(Region, Day)} calls as compact binary
+ * files. A trace starts with a magic number, followed by each call as its start time in
+ * nanoseconds since the epoch, the ordinals of its {@link Region} and {@link Day}, whether it hit
+ * the cache, and its latency in nanoseconds. Calls are written in the order they completed.
+ */
+final class ForecastTrace {
+
+  static final int HEADER_BYTES = Integer.BYTES;
+  static final int RECORD_BYTES = Long.BYTES * 2 + Byte.BYTES * 3;
+
+  private static final int MAGIC = 0x46435452;
+  private static final int READ_BUFFER_BYTES = 1 << 16;
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  private static final Region[] REGIONS = Region.values();
+  private static final Day[] DAYS = Day.values();
+
+  /**
+   * A record representing a single traced call.
+   *
+   * @param timestamp the time at which the call started
+   * @param region    the {@link Region} of the query
+   * @param day       the {@link Day} of the query
+   * @param hit       whether the call was served from the cache
+   * @param latency   how long the call took
+   */
+  record Call(Instant timestamp, Region region, Day day, boolean hit, Duration latency) {
+  }
+
+  private ForecastTrace() {
+  }
+
+  /**
+   * Writes the header of a trace to a buffer.
+   *
+   * @param buffer the buffer
+   */
+  static void writeHeader(ByteBuffer buffer) {
+    buffer.putInt(MAGIC);
+  }
+
+  /**
+   * Writes a single call to a buffer.
+   *
+   * @param buffer         the buffer
+   * @param timestampNanos the time at which the call started, in nanoseconds since the epoch
+   * @param index          the slot index of the query
+   * @param hit            whether the call was served from the cache
+   * @param latencyNanos   how long the call took, in nanoseconds
+   */
+  static void writeCall(ByteBuffer buffer, long timestampNanos, int index, boolean hit,
+      long latencyNanos) {
+    buffer.putLong(timestampNanos)
+        .put((byte) regionOf(index).ordinal())
+        .put((byte) dayOf(index).ordinal())
+        .put((byte) (hit ? 1 : 0))
+        .putLong(latencyNanos);
+  }
+
+  /**
+   * Converts an {@link Instant} to nanoseconds since the epoch, as written to traces.
+   *
+   * @param instant the {@link Instant}
+   * @return the number of nanoseconds since the epoch
+   */
+  static long toEpochNanos(Instant instant) {
+    return instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano();
+  }
+
+  /**
+   * Reads a trace from a file, passing each call to a consumer in the order they were written.
+   * The trace is streamed rather than loaded up front, so traces may be larger than memory.
+   *
+   * @param path     the file to read the trace from
+   * @param consumer the consumer of the calls
+   * @return the number of calls read
+   * @throws IOException if the trace cannot be read, or is corrupt
+   */
+  static long read(Path path, Consumer<Call> consumer) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES).flip();
+      if (!fill(channel, buffer, HEADER_BYTES, path) || buffer.getInt() != MAGIC) {
+        throw new IOException("Not a forecast trace: " + path);
+      }
+
+      long count = 0;
+      while (fill(channel, buffer, RECORD_BYTES, path)) {
+        long timestampNanos = buffer.getLong();
+        int region = buffer.get();
+        int day = buffer.get();
+        int hit = buffer.get();
+        long latencyNanos = buffer.getLong();
+        if (region < 0 || region >= REGIONS.length || day < 0 || day >= DAYS.length
+            || (hit & ~1) != 0 || latencyNanos < 0) {
+          throw new IOException("Corrupt forecast trace: " + path);
+        }
+        consumer.accept(new Call(Instant.ofEpochSecond(0, timestampNanos), REGIONS[region],
+            DAYS[day], hit == 1, Duration.ofNanos(latencyNanos)));
+        count++;
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Makes sure a buffer holds at least a number of unread bytes, reading more from a file if not.
+   *
+   * @param channel the file
+   * @param buffer  the buffer, ready to be read from
+   * @param bytes   the number of bytes needed
+   * @param path    the path of the file, for error messages
+   * @return true if the bytes are available, or false if the file ended cleanly before them
+   * @throws IOException if the file cannot be read, or ends part of the way through the bytes
+   */
+  private static boolean fill(FileChannel channel, ByteBuffer buffer, int bytes, Path path)
+      throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return true;
+    }
+
+    buffer.compact();
+    while (buffer.position() < bytes && channel.read(buffer) >= 0) {
+      // keep reading until enough bytes are buffered, or the file ends
+    }
+    buffer.flip();
+
+    if (buffer.remaining() >= bytes) {
+      return true;
+    }
+    if (buffer.hasRemaining()) {
+      throw new IOException("Truncated forecast trace: " + path);
+    }
+    return false;
+  }
+}
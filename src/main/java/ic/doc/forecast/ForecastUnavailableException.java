@@ -0,0 +1,31 @@
+package ic.doc.forecast;
+
+/**
+ * Thrown when a {@link Forecaster} decorator cannot produce a {@link Forecast}, because the
+ * forecast service did not answer in time, or is being protected from further requests, and there
+ * is no fallback {@link Forecast} to serve instead.
+ */
+public class ForecastUnavailableException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructs the exception with a message describing why no {@link Forecast} is available.
+   *
+   * @param message the detail message
+   */
+  public ForecastUnavailableException(String message) {
+    super(message);
+  }
+
+  /**
+   * Constructs the exception with a message describing why no {@link Forecast} is available, and
+   * the failure which caused it.
+   *
+   * @param message the detail message
+   * @param cause   the underlying failure
+   */
+  public ForecastUnavailableException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
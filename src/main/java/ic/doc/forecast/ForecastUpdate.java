@@ -0,0 +1,12 @@
+package ic.doc.forecast;
+
+/**
+ * A record representing a change to the {@link Forecast} for a query, as pushed to subscribers of
+ * a {@link ForecastPublisher}.
+ *
+ * @param region   the queried {@link Region}
+ * @param day      the queried {@link Day}
+ * @param forecast the new {@link Forecast}
+ */
+public record ForecastUpdate(Region region, Day day, Forecast forecast) {
+}
@@ -1,5 +1,7 @@
 package ic.doc.forecast;
 
+import java.util.Set;
+
 /**
  * An interface representing the capacity to provide weather forecasts for a given region and day.
  */
@@ -13,4 +15,30 @@ public interface Forecaster {
    * @return the forecast for that {@code region} and {@code day}
    */
   Forecast forecastFor(Region region, Day day);
-}
\ No newline at end of file
+
+  /**
+   * Provides forecasts for every combination of the given regions and days. By default, this
+   * provides each forecast in turn; implementations may provide them more efficiently.
+   *
+   * @param regions the regions
+   * @param days    the days
+   * @return the grid of forecasts for every region in {@code regions} and day in {@code days}
+   * @throws NullPointerException if {@code regions} or {@code days} is null
+   */
+  default ForecastGrid forecastsFor(Set<Region> regions, Set<Day> days) {
+    if (regions == null) {
+      throw new NullPointerException("regions cannot be null");
+    }
+    if (days == null) {
+      throw new NullPointerException("days cannot be null");
+    }
+
+    ForecastGrid forecasts = new ForecastGrid();
+    for (Region region : regions) {
+      for (Day day : days) {
+        forecasts.put(region, day, forecastFor(region, day));
+      }
+    }
+    return forecasts;
+  }
+}
@@ -0,0 +1,177 @@
+package ic.doc.forecast;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A thread-safe collection of metrics for the forecaster decorators: counters of cache hits,
+ * misses, evictions and expirations, and a {@link LatencyHistogram} of upstream call latencies for
+ * each {@link Region}. Counters are striped {@link LongAdder} objects, so recording a cache hit
+ * costs a single uncontended increment, even when many threads hit the cache at once.
+ * <p>
+ * The metrics can be registered as JMX MBeans, under the {@code ic.doc.forecast} domain, so that
+ * they can be monitored in production.
+ */
+public final class ForecasterMetrics implements CacheStatistics {
+
+  private static final Region[] REGIONS = Region.values();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+  private final LatencyHistogram[] upstreamLatencies = new LatencyHistogram[REGIONS.length];
+
+  /**
+   * Constructs a set of metrics, with every counter and histogram empty.
+   */
+  public ForecasterMetrics() {
+    for (int i = 0; i < upstreamLatencies.length; i++) {
+      upstreamLatencies[i] = new LatencyHistogram();
+    }
+  }
+
+  /**
+   * Records a lookup which was served from the cache.
+   */
+  void recordHit() {
+    hits.increment();
+  }
+
+  /**
+   * Records a lookup which could not be served from the cache.
+   */
+  void recordMiss() {
+    misses.increment();
+  }
+
+  /**
+   * Records an entry being evicted to keep a size-limited cache within its limit.
+   */
+  void recordEviction() {
+    evictions.increment();
+  }
+
+  /**
+   * Records an expired entry being removed from the cache.
+   */
+  void recordExpiration() {
+    expirations.increment();
+  }
+
+  /**
+   * Records the latency of a call to the upstream forecast service.
+   *
+   * @param region the {@link Region} of the query
+   * @param nanos  the latency in nanoseconds
+   */
+  void recordUpstreamLatency(Region region, long nanos) {
+    upstreamLatencies[region.ordinal()].record(nanos);
+  }
+
+  /**
+   * Returns the histogram of upstream call latencies for a {@link Region}.
+   *
+   * @param region the {@link Region}
+   * @return the {@link LatencyHistogram}
+   * @throws NullPointerException if {@code region} is null
+   */
+  public LatencyHistogram upstreamLatency(Region region) throws NullPointerException {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+
+    return upstreamLatencies[region.ordinal()];
+  }
+
+  @Override
+  public long getHits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public double getHitRatio() {
+    long currentHits = hits.sum();
+    long lookups = currentHits + misses.sum();
+    return lookups == 0 ? 0 : (double) currentHits / lookups;
+  }
+
+  @Override
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  @Override
+  public long getExpirations() {
+    return expirations.sum();
+  }
+
+  /**
+   * Registers these metrics with the platform MBean server, as one {@link CacheStatistics} MBean,
+   * and one {@link LatencyStatistics} MBean for each {@link Region}, all tagged with a name.
+   *
+   * @param name the name distinguishing these metrics from those of other forecasters
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if any of the MBeans cannot be registered
+   */
+  public void registerMBeans(String name) throws NullPointerException, JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    server.registerMBean(this, cacheStatisticsName(name));
+    for (Region region : REGIONS) {
+      server.registerMBean(upstreamLatencies[region.ordinal()],
+          upstreamLatencyName(name, region));
+    }
+  }
+
+  /**
+   * Unregisters these metrics from the platform MBean server, after they were registered by
+   * {@link #registerMBeans(String)} with the same name.
+   *
+   * @param name the name the metrics were registered with
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if any of the MBeans cannot be unregistered
+   */
+  public void unregisterMBeans(String name) throws NullPointerException, JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    server.unregisterMBean(cacheStatisticsName(name));
+    for (Region region : REGIONS) {
+      server.unregisterMBean(upstreamLatencyName(name, region));
+    }
+  }
+
+  /**
+   * Makes the JMX object name of the {@link CacheStatistics} MBean.
+   *
+   * @param name the name of the metrics
+   * @return the object name
+   * @throws JMException if the name is malformed
+   */
+  static ObjectName cacheStatisticsName(String name) throws JMException {
+    return MBeanNames.objectName("CacheStatistics", name);
+  }
+
+  /**
+   * Makes the JMX object name of the {@link LatencyStatistics} MBean for a {@link Region}.
+   *
+   * @param name   the name of the metrics
+   * @param region the {@link Region}
+   * @return the object name
+   * @throws JMException if the name is malformed
+   */
+  static ObjectName upstreamLatencyName(String name, Region region) throws JMException {
+    if (name == null) {
+      throw new NullPointerException("name cannot be null");
+    }
+
+    return new ObjectName(MBeanNames.DOMAIN + ":type=UpstreamLatency,name="
+        + ObjectName.quote(name) + ",region=" + region);
+  }
+}
@@ -0,0 +1,91 @@
+package ic.doc.forecast;
+
+/**
+ * A count-min sketch estimating how often each {@link ForecastCache} slot has been used recently.
+ * Each slot hashes to one small saturating counter in each of several rows, and its estimate is the
+ * smallest of those counters. Once enough uses have been recorded, every counter is halved, so
+ * that the estimates favour recent history.
+ */
+final class FrequencySketch {
+
+  private static final int DEPTH = 4;
+  private static final int MAX_COUNT = 15;
+  private static final int SAMPLE_SIZE_FACTOR = 10;
+  private static final int[] SEEDS = {0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0xcbf29ce5};
+
+  private final int widthMask;
+  private final byte[][] counters;
+  private final int sampleSize;
+  private int additions;
+
+  /**
+   * Constructs an empty sketch for a cache of a given size limit. The sketch is as wide as the
+   * number of distinct slots, and is aged after ten times as many uses as the size limit.
+   *
+   * @param maxSize the maximum number of entries in the cache
+   */
+  FrequencySketch(int maxSize) {
+    int width = Integer.highestOneBit(ForecastCache.CAPACITY - 1) << 1;
+    this.widthMask = width - 1;
+    this.counters = new byte[DEPTH][width];
+    this.sampleSize = SAMPLE_SIZE_FACTOR * maxSize;
+  }
+
+  /**
+   * Estimates how often a slot has been used recently.
+   *
+   * @param index the slot index
+   * @return the estimated use count
+   */
+  int frequency(int index) {
+    int frequency = MAX_COUNT;
+    for (int row = 0; row < DEPTH; row++) {
+      frequency = Math.min(frequency, counters[row][indexOf(row, index)]);
+    }
+    return frequency;
+  }
+
+  /**
+   * Records a use of a slot, ageing the sketch if enough uses have been recorded.
+   *
+   * @param index the slot index
+   */
+  void increment(int index) {
+    boolean added = false;
+    for (int row = 0; row < DEPTH; row++) {
+      int column = indexOf(row, index);
+      if (counters[row][column] < MAX_COUNT) {
+        counters[row][column]++;
+        added = true;
+      }
+    }
+
+    if (added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Halves every counter, and the number of uses recorded since the last reset.
+   */
+  private void reset() {
+    for (byte[] row : counters) {
+      for (int column = 0; column < row.length; column++) {
+        row[column] >>>= 1;
+      }
+    }
+    additions >>>= 1;
+  }
+
+  /**
+   * Hashes a slot to its counter in a row.
+   *
+   * @param row   the row
+   * @param index the slot index
+   * @return the counter's position in the row
+   */
+  private int indexOf(int row, int index) {
+    int hash = (index + 1) * SEEDS[row];
+    return (hash ^ (hash >>> 16)) & widthMask;
+  }
+}
@@ -0,0 +1,258 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.indexOf;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * A decorator around two {@link Forecaster} objects backed by separate instances of the forecast
+ * service, which hedges slow requests to cut tail latency. Each request goes to the primary
+ * {@link Forecaster} first, and if it has not answered within a percentile of recent latencies, or
+ * has failed, a duplicate request goes to the secondary {@link Forecaster}, and whichever answers
+ * first wins. Requests which are still outstanding afterwards are interrupted.
+ * <p>
+ * Every request is bounded by a hard timeout, after which the last {@link Forecast} received for
+ * the same query is served, flagged as {@link Forecast#stale() stale}, if enabled, or a
+ * {@link ForecastUnavailableException} is thrown.
+ * <p>
+ * Latencies are tracked online in windows of recent requests, and the hedge delay is recomputed at
+ * the end of each window, so it adapts as the forecast service speeds up or slows down. Only one
+ * latency is recorded per caller, measured from when the caller started until the winning response
+ * arrived. Interrupted requests are never recorded, since the forecast service swallows interrupts
+ * and returns early, which would otherwise drag the hedge delay down.
+ */
+public final class HedgingForecaster implements Forecaster {
+
+  private static final int SAMPLE_WINDOW = 100;
+
+  private final Forecaster primary;
+  private final Forecaster secondary;
+  private final HedgingOptions options;
+  private final AtomicReference<LatencyHistogram> recentLatencies =
+      new AtomicReference<>(new LatencyHistogram());
+  private final AtomicReferenceArray<Forecast> lastKnownForecasts =
+      new AtomicReferenceArray<>(ForecastCache.CAPACITY);
+  private volatile long hedgeDelayNanos;
+
+  /**
+   * Constructs a hedging {@link Forecaster} decorator.
+   *
+   * @param primary   the {@link Forecaster} object which receives every request first
+   * @param secondary the {@link Forecaster} object which receives duplicates of slow requests
+   * @param options   optional {@link HedgingOptions} object to configure the hedging with
+   * @throws NullPointerException if {@code primary} or {@code secondary} is null
+   */
+  public HedgingForecaster(Forecaster primary, Forecaster secondary, HedgingOptions options) {
+    if (primary == null) {
+      throw new NullPointerException("primary cannot be null");
+    }
+    if (secondary == null) {
+      throw new NullPointerException("secondary cannot be null");
+    }
+
+    this.primary = primary;
+    this.secondary = secondary;
+    this.options = options == null ? HedgingOptions.defaults() : options;
+    this.hedgeDelayNanos = this.options.initialHedgeDelay().toNanos();
+  }
+
+  /**
+   * Creates a hedging {@link Forecaster} decorator.
+   *
+   * @param primary   the {@link Forecaster} object which receives every request first
+   * @param secondary the {@link Forecaster} object which receives duplicates of slow requests
+   * @param options   optional {@link HedgingOptions} object to configure the hedging with
+   * @return the hedging {@link Forecaster}
+   * @throws NullPointerException if {@code primary} or {@code secondary} is null
+   */
+  public static Forecaster hedge(Forecaster primary, Forecaster secondary, HedgingOptions options)
+      throws NullPointerException {
+    return new HedgingForecaster(primary, secondary, options);
+  }
+
+  /**
+   * Creates a hedging {@link Forecaster} decorator around two instances of the forecast service,
+   * with the default {@link HedgingOptions}.
+   *
+   * @param primary   the {@link com.weather.Forecaster} object which receives every request first
+   * @param secondary the {@link com.weather.Forecaster} object which receives duplicates of slow
+   *                  requests
+   * @return the hedging {@link Forecaster}
+   * @throws NullPointerException if {@code primary} or {@code secondary} is null
+   */
+  public static Forecaster hedge(com.weather.Forecaster primary, com.weather.Forecaster secondary)
+      throws NullPointerException {
+    return new HedgingForecaster(WeatherForecasterAdapter.adapt(primary),
+        WeatherForecasterAdapter.adapt(secondary), null);
+  }
+
+  /**
+   * Returns how long a request currently waits before a duplicate is sent.
+   *
+   * @return the current hedge delay
+   */
+  public Duration hedgeDelay() {
+    return Duration.ofNanos(hedgeDelayNanos);
+  }
+
+  @Override
+  public Forecast forecastFor(Region region, Day day) {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+    if (day == null) {
+      throw new NullPointerException("day cannot be null");
+    }
+
+    long start = System.nanoTime();
+    long timeoutNanos = options.timeout().toNanos();
+    Attempt first = Attempt.start(primary, region, day);
+    Attempt second = null;
+    try {
+      // wait for the primary to answer, until the hedge delay passes, or until it fails
+      try {
+        return recordSuccess(region, day, start,
+            first.response.get(Math.min(hedgeDelayNanos, timeoutNanos), TimeUnit.NANOSECONDS));
+      } catch (TimeoutException | ExecutionException e) {
+        if (System.nanoTime() - start >= timeoutNanos) {
+          return fallBack(region, day);
+        }
+      }
+
+      // then send a duplicate, and take whichever answers first
+      second = Attempt.start(secondary, region, day);
+      CompletableFuture<Forecast> winner = first.response.isCompletedExceptionally()
+          ? second.response : firstSuccessOf(first.response, second.response);
+      try {
+        return recordSuccess(region, day, start,
+            winner.get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS));
+      } catch (TimeoutException e) {
+        return fallBack(region, day);
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof RuntimeException cause ? cause
+            : new ForecastUnavailableException("Forecast request failed", e.getCause());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ForecastUnavailableException("Interrupted waiting for a forecast", e);
+    } finally {
+      first.cancel();
+      if (second != null) {
+        second.cancel();
+      }
+    }
+  }
+
+  /**
+   * Serves the last known {@link Forecast} for a query which has timed out, if enabled. It is
+   * flagged as stale, so that a caching proxy in front does not cache it as a fresh forecast.
+   *
+   * @param region the {@link Region} of the query
+   * @param day    the {@link Day} of the query
+   * @return the last known {@link Forecast}, flagged as stale
+   * @throws ForecastUnavailableException if there is no last known {@link Forecast} to serve
+   */
+  private Forecast fallBack(Region region, Day day) {
+    Forecast lastKnown = lastKnownForecasts.get(indexOf(region, day));
+    if (!options.fallbackToLastKnown() || lastKnown == null) {
+      throw new ForecastUnavailableException(
+          "Forecast request timed out after " + options.timeout());
+    }
+    return lastKnown.asStale();
+  }
+
+  /**
+   * Records the response served to a caller, adding its end-to-end latency to the current window,
+   * and recomputing the hedge delay once the window is full.
+   *
+   * @param region   the {@link Region} of the query
+   * @param day      the {@link Day} of the query
+   * @param start    the time at which the caller started, from {@link System#nanoTime()}
+   * @param forecast the {@link Forecast} served
+   * @return the {@link Forecast} served
+   */
+  private Forecast recordSuccess(Region region, Day day, long start, Forecast forecast) {
+    long nanos = System.nanoTime() - start;
+    lastKnownForecasts.set(indexOf(region, day), forecast);
+
+    LatencyHistogram window = recentLatencies.get();
+    window.record(nanos);
+    if (window.getCount() >= SAMPLE_WINDOW
+        && recentLatencies.compareAndSet(window, new LatencyHistogram())) {
+      hedgeDelayNanos = Math.max(1, window.valueAtPercentile(options.hedgePercentile()));
+    }
+    return forecast;
+  }
+
+  /**
+   * Combines two responses into one which completes with whichever succeeds first, or fails once
+   * both have failed.
+   *
+   * @param first  the first response
+   * @param second the second response
+   * @return the combined response
+   */
+  private static CompletableFuture<Forecast> firstSuccessOf(CompletableFuture<Forecast> first,
+      CompletableFuture<Forecast> second) {
+    CompletableFuture<Forecast> winner = new CompletableFuture<>();
+    AtomicInteger failures = new AtomicInteger();
+    BiConsumer<Forecast, Throwable> race = (forecast, failure) -> {
+      if (failure == null) {
+        winner.complete(forecast);
+      } else if (failures.incrementAndGet() == 2) {
+        winner.completeExceptionally(failure);
+      }
+    };
+    first.whenComplete(race);
+    second.whenComplete(race);
+    return winner;
+  }
+
+  /**
+   * A request in flight to one of the {@link Forecaster} objects, running on its own virtual
+   * thread so that it can be interrupted if it loses. Once cancelled, its response is never used,
+   * since an interrupted request may still return normally.
+   *
+   * @param response the response to the request
+   * @param thread   the thread making the request
+   */
+  private record Attempt(CompletableFuture<Forecast> response, Thread thread) {
+
+    /**
+     * Starts a request on a new virtual thread.
+     *
+     * @param forecaster the {@link Forecaster} to send the request to
+     * @param region     the {@link Region} of the query
+     * @param day        the {@link Day} of the query
+     * @return the request in flight
+     */
+    static Attempt start(Forecaster forecaster, Region region, Day day) {
+      CompletableFuture<Forecast> response = new CompletableFuture<>();
+      Thread thread = Thread.startVirtualThread(() -> {
+        try {
+          response.complete(forecaster.forecastFor(region, day));
+        } catch (RuntimeException | Error e) {
+          response.completeExceptionally(e);
+        }
+      });
+      return new Attempt(response, thread);
+    }
+
+    /**
+     * Interrupts the request if it is still outstanding, and discards whatever it returns.
+     */
+    void cancel() {
+      if (response.cancel(false)) {
+        thread.interrupt();
+      }
+    }
+  }
+}
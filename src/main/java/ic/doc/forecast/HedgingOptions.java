@@ -0,0 +1,100 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+
+/**
+ * A record representing the behaviour of a {@link HedgingForecaster}.
+ *
+ * @param hedgePercentile     the percentile of recent upstream latencies after which a duplicate
+ *                            request is sent. Must be greater than zero, and at most one
+ * @param initialHedgeDelay   how long to wait before sending a duplicate request, until enough
+ *                            latencies have been observed to compute the percentile
+ * @param timeout             the maximum time to wait for a {@link Forecast}, including any
+ *                            duplicate request
+ * @param fallbackToLastKnown whether to serve the last {@link Forecast} received for a query when
+ *                            a request for it times out, rather than failing
+ */
+public record HedgingOptions(double hedgePercentile, Duration initialHedgeDelay, Duration timeout,
+    boolean fallbackToLastKnown) {
+
+  private static final HedgingOptions DEFAULTS =
+      new HedgingOptions(0.95, Duration.ofSeconds(8), Duration.ofSeconds(15), true);
+
+  /**
+   * Constructs a set of hedging options.
+   *
+   * @throws NullPointerException     if any of the durations are null
+   * @throws IllegalArgumentException if {@code hedgePercentile} is not greater than zero and at
+   *                                  most one, or if any of the durations are not positive
+   */
+  public HedgingOptions {
+    if (initialHedgeDelay == null) {
+      throw new NullPointerException("initialHedgeDelay cannot be null");
+    }
+    if (timeout == null) {
+      throw new NullPointerException("timeout cannot be null");
+    }
+    if (!(hedgePercentile > 0 && hedgePercentile <= 1)) {
+      throw new IllegalArgumentException("Hedge percentile must be between zero and one");
+    }
+    if (initialHedgeDelay.isNegative() || initialHedgeDelay.isZero()) {
+      throw new IllegalArgumentException("Initial hedge delay must be positive");
+    }
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("Timeout must be positive");
+    }
+  }
+
+  /**
+   * Provides the default hedging options, where a duplicate request is sent once a request has
+   * taken longer than 95% of recent requests, or eight seconds until enough requests have been
+   * observed. Requests time out after fifteen seconds, in which case the last known
+   * {@link Forecast} is served if there is one.
+   *
+   * @return the default hedging options
+   */
+  public static HedgingOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Copies these options, but with a different hedge percentile.
+   *
+   * @param hedgePercentile the percentile of recent latencies after which a duplicate is sent
+   * @return the new options
+   */
+  public HedgingOptions withHedgePercentile(double hedgePercentile) {
+    return new HedgingOptions(hedgePercentile, initialHedgeDelay, timeout, fallbackToLastKnown);
+  }
+
+  /**
+   * Copies these options, but with a different initial hedge delay.
+   *
+   * @param initialHedgeDelay how long to wait before sending a duplicate request, at first
+   * @return the new options
+   */
+  public HedgingOptions withInitialHedgeDelay(Duration initialHedgeDelay) {
+    return new HedgingOptions(hedgePercentile, initialHedgeDelay, timeout, fallbackToLastKnown);
+  }
+
+  /**
+   * Copies these options, but with a different timeout.
+   *
+   * @param timeout the maximum time to wait for a {@link Forecast}
+   * @return the new options
+   */
+  public HedgingOptions withTimeout(Duration timeout) {
+    return new HedgingOptions(hedgePercentile, initialHedgeDelay, timeout, fallbackToLastKnown);
+  }
+
+  /**
+   * Copies these options, but with a different choice of whether to serve the last known
+   * {@link Forecast} on timeout.
+   *
+   * @param fallbackToLastKnown whether to serve the last known {@link Forecast} on timeout
+   * @return the new options
+   */
+  public HedgingOptions withFallbackToLastKnown(boolean fallbackToLastKnown) {
+    return new HedgingOptions(hedgePercentile, initialHedgeDelay, timeout, fallbackToLastKnown);
+  }
+}
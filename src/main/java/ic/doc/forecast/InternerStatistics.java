@@ -0,0 +1,39 @@
+package ic.doc.forecast;
+
+import javax.management.MXBean;
+
+/**
+ * The management interface through which the state of a {@link ForecastInterner} is exposed over
+ * JMX.
+ */
+@MXBean
+public interface InternerStatistics {
+
+  /**
+   * Counts the canonical summaries and {@link Forecast} objects held by the interner.
+   *
+   * @return the number of interned objects
+   */
+  int getSize();
+
+  /**
+   * Estimates the memory held by the interner, including its table entries.
+   *
+   * @return the estimated number of bytes used
+   */
+  long getBytesUsed();
+
+  /**
+   * Returns the cap on the memory held by the interner.
+   *
+   * @return the maximum number of bytes used
+   */
+  long getMaxBytes();
+
+  /**
+   * Estimates the memory saved by handing out canonical instances in place of duplicates.
+   *
+   * @return the estimated number of bytes saved
+   */
+  long getBytesSaved();
+}
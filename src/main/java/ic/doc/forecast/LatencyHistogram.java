@@ -0,0 +1,136 @@
+package ic.doc.forecast;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of latencies in the style of an HDR histogram. Latencies are counted in
+ * log-linear buckets: every power of two is split into the same number of linear sub-buckets, so
+ * any latency from a nanosecond to centuries is recorded with a relative error of about three
+ * percent, in a fixed amount of memory, without allocating.
+ */
+public final class LatencyHistogram implements LatencyStatistics {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+  private static final int BUCKETS =
+      LINEAR_BUCKETS + (Long.SIZE - 2 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+  private static final double MEDIAN = 0.5;
+  private static final double P99 = 0.99;
+  private static final double P999 = 0.999;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a latency. Negative latencies, which can only come from a misbehaving clock, are
+   * recorded as zero.
+   *
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    nanos = Math.max(nanos, 0);
+    counts.incrementAndGet(bucketOf(nanos));
+    count.increment();
+    total.add(nanos);
+    max.accumulate(nanos);
+  }
+
+  /**
+   * Estimates the latency below which a given proportion of the recorded latencies fall. The
+   * estimate is the highest latency in the bucket containing that percentile, so it is never an
+   * underestimate by more than the histogram's precision.
+   *
+   * @param percentile the proportion, between zero and one
+   * @return the latency in nanoseconds, or zero if none have been recorded
+   * @throws IllegalArgumentException if {@code percentile} is not between zero and one
+   */
+  public long valueAtPercentile(double percentile) throws IllegalArgumentException {
+    if (!(percentile >= 0 && percentile <= 1)) {
+      throw new IllegalArgumentException("Percentile must be between zero and one");
+    }
+
+    // the counts may change while they are summed, so never look for more than were seen
+    long[] snapshot = new long[BUCKETS];
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      snapshot[bucket] = counts.get(bucket);
+      seen += snapshot[bucket];
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile * seen));
+
+    long cumulative = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      cumulative += snapshot[bucket];
+      if (cumulative >= rank) {
+        return Math.min(highestValueIn(bucket), getMaxNanos());
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+
+  @Override
+  public double getMeanNanos() {
+    long recorded = count.sum();
+    return recorded == 0 ? 0 : (double) total.sum() / recorded;
+  }
+
+  @Override
+  public long getMaxNanos() {
+    return max.get();
+  }
+
+  @Override
+  public long getMedianNanos() {
+    return valueAtPercentile(MEDIAN);
+  }
+
+  @Override
+  public long getP99Nanos() {
+    return valueAtPercentile(P99);
+  }
+
+  @Override
+  public long getP999Nanos() {
+    return valueAtPercentile(P999);
+  }
+
+  /**
+   * Finds the bucket counting a latency. Small latencies each have their own bucket, while larger
+   * ones share a bucket with the other latencies in the same sub-bucket of their power of two.
+   *
+   * @param nanos the latency in nanoseconds. Must not be negative
+   * @return the bucket
+   */
+  private static int bucketOf(long nanos) {
+    if (nanos < LINEAR_BUCKETS) {
+      return (int) nanos;
+    }
+    int shift = Long.SIZE - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS - 1;
+    return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (nanos >>> shift) - SUB_BUCKETS;
+  }
+
+  /**
+   * Finds the highest latency counted by a bucket.
+   *
+   * @param bucket the bucket
+   * @return the latency in nanoseconds
+   */
+  private static long highestValueIn(int bucket) {
+    if (bucket < LINEAR_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+    long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
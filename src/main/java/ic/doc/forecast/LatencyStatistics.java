@@ -0,0 +1,53 @@
+package ic.doc.forecast;
+
+import javax.management.MXBean;
+
+/**
+ * The management interface through which a {@link LatencyHistogram} is exposed over JMX. All
+ * latencies are in nanoseconds.
+ */
+@MXBean
+public interface LatencyStatistics {
+
+  /**
+   * Counts the recorded latencies.
+   *
+   * @return the number of recorded latencies
+   */
+  long getCount();
+
+  /**
+   * Computes the mean of the recorded latencies.
+   *
+   * @return the mean latency, or zero if none have been recorded
+   */
+  double getMeanNanos();
+
+  /**
+   * Finds the largest recorded latency.
+   *
+   * @return the maximum latency, or zero if none have been recorded
+   */
+  long getMaxNanos();
+
+  /**
+   * Estimates the median of the recorded latencies.
+   *
+   * @return the median latency
+   */
+  long getMedianNanos();
+
+  /**
+   * Estimates the 99th percentile of the recorded latencies.
+   *
+   * @return the 99th percentile latency
+   */
+  long getP99Nanos();
+
+  /**
+   * Estimates the 99.9th percentile of the recorded latencies.
+   *
+   * @return the 99.9th percentile latency
+   */
+  long getP999Nanos();
+}
@@ -0,0 +1,54 @@
+package ic.doc.forecast;
+
+/**
+ * The {@link Evictor} for {@link EvictionPolicy#LFU}, which keeps slots in one queue per use count,
+ * each ordered by recency. Use counts saturate at a small maximum, so finding the least frequently
+ * used slot only ever needs to look at a bounded number of queues.
+ */
+final class LfuEvictor implements Evictor {
+
+  private static final int MAX_FREQUENCY = 15;
+
+  private final int maxSize;
+  private final SlotLists lists = new SlotLists(MAX_FREQUENCY + 1);
+  private int size;
+
+  /**
+   * Constructs the bookkeeping for a cache of a given size limit.
+   *
+   * @param maxSize the maximum number of entries
+   */
+  LfuEvictor(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public int recordInsertion(int index) {
+    int victim = NONE;
+    if (size < maxSize) {
+      size++;
+    } else {
+      for (int frequency = 1; victim == NONE; frequency++) {
+        victim = lists.removeFirst(frequency);
+      }
+    }
+    lists.moveToLast(1, index);
+    return victim;
+  }
+
+  @Override
+  public void recordUpdate(int index) {
+    recordAccess(index);
+  }
+
+  @Override
+  public void recordAccess(int index) {
+    lists.moveToLast(Math.min(lists.listOf(index) + 1, MAX_FREQUENCY), index);
+  }
+
+  @Override
+  public void recordRemoval(int index) {
+    lists.remove(index);
+    size--;
+  }
+}
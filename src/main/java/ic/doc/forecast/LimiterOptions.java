@@ -0,0 +1,101 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+
+/**
+ * A record representing the behaviour of a {@link ConcurrencyLimiter}.
+ *
+ * @param initialLimit the number of requests allowed in flight at first, before the limit has
+ *                     adapted to the forecast service
+ * @param minLimit     the lowest the limit can fall. Must be greater than zero
+ * @param maxLimit     the highest the limit can rise
+ * @param maxQueueSize the maximum number of requests which can wait for another to finish. Zero
+ *                     sheds every request over the limit straight away
+ * @param maxQueueWait the maximum time a request waits in the queue before it is shed
+ */
+public record LimiterOptions(int initialLimit, int minLimit, int maxLimit, int maxQueueSize,
+    Duration maxQueueWait) {
+
+  private static final LimiterOptions DEFAULTS =
+      new LimiterOptions(10, 1, 200, 100, Duration.ofSeconds(1));
+
+  /**
+   * Constructs a set of limiter options.
+   *
+   * @throws NullPointerException     if {@code maxQueueWait} is null
+   * @throws IllegalArgumentException if {@code minLimit} is not greater than zero, if
+   *                                  {@code initialLimit} is not between {@code minLimit} and
+   *                                  {@code maxLimit}, or if {@code maxQueueSize} or
+   *                                  {@code maxQueueWait} is negative
+   */
+  public LimiterOptions {
+    if (maxQueueWait == null) {
+      throw new NullPointerException("maxQueueWait cannot be null");
+    }
+    if (minLimit <= 0) {
+      throw new IllegalArgumentException("Minimum limit must be greater than zero");
+    }
+    if (initialLimit < minLimit || initialLimit > maxLimit) {
+      throw new IllegalArgumentException(
+          "Initial limit must be between the minimum and maximum limits");
+    }
+    if (maxQueueSize < 0) {
+      throw new IllegalArgumentException("Maximum queue size cannot be negative");
+    }
+    if (maxQueueWait.isNegative()) {
+      throw new IllegalArgumentException("Maximum queue wait cannot be negative");
+    }
+  }
+
+  /**
+   * Provides the default limiter options, where ten requests are allowed in flight at first, and
+   * the limit then adapts between one and two hundred. Up to a hundred requests over the limit
+   * wait for up to a second each, before being shed.
+   *
+   * @return the default limiter options
+   */
+  public static LimiterOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Copies these options, but with a different initial limit.
+   *
+   * @param initialLimit the number of requests allowed in flight at first
+   * @return the new options
+   */
+  public LimiterOptions withInitialLimit(int initialLimit) {
+    return new LimiterOptions(initialLimit, minLimit, maxLimit, maxQueueSize, maxQueueWait);
+  }
+
+  /**
+   * Copies these options, but with different bounds on the limit.
+   *
+   * @param minLimit the lowest the limit can fall
+   * @param maxLimit the highest the limit can rise
+   * @return the new options
+   */
+  public LimiterOptions withLimits(int minLimit, int maxLimit) {
+    return new LimiterOptions(initialLimit, minLimit, maxLimit, maxQueueSize, maxQueueWait);
+  }
+
+  /**
+   * Copies these options, but with a different maximum queue size.
+   *
+   * @param maxQueueSize the maximum number of requests which can wait for another to finish
+   * @return the new options
+   */
+  public LimiterOptions withMaxQueueSize(int maxQueueSize) {
+    return new LimiterOptions(initialLimit, minLimit, maxLimit, maxQueueSize, maxQueueWait);
+  }
+
+  /**
+   * Copies these options, but with a different maximum queue wait.
+   *
+   * @param maxQueueWait the maximum time a request waits in the queue
+   * @return the new options
+   */
+  public LimiterOptions withMaxQueueWait(Duration maxQueueWait) {
+    return new LimiterOptions(initialLimit, minLimit, maxLimit, maxQueueSize, maxQueueWait);
+  }
+}
@@ -0,0 +1,39 @@
+package ic.doc.forecast;
+
+import javax.management.MXBean;
+
+/**
+ * The management interface through which the state of a {@link ConcurrencyLimiter} is exposed over
+ * JMX.
+ */
+@MXBean
+public interface LimiterStatistics {
+
+  /**
+   * Returns the current limit on the number of requests in flight to the forecast service.
+   *
+   * @return the concurrency limit
+   */
+  int getLimit();
+
+  /**
+   * Counts the requests currently in flight to the forecast service.
+   *
+   * @return the number of requests in flight
+   */
+  int getInFlight();
+
+  /**
+   * Counts the requests currently queued, waiting for another request to finish.
+   *
+   * @return the queue depth
+   */
+  int getQueueDepth();
+
+  /**
+   * Counts the requests which were shed, because the queue was full or they waited too long.
+   *
+   * @return the number of shed requests
+   */
+  long getShed();
+}
@@ -0,0 +1,34 @@
+package ic.doc.forecast;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Makes the JMX object names the forecaster decorators register their MBeans under, all in the
+ * {@code ic.doc.forecast} domain, so that each decorator names its own MBean without them having
+ * to agree on the format.
+ */
+final class MBeanNames {
+
+  static final String DOMAIN = "ic.doc.forecast";
+
+  private MBeanNames() {
+  }
+
+  /**
+   * Makes the JMX object name of an MBean.
+   *
+   * @param type the type of the MBean, which identifies the kind of decorator exposing it
+   * @param name the name distinguishing the decorator from others of its kind
+   * @return the object name
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the name is malformed
+   */
+  static ObjectName objectName(String type, String name) throws JMException {
+    if (name == null) {
+      throw new NullPointerException("name cannot be null");
+    }
+
+    return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+  }
+}
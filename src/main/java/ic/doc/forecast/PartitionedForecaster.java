@@ -0,0 +1,434 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.dayOf;
+import static ic.doc.forecast.ForecastCache.indexOf;
+import static ic.doc.forecast.ForecastCache.regionOf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A node of a forecast cache partitioned across a cluster, so that each query is only ever
+ * requested from the forecast service by the node which owns it. Queries are assigned to owners by
+ * a consistent hash ring over the cluster members. A node serves the queries it owns from its own
+ * {@link CachingForecasterProxy}, and fetches every other query from its owner over a lightweight
+ * socket protocol, rather than calling the forecast service itself.
+ * <p>
+ * Each node listens for requests from the other nodes, handling every connection on its own
+ * virtual thread. A request is the slot index of a query, as a single byte, and the response is a
+ * status byte, followed by either the {@link Forecast} encoded by a {@link ForecastCodec} behind an
+ * {@code int} length, or an error message. Connections to other nodes are pooled and kept open
+ * between requests.
+ * <p>
+ * If the owner of a query cannot be reached, the node falls back to its own cache, so that losing
+ * a node only costs extra requests to the forecast service, rather than failed queries. The
+ * cluster membership can be changed at any time, and only the queries gained or lost by the
+ * members which changed move to a different owner.
+ */
+public final class PartitionedForecaster implements Forecaster, AutoCloseable {
+
+  private static final byte STATUS_OK = 0;
+  private static final byte STATUS_ERROR = 1;
+  private static final int MAX_RESPONSE_BYTES = 1 << 20;
+  private static final int MAX_ERROR_CHARS = 1024;
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+  private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+
+  private final String nodeId;
+  private final CachingForecasterProxy localCache;
+  private final ForecastCodec codec;
+  private final ServerSocket serverSocket;
+  private final ClusterMember member;
+  private final Map<ClusterMember, Queue<Connection>> connectionPools = new ConcurrentHashMap<>();
+  private final Set<Socket> serverConnections = ConcurrentHashMap.newKeySet();
+  private final LongAdder remoteFetches = new LongAdder();
+  private final LongAdder remoteServes = new LongAdder();
+  private final LongAdder fallbacks = new LongAdder();
+  private final LongAdder connectionsOpened = new LongAdder();
+  private volatile ConsistentHashRing ring;
+
+  /**
+   * A pooled connection to another node.
+   *
+   * @param socket the socket
+   * @param input  the buffered input stream of the socket
+   * @param output the buffered output stream of the socket
+   */
+  private record Connection(Socket socket, DataInputStream input, DataOutputStream output) {
+
+    /**
+     * Wraps a connected socket.
+     *
+     * @param socket the socket
+     * @return the connection
+     * @throws IOException if the streams of the socket cannot be opened
+     */
+    static Connection of(Socket socket) throws IOException {
+      return new Connection(socket,
+          new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+    }
+
+    /**
+     * Closes the connection, ignoring any failure to do so.
+     */
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // the connection is being discarded anyway
+      }
+    }
+  }
+
+  /**
+   * Constructs a cluster node, and starts listening for requests from the other nodes. Until
+   * {@link #setMembers(Collection)} is called, the node is the only member of its cluster.
+   *
+   * @param nodeId      the name uniquely identifying this node within the cluster
+   * @param bindAddress the address to listen on, where a port of zero picks any free port
+   * @param localCache  the {@link CachingForecasterProxy} serving the queries this node owns
+   * @param codec       optional {@link ForecastCodec} to encode responses with. Every node must
+   *                    use the same dictionary
+   * @throws NullPointerException if {@code nodeId}, {@code bindAddress} or {@code localCache} is
+   *                              null
+   * @throws IOException          if the node cannot listen on {@code bindAddress}
+   */
+  public PartitionedForecaster(String nodeId, InetSocketAddress bindAddress,
+      CachingForecasterProxy localCache, ForecastCodec codec) throws IOException {
+    if (nodeId == null) {
+      throw new NullPointerException("nodeId cannot be null");
+    }
+    if (bindAddress == null) {
+      throw new NullPointerException("bindAddress cannot be null");
+    }
+    if (localCache == null) {
+      throw new NullPointerException("localCache cannot be null");
+    }
+
+    this.nodeId = nodeId;
+    this.localCache = localCache;
+    this.codec = codec == null ? new ForecastCodec(List.of()) : codec;
+    this.serverSocket = new ServerSocket();
+    this.serverSocket.bind(bindAddress);
+    this.member = new ClusterMember(nodeId, new InetSocketAddress(bindAddress.getAddress(),
+        serverSocket.getLocalPort()));
+    this.ring = new ConsistentHashRing(List.of(member));
+    Thread.ofVirtual().name("forecast-node-" + nodeId).start(this::acceptConnections);
+  }
+
+  /**
+   * Returns this node as a member of the cluster, with the address it is actually listening on.
+   *
+   * @return this node's {@link ClusterMember}
+   */
+  public ClusterMember member() {
+    return member;
+  }
+
+  /**
+   * Changes the members of the cluster, reassigning queries to their new owners. Every node should
+   * be given the same members, including itself, so that they agree on the owners. Pooled
+   * connections to nodes which have left the cluster, or moved to a different address, are
+   * closed.
+   *
+   * @param members the cluster members
+   * @throws NullPointerException     if {@code members} or any of its members are null
+   * @throws IllegalArgumentException if there are no members, or two members share an id
+   */
+  public void setMembers(Collection<ClusterMember> members)
+      throws NullPointerException, IllegalArgumentException {
+    ring = new ConsistentHashRing(members);
+
+    Set<ClusterMember> currentMembers = Set.copyOf(members);
+    connectionPools.keySet().removeIf(pooledMember -> {
+      if (currentMembers.contains(pooledMember)) {
+        return false;
+      }
+      Queue<Connection> pool = connectionPools.get(pooledMember);
+      if (pool != null) {
+        pool.forEach(Connection::close);
+      }
+      return true;
+    });
+  }
+
+  /**
+   * Finds the member of the cluster which owns a query.
+   *
+   * @param region the {@link Region} of the query
+   * @param day    the {@link Day} of the query
+   * @return the owning {@link ClusterMember}
+   * @throws NullPointerException if {@code region} or {@code day} is null
+   */
+  public ClusterMember ownerOf(Region region, Day day) throws NullPointerException {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+    if (day == null) {
+      throw new NullPointerException("day cannot be null");
+    }
+
+    return ring.ownerOf(indexOf(region, day));
+  }
+
+  /**
+   * Counts the queries this node fetched from their owners.
+   *
+   * @return the number of remote fetches
+   */
+  public long remoteFetches() {
+    return remoteFetches.sum();
+  }
+
+  /**
+   * Counts the queries this node served to the other nodes.
+   *
+   * @return the number of remote serves
+   */
+  public long remoteServes() {
+    return remoteServes.sum();
+  }
+
+  /**
+   * Counts the queries this node served from its own cache because their owner could not be
+   * reached.
+   *
+   * @return the number of fallbacks
+   */
+  public long fallbacks() {
+    return fallbacks.sum();
+  }
+
+  /**
+   * Counts the connections this node opened to the other nodes, which are pooled and reused
+   * until they fail.
+   *
+   * @return the number of connections opened
+   */
+  public long connectionsOpened() {
+    return connectionsOpened.sum();
+  }
+
+  @Override
+  public Forecast forecastFor(Region region, Day day) {
+    ClusterMember owner = ownerOf(region, day);
+    if (owner.id().equals(nodeId)) {
+      return localCache.forecastFor(region, day);
+    }
+
+    Forecast forecast;
+    try {
+      forecast = fetchFrom(owner, indexOf(region, day));
+    } catch (IOException e) {
+      fallbacks.increment();
+      return localCache.forecastFor(region, day);
+    }
+    remoteFetches.increment();
+    return forecast;
+  }
+
+  /**
+   * Stops listening for requests, and closes every connection to and from other nodes.
+   *
+   * @throws IOException if the listening socket cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    serverConnections.forEach(socket -> {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // the connection is being discarded anyway
+      }
+    });
+    connectionPools.values().forEach(pool -> pool.forEach(Connection::close));
+    connectionPools.clear();
+  }
+
+  /**
+   * Fetches a query from the node which owns it, over a pooled connection if there is one. The
+   * connection is returned to the pool afterwards, unless the request failed.
+   *
+   * @param owner the owning {@link ClusterMember}
+   * @param index the slot index of the query
+   * @return the {@link Forecast} served by the owner
+   * @throws IOException                  if the owner cannot be reached, or sends a malformed
+   *                                      response
+   * @throws ForecastUnavailableException if the owner could not get the {@link Forecast}
+   */
+  private Forecast fetchFrom(ClusterMember owner, int index) throws IOException {
+    Queue<Connection> pool =
+        connectionPools.computeIfAbsent(owner, pooledMember -> new ConcurrentLinkedQueue<>());
+    Connection connection = pool.poll();
+    if (connection == null) {
+      connection = connect(owner);
+      connectionsOpened.increment();
+    }
+
+    Forecast forecast;
+    try {
+      forecast = request(connection, owner, index);
+    } catch (ForecastUnavailableException e) {
+      // the owner sent a complete error response, so the connection is still usable
+      pool.offer(connection);
+      throw e;
+    } catch (IOException | RuntimeException e) {
+      connection.close();
+      throw e;
+    }
+    pool.offer(connection);
+    return forecast;
+  }
+
+  /**
+   * Sends a request for a query over a connection, and reads the response.
+   *
+   * @param connection the connection to the owner
+   * @param owner      the owning {@link ClusterMember}
+   * @param index      the slot index of the query
+   * @return the {@link Forecast} served by the owner
+   * @throws IOException                  if the connection fails, or the response is malformed
+   * @throws ForecastUnavailableException if the owner could not get the {@link Forecast}
+   */
+  private Forecast request(Connection connection, ClusterMember owner, int index)
+      throws IOException {
+    connection.output().writeByte(index);
+    connection.output().flush();
+
+    byte status = connection.input().readByte();
+    if (status == STATUS_ERROR) {
+      throw new ForecastUnavailableException("Cluster member " + owner.id()
+          + " could not get a forecast: " + connection.input().readUTF());
+    }
+    int length = connection.input().readInt();
+    if (status != STATUS_OK || length < 0 || length > MAX_RESPONSE_BYTES) {
+      throw new IOException("Malformed response from cluster member " + owner.id());
+    }
+
+    byte[] response = new byte[length];
+    connection.input().readFully(response);
+    Forecast[] forecast = new Forecast[1];
+    try {
+      codec.decode(ByteBuffer.wrap(response), (region, day, decoded) -> forecast[0] = decoded);
+    } catch (IllegalArgumentException | BufferUnderflowException e) {
+      throw new IOException("Malformed response from cluster member " + owner.id(), e);
+    }
+    return forecast[0];
+  }
+
+  /**
+   * Opens a new connection to another node.
+   *
+   * @param owner the {@link ClusterMember} to connect to
+   * @return the connection
+   * @throws IOException if the node cannot be reached
+   */
+  private static Connection connect(ClusterMember owner) throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setSoTimeout((int) READ_TIMEOUT.toMillis());
+      socket.connect(owner.address(), (int) CONNECT_TIMEOUT.toMillis());
+      return Connection.of(socket);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Accepts connections from other nodes until the listening socket is closed, serving each on
+   * its own virtual thread.
+   */
+  private void acceptConnections() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        serverConnections.add(socket);
+        Thread.ofVirtual().start(() -> serveConnection(socket));
+      } catch (SocketException e) {
+        // the listening socket has been closed
+        return;
+      } catch (IOException e) {
+        // a failed connection attempt does not stop this node from accepting others
+      }
+    }
+  }
+
+  /**
+   * Serves requests from another node over a single connection, until it is closed.
+   *
+   * @param socket the connection
+   */
+  private void serveConnection(Socket socket) {
+    try (socket) {
+      Connection connection = Connection.of(socket);
+      ByteBuffer buffer = ByteBuffer.allocate(256);
+      while (true) {
+        int index = connection.input().readUnsignedByte();
+        if (index >= ForecastCache.CAPACITY) {
+          return;
+        }
+
+        Forecast forecast;
+        try {
+          forecast = localCache.forecastFor(regionOf(index), dayOf(index));
+        } catch (RuntimeException e) {
+          connection.output().writeByte(STATUS_ERROR);
+          connection.output().writeUTF(errorMessage(e));
+          connection.output().flush();
+          continue;
+        }
+
+        int size = codec.encodedSize(forecast);
+        if (buffer.capacity() < size) {
+          buffer = ByteBuffer.allocate(size);
+        }
+        buffer.clear();
+        codec.encode(regionOf(index), dayOf(index), forecast, buffer);
+        connection.output().writeByte(STATUS_OK);
+        connection.output().writeInt(size);
+        connection.output().write(buffer.array(), 0, size);
+        connection.output().flush();
+        remoteServes.increment();
+      }
+    } catch (IOException e) {
+      // the other node has closed the connection, or this node is shutting down; either way,
+      // only this connection is affected
+    } finally {
+      serverConnections.remove(socket);
+    }
+  }
+
+  /**
+   * Describes a failure to get a {@link Forecast}, briefly enough to send to another node.
+   *
+   * @param failure the failure
+   * @return the error message
+   */
+  private static String errorMessage(RuntimeException failure) {
+    String message = String.valueOf(failure.getMessage());
+    return message.length() > MAX_ERROR_CHARS ? message.substring(0, MAX_ERROR_CHARS) : message;
+  }
+}
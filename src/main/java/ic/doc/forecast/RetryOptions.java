@@ -0,0 +1,96 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+
+/**
+ * A record representing the behaviour of a {@link RetryingForecaster}.
+ *
+ * @param maxAttempts    the most requests made for a single call, including the first. One
+ *                       disables retries
+ * @param initialBackoff the most time to wait before the first retry. Each retry after that may
+ *                       wait up to twice as long as the one before
+ * @param maxBackoff     the most time to wait before any retry
+ * @param failureTtl     how long a query which failed every attempt has its calls suppressed for.
+ *                       Zero disables negative caching
+ */
+public record RetryOptions(int maxAttempts, Duration initialBackoff, Duration maxBackoff,
+    Duration failureTtl) {
+
+  private static final RetryOptions DEFAULTS = new RetryOptions(3, Duration.ofMillis(100),
+      Duration.ofSeconds(2), Duration.ofSeconds(5));
+
+  /**
+   * Constructs a set of retry options.
+   *
+   * @throws NullPointerException     if any of the durations are null
+   * @throws IllegalArgumentException if {@code maxAttempts} is not greater than zero, if
+   *                                  {@code initialBackoff} is not positive, if
+   *                                  {@code maxBackoff} is less than {@code initialBackoff}, or if
+   *                                  {@code failureTtl} is negative
+   */
+  public RetryOptions {
+    if (initialBackoff == null) {
+      throw new NullPointerException("initialBackoff cannot be null");
+    }
+    if (maxBackoff == null) {
+      throw new NullPointerException("maxBackoff cannot be null");
+    }
+    if (failureTtl == null) {
+      throw new NullPointerException("failureTtl cannot be null");
+    }
+    if (maxAttempts <= 0) {
+      throw new IllegalArgumentException("Maximum attempts must be greater than zero");
+    }
+    if (initialBackoff.isNegative() || initialBackoff.isZero()) {
+      throw new IllegalArgumentException("Initial backoff must be positive");
+    }
+    if (maxBackoff.compareTo(initialBackoff) < 0) {
+      throw new IllegalArgumentException("Maximum backoff cannot be less than initial backoff");
+    }
+    if (failureTtl.isNegative()) {
+      throw new IllegalArgumentException("Failure time-to-live cannot be negative");
+    }
+  }
+
+  /**
+   * Provides the default retry options, where each call makes up to three attempts, waiting up to
+   * a tenth of a second before the first retry, and doubling that for each retry after, up to two
+   * seconds. A query which fails every attempt has its calls suppressed for five seconds.
+   *
+   * @return the default retry options
+   */
+  public static RetryOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Copies these options, but with a different number of attempts.
+   *
+   * @param maxAttempts the most requests made for a single call
+   * @return the new options
+   */
+  public RetryOptions withMaxAttempts(int maxAttempts) {
+    return new RetryOptions(maxAttempts, initialBackoff, maxBackoff, failureTtl);
+  }
+
+  /**
+   * Copies these options, but with different bounds on the time waited before each retry.
+   *
+   * @param initialBackoff the most time to wait before the first retry
+   * @param maxBackoff     the most time to wait before any retry
+   * @return the new options
+   */
+  public RetryOptions withBackoff(Duration initialBackoff, Duration maxBackoff) {
+    return new RetryOptions(maxAttempts, initialBackoff, maxBackoff, failureTtl);
+  }
+
+  /**
+   * Copies these options, but with a different time for which failed queries are suppressed.
+   *
+   * @param failureTtl how long a failed query has its calls suppressed for
+   * @return the new options
+   */
+  public RetryOptions withFailureTtl(Duration failureTtl) {
+    return new RetryOptions(maxAttempts, initialBackoff, maxBackoff, failureTtl);
+  }
+}
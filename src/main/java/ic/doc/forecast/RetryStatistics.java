@@ -0,0 +1,26 @@
+package ic.doc.forecast;
+
+import javax.management.MXBean;
+
+/**
+ * The management interface through which the state of a {@link RetryingForecaster} is exposed over
+ * JMX.
+ */
+@MXBean
+public interface RetryStatistics {
+
+  /**
+   * Counts the requests to the forecast service which were retries of a failed request.
+   *
+   * @return the number of retries
+   */
+  long getRetries();
+
+  /**
+   * Counts the calls which failed straight away, without a request to the forecast service,
+   * because the same query had recently failed.
+   *
+   * @return the number of suppressed calls
+   */
+  long getSuppressed();
+}
@@ -0,0 +1,269 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.indexOf;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A decorator around a {@link Forecaster} object, which retries failed requests to the forecast
+ * service, and stops a query which keeps failing from hammering it. Each retry waits for a random
+ * time of up to an exponentially growing, capped backoff, so that callers which failed together do
+ * not all retry together.
+ * <p>
+ * Once a query has failed every attempt, its failure is cached for a short time, during which
+ * calls for the same query fail straight away with a {@link ForecastUnavailableException}, caused
+ * by a copy of the original failure, without a request to the forecast service. Each call gets its
+ * own copy, so that no two callers ever share an exception instance. The first successful request
+ * afterwards clears it.
+ * <p>
+ * A {@link ForecastUnavailableException} from the proxied {@link Forecaster} is neither retried
+ * nor cached, as it means the forecast service is being protected from further requests by
+ * something which already fails fast, and which should decide for itself when to let requests
+ * through again.
+ */
+public final class RetryingForecaster implements Forecaster, RetryStatistics {
+
+  private final Forecaster forecaster;
+  private final RetryOptions options;
+  private final InstantSource instantSource;
+  private final RandomGenerator random;
+  private final AtomicReferenceArray<Failure> failures =
+      new AtomicReferenceArray<>(ForecastCache.CAPACITY);
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder suppressed = new LongAdder();
+
+  /**
+   * A record representing a query which failed every attempt.
+   *
+   * @param cause  a copy of the failure of the last attempt, which is never thrown itself
+   * @param expiry the time after which calls for the query are no longer suppressed
+   */
+  private record Failure(RuntimeException cause, Instant expiry) {
+  }
+
+  /**
+   * Constructs a retrying {@link Forecaster} decorator.
+   *
+   * @param forecaster    the {@link Forecaster} object to retry requests to
+   * @param options       optional {@link RetryOptions} object to configure the retries with
+   * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  public RetryingForecaster(Forecaster forecaster, RetryOptions options,
+      InstantSource instantSource) {
+    this(forecaster, options, instantSource, null);
+  }
+
+  /**
+   * Constructs a retrying {@link Forecaster} decorator, which draws the jittered backoffs from a
+   * given source of randomness.
+   *
+   * @param forecaster    the {@link Forecaster} object to retry requests to
+   * @param options       optional {@link RetryOptions} object to configure the retries with
+   * @param instantSource optional {@link InstantSource} object to use for time-keeping operations
+   * @param random        optional {@link RandomGenerator} to draw the backoffs from, which must be
+   *                      safe to share between threads, or null to use the
+   *                      {@link ThreadLocalRandom} of each thread
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  RetryingForecaster(Forecaster forecaster, RetryOptions options, InstantSource instantSource,
+      RandomGenerator random) {
+    if (forecaster == null) {
+      throw new NullPointerException("Forecaster cannot be null");
+    }
+
+    this.forecaster = forecaster;
+    this.options = options == null ? RetryOptions.defaults() : options;
+    this.instantSource = instantSource == null ? InstantSource.system() : instantSource;
+    this.random = random;
+  }
+
+  /**
+   * Creates a retrying {@link Forecaster} decorator.
+   *
+   * @param forecaster the {@link Forecaster} object to retry requests to
+   * @param options    optional {@link RetryOptions} object to configure the retries with
+   * @return the retrying {@link Forecaster}
+   * @throws NullPointerException if {@code forecaster} is null
+   */
+  public static RetryingForecaster retry(Forecaster forecaster, RetryOptions options)
+      throws NullPointerException {
+    return new RetryingForecaster(forecaster, options, null);
+  }
+
+  /**
+   * Creates a retrying {@link Forecaster} decorator around the forecast service, with the default
+   * {@link RetryOptions}.
+   *
+   * @param weatherForecaster the {@link com.weather.Forecaster} object to retry requests to
+   * @return the retrying {@link Forecaster}
+   * @throws NullPointerException if {@code weatherForecaster} is null
+   */
+  public static RetryingForecaster retry(com.weather.Forecaster weatherForecaster)
+      throws NullPointerException {
+    return new RetryingForecaster(WeatherForecasterAdapter.adapt(weatherForecaster), null, null);
+  }
+
+  @Override
+  public Forecast forecastFor(Region region, Day day) {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+    if (day == null) {
+      throw new NullPointerException("day cannot be null");
+    }
+
+    // fail straight away if the query failed recently
+    int index = indexOf(region, day);
+    Failure failure = failures.get(index);
+    if (failure != null) {
+      if (!instantSource.instant().isAfter(failure.expiry())) {
+        suppressed.increment();
+        throw new ForecastUnavailableException(
+            "Forecast for " + region + " on " + day + " recently failed", copyOf(failure.cause()));
+      }
+      failures.compareAndSet(index, failure, null);
+    }
+
+    RuntimeException lastFailure = null;
+    for (int attempt = 1; attempt <= options.maxAttempts(); attempt++) {
+      if (lastFailure != null) {
+        backOff(attempt - 1, lastFailure);
+        retries.increment();
+      }
+      try {
+        Forecast forecast = forecaster.forecastFor(region, day);
+        if (failures.get(index) != null) {
+          failures.set(index, null);
+        }
+        return forecast;
+      } catch (ForecastUnavailableException e) {
+        throw suppressing(e, lastFailure);
+      } catch (RuntimeException e) {
+        lastFailure = suppressing(e, lastFailure);
+      }
+    }
+
+    if (!options.failureTtl().isZero()) {
+      failures.set(index, new Failure(copyOf(lastFailure),
+          instantSource.instant().plus(options.failureTtl())));
+    }
+    throw lastFailure;
+  }
+
+  @Override
+  public long getRetries() {
+    return retries.sum();
+  }
+
+  @Override
+  public long getSuppressed() {
+    return suppressed.sum();
+  }
+
+  /**
+   * Registers this retrying forecaster with the platform MBean server, as a
+   * {@link RetryStatistics} MBean tagged with a name.
+   *
+   * @param name the name distinguishing this retrying forecaster from others
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the MBean cannot be registered
+   */
+  public void registerMBean(String name) throws NullPointerException, JMException {
+    ManagementFactory.getPlatformMBeanServer()
+        .registerMBean(this, objectName(name));
+  }
+
+  /**
+   * Unregisters this retrying forecaster from the platform MBean server, after it was registered
+   * by {@link #registerMBean(String)} with the same name.
+   *
+   * @param name the name the retrying forecaster was registered with
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the MBean cannot be unregistered
+   */
+  public void unregisterMBean(String name) throws NullPointerException, JMException {
+    ManagementFactory.getPlatformMBeanServer()
+        .unregisterMBean(objectName(name));
+  }
+
+  /**
+   * Makes the JMX object name the retrying forecaster with a name is registered under by
+   * {@link #registerMBean(String)}.
+   *
+   * @param name the name of the retrying forecaster
+   * @return the object name
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the name is malformed
+   */
+  static ObjectName objectName(String name) throws JMException {
+    return MBeanNames.objectName("RetryingForecaster", name);
+  }
+
+  /**
+   * Attaches the failure of the previous attempt to the failure of the latest one, so that the
+   * failure of every attempt is reported.
+   *
+   * @param failure         the failure of the latest attempt
+   * @param previousFailure the failure of the previous attempt, or null if there was none
+   * @return the failure of the latest attempt
+   */
+  private static RuntimeException suppressing(RuntimeException failure,
+      RuntimeException previousFailure) {
+    if (previousFailure != null && previousFailure != failure) {
+      failure.addSuppressed(previousFailure);
+    }
+    return failure;
+  }
+
+  /**
+   * Copies a failure into a new exception with the same description and stack trace, so that a
+   * cached failure is never shared with the callers it is reported to, who may add suppressed
+   * exceptions to it, or otherwise change it.
+   *
+   * @param failure the failure to copy
+   * @return the copy
+   */
+  private static ForecastUnavailableException copyOf(RuntimeException failure) {
+    // a copy of a copy keeps its description, rather than being described as a copy
+    ForecastUnavailableException copy = new ForecastUnavailableException(
+        failure instanceof ForecastUnavailableException
+            ? failure.getMessage() : failure.toString());
+    copy.setStackTrace(failure.getStackTrace());
+    return copy;
+  }
+
+  /**
+   * Waits before a retry, for a random time of up to the backoff for the attempt which failed,
+   * which doubles with each attempt, up to the maximum backoff.
+   *
+   * @param attempt     the number of the attempt which failed, from one
+   * @param lastFailure the failure of that attempt
+   * @throws ForecastUnavailableException if interrupted while waiting
+   */
+  private void backOff(int attempt, RuntimeException lastFailure) {
+    long initialNanos = options.initialBackoff().toNanos();
+    long maxNanos = options.maxBackoff().toNanos();
+    long backoffNanos = attempt - 1 >= Long.numberOfLeadingZeros(initialNanos) - 1
+        ? maxNanos : Math.min(maxNanos, initialNanos << (attempt - 1));
+    try {
+      RandomGenerator random = this.random == null ? ThreadLocalRandom.current() : this.random;
+      Thread.sleep(Duration.ofNanos(random.nextLong(backoffNanos + 1)));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      ForecastUnavailableException interrupted =
+          new ForecastUnavailableException("Interrupted waiting to retry a forecast", e);
+      interrupted.addSuppressed(lastFailure);
+      throw interrupted;
+    }
+  }
+}
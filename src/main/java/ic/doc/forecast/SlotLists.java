@@ -0,0 +1,123 @@
+package ic.doc.forecast;
+
+import java.util.Arrays;
+
+/**
+ * A fixed number of doubly-linked lists of {@link ForecastCache} slot indices, where every slot is
+ * in at most one of the lists at a time. The links are held in arrays indexed by slot, rather than
+ * in node objects, so every operation runs in constant time and none allocate.
+ */
+final class SlotLists {
+
+  private static final int NONE = -1;
+
+  private final int[] heads;
+  private final int[] tails;
+  private final int[] sizes;
+  private final int[] previous = new int[ForecastCache.CAPACITY];
+  private final int[] next = new int[ForecastCache.CAPACITY];
+  private final int[] listOf = new int[ForecastCache.CAPACITY];
+
+  /**
+   * Constructs a number of empty lists.
+   *
+   * @param lists the number of lists
+   */
+  SlotLists(int lists) {
+    this.heads = new int[lists];
+    this.tails = new int[lists];
+    this.sizes = new int[lists];
+    Arrays.fill(heads, NONE);
+    Arrays.fill(tails, NONE);
+    Arrays.fill(listOf, NONE);
+  }
+
+  /**
+   * Finds which list a slot is in.
+   *
+   * @param index the slot index
+   * @return the list the slot is in, or -1 if it is in none of them
+   */
+  int listOf(int index) {
+    return listOf[index];
+  }
+
+  /**
+   * Counts the slots in a list.
+   *
+   * @param list the list
+   * @return the number of slots in the list
+   */
+  int size(int list) {
+    return sizes[list];
+  }
+
+  /**
+   * Finds the slot at the front of a list.
+   *
+   * @param list the list
+   * @return the slot index at the front, or -1 if the list is empty
+   */
+  int first(int list) {
+    return heads[list];
+  }
+
+  /**
+   * Moves a slot to the back of a list, removing it from whichever list it was in before.
+   *
+   * @param list  the list
+   * @param index the slot index
+   */
+  void moveToLast(int list, int index) {
+    remove(index);
+    previous[index] = tails[list];
+    next[index] = NONE;
+    if (tails[list] == NONE) {
+      heads[list] = index;
+    } else {
+      next[tails[list]] = index;
+    }
+    tails[list] = index;
+    listOf[index] = list;
+    sizes[list]++;
+  }
+
+  /**
+   * Removes a slot from whichever list it is in, if any.
+   *
+   * @param index the slot index
+   */
+  void remove(int index) {
+    int list = listOf[index];
+    if (list == NONE) {
+      return;
+    }
+
+    if (previous[index] == NONE) {
+      heads[list] = next[index];
+    } else {
+      next[previous[index]] = next[index];
+    }
+    if (next[index] == NONE) {
+      tails[list] = previous[index];
+    } else {
+      previous[next[index]] = previous[index];
+    }
+    listOf[index] = NONE;
+    sizes[list]--;
+  }
+
+  /**
+   * Removes the slot at the front of a list.
+   *
+   * @param list the list
+   * @return the removed slot index, or -1 if the list was empty
+   */
+  int removeFirst(int list) {
+    int index = heads[list];
+    if (index != NONE) {
+      remove(index);
+    }
+    return index;
+  }
+}
@@ -0,0 +1,47 @@
+package ic.doc.forecast;
+
+import javax.management.MXBean;
+
+/**
+ * The management interface through which the hit counters of a {@link TieredForecaster} are
+ * exposed over JMX.
+ */
+@MXBean
+public interface TieredCacheStatistics {
+
+  /**
+   * Counts the lookups which were served from a per-thread or striped L1 cache.
+   *
+   * @return the number of L1 hits
+   */
+  long getL1Hits();
+
+  /**
+   * Counts the lookups which missed the L1 cache, but were served from the shared L2 cache.
+   *
+   * @return the number of L2 hits
+   */
+  long getL2Hits();
+
+  /**
+   * Counts the lookups which missed both caches, and so were requested from the forecast service.
+   *
+   * @return the number of misses
+   */
+  long getMisses();
+
+  /**
+   * Computes the proportion of all lookups which were served from the L1 cache.
+   *
+   * @return the L1 hit ratio, between zero and one, or zero if there have been no lookups
+   */
+  double getL1HitRatio();
+
+  /**
+   * Computes the proportion of the lookups which missed the L1 cache, but were served from the L2
+   * cache.
+   *
+   * @return the L2 hit ratio, between zero and one, or zero if no lookups have missed the L1 cache
+   */
+  double getL2HitRatio();
+}
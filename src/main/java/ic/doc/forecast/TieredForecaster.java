@@ -0,0 +1,292 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.indexOf;
+
+import ic.doc.forecast.ForecastCache.Entry;
+import java.lang.management.ManagementFactory;
+import java.time.InstantSource;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A two-tier cache of forecasts, with a tiny per-thread L1 cache in front of a shared
+ * {@link CachingForecasterProxy} as the L2 cache. An L1 hit reads only thread-confined memory,
+ * apart from a single volatile read of the L2 cache version, which is rarely written, so stays
+ * shared between cores rather than bouncing between them.
+ * <p>
+ * Each L1 cache is direct-mapped, with a fixed number of sets, each holding the most recently used
+ * entry copied from the L2 cache whose slot maps to it. A copied entry is only served until it is
+ * due to be refreshed, so that the L2 cache still expires and refreshes it as usual. Whenever the
+ * L2 cache changes, every copied entry is checked against the L2 cache before it is served again,
+ * and dropped if the L2 cache no longer holds it.
+ * <p>
+ * L1 hits are not reported to the L2 cache, so a size-limited L2 cache may evict the entries
+ * which are hottest in the L1 caches, as it only sees their L1 misses.
+ * <p>
+ * Virtual threads are cheap and usually short-lived, so would rarely hit a cache of their own.
+ * They share a fixed set of striped L1 caches instead, about one for each carrier thread, picked
+ * by thread id. Each set of an L1 cache holds a single immutable copy, so virtual threads which
+ * happen to share a stripe can race to replace a copy, but never see a torn one.
+ */
+public final class TieredForecaster implements Forecaster, TieredCacheStatistics {
+
+  private static final int DEFAULT_L1_SIZE = 16;
+  private static final int STRIPES =
+      Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1);
+
+  private final CachingForecasterProxy sharedCache;
+  private final InstantSource instantSource;
+  private final int setMask;
+  private final ThreadLocal<LocalCache> localCaches;
+  private final LocalCache[] stripedCaches;
+  private final LongAdder l1Hits = new LongAdder();
+  private final LongAdder l2Hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * A record representing an L2 cache entry copied into an L1 cache.
+   *
+   * @param entry           the L2 cache entry
+   * @param version         the L2 cache version at which the entry was last known to be current
+   * @param refreshAtMillis the time after which the entry is due to be refreshed, in milliseconds
+   *                        since the epoch
+   */
+  private record Copy(Entry entry, long version, long refreshAtMillis) {
+  }
+
+  /**
+   * An L1 cache, either confined to a platform thread, or shared by the virtual threads of a
+   * stripe, holding one copied entry in each set.
+   */
+  private static final class LocalCache {
+
+    final Copy[] copies;
+
+    /**
+     * Constructs an empty L1 cache.
+     *
+     * @param size the number of sets
+     */
+    LocalCache(int size) {
+      copies = new Copy[size];
+    }
+  }
+
+  /**
+   * Constructs a two-tier cache in front of a shared {@link CachingForecasterProxy}.
+   *
+   * @param sharedCache the {@link CachingForecasterProxy} used as the L2 cache
+   * @param l1Size      the number of entries in each per-thread or striped L1 cache. Must be a
+   *                    power of two, no larger than the number of distinct queries
+   * @throws NullPointerException     if {@code sharedCache} is null
+   * @throws IllegalArgumentException if {@code l1Size} is not a power of two, or is too large
+   */
+  public TieredForecaster(CachingForecasterProxy sharedCache, int l1Size) {
+    if (sharedCache == null) {
+      throw new NullPointerException("sharedCache cannot be null");
+    }
+    if (l1Size <= 0 || Integer.bitCount(l1Size) != 1 || l1Size > ForecastCache.CAPACITY) {
+      throw new IllegalArgumentException(
+          "L1 size must be a power of two, no larger than " + ForecastCache.CAPACITY);
+    }
+
+    this.sharedCache = sharedCache;
+    this.instantSource = sharedCache.instantSource();
+    this.setMask = l1Size - 1;
+    this.localCaches = ThreadLocal.withInitial(() -> new LocalCache(l1Size));
+    this.stripedCaches = new LocalCache[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      stripedCaches[i] = new LocalCache(l1Size);
+    }
+  }
+
+  /**
+   * Creates a two-tier cache in front of a shared {@link CachingForecasterProxy}, with per-thread
+   * L1 caches of sixteen entries.
+   *
+   * @param sharedCache the {@link CachingForecasterProxy} used as the L2 cache
+   * @return the two-tier cache
+   * @throws NullPointerException if {@code sharedCache} is null
+   */
+  public static TieredForecaster tiered(CachingForecasterProxy sharedCache)
+      throws NullPointerException {
+    return new TieredForecaster(sharedCache, DEFAULT_L1_SIZE);
+  }
+
+  @Override
+  public Forecast forecastFor(Region region, Day day) {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+    if (day == null) {
+      throw new NullPointerException("day cannot be null");
+    }
+
+    int index = indexOf(region, day);
+    Thread thread = Thread.currentThread();
+    LocalCache localCache = thread.isVirtual()
+        ? stripedCaches[(int) thread.threadId() & (STRIPES - 1)] : localCaches.get();
+
+    // serve the copied entry, as long as it is current and not yet due to be refreshed
+    int set = index & setMask;
+    Copy copy = localCache.copies[set];
+    if (copy != null && copy.entry().index() == index) {
+      if (isCurrent(localCache, set, copy) && instantSource.millis() < copy.refreshAtMillis()) {
+        l1Hits.increment();
+        return copy.entry().forecast();
+      }
+      localCache.copies[set] = null;
+    }
+
+    return forecastFromSharedCache(region, day, index, localCache);
+  }
+
+  @Override
+  public long getL1Hits() {
+    return l1Hits.sum();
+  }
+
+  @Override
+  public long getL2Hits() {
+    return l2Hits.sum();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public double getL1HitRatio() {
+    long currentL1Hits = l1Hits.sum();
+    long lookups = currentL1Hits + l2Hits.sum() + misses.sum();
+    return lookups == 0 ? 0 : (double) currentL1Hits / lookups;
+  }
+
+  @Override
+  public double getL2HitRatio() {
+    long currentL2Hits = l2Hits.sum();
+    long l1Misses = currentL2Hits + misses.sum();
+    return l1Misses == 0 ? 0 : (double) currentL2Hits / l1Misses;
+  }
+
+  /**
+   * Registers this tiered cache with the platform MBean server, as a
+   * {@link TieredCacheStatistics} MBean tagged with a name.
+   *
+   * @param name the name distinguishing this tiered cache from others
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the MBean cannot be registered
+   */
+  public void registerMBean(String name) throws NullPointerException, JMException {
+    ManagementFactory.getPlatformMBeanServer()
+        .registerMBean(this, objectName(name));
+  }
+
+  /**
+   * Unregisters this tiered cache from the platform MBean server, after it was registered by
+   * {@link #registerMBean(String)} with the same name.
+   *
+   * @param name the name the tiered cache was registered with
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the MBean cannot be unregistered
+   */
+  public void unregisterMBean(String name) throws NullPointerException, JMException {
+    ManagementFactory.getPlatformMBeanServer()
+        .unregisterMBean(objectName(name));
+  }
+
+  /**
+   * Makes the JMX object name the tiered cache with a name is registered under by
+   * {@link #registerMBean(String)}.
+   *
+   * @param name the name of the tiered cache
+   * @return the object name
+   * @throws NullPointerException if {@code name} is null
+   * @throws JMException          if the name is malformed
+   */
+  static ObjectName objectName(String name) throws JMException {
+    return MBeanNames.objectName("TieredCache", name);
+  }
+
+  /**
+   * Checks whether an entry copied into an L1 cache is still held by the L2 cache. This only
+   * needs to look at the L2 cache itself if its version has changed since the entry was last
+   * checked.
+   *
+   * @param localCache the L1 cache
+   * @param set        the set holding the copied entry
+   * @param copy       the copied entry
+   * @return true if the entry is still current, false otherwise
+   */
+  private boolean isCurrent(LocalCache localCache, int set, Copy copy) {
+    long version = sharedCache.cacheVersion();
+    if (copy.version() == version) {
+      return true;
+    }
+    if (sharedCache.cachedEntry(copy.entry().index()) != copy.entry()) {
+      return false;
+    }
+    localCache.copies[set] = new Copy(copy.entry(), version, copy.refreshAtMillis());
+    return true;
+  }
+
+  /**
+   * Requests a {@link Forecast} from the L2 cache, and copies the L2 cache entry it was served
+   * from into the L1 cache. Whether the L2 cache served a hit is decided by the L2 cache itself,
+   * so a hit whose entry is replaced by a concurrent refresh is still counted as a hit.
+   *
+   * @param region     the given {@link Region}
+   * @param day        the given {@link Day}
+   * @param index      the slot index of the query
+   * @param localCache the L1 cache
+   * @return the {@link Forecast}
+   */
+  private Forecast forecastFromSharedCache(Region region, Day day, int index,
+      LocalCache localCache) {
+    // the version must be read first, so that any later change to the entry changes it
+    long version = sharedCache.cacheVersion();
+    Entry hit = sharedCache.hitEntry(region, day);
+    if (hit != null) {
+      l2Hits.increment();
+      copy(localCache, hit, version);
+      return hit.forecast();
+    }
+
+    misses.increment();
+    Forecast forecast = sharedCache.forecastOnMiss(region, day);
+    version = sharedCache.cacheVersion();
+    Entry entry = sharedCache.cachedEntry(index);
+    if (entry != null && entry.forecast() == forecast) {
+      copy(localCache, entry, version);
+    }
+    return forecast;
+  }
+
+  /**
+   * Copies an L2 cache entry into its set of an L1 cache.
+   *
+   * @param localCache the L1 cache
+   * @param entry      the L2 cache entry
+   * @param version    the L2 cache version, read before the entry was
+   */
+  private void copy(LocalCache localCache, Entry entry, long version) {
+    localCache.copies[entry.index() & setMask] = new Copy(entry, version, toMillis(entry));
+  }
+
+  /**
+   * Converts the time at which an entry is due to be refreshed to milliseconds since the epoch,
+   * saturating for times too far away to represent.
+   *
+   * @param entry the entry
+   * @return the number of milliseconds since the epoch
+   */
+  private static long toMillis(Entry entry) {
+    try {
+      return entry.refreshAt().toEpochMilli();
+    } catch (ArithmeticException e) {
+      return entry.refreshAt().getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+  }
+}
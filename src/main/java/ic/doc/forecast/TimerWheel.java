@@ -0,0 +1,165 @@
+package ic.doc.forecast;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A hierarchical timing wheel which schedules the expiry of {@link ForecastCache} slots. Each
+ * level of the wheel is a ring of buckets covering a span of time, from about a second per bucket
+ * on the lowest level up to several days on the highest, and every slot sits in the bucket of the
+ * level matching how far away its expiry is. Advancing the wheel only visits the buckets whose
+ * ticks have passed or just started, expiring the slots in them, and moving the rest down to finer
+ * levels, so both scheduling and expiry take amortised constant time per slot. Time is measured
+ * in nanoseconds.
+ * <p>
+ * The wheel is not thread-safe, so callers must synchronise access to it.
+ */
+final class TimerWheel {
+
+  private static final int NONE = -1;
+  private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+  private static final int[] SHIFTS = {30, 36, 42, 47, 49};
+  private static final int[] FIRST_BUCKETS = new int[BUCKETS.length + 1];
+
+  static {
+    for (int level = 0; level < BUCKETS.length; level++) {
+      FIRST_BUCKETS[level + 1] = FIRST_BUCKETS[level] + BUCKETS[level];
+    }
+  }
+
+  private final SlotLists buckets = new SlotLists(FIRST_BUCKETS[BUCKETS.length]);
+  private final long[] expiries = new long[ForecastCache.CAPACITY];
+  private final int[] expiring = new int[ForecastCache.CAPACITY];
+  private boolean started;
+  private long nanos;
+
+  /**
+   * Schedules a slot to expire at a given time, replacing any previous schedule for it. The wheel
+   * starts keeping time from the first slot written, if it has not been advanced before.
+   *
+   * @param index       the slot index
+   * @param writeNanos  the time at which the slot was written
+   * @param expiryNanos the time after which the slot expires
+   */
+  void schedule(int index, long writeNanos, long expiryNanos) {
+    if (!started) {
+      started = true;
+      nanos = writeNanos;
+    }
+
+    expiries[index] = expiryNanos;
+    buckets.moveToLast(bucketOf(expiryNanos), index);
+  }
+
+  /**
+   * Cancels the schedule of a slot, if it has one.
+   *
+   * @param index the slot index
+   */
+  void cancel(int index) {
+    buckets.remove(index);
+  }
+
+  /**
+   * Advances the wheel to a given time, expiring all the slots which expire before it. Time never
+   * moves backwards, so advancing to an earlier time does nothing.
+   *
+   * @param cutoffNanos the time to advance to
+   * @param onExpiry    the action to take on each expired slot index, after its schedule has been
+   *                    cancelled
+   */
+  void advance(long cutoffNanos, IntConsumer onExpiry) {
+    if (!started) {
+      started = true;
+      nanos = cutoffNanos;
+      return;
+    }
+    if (cutoffNanos <= nanos) {
+      return;
+    }
+
+    long previousNanos = nanos;
+    nanos = cutoffNanos;
+    for (int level = 0; level < BUCKETS.length; level++) {
+      long previousTicks = previousNanos >> SHIFTS[level];
+      long elapsedTicks = (cutoffNanos >> SHIFTS[level]) - previousTicks;
+
+      // if no bucket on this level has passed, then none on the coarser levels have either
+      if (elapsedTicks <= 0) {
+        return;
+      }
+
+      // visit the buckets which have passed, and the bucket of the tick which has just started,
+      // so that its slots are moved down to the finer levels before they are due to expire
+      int visitedBuckets = (int) Math.min(elapsedTicks + 1, BUCKETS[level]);
+      for (int tick = 0; tick < visitedBuckets; tick++) {
+        expireBucket(bucketOf(level, previousTicks + tick), cutoffNanos, onExpiry);
+      }
+    }
+  }
+
+  /**
+   * Finds the time of the next tick of the lowest level, after which advancing the wheel may
+   * expire more slots.
+   *
+   * @return the time of the next tick, or {@link Long#MIN_VALUE} if the wheel has not started
+   */
+  long nextTickNanos() {
+    return started ? ((nanos >> SHIFTS[0]) + 1) << SHIFTS[0] : Long.MIN_VALUE;
+  }
+
+  /**
+   * Empties a bucket, expiring the slots in it which expire before a given time, and rescheduling
+   * the rest into the bucket matching how far away their expiry now is.
+   *
+   * @param bucket      the bucket
+   * @param cutoffNanos the current time
+   * @param onExpiry    the action to take on each expired slot index
+   */
+  private void expireBucket(int bucket, long cutoffNanos, IntConsumer onExpiry) {
+    int count = 0;
+    int index = buckets.removeFirst(bucket);
+    while (index != NONE) {
+      expiring[count++] = index;
+      index = buckets.removeFirst(bucket);
+    }
+
+    for (int i = 0; i < count; i++) {
+      index = expiring[i];
+      if (expiries[index] < cutoffNanos) {
+        onExpiry.accept(index);
+      } else {
+        buckets.moveToLast(bucketOf(expiries[index]), index);
+      }
+    }
+  }
+
+  /**
+   * Finds the bucket for a slot which expires at a given time, on the finest level whose ring of
+   * buckets spans the time remaining until then. Slots which have already expired go in the bucket
+   * of the current tick, so that they are expired as soon as it passes.
+   *
+   * @param expiryNanos the time after which the slot expires
+   * @return the bucket
+   */
+  private int bucketOf(long expiryNanos) {
+    long time = Math.max(expiryNanos, nanos);
+    long remaining = time - nanos;
+    for (int level = 0; level < BUCKETS.length - 1; level++) {
+      if (remaining < 1L << SHIFTS[level + 1]) {
+        return bucketOf(level, time >> SHIFTS[level]);
+      }
+    }
+    return bucketOf(BUCKETS.length - 1, time >> SHIFTS[BUCKETS.length - 1]);
+  }
+
+  /**
+   * Finds the bucket of a tick on a level of the wheel.
+   *
+   * @param level the level
+   * @param ticks the number of ticks of that level since the epoch
+   * @return the bucket
+   */
+  private static int bucketOf(int level, long ticks) {
+    return FIRST_BUCKETS[level] + (int) (ticks & (BUCKETS[level] - 1));
+  }
+}
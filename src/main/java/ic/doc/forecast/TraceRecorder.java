@@ -0,0 +1,257 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.indexOf;
+
+import ic.doc.forecast.ForecastCache.Entry;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.InstantSource;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A decorator around a {@link CachingForecasterProxy} which records a trace of every
+ * {@link #forecastFor(Region, Day)} call to a binary file, as described by {@link ForecastTrace},
+ * so that production access patterns can be replayed against differently configured caches
+ * offline.
+ * <p>
+ * Callers never wait on the file. Each call is written into a fixed-size ring buffer, by claiming
+ * a slot with a single compare-and-set, and a background thread drains the ring buffer to the file
+ * in large writes. If the ring buffer is full because the file cannot keep up, calls are dropped
+ * from the trace rather than delaying the caller, and counted by {@link #droppedCalls()}.
+ * <p>
+ * A call is recorded as a cache hit if the proxy still holds the same cache entry for the query
+ * after the call as it did before. A background refresh which replaces the entry during the call
+ * makes it look like a miss, which is rare enough not to distort the trace. Failed calls are
+ * recorded as misses.
+ * <p>
+ * The trace is only complete once the recorder is {@link #close() closed}.
+ */
+public final class TraceRecorder implements Forecaster, AutoCloseable {
+
+  private static final int DEFAULT_BUFFER_SIZE = 1 << 13;
+  private static final int WRITE_BUFFER_BYTES = 1 << 16;
+  private static final long IDLE_PARK_NANOS = 1_000_000;
+  private static final long CLOSED_TAIL = Long.MAX_VALUE;
+
+  private final CachingForecasterProxy proxy;
+  private final InstantSource instantSource;
+  private final FileChannel channel;
+  private final int mask;
+  private final long[] timestamps;
+  private final long[] latencies;
+  private final byte[] queries;
+  private final AtomicLongArray published;
+  private final AtomicLong tail = new AtomicLong();
+  private final LongAdder dropped = new LongAdder();
+  private final Thread writer;
+  private volatile long head;
+  private volatile boolean closed;
+  private volatile IOException failure;
+
+  /**
+   * Constructs a recorder which traces calls to a {@link CachingForecasterProxy} into a file,
+   * replacing the file if it already exists.
+   *
+   * @param proxy      the {@link CachingForecasterProxy} object being traced
+   * @param path       the file to write the trace to
+   * @param bufferSize the number of calls the ring buffer can hold before calls are dropped. Must
+   *                   be a power of two
+   * @throws NullPointerException     if {@code proxy} or {@code path} is null
+   * @throws IllegalArgumentException if {@code bufferSize} is not a power of two
+   * @throws IOException              if the file cannot be opened
+   */
+  public TraceRecorder(CachingForecasterProxy proxy, Path path, int bufferSize)
+      throws IOException {
+    if (proxy == null) {
+      throw new NullPointerException("proxy cannot be null");
+    }
+    if (path == null) {
+      throw new NullPointerException("path cannot be null");
+    }
+    if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+      throw new IllegalArgumentException("Buffer size must be a power of two");
+    }
+
+    this.proxy = proxy;
+    this.instantSource = proxy.instantSource();
+    this.mask = bufferSize - 1;
+    this.timestamps = new long[bufferSize];
+    this.latencies = new long[bufferSize];
+    this.queries = new byte[bufferSize];
+    this.published = new AtomicLongArray(bufferSize);
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    this.writer = Thread.ofVirtual().name("trace-writer").start(this::writeCalls);
+  }
+
+  /**
+   * Constructs a recorder which traces calls to a {@link CachingForecasterProxy} into a file,
+   * replacing the file if it already exists, through a ring buffer of 8192 calls.
+   *
+   * @param proxy the {@link CachingForecasterProxy} object being traced
+   * @param path  the file to write the trace to
+   * @throws NullPointerException if {@code proxy} or {@code path} is null
+   * @throws IOException          if the file cannot be opened
+   */
+  public TraceRecorder(CachingForecasterProxy proxy, Path path) throws IOException {
+    this(proxy, path, DEFAULT_BUFFER_SIZE);
+  }
+
+  @Override
+  public Forecast forecastFor(Region region, Day day) {
+    if (region == null) {
+      throw new NullPointerException("region cannot be null");
+    }
+    if (day == null) {
+      throw new NullPointerException("day cannot be null");
+    }
+
+    int index = indexOf(region, day);
+    long timestamp = ForecastTrace.toEpochNanos(instantSource.instant());
+    Entry before = proxy.cachedEntry(index);
+    long start = System.nanoTime();
+    boolean hit = false;
+    try {
+      Forecast forecast = proxy.forecastFor(region, day);
+      hit = before != null && proxy.cachedEntry(index) == before;
+      return forecast;
+    } finally {
+      record(timestamp, index, hit, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Counts the calls which were left out of the trace, because the ring buffer was full, or the
+   * recorder was closed.
+   *
+   * @return the number of calls dropped
+   */
+  public long droppedCalls() {
+    return dropped.sum();
+  }
+
+  /**
+   * Stops recording, and waits for every call recorded so far to be written to the file before
+   * closing it. Calls made after the recorder is closed are still forwarded to the proxy, but are
+   * not traced. A call which claimed a slot just as the recorder was closed, too late for the
+   * writer to see it, is counted as dropped, so every call is either traced or dropped.
+   *
+   * @throws IOException if the trace could not be written
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while finishing the trace");
+    } finally {
+      channel.close();
+    }
+
+    // stop any caller still about to claim a slot, and count those claimed after the writer's
+    // last look at the ring buffer, which it will never write
+    long claimed = tail.getAndSet(CLOSED_TAIL);
+    if (claimed != CLOSED_TAIL) {
+      dropped.add(claimed - head);
+    }
+
+    IOException writeFailure = failure;
+    if (writeFailure != null) {
+      throw writeFailure;
+    }
+  }
+
+  /**
+   * Writes a call into the next slot of the ring buffer, unless it is full.
+   *
+   * @param timestamp the time at which the call started, in nanoseconds since the epoch
+   * @param index     the slot index of the query
+   * @param hit       whether the call was served from the cache
+   * @param latency   how long the call took, in nanoseconds
+   */
+  private void record(long timestamp, int index, boolean hit, long latency) {
+    long sequence;
+    do {
+      sequence = tail.get();
+      if (closed || sequence - head > mask) {
+        dropped.increment();
+        return;
+      }
+    } while (!tail.compareAndSet(sequence, sequence + 1));
+
+    // the slot is only handed to the writer once it has been filled in
+    int slot = (int) (sequence & mask);
+    timestamps[slot] = timestamp;
+    latencies[slot] = latency;
+    queries[slot] = (byte) (index << 1 | (hit ? 1 : 0));
+    published.set(slot, sequence + 1);
+  }
+
+  /**
+   * Drains the ring buffer to the file until the recorder is closed, parking briefly whenever it
+   * is empty. On closing, every call claimed before the recorder was closed is still written.
+   */
+  private void writeCalls() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+    ForecastTrace.writeHeader(buffer);
+    long sequence = 0;
+    try {
+      while (true) {
+        boolean closing = closed;
+        while (sequence < tail.get()) {
+          int slot = (int) (sequence & mask);
+          if (published.get(slot) != sequence + 1) {
+            // a caller has claimed the slot, but not yet filled it in
+            if (!closing) {
+              break;
+            }
+            Thread.onSpinWait();
+            continue;
+          }
+          if (buffer.remaining() < ForecastTrace.RECORD_BYTES) {
+            flush(buffer);
+            head = sequence;
+          }
+          int query = queries[slot];
+          ForecastTrace.writeCall(buffer, timestamps[slot], query >>> 1, (query & 1) == 1,
+              latencies[slot]);
+          sequence++;
+        }
+        flush(buffer);
+        head = sequence;
+
+        if (closing) {
+          return;
+        }
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    } catch (IOException e) {
+      failure = e;
+      closed = true;
+    }
+  }
+
+  /**
+   * Writes out everything in a buffer, and empties it.
+   *
+   * @param buffer the buffer
+   * @throws IOException if the buffer could not be written
+   */
+  private void flush(ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
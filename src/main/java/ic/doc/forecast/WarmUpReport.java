@@ -0,0 +1,23 @@
+package ic.doc.forecast;
+
+import java.time.Duration;
+
+/**
+ * A record representing the outcome of warming up a cache with {@link CacheWarmer}.
+ *
+ * @param populated the number of entries which were successfully fetched
+ * @param failed    the number of entries whose fetch failed
+ * @param abandoned the number of entries which were not fetched before the deadline
+ * @param elapsed   how long the warm-up took
+ */
+public record WarmUpReport(int populated, int failed, int abandoned, Duration elapsed) {
+
+  /**
+   * Checks whether every entry was fetched successfully before the deadline.
+   *
+   * @return true if the warm-up populated every entry, false otherwise
+   */
+  public boolean isComplete() {
+    return failed == 0 && abandoned == 0;
+  }
+}
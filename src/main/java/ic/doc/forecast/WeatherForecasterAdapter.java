@@ -2,17 +2,51 @@ package ic.doc.forecast;
 
 /**
  * Adapts {@link com.weather.Forecaster} objects to the {@link Forecaster object} interface.
+ * Adapted forecasts can be passed through a {@link ForecastInterner}, so that the caches holding
+ * them share canonical instances rather than keeping many duplicates.
  */
 public final class WeatherForecasterAdapter implements Forecaster {
 
   private final com.weather.Forecaster weatherForecaster;
+  private final ForecasterMetrics metrics;
+  private final ForecastInterner interner;
 
   public WeatherForecasterAdapter(com.weather.Forecaster weatherForecaster) {
+    this(weatherForecaster, null);
+  }
+
+  /**
+   * Constructs a {@link Forecaster} object from a given {@link com.weather.Forecaster} object,
+   * which records the latency of every call to it in a set of {@link ForecasterMetrics}.
+   *
+   * @param weatherForecaster the {@link com.weather.Forecaster} object
+   * @param metrics           optional {@link ForecasterMetrics} object to record latencies in
+   * @throws NullPointerException if {@code weatherForecaster} is null
+   */
+  public WeatherForecasterAdapter(com.weather.Forecaster weatherForecaster,
+      ForecasterMetrics metrics) {
+    this(weatherForecaster, metrics, null);
+  }
+
+  /**
+   * Constructs a {@link Forecaster} object from a given {@link com.weather.Forecaster} object,
+   * which records the latency of every call to it in a set of {@link ForecasterMetrics}, and
+   * interns every {@link Forecast} it returns.
+   *
+   * @param weatherForecaster the {@link com.weather.Forecaster} object
+   * @param metrics           optional {@link ForecasterMetrics} object to record latencies in
+   * @param interner          optional {@link ForecastInterner} object to intern forecasts with
+   * @throws NullPointerException if {@code weatherForecaster} is null
+   */
+  public WeatherForecasterAdapter(com.weather.Forecaster weatherForecaster,
+      ForecasterMetrics metrics, ForecastInterner interner) {
     if (weatherForecaster == null) {
       throw new NullPointerException("weatherForecaster cannot be null");
     }
 
     this.weatherForecaster = weatherForecaster;
+    this.metrics = metrics;
+    this.interner = interner;
   }
 
   /**
@@ -26,9 +60,51 @@ public final class WeatherForecasterAdapter implements Forecaster {
     return new WeatherForecasterAdapter(weatherForecaster);
   }
 
+  /**
+   * Creates a {@link Forecaster} object from a given {@link com.weather.Forecaster} object, which
+   * records the latency of every call to it in a set of {@link ForecasterMetrics}.
+   *
+   * @param weatherForecaster the {@link com.weather.Forecaster} object
+   * @param metrics           the {@link ForecasterMetrics} object to record latencies in
+   * @return the {@link Forecaster} object
+   * @throws NullPointerException if {@code weatherForecaster} is null
+   */
+  public static Forecaster adapt(com.weather.Forecaster weatherForecaster,
+      ForecasterMetrics metrics) {
+    return new WeatherForecasterAdapter(weatherForecaster, metrics);
+  }
+
+  /**
+   * Creates a {@link Forecaster} object from a given {@link com.weather.Forecaster} object, which
+   * records the latency of every call to it in a set of {@link ForecasterMetrics}, and interns
+   * every {@link Forecast} it returns.
+   *
+   * @param weatherForecaster the {@link com.weather.Forecaster} object
+   * @param metrics           optional {@link ForecasterMetrics} object to record latencies in
+   * @param interner          the {@link ForecastInterner} object to intern forecasts with
+   * @return the {@link Forecaster} object
+   * @throws NullPointerException if {@code weatherForecaster} is null
+   */
+  public static Forecaster adapt(com.weather.Forecaster weatherForecaster,
+      ForecasterMetrics metrics, ForecastInterner interner) {
+    return new WeatherForecasterAdapter(weatherForecaster, metrics, interner);
+  }
+
   @Override
   public Forecast forecastFor(Region region, Day day) {
-    return adaptForecast(weatherForecaster.forecastFor(adaptRegion(region), adaptDay(day)));
+    com.weather.Region weatherRegion = adaptRegion(region);
+    com.weather.Day weatherDay = adaptDay(day);
+    if (metrics == null) {
+      return adaptForecast(weatherForecaster.forecastFor(weatherRegion, weatherDay));
+    }
+
+    // time the call, including calls which fail
+    long start = System.nanoTime();
+    try {
+      return adaptForecast(weatherForecaster.forecastFor(weatherRegion, weatherDay));
+    } finally {
+      metrics.recordUpstreamLatency(region, System.nanoTime() - start);
+    }
   }
 
   /**
@@ -80,7 +156,8 @@ public final class WeatherForecasterAdapter implements Forecaster {
   }
 
   /**
-   * Converts a {@link com.weather.Forecast} object to a {@link Forecast} object.
+   * Converts a {@link com.weather.Forecast} object to a {@link Forecast} object, which is interned
+   * if this adapter has a {@link ForecastInterner}.
    *
    * @param forecast the {@link com.weather.Forecast} object
    * @return the {@link Forecast} object
@@ -91,6 +168,7 @@ public final class WeatherForecasterAdapter implements Forecaster {
       throw new NullPointerException("forecast cannot be null");
     }
 
-    return new Forecast(forecast.summary(), forecast.temperature());
+    Forecast adapted = new Forecast(forecast.summary(), forecast.temperature());
+    return interner == null ? adapted : interner.intern(adapted);
   }
 }
@@ -0,0 +1,90 @@
+package ic.doc.forecast;
+
+/**
+ * The {@link Evictor} for {@link EvictionPolicy#WINDOW_TINY_LFU}. New entries enter a small LRU
+ * admission window. Entries leaving the window become candidates for the main cache, which is a
+ * segmented LRU of a probation segment and a protected segment, and are only admitted if the
+ * {@link FrequencySketch} estimates them to be used more often than the entry they would replace.
+ * Entries hit while on probation are promoted to the protected segment.
+ */
+final class WindowTinyLfuEvictor implements Evictor {
+
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+  private static final int WINDOW_PERCENTAGE = 1;
+  private static final int PROTECTED_PERCENTAGE = 80;
+
+  private final int maxWindowSize;
+  private final int maxMainSize;
+  private final int maxProtectedSize;
+  private final SlotLists lists = new SlotLists(3);
+  private final FrequencySketch sketch;
+
+  /**
+   * Constructs the bookkeeping for a cache of a given size limit. The admission window holds one
+   * percent of the entries, or at least one entry, and the protected segment holds eighty percent
+   * of the rest.
+   *
+   * @param maxSize the maximum number of entries
+   */
+  WindowTinyLfuEvictor(int maxSize) {
+    this.maxWindowSize = Math.max(1, maxSize * WINDOW_PERCENTAGE / 100);
+    this.maxMainSize = maxSize - maxWindowSize;
+    this.maxProtectedSize = maxMainSize * PROTECTED_PERCENTAGE / 100;
+    this.sketch = new FrequencySketch(maxSize);
+  }
+
+  @Override
+  public int recordInsertion(int index) {
+    sketch.increment(index);
+    lists.moveToLast(WINDOW, index);
+    if (lists.size(WINDOW) <= maxWindowSize) {
+      return NONE;
+    }
+
+    // the least recently used entry in the window is a candidate for the main cache
+    int candidate = lists.first(WINDOW);
+    if (lists.size(PROBATION) + lists.size(PROTECTED) < maxMainSize) {
+      lists.moveToLast(PROBATION, candidate);
+      return NONE;
+    }
+
+    // if the main cache is full, only admit the candidate if it is used more than the victim
+    int victim = lists.size(PROBATION) > 0 ? lists.first(PROBATION) : lists.first(PROTECTED);
+    if (victim != NONE && sketch.frequency(candidate) > sketch.frequency(victim)) {
+      lists.remove(victim);
+      lists.moveToLast(PROBATION, candidate);
+      return victim;
+    }
+    lists.remove(candidate);
+    return candidate;
+  }
+
+  @Override
+  public void recordUpdate(int index) {
+    recordAccess(index);
+  }
+
+  @Override
+  public void recordAccess(int index) {
+    sketch.increment(index);
+    switch (lists.listOf(index)) {
+      case PROBATION -> {
+        // promote the entry, demoting the least recently used protected entry if there is no room
+        lists.moveToLast(PROTECTED, index);
+        if (lists.size(PROTECTED) > maxProtectedSize) {
+          lists.moveToLast(PROBATION, lists.first(PROTECTED));
+        }
+      }
+      case WINDOW, PROTECTED -> lists.moveToLast(lists.listOf(index), index);
+      default -> {
+      }
+    }
+  }
+
+  @Override
+  public void recordRemoval(int index) {
+    lists.remove(index);
+  }
+}
@@ -0,0 +1,37 @@
+package ic.doc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+
+/**
+ * An {@link InstantSource} whose time only moves when it is explicitly advanced, so that tests
+ * can control the passage of time.
+ */
+public class ManualInstantSource implements InstantSource {
+
+  private volatile Instant now;
+
+  /**
+   * Constructs a manual {@link InstantSource} starting at a given time.
+   *
+   * @param start the starting time
+   */
+  public ManualInstantSource(Instant start) {
+    this.now = start;
+  }
+
+  @Override
+  public Instant instant() {
+    return now;
+  }
+
+  /**
+   * Moves the time forward.
+   *
+   * @param duration how far to move the time forward
+   */
+  public void advance(Duration duration) {
+    now = now.plus(duration);
+  }
+}
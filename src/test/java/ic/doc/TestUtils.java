@@ -5,6 +5,9 @@ import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 import net.bytebuddy.ByteBuddy;
@@ -78,4 +81,43 @@ public class TestUtils {
       throw new RuntimeException(e);
     }
   }
+
+  /**
+   * Runs a task on a number of threads at once, with all threads being released together to
+   * maximise contention. Returns once every thread has finished, rethrowing the first failure (if
+   * any) encountered by any of the threads.
+   *
+   * @param threads the number of threads
+   * @param task    the task to run, which is passed the index of the thread running it
+   * @throws InterruptedException if interrupted while waiting for the threads to finish
+   */
+  public static void runConcurrently(int threads, Consumer<Integer> task)
+      throws InterruptedException {
+    CountDownLatch startGate = new CountDownLatch(1);
+    ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+    List<Thread> workers = makeItemList(threads, i -> new Thread(() -> {
+      try {
+        startGate.await();
+        task.accept(i);
+      } catch (Throwable e) {
+        failures.add(e);
+      }
+    }));
+
+    // release all the threads at once, and wait for them to finish
+    workers.forEach(Thread::start);
+    startGate.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    // propagate the first failure, if there was one
+    Throwable failure = failures.peek();
+    if (failure instanceof Error error) {
+      throw error;
+    }
+    if (failure != null) {
+      throw new RuntimeException(failure);
+    }
+  }
 }
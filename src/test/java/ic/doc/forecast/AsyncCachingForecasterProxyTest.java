@@ -0,0 +1,251 @@
+package ic.doc.forecast;
+
+import static ic.doc.TestUtils.makeItemList;
+import static ic.doc.forecast.AsyncCachingForecasterProxy.withLimitedCache;
+import static ic.doc.forecast.AsyncCachingForecasterProxy.withUnlimitedCache;
+import static ic.doc.forecast.ForecastCache.dayOf;
+import static ic.doc.forecast.ForecastCache.regionOf;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static ic.doc.forecast.ForecastTestUtils.randomDay;
+import static ic.doc.forecast.ForecastTestUtils.randomRegion;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import ic.doc.ManualInstantSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class AsyncCachingForecasterProxyTest {
+
+  private static final int CACHE_SIZE_LIMIT = 5;
+  private static final Duration ONE_HOUR = Duration.ofHours(1);
+  private static final Duration REFRESH_AHEAD = Duration.ofMinutes(5);
+
+  // an upstream forecaster whose requests stay pending until the test completes them
+  private final List<CompletableFuture<Forecast>> pendingRequests = new ArrayList<>();
+  private final AsyncForecaster pendingForecaster = (region, day) -> {
+    CompletableFuture<Forecast> request = new CompletableFuture<>();
+    pendingRequests.add(request);
+    return request;
+  };
+
+  // an upstream forecaster which completes immediately, and counts its calls
+  private final AtomicInteger upstreamCalls = new AtomicInteger();
+  private final AsyncForecaster immediateForecaster = (region, day) -> {
+    upstreamCalls.incrementAndGet();
+    return CompletableFuture.completedFuture(fixedForecast(region, day));
+  };
+
+  private final ManualInstantSource clock = new ManualInstantSource(Instant.now());
+
+  @Test
+  public void cacheHitsCompleteImmediately() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    AsyncForecaster proxy = withUnlimitedCache(pendingForecaster);
+
+    // first time, no cache
+    CompletableFuture<Forecast> miss = proxy.forecastFor(region, day);
+    assertFalse(miss.isDone());
+    pendingRequests.getFirst().complete(fixedForecast(region, day));
+    assertEquals(fixedForecast(region, day), miss.join());
+
+    // subsequent times, hit cache without making another request
+    for (int i = 0; i < 5; i++) {
+      CompletableFuture<Forecast> hit = proxy.forecastFor(region, day);
+      assertTrue(hit.isDone());
+      assertEquals(fixedForecast(region, day), hit.join());
+    }
+    assertEquals(1, pendingRequests.size());
+  }
+
+  @Test
+  public void concurrentMissesForTheSameQueryShareOneRequest() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    AsyncForecaster proxy = withUnlimitedCache(pendingForecaster);
+
+    List<CompletableFuture<Forecast>> misses = makeItemList(5,
+        i -> proxy.forecastFor(region, day));
+    assertEquals(1, pendingRequests.size());
+
+    // cancelling one caller's future does not affect the others
+    misses.getFirst().cancel(true);
+    pendingRequests.getFirst().complete(fixedForecast(region, day));
+    for (CompletableFuture<Forecast> miss : misses.subList(1, misses.size())) {
+      assertEquals(fixedForecast(region, day), miss.join());
+    }
+  }
+
+  @Test
+  public void failedRequestsAreNotCached() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    IllegalStateException failure = new IllegalStateException("forecast service unavailable");
+    AsyncForecaster proxy = withUnlimitedCache(pendingForecaster);
+
+    CompletableFuture<Forecast> miss = proxy.forecastFor(region, day);
+    pendingRequests.getFirst().completeExceptionally(failure);
+    CompletionException e = assertThrows(CompletionException.class, miss::join);
+    assertSame(failure, e.getCause());
+
+    // the next call tries again
+    proxy.forecastFor(region, day);
+    assertEquals(2, pendingRequests.size());
+  }
+
+  @Test
+  public void staleForecastsFromTheDelegateAreNotCached() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    Forecast fallback = fixedForecast(region, day).asStale();
+    AsyncForecaster proxy = withUnlimitedCache(pendingForecaster);
+
+    CompletableFuture<Forecast> miss = proxy.forecastFor(region, day);
+    pendingRequests.getFirst().complete(fallback);
+    assertEquals(fallback, miss.join());
+
+    // the stale forecast is served to the caller, but the next call tries again
+    CompletableFuture<Forecast> retry = proxy.forecastFor(region, day);
+    assertEquals(2, pendingRequests.size());
+    pendingRequests.get(1).complete(fixedForecast(region, day));
+    assertEquals(fixedForecast(region, day), retry.join());
+    assertEquals(fixedForecast(region, day), proxy.forecastFor(region, day).join());
+    assertEquals(2, pendingRequests.size());
+  }
+
+  @Test
+  public void nullFuturesFailWithoutBlockingLaterRequests() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    AtomicInteger calls = new AtomicInteger();
+    AsyncForecaster proxy = withUnlimitedCache((r, d) -> calls.incrementAndGet() == 1
+        ? null : CompletableFuture.completedFuture(fixedForecast(r, d)));
+
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> proxy.forecastFor(region, day).join());
+    assertTrue(e.getCause() instanceof NullPointerException);
+
+    // the failed request no longer occupies the slot, so the next call tries again
+    assertEquals(fixedForecast(region, day), proxy.forecastFor(region, day).join());
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void failuresToCacheResponsesFailWithoutBlockingLaterRequests() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    IllegalStateException failure = new IllegalStateException("expiry unavailable");
+    AsyncForecaster proxy = withUnlimitedCache(pendingForecaster,
+        CacheOptions.defaults().withExpiry((r, d, forecast) -> {
+          throw failure;
+        }), null);
+
+    CompletableFuture<Forecast> miss = proxy.forecastFor(region, day);
+    pendingRequests.getFirst().complete(fixedForecast(region, day));
+    CompletionException e = assertThrows(CompletionException.class, miss::join);
+    assertSame(failure, e.getCause());
+
+    // a null forecast cannot be cached either
+    miss = proxy.forecastFor(region, day);
+    assertEquals(2, pendingRequests.size());
+    pendingRequests.getLast().complete(null);
+    e = assertThrows(CompletionException.class, miss::join);
+    assertTrue(e.getCause() instanceof NullPointerException);
+
+    // neither request occupies the slot any more, so the next call tries again
+    proxy.forecastFor(region, day);
+    assertEquals(3, pendingRequests.size());
+  }
+
+  @Test
+  public void forecastsAreOnlyCachedForOneHour() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    AsyncForecaster proxy = withUnlimitedCache(immediateForecaster, null, clock);
+
+    proxy.forecastFor(region, day).join();
+    clock.advance(ONE_HOUR);
+    proxy.forecastFor(region, day).join();
+    assertEquals(1, upstreamCalls.get());
+
+    // pretend more than an hour has passed, so cache should be invalidated
+    clock.advance(Duration.ofSeconds(1));
+    assertEquals(fixedForecast(region, day), proxy.forecastFor(region, day).join());
+    assertEquals(2, upstreamCalls.get());
+  }
+
+  @Test
+  public void limitedCacheMeansOldEntriesAreEvictedWhenMaximumSizeIsReached() {
+    AsyncForecaster proxy = withLimitedCache(immediateForecaster, CACHE_SIZE_LIMIT);
+
+    // populate cache, and then add one more entry, evicting the oldest entry
+    for (int i = 0; i <= CACHE_SIZE_LIMIT; i++) {
+      proxy.forecastFor(regionOf(i), dayOf(i)).join();
+    }
+    assertEquals(CACHE_SIZE_LIMIT + 1, upstreamCalls.get());
+
+    // the newer entries hit cache, but the evicted entry goes through
+    for (int i = 1; i <= CACHE_SIZE_LIMIT; i++) {
+      proxy.forecastFor(regionOf(i), dayOf(i)).join();
+    }
+    assertEquals(CACHE_SIZE_LIMIT + 1, upstreamCalls.get());
+    proxy.forecastFor(regionOf(0), dayOf(0)).join();
+    assertEquals(CACHE_SIZE_LIMIT + 2, upstreamCalls.get());
+  }
+
+  @Test
+  public void refreshAheadReloadsEntriesWithoutDelayingCallers() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    Forecast refreshed = new Forecast("refreshed", 0);
+    AsyncForecaster proxy = withUnlimitedCache(pendingForecaster,
+        CacheOptions.defaults().withRefreshAhead(REFRESH_AHEAD), clock);
+
+    // first time, no cache
+    CompletableFuture<Forecast> miss = proxy.forecastFor(region, day);
+    pendingRequests.getFirst().complete(fixedForecast(region, day));
+    miss.join();
+
+    // inside the refresh-ahead window, the cached entry completes immediately, and is refreshed
+    clock.advance(ONE_HOUR.minus(REFRESH_AHEAD).plusSeconds(1));
+    CompletableFuture<Forecast> hit = proxy.forecastFor(region, day);
+    assertTrue(hit.isDone());
+    assertEquals(fixedForecast(region, day), hit.join());
+    assertEquals(2, pendingRequests.size());
+
+    // once the refresh completes, the refreshed entry is served
+    pendingRequests.getLast().complete(refreshed);
+    assertEquals(refreshed, proxy.forecastFor(region, day).join());
+    assertEquals(2, pendingRequests.size());
+  }
+
+  @Test
+  public void nullObjectsAreNotAccepted() {
+    NullPointerException e = assertThrows(NullPointerException.class,
+        () -> withUnlimitedCache(null));
+    assertEquals("Forecaster cannot be null", e.getMessage());
+    IllegalArgumentException iae = assertThrows(IllegalArgumentException.class,
+        () -> withLimitedCache(immediateForecaster, 0));
+    assertEquals("Cache size must be greater than zero", iae.getMessage());
+    iae = assertThrows(IllegalArgumentException.class, () -> withUnlimitedCache(
+        immediateForecaster,
+        CacheOptions.defaults().withCircuitBreaker(CircuitBreakerOptions.defaults()), null));
+    assertEquals("Circuit breakers are not supported by the async proxy", iae.getMessage());
+
+    AsyncForecaster proxy = withUnlimitedCache(immediateForecaster);
+    e = assertThrows(NullPointerException.class, () -> proxy.forecastFor(null, randomDay()));
+    assertEquals("region cannot be null", e.getMessage());
+    e = assertThrows(NullPointerException.class, () -> proxy.forecastFor(randomRegion(), null));
+    assertEquals("day cannot be null", e.getMessage());
+  }
+}
@@ -0,0 +1,89 @@
+package ic.doc.forecast;
+
+import static ic.doc.TestUtils.makeItemList;
+import static ic.doc.forecast.AsyncForecasterAdapter.adapt;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static ic.doc.forecast.ForecastTestUtils.randomDay;
+import static ic.doc.forecast.ForecastTestUtils.randomRegion;
+import static ic.doc.forecast.ForecastTestUtils.slowForecaster;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class AsyncForecasterAdapterTest {
+
+  private static final int CONCURRENT_CALLS = 1_000;
+  private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(500);
+
+  @Test
+  public void blockingCallsRunOnVirtualThreads() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    AtomicBoolean ranOnVirtualThread = new AtomicBoolean();
+    AsyncForecaster adapted = adapt((r, d) -> {
+      ranOnVirtualThread.set(Thread.currentThread().isVirtual());
+      return fixedForecast(r, d);
+    });
+
+    assertEquals(fixedForecast(region, day), adapted.forecastFor(region, day).join());
+    assertTrue(ranOnVirtualThread.get());
+  }
+
+  @Test
+  public void manyBlockingCallsCanBeInFlightAtOnce() {
+    // with a platform thread per call, this would need a thousand platform threads
+    AsyncForecaster adapted = adapt(slowForecaster(ForecastTestUtils::fixedForecast,
+        UPSTREAM_LATENCY));
+    long start = System.nanoTime();
+    List<CompletableFuture<Forecast>> forecasts = makeItemList(CONCURRENT_CALLS,
+        i -> adapted.forecastFor(randomRegion(), randomDay()));
+    CompletableFuture.allOf(forecasts.toArray(CompletableFuture[]::new)).join();
+
+    // all calls should have overlapped, rather than running one after the other
+    assertTrue(Duration.ofNanos(System.nanoTime() - start)
+        .compareTo(UPSTREAM_LATENCY.multipliedBy(10)) < 0);
+  }
+
+  @Test
+  public void callsDoNotBlockTheCaller() {
+    AsyncForecaster adapted = adapt(slowForecaster(ForecastTestUtils::fixedForecast,
+        UPSTREAM_LATENCY));
+    CompletableFuture<Forecast> forecast = adapted.forecastFor(randomRegion(), randomDay());
+    assertFalse(forecast.isDone());
+    forecast.join();
+  }
+
+  @Test
+  public void failuresCompleteTheFutureExceptionally() {
+    IllegalStateException failure = new IllegalStateException("forecast service unavailable");
+    AsyncForecaster adapted = adapt((r, d) -> {
+      throw failure;
+    });
+
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> adapted.forecastFor(randomRegion(), randomDay()).join());
+    assertSame(failure, e.getCause());
+  }
+
+  @Test
+  public void nullObjectsAreNotAccepted() {
+    NullPointerException e = assertThrows(NullPointerException.class,
+        () -> adapt((Forecaster) null));
+    assertEquals("forecaster cannot be null", e.getMessage());
+
+    AsyncForecaster adapted = adapt(ForecastTestUtils::fixedForecast);
+    e = assertThrows(NullPointerException.class, () -> adapted.forecastFor(null, randomDay()));
+    assertEquals("region cannot be null", e.getMessage());
+    e = assertThrows(NullPointerException.class, () -> adapted.forecastFor(randomRegion(), null));
+    assertEquals("day cannot be null", e.getMessage());
+  }
+}
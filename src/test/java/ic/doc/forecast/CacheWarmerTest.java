@@ -0,0 +1,103 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.CacheWarmer.warmUp;
+import static ic.doc.forecast.CachingForecasterProxy.withUnlimitedCache;
+import static ic.doc.forecast.ForecastTestUtils.DAYS;
+import static ic.doc.forecast.ForecastTestUtils.REGIONS;
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static ic.doc.forecast.ForecastTestUtils.slowForecaster;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class CacheWarmerTest {
+
+  private static final int CONCURRENCY = 8;
+  private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(100);
+  private static final Duration GENEROUS_DEADLINE = Duration.ofSeconds(30);
+  private static final Duration SHORT_DEADLINE = Duration.ofMillis(250);
+
+  @Test
+  public void warmUpPopulatesTheWholeGrid() {
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    Forecaster proxy = withUnlimitedCache(
+        slowForecaster(countingForecaster(upstreamCalls), UPSTREAM_LATENCY));
+
+    WarmUpReport report = warmUp(proxy, CONCURRENCY, GENEROUS_DEADLINE).join();
+    assertTrue(report.isComplete());
+    assertEquals(REGIONS.length * DAYS.length, report.populated());
+    assertEquals(REGIONS.length * DAYS.length, upstreamCalls.get());
+
+    // the fetches ran in parallel, rather than one after the other
+    assertTrue(report.elapsed()
+        .compareTo(UPSTREAM_LATENCY.multipliedBy(REGIONS.length * DAYS.length)) < 0);
+
+    // subsequent times, every query hits the cache
+    for (Region region : REGIONS) {
+      for (Day day : DAYS) {
+        assertEquals(fixedForecast(region, day), proxy.forecastFor(region, day));
+      }
+    }
+    assertEquals(REGIONS.length * DAYS.length, upstreamCalls.get());
+  }
+
+  @Test
+  public void warmUpNeverExceedsItsConcurrencyLimit() {
+    AtomicInteger inFlightCalls = new AtomicInteger();
+    AtomicInteger maxInFlightCalls = new AtomicInteger();
+    Forecaster slow = slowForecaster(ForecastTestUtils::fixedForecast, UPSTREAM_LATENCY);
+    Forecaster proxy = withUnlimitedCache((region, day) -> {
+      maxInFlightCalls.accumulateAndGet(inFlightCalls.incrementAndGet(), Math::max);
+      try {
+        return slow.forecastFor(region, day);
+      } finally {
+        inFlightCalls.decrementAndGet();
+      }
+    });
+
+    assertTrue(warmUp(proxy, CONCURRENCY, GENEROUS_DEADLINE).join().isComplete());
+    assertEquals(CONCURRENCY, maxInFlightCalls.get());
+  }
+
+  @Test
+  public void warmUpIsCutShortByItsDeadline() {
+    Forecaster proxy = withUnlimitedCache(slowForecaster(ForecastTestUtils::fixedForecast,
+        UPSTREAM_LATENCY));
+
+    WarmUpReport report = warmUp(proxy, 1, SHORT_DEADLINE).join();
+    assertFalse(report.isComplete());
+    assertTrue(report.abandoned() > 0);
+    assertEquals(REGIONS.length * DAYS.length,
+        report.populated() + report.failed() + report.abandoned());
+    assertTrue(report.elapsed().compareTo(GENEROUS_DEADLINE) < 0);
+  }
+
+  @Test
+  public void failedFetchesAreReported() {
+    Forecaster proxy = withUnlimitedCache((region, day) -> {
+      if (region == Region.WALES) {
+        throw new IllegalStateException("forecast service unavailable");
+      }
+      return fixedForecast(region, day);
+    });
+
+    WarmUpReport report = warmUp(proxy, CONCURRENCY, GENEROUS_DEADLINE).join();
+    assertFalse(report.isComplete());
+    assertEquals(DAYS.length, report.failed());
+    assertEquals((REGIONS.length - 1) * DAYS.length, report.populated());
+  }
+
+  @Test
+  public void invalidArgumentsAreNotAccepted() {
+    Forecaster proxy = withUnlimitedCache(ForecastTestUtils::fixedForecast);
+    assertThrows(NullPointerException.class, () -> warmUp(null, CONCURRENCY, SHORT_DEADLINE));
+    assertThrows(NullPointerException.class, () -> warmUp(proxy, CONCURRENCY, null));
+    assertThrows(IllegalArgumentException.class, () -> warmUp(proxy, 0, SHORT_DEADLINE));
+  }
+}
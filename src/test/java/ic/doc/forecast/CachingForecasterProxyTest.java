@@ -1,20 +1,41 @@
 package ic.doc.forecast;
 
 import static ic.doc.TestUtils.makeItemList;
+import static ic.doc.TestUtils.runConcurrently;
 import static ic.doc.forecast.CachingForecasterProxy.withLimitedCache;
 import static ic.doc.forecast.CachingForecasterProxy.withUnlimitedCache;
+import static ic.doc.forecast.ForecastTestUtils.DAYS;
+import static ic.doc.forecast.ForecastTestUtils.REGIONS;
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
 import static ic.doc.forecast.ForecastTestUtils.randomDay;
 import static ic.doc.forecast.ForecastTestUtils.randomDays;
 import static ic.doc.forecast.ForecastTestUtils.randomRegion;
 import static ic.doc.forecast.ForecastTestUtils.randomRegions;
 import static ic.doc.forecast.ForecastTestUtils.randomSummary;
 import static ic.doc.forecast.ForecastTestUtils.randomTemperature;
+import static ic.doc.forecast.ForecastTestUtils.slowForecaster;
 import static org.junit.Assert.assertEquals;
-
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.management.ThreadMXBean;
+import ic.doc.ManualInstantSource;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.jmock.Expectations;
 import org.jmock.Sequence;
 import org.jmock.junit5.JUnit5Mockery;
@@ -25,6 +46,14 @@ public class CachingForecasterProxyTest {
 
   private static final int CACHE_SIZE_LIMIT = 5;
   private static final Duration ONE_HOUR = Duration.ofHours(1);
+  private static final int STRESS_THREADS = 16;
+  private static final int STRESS_ITERATIONS = 20_000;
+  private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(200);
+  private static final int ALLOCATION_WARMUP_HITS = 1_000_000;
+  private static final int ALLOCATION_MEASURED_HITS = 1_000_000;
+  private static final Duration REFRESH_AHEAD = Duration.ofMinutes(5);
+  private static final Duration STALE_GRACE = Duration.ofMinutes(10);
+  private static final int BULK_PARALLELISM = 4;
 
   @RegisterExtension
   public JUnit5Mockery context = new JUnit5Mockery();
@@ -184,4 +213,485 @@ public class CachingForecasterProxyTest {
     }});
     assertEquals(unlimitedCachingProxy.forecastFor(region, day), forecast);
   }
+
+  @Test
+  public void concurrentLookupsAlwaysReturnTheForecastForTheirQuery() throws InterruptedException {
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    Forecaster forecaster = countingForecaster(upstreamCalls);
+
+    // hammer both cache variants with random queries from many threads at once
+    for (Forecaster proxy : List.of(withUnlimitedCache(forecaster),
+        withLimitedCache(forecaster, CACHE_SIZE_LIMIT))) {
+      runConcurrently(STRESS_THREADS, thread -> {
+        for (int i = 0; i < STRESS_ITERATIONS; i++) {
+          Region region = randomRegion();
+          Day day = randomDay();
+          assertEquals(fixedForecast(region, day), proxy.forecastFor(region, day));
+        }
+      });
+    }
+  }
+
+  @Test
+  public void unlimitedCacheIsFullyPopulatedUnderContention() throws InterruptedException {
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    Forecaster proxy = withUnlimitedCache(countingForecaster(upstreamCalls));
+
+    // populate the cache concurrently, with every thread querying every entry
+    runConcurrently(STRESS_THREADS, thread -> {
+      for (Region region : REGIONS) {
+        for (Day day : DAYS) {
+          proxy.forecastFor(region, day);
+        }
+      }
+    });
+
+    // subsequent times, every query should hit the cache
+    upstreamCalls.set(0);
+    runConcurrently(STRESS_THREADS, thread -> {
+      for (int i = 0; i < STRESS_ITERATIONS; i++) {
+        proxy.forecastFor(randomRegion(), randomDay());
+      }
+    });
+    assertEquals(0, upstreamCalls.get());
+  }
+
+  @Test
+  public void limitedCacheStaysWithinItsSizeLimitUnderContention() throws InterruptedException {
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    Forecaster proxy = withLimitedCache(countingForecaster(upstreamCalls), CACHE_SIZE_LIMIT);
+
+    // churn the cache concurrently, with far more distinct queries than it can hold
+    runConcurrently(STRESS_THREADS, thread -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      for (int i = 0; i < STRESS_ITERATIONS; i++) {
+        proxy.forecastFor(REGIONS[random.nextInt(REGIONS.length)],
+            DAYS[random.nextInt(DAYS.length)]);
+      }
+    });
+
+    // if the size limit was respected, then querying every entry once can hit the cache
+    // at most as many times as there are entries in the cache
+    upstreamCalls.set(0);
+    for (Region region : REGIONS) {
+      for (Day day : DAYS) {
+        proxy.forecastFor(region, day);
+      }
+    }
+    assertTrue(upstreamCalls.get() >= REGIONS.length * DAYS.length - CACHE_SIZE_LIMIT);
+  }
+
+  @Test
+  public void concurrentMissesForTheSameQueryAreCoalesced() throws InterruptedException {
+    Region region = randomRegion();
+    Day day = randomDay();
+
+    for (boolean limited : new boolean[]{false, true}) {
+      AtomicInteger upstreamCalls = new AtomicInteger();
+      Forecaster forecaster = slowForecaster(countingForecaster(upstreamCalls), UPSTREAM_LATENCY);
+      Forecaster proxy = limited ? withLimitedCache(forecaster, CACHE_SIZE_LIMIT)
+          : withUnlimitedCache(forecaster);
+
+      // every thread misses the cache at once, but only one request should go through
+      runConcurrently(STRESS_THREADS,
+          thread -> assertEquals(fixedForecast(region, day), proxy.forecastFor(region, day)));
+      assertEquals(1, upstreamCalls.get());
+    }
+  }
+
+  @Test
+  public void failedRequestsAreSharedByCoalescedCallersButNotCached()
+      throws InterruptedException {
+    Region region = randomRegion();
+    Day day = randomDay();
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    AtomicInteger failedCalls = new AtomicInteger();
+    Forecaster failingForecaster = slowForecaster((r, d) -> {
+      upstreamCalls.incrementAndGet();
+      throw new IllegalStateException("forecast service unavailable");
+    }, UPSTREAM_LATENCY);
+    Forecaster proxy = withUnlimitedCache(failingForecaster);
+
+    // every caller should observe the failure of the request it waited on
+    runConcurrently(STRESS_THREADS, thread -> {
+      try {
+        proxy.forecastFor(region, day);
+      } catch (IllegalStateException e) {
+        assertEquals("forecast service unavailable", e.getMessage());
+        failedCalls.incrementAndGet();
+      }
+    });
+    assertEquals(STRESS_THREADS, failedCalls.get());
+    assertTrue(upstreamCalls.get() < STRESS_THREADS);
+
+    // but the failure itself should not be cached, so the next call tries again
+    upstreamCalls.set(0);
+    assertThrows(IllegalStateException.class, () -> proxy.forecastFor(region, day));
+    assertEquals(1, upstreamCalls.get());
+  }
+
+  @Test
+  public void cacheHitsDoNotAllocate() {
+    // a fixed clock always returns the same instant, so the clock itself does not allocate
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    InstantSource fixedClock = InstantSource.fixed(Instant.now());
+
+    for (Forecaster proxy : List.of(
+        withUnlimitedCache(countingForecaster(new AtomicInteger()), fixedClock),
+        withLimitedCache(countingForecaster(new AtomicInteger()), CACHE_SIZE_LIMIT, fixedClock))) {
+      // populate the cache, and give the hit path a chance to be compiled
+      for (int i = 0; i < ALLOCATION_WARMUP_HITS; i++) {
+        proxy.forecastFor(REGIONS[i % CACHE_SIZE_LIMIT], DAYS[i % CACHE_SIZE_LIMIT]);
+      }
+
+      // measure the bytes allocated by this thread while only hitting the cache
+      long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+      for (int i = 0; i < ALLOCATION_MEASURED_HITS; i++) {
+        proxy.forecastFor(REGIONS[i % CACHE_SIZE_LIMIT], DAYS[i % CACHE_SIZE_LIMIT]);
+      }
+      long allocatedAfter = threads.getCurrentThreadAllocatedBytes();
+      assertEquals(0, (allocatedAfter - allocatedBefore) / ALLOCATION_MEASURED_HITS);
+    }
+  }
+
+  @Test
+  public void refreshAheadReloadsFrequentlyUsedEntriesBeforeTheyExpire() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    List<Forecast> forecasts = makeItemList(2,
+        i -> new Forecast(randomSummary(), randomTemperature()));
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    ManualInstantSource clock = new ManualInstantSource(Instant.now());
+    Forecaster proxy = withUnlimitedCache((r, d) -> forecasts.get(upstreamCalls.getAndIncrement()),
+        CacheOptions.defaults().withRefreshAhead(REFRESH_AHEAD).withRefreshExecutor(Runnable::run),
+        clock);
+
+    // first time, no cache
+    assertEquals(forecasts.get(0), proxy.forecastFor(region, day));
+
+    // outside the refresh-ahead window, hit cache
+    clock.advance(ONE_HOUR.minus(REFRESH_AHEAD).minusSeconds(1));
+    assertEquals(forecasts.get(0), proxy.forecastFor(region, day));
+    assertEquals(1, upstreamCalls.get());
+
+    // inside the refresh-ahead window, the cached entry is still served, but also refreshed
+    clock.advance(Duration.ofSeconds(2));
+    assertEquals(forecasts.get(0), proxy.forecastFor(region, day));
+    assertEquals(2, upstreamCalls.get());
+
+    // so once the original entry would have expired, the refreshed entry is served instead
+    clock.advance(REFRESH_AHEAD);
+    assertEquals(forecasts.get(1), proxy.forecastFor(region, day));
+    assertEquals(2, upstreamCalls.get());
+  }
+
+  @Test
+  public void staleEntriesAreServedWithinTheGraceWindowWhileBeingRefreshed() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    List<Forecast> forecasts = makeItemList(2,
+        i -> new Forecast(randomSummary(), randomTemperature()));
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    List<Runnable> pendingRefreshes = new ArrayList<>();
+    ManualInstantSource clock = new ManualInstantSource(Instant.now());
+    Forecaster proxy = withLimitedCache((r, d) -> forecasts.get(upstreamCalls.getAndIncrement()),
+        CACHE_SIZE_LIMIT, CacheOptions.defaults().withStaleGrace(STALE_GRACE)
+            .withRefreshExecutor(pendingRefreshes::add), clock);
+
+    // first time, no cache
+    assertEquals(forecasts.get(0), proxy.forecastFor(region, day));
+
+    // once expired, the stale entry is served while a single refresh is started
+    clock.advance(ONE_HOUR.plus(STALE_GRACE.dividedBy(2)));
+    for (int i = 0; i < 5; i++) {
+      assertEquals(forecasts.get(0), proxy.forecastFor(region, day));
+    }
+    assertEquals(1, pendingRefreshes.size());
+    assertEquals(1, upstreamCalls.get());
+
+    // once the refresh completes, the refreshed entry is served
+    pendingRefreshes.removeFirst().run();
+    assertEquals(forecasts.get(1), proxy.forecastFor(region, day));
+    assertEquals(2, upstreamCalls.get());
+  }
+
+  @Test
+  public void staleEntriesAreNotServedOutsideTheGraceWindow() {
+    Region region = randomRegion();
+    Day day = randomDay();
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    List<Runnable> pendingRefreshes = new ArrayList<>();
+    ManualInstantSource clock = new ManualInstantSource(Instant.now());
+    Forecaster proxy = withUnlimitedCache(countingForecaster(upstreamCalls),
+        CacheOptions.defaults().withStaleGrace(STALE_GRACE)
+            .withRefreshExecutor(pendingRefreshes::add), clock);
+
+    // first time, no cache
+    assertEquals(fixedForecast(region, day), proxy.forecastFor(region, day));
+
+    // once past the grace window, the caller waits on the forecast service itself
+    clock.advance(ONE_HOUR.plus(STALE_GRACE).plusSeconds(1));
+    assertEquals(fixedForecast(region, day), proxy.forecastFor(region, day));
+    assertEquals(0, pendingRefreshes.size());
+    assertEquals(2, upstreamCalls.get());
+  }
+
+  @Test
+  public void bulkQueriesServeHitsFromCacheAndRequestMissesInParallel() {
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    AtomicInteger inFlightCalls = new AtomicInteger();
+    AtomicInteger maxInFlightCalls = new AtomicInteger();
+    Forecaster slow = slowForecaster(countingForecaster(upstreamCalls), UPSTREAM_LATENCY);
+    Forecaster proxy = withUnlimitedCache((region, day) -> {
+      maxInFlightCalls.accumulateAndGet(inFlightCalls.incrementAndGet(), Math::max);
+      try {
+        return slow.forecastFor(region, day);
+      } finally {
+        inFlightCalls.decrementAndGet();
+      }
+    }, CacheOptions.defaults().withBulkParallelism(BULK_PARALLELISM), null);
+
+    // populate the cache with a single entry
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    upstreamCalls.set(0);
+
+    // the whole grid is returned, with every entry other than the cached one being requested
+    Set<Region> regions = EnumSet.allOf(Region.class);
+    Set<Day> days = EnumSet.allOf(Day.class);
+    long start = System.nanoTime();
+    ForecastGrid grid = proxy.forecastsFor(regions, days);
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+    assertEquals(REGIONS.length * DAYS.length, grid.size());
+    grid.forEach((region, day, forecast) -> assertEquals(fixedForecast(region, day), forecast));
+    assertEquals(REGIONS.length * DAYS.length - 1, upstreamCalls.get());
+
+    // the misses were requested in parallel, but never beyond the parallelism limit
+    assertEquals(BULK_PARALLELISM, maxInFlightCalls.get());
+    assertTrue(elapsed.compareTo(UPSTREAM_LATENCY.multipliedBy(upstreamCalls.get())) < 0);
+
+    // subsequent times, the whole grid hits cache
+    assertEquals(grid, proxy.forecastsFor(regions, days));
+    assertEquals(REGIONS.length * DAYS.length - 1, upstreamCalls.get());
+  }
+
+  @Test
+  public void bulkQueriesFailIfAnyRequestFails() {
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    Forecaster proxy = withUnlimitedCache((region, day) -> {
+      upstreamCalls.incrementAndGet();
+      if (region == Region.WALES) {
+        throw new IllegalStateException("forecast service unavailable");
+      }
+      return fixedForecast(region, day);
+    });
+
+    assertThrows(IllegalStateException.class,
+        () -> proxy.forecastsFor(EnumSet.of(Region.LONDON, Region.WALES), EnumSet.of(Day.MONDAY)));
+
+    // the successful requests are still cached
+    assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+        proxy.forecastsFor(EnumSet.of(Region.LONDON), EnumSet.of(Day.MONDAY))
+            .get(Region.LONDON, Day.MONDAY));
+    assertEquals(2, upstreamCalls.get());
+  }
+
+  @Test
+  public void snapshotsRestoreFreshEntriesAfterARestart() throws IOException {
+    Path directory = Files.createTempDirectory("forecast-snapshots");
+    Path snapshot = directory.resolve("forecasts.snapshot");
+    ManualInstantSource clock = new ManualInstantSource(Instant.now());
+    AtomicInteger upstreamCalls = new AtomicInteger();
+
+    try {
+      // populate the cache over time, and save a snapshot of it
+      CachingForecasterProxy proxy = new CachingForecasterProxy(
+          countingForecaster(upstreamCalls), clock);
+      proxy.forecastFor(Region.LONDON, Day.MONDAY);
+      clock.advance(Duration.ofMinutes(30));
+      proxy.forecastFor(Region.WALES, Day.SUNDAY);
+      assertEquals(2, (int) proxy.saveSnapshot(snapshot).join());
+
+      // after a restart, only the entry which is still fresh is loaded
+      clock.advance(Duration.ofMinutes(45));
+      CachingForecasterProxy restarted = new CachingForecasterProxy(
+          countingForecaster(upstreamCalls), clock);
+      assertEquals(1, restarted.loadSnapshot(snapshot));
+      upstreamCalls.set(0);
+      assertEquals(fixedForecast(Region.WALES, Day.SUNDAY),
+          restarted.forecastFor(Region.WALES, Day.SUNDAY));
+      assertEquals(0, upstreamCalls.get());
+      assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+          restarted.forecastFor(Region.LONDON, Day.MONDAY));
+      assertEquals(1, upstreamCalls.get());
+
+      // the loaded entry still expires an hour after it was originally fetched
+      clock.advance(Duration.ofMinutes(20));
+      restarted.forecastFor(Region.WALES, Day.SUNDAY);
+      assertEquals(2, upstreamCalls.get());
+    } finally {
+      Files.deleteIfExists(snapshot);
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void snapshotsNeverReplaceNewerForecasts() throws IOException {
+    Path directory = Files.createTempDirectory("forecast-snapshots");
+    Path snapshot = directory.resolve("forecasts.snapshot");
+    ManualInstantSource clock = new ManualInstantSource(Instant.now());
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    AtomicReference<Forecast> response = new AtomicReference<>(new Forecast("Old", 10));
+    Forecaster upstream = (region, day) -> {
+      upstreamCalls.incrementAndGet();
+      Forecast forecast = response.get();
+      if (forecast == null) {
+        throw new IllegalStateException("forecast service unavailable");
+      }
+      return forecast;
+    };
+    CacheOptions options = CacheOptions.defaults().withCircuitBreaker(
+        CircuitBreakerOptions.defaults().withWindowSize(2).withOpenDuration(Duration.ofMinutes(1)));
+
+    try {
+      CachingForecasterProxy proxy = new CachingForecasterProxy(upstream, options, clock);
+      proxy.forecastFor(Region.LONDON, Day.MONDAY);
+      assertEquals(1, (int) proxy.saveSnapshot(snapshot).join());
+
+      // a forecast fetched after the snapshot was saved is kept in the cache
+      clock.advance(Duration.ofMinutes(10));
+      response.set(new Forecast("New", 20));
+      CachingForecasterProxy restarted = new CachingForecasterProxy(upstream, options, clock);
+      restarted.forecastFor(Region.LONDON, Day.MONDAY);
+      assertEquals(0, restarted.loadSnapshot(snapshot));
+      assertEquals(new Forecast("New", 20), restarted.forecastFor(Region.LONDON, Day.MONDAY));
+      assertEquals(2, upstreamCalls.get());
+
+      // and is still the last known forecast served once the circuit opens
+      response.set(null);
+      clock.advance(Duration.ofHours(2));
+      assertEquals(new Forecast("New", 20).asStale(),
+          restarted.forecastFor(Region.LONDON, Day.MONDAY));
+    } finally {
+      Files.deleteIfExists(snapshot);
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void missingSnapshotsLoadNothing() throws IOException {
+    Path directory = Files.createTempDirectory("forecast-snapshots");
+    try {
+      CachingForecasterProxy proxy = new CachingForecasterProxy(
+          countingForecaster(new AtomicInteger()), null);
+      assertEquals(0, proxy.loadSnapshot(directory.resolve("missing.snapshot")));
+    } finally {
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void timeToLiveCanBeConfiguredGloballyAndPerEntry() {
+    ManualInstantSource clock = new ManualInstantSource(Instant.now());
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    Forecaster globalProxy = withUnlimitedCache(countingForecaster(upstreamCalls),
+        CacheOptions.defaults().withTimeToLive(Duration.ofMinutes(10)), clock);
+    Forecaster perEntryProxy = withUnlimitedCache(countingForecaster(upstreamCalls),
+        CacheOptions.defaults().withExpiry((region, day, forecast) ->
+            region == Region.LONDON ? Duration.ofMinutes(5) : Duration.ofHours(2)), clock);
+    for (Forecaster proxy : List.of(globalProxy, perEntryProxy)) {
+      proxy.forecastFor(Region.LONDON, Day.MONDAY);
+      proxy.forecastFor(Region.WALES, Day.MONDAY);
+    }
+    assertEquals(4, upstreamCalls.get());
+
+    // the global time-to-live applies to every entry
+    clock.advance(Duration.ofMinutes(7));
+    globalProxy.forecastFor(Region.LONDON, Day.MONDAY);
+    globalProxy.forecastFor(Region.WALES, Day.MONDAY);
+    assertEquals(4, upstreamCalls.get());
+    clock.advance(Duration.ofMinutes(4));
+    globalProxy.forecastFor(Region.LONDON, Day.MONDAY);
+    globalProxy.forecastFor(Region.WALES, Day.MONDAY);
+    assertEquals(6, upstreamCalls.get());
+
+    // while the per-entry time-to-live differs between entries
+    perEntryProxy.forecastFor(Region.LONDON, Day.MONDAY);
+    perEntryProxy.forecastFor(Region.WALES, Day.MONDAY);
+    assertEquals(7, upstreamCalls.get());
+  }
+
+  @Test
+  public void openCircuitServesLastKnownForecastsFlaggedAsStale() {
+    ManualInstantSource clock = new ManualInstantSource(Instant.now());
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    AtomicBoolean down = new AtomicBoolean();
+    Forecaster proxy = withUnlimitedCache((region, day) -> {
+      upstreamCalls.incrementAndGet();
+      if (down.get()) {
+        throw new IllegalStateException("forecast service unavailable");
+      }
+      return fixedForecast(region, day);
+    }, CacheOptions.defaults().withCircuitBreaker(CircuitBreakerOptions.defaults()
+        .withWindowSize(2).withOpenDuration(Duration.ofMinutes(1))), clock);
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+
+    // once the cached entry has expired, failures open the circuit
+    down.set(true);
+    clock.advance(Duration.ofHours(2));
+    ForecastUnavailableException e = assertThrows(ForecastUnavailableException.class,
+        () -> proxy.forecastFor(Region.WALES, Day.MONDAY));
+    assertTrue(e.getCause() instanceof IllegalStateException);
+    assertEquals(2, upstreamCalls.get());
+
+    // while the circuit is open, the forecast service is not called at all
+    Forecast stale = proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    assertEquals(fixedForecast(Region.LONDON, Day.MONDAY).asStale(), stale);
+    assertTrue(stale.stale());
+    assertThrows(ForecastUnavailableException.class,
+        () -> proxy.forecastFor(Region.WALES, Day.MONDAY));
+    assertEquals(2, upstreamCalls.get());
+
+    // a failed probe keeps the circuit open, while a successful one closes it
+    clock.advance(Duration.ofMinutes(2));
+    assertEquals(stale, proxy.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(3, upstreamCalls.get());
+    down.set(false);
+    clock.advance(Duration.ofMinutes(2));
+    assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+        proxy.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(fixedForecast(Region.WALES, Day.MONDAY),
+        proxy.forecastFor(Region.WALES, Day.MONDAY));
+    assertEquals(5, upstreamCalls.get());
+  }
+
+  @Test
+  public void staleForecastsFromTheDelegateAreNeitherCachedNorRemembered() {
+    ManualInstantSource clock = new ManualInstantSource(Instant.now());
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    Forecast fallback = new Forecast("fallback", 0).asStale();
+    AtomicReference<Forecast> response =
+        new AtomicReference<>(fixedForecast(Region.LONDON, Day.MONDAY));
+    Forecaster proxy = withUnlimitedCache((region, day) -> {
+      upstreamCalls.incrementAndGet();
+      Forecast forecast = response.get();
+      if (forecast == null) {
+        throw new IllegalStateException("forecast service unavailable");
+      }
+      return forecast;
+    }, CacheOptions.defaults().withCircuitBreaker(CircuitBreakerOptions.defaults()
+        .withWindowSize(2).withOpenDuration(Duration.ofMinutes(1))), clock);
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+
+    // once the cached entry has expired, a stale fallback from the delegate is served, not cached
+    clock.advance(Duration.ofHours(2));
+    response.set(fallback);
+    assertEquals(fallback, proxy.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(fallback, proxy.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(3, upstreamCalls.get());
+
+    // nor does it replace the last known forecast served while the circuit is open
+    response.set(null);
+    assertEquals(fixedForecast(Region.LONDON, Day.MONDAY).asStale(),
+        proxy.forecastFor(Region.LONDON, Day.MONDAY));
+  }
 }
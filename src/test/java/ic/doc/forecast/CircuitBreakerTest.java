@@ -0,0 +1,122 @@
+package ic.doc.forecast;
+
+import static ic.doc.TestUtils.runConcurrently;
+import static org.junit.Assert.assertEquals;
+
+import ic.doc.ManualInstantSource;
+import ic.doc.forecast.CircuitBreaker.Permission;
+import ic.doc.forecast.CircuitBreaker.State;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+  private static final Duration SLOW_CALL = Duration.ofSeconds(1);
+  private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+  private static final CircuitBreakerOptions OPTIONS = CircuitBreakerOptions.defaults()
+      .withWindowSize(10).withSlowCalls(0.5, SLOW_CALL).withOpenDuration(OPEN_DURATION);
+
+  private final ManualInstantSource clock = new ManualInstantSource(Instant.now());
+  private final CircuitBreaker breaker = new CircuitBreaker(OPTIONS, clock);
+
+  @Test
+  public void circuitOpensOnceAWindowReachesTheFailureRate() {
+    for (int i = 0; i < 10; i++) {
+      assertEquals(State.CLOSED, breaker.state());
+      assertEquals(Permission.CALL, breaker.tryAcquire());
+      breaker.record(Permission.CALL, 0, i % 2 == 0);
+    }
+    assertEquals(State.OPEN, breaker.state());
+    assertEquals(Permission.DENIED, breaker.tryAcquire());
+  }
+
+  @Test
+  public void circuitOpensOnceAWindowReachesTheSlowCallRate() {
+    for (int i = 0; i < 10; i++) {
+      breaker.record(Permission.CALL, i < 5 ? SLOW_CALL.toNanos() : 0, false);
+    }
+    assertEquals(State.OPEN, breaker.state());
+  }
+
+  @Test
+  public void circuitStaysClosedBelowTheThresholds() {
+    for (int i = 0; i < 100; i++) {
+      breaker.record(Permission.CALL, i % 5 == 0 ? SLOW_CALL.toNanos() : 0, i % 5 == 1);
+    }
+    assertEquals(State.CLOSED, breaker.state());
+  }
+
+  @Test
+  public void defaultOptionsStayClosedAtTheNormalLatencyOfTheForecastService() {
+    CircuitBreaker defaultBreaker = new CircuitBreaker(CircuitBreakerOptions.defaults(), clock);
+
+    // healthy calls take between 2 and 10 seconds, spread uniformly
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      Permission permission = defaultBreaker.tryAcquire();
+      assertEquals(Permission.CALL, permission);
+      long nanos = Duration.ofSeconds(2).toNanos()
+          + (long) (random.nextDouble() * Duration.ofSeconds(8).toNanos());
+      defaultBreaker.record(permission, nanos, false);
+    }
+    assertEquals(State.CLOSED, defaultBreaker.state());
+  }
+
+  @Test
+  public void onlyOneProbeIsLetThroughOnceTheOpenDurationHasPassed() {
+    open();
+    clock.advance(OPEN_DURATION.minusSeconds(1));
+    assertEquals(Permission.DENIED, breaker.tryAcquire());
+
+    clock.advance(Duration.ofSeconds(1));
+    assertEquals(Permission.PROBE, breaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, breaker.state());
+    assertEquals(Permission.DENIED, breaker.tryAcquire());
+  }
+
+  @Test
+  public void probesCloseOrReopenTheCircuit() {
+    open();
+    clock.advance(OPEN_DURATION);
+    breaker.record(breaker.tryAcquire(), SLOW_CALL.toNanos(), false);
+    assertEquals(State.OPEN, breaker.state());
+    assertEquals(Permission.DENIED, breaker.tryAcquire());
+
+    clock.advance(OPEN_DURATION);
+    breaker.record(breaker.tryAcquire(), 0, false);
+    assertEquals(State.CLOSED, breaker.state());
+    assertEquals(Permission.CALL, breaker.tryAcquire());
+  }
+
+  @Test
+  public void callsFromBeforeTheCircuitOpenedAreIgnored() {
+    open();
+    for (int i = 0; i < 10; i++) {
+      breaker.record(Permission.CALL, 0, false);
+    }
+    assertEquals(State.OPEN, breaker.state());
+  }
+
+  @Test
+  public void concurrentProbesAreExclusive() throws InterruptedException {
+    open();
+    clock.advance(OPEN_DURATION);
+    AtomicInteger probes = new AtomicInteger();
+    runConcurrently(16, thread -> {
+      if (breaker.tryAcquire() == Permission.PROBE) {
+        probes.incrementAndGet();
+      }
+    });
+    assertEquals(1, probes.get());
+  }
+
+  private void open() {
+    for (int i = 0; i < 10; i++) {
+      breaker.record(Permission.CALL, 0, true);
+    }
+    assertEquals(State.OPEN, breaker.state());
+  }
+}
@@ -0,0 +1,215 @@
+package ic.doc.forecast;
+
+import static ic.doc.TestUtils.runConcurrently;
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static ic.doc.forecast.ForecastTestUtils.slowForecaster;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+
+  private static final Duration LATENCY = Duration.ofMillis(5);
+
+  @Test
+  public void requestsInFlightNeverExceedTheLimit() throws InterruptedException {
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    Forecaster slow = slowForecaster(countingForecaster(new AtomicInteger()), LATENCY);
+    ConcurrencyLimiter limiter = ConcurrencyLimiter.limit((region, day) -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        return slow.forecastFor(region, day);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    }, LimiterOptions.defaults().withInitialLimit(2).withLimits(2, 2)
+        .withMaxQueueWait(Duration.ofSeconds(10)));
+
+    runConcurrently(8, thread -> {
+      for (int i = 0; i < 5; i++) {
+        assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+            limiter.forecastFor(Region.LONDON, Day.MONDAY));
+      }
+    });
+    assertEquals(2, maxInFlight.get());
+    assertEquals(0, limiter.getInFlight());
+    assertEquals(0, limiter.getShed());
+  }
+
+  @Test
+  public void requestsAreShedWhenTheQueueIsFull() throws InterruptedException {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ConcurrencyLimiter limiter = ConcurrencyLimiter.limit((region, day) -> {
+      blocked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      return fixedForecast(region, day);
+    }, LimiterOptions.defaults().withInitialLimit(1).withLimits(1, 1).withMaxQueueSize(0));
+
+    Thread holder = Thread.startVirtualThread(() -> limiter.forecastFor(Region.WALES, Day.MONDAY));
+    blocked.await();
+    assertThrows(ForecastUnavailableException.class,
+        () -> limiter.forecastFor(Region.WALES, Day.TUESDAY));
+    assertEquals(1, limiter.getShed());
+
+    release.countDown();
+    holder.join();
+    assertEquals(fixedForecast(Region.WALES, Day.TUESDAY),
+        limiter.forecastFor(Region.WALES, Day.TUESDAY));
+  }
+
+  @Test
+  public void queuedRequestsAreShedAfterWaitingTooLong() throws InterruptedException {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ConcurrencyLimiter limiter = ConcurrencyLimiter.limit((region, day) -> {
+      blocked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      return fixedForecast(region, day);
+    }, LimiterOptions.defaults().withInitialLimit(1).withLimits(1, 1).withMaxQueueSize(1)
+        .withMaxQueueWait(Duration.ofMillis(200)));
+
+    Thread holder = Thread.startVirtualThread(() -> limiter.forecastFor(Region.WALES, Day.MONDAY));
+    blocked.await();
+    Thread waiter = Thread.startVirtualThread(() -> assertThrows(
+        ForecastUnavailableException.class, () -> limiter.forecastFor(Region.WALES, Day.FRIDAY)));
+    while (limiter.getQueueDepth() == 0 && waiter.isAlive()) {
+      Thread.onSpinWait();
+    }
+    assertEquals(1, limiter.getInFlight());
+
+    waiter.join();
+    assertEquals(0, limiter.getQueueDepth());
+    assertEquals(1, limiter.getShed());
+    release.countDown();
+    holder.join();
+  }
+
+  @Test
+  public void limitGrowsWhileTheForecastServiceKeepsUp() throws InterruptedException {
+    ConcurrencyLimiter limiter = ConcurrencyLimiter.limit(
+        slowForecaster(countingForecaster(new AtomicInteger()), LATENCY),
+        LimiterOptions.defaults().withInitialLimit(1).withLimits(1, 50));
+
+    runConcurrently(16, thread -> {
+      for (int i = 0; i < 10; i++) {
+        limiter.forecastFor(Region.LONDON, Day.MONDAY);
+      }
+    });
+    assertTrue(limiter.getLimit() > 1);
+  }
+
+  @Test
+  public void limitShrinksWhenTheForecastServiceSlowsDown() {
+    AtomicInteger calls = new AtomicInteger();
+    ConcurrencyLimiter limiter = ConcurrencyLimiter.limit((region, day) -> {
+      Duration latency = calls.incrementAndGet() <= 20 ? LATENCY : LATENCY.multipliedBy(6);
+      return slowForecaster(countingForecaster(new AtomicInteger()), latency)
+          .forecastFor(region, day);
+    }, LimiterOptions.defaults().withInitialLimit(20).withLimits(1, 50));
+
+    for (int i = 0; i < 40; i++) {
+      limiter.forecastFor(Region.LONDON, Day.MONDAY);
+    }
+    assertTrue(limiter.getLimit() < 20);
+  }
+
+  @Test
+  public void limitHoldsUnderNoLoadDespiteVariableLatency() {
+    // latencies spread uniformly between 2 and 10 units, like the 2 to 10 seconds of the
+    // forecast service
+    Random random = new Random(42);
+    ConcurrencyLimiter limiter = ConcurrencyLimiter.limit((region, day) -> {
+      Duration latency = Duration.ofMillis(2 + random.nextInt(9));
+      return slowForecaster(countingForecaster(new AtomicInteger()), latency)
+          .forecastFor(region, day);
+    }, LimiterOptions.defaults().withInitialLimit(10).withLimits(1, 50));
+
+    for (int i = 0; i < 100; i++) {
+      limiter.forecastFor(Region.LONDON, Day.MONDAY);
+    }
+    assertEquals(10, limiter.getLimit());
+  }
+
+  @Test
+  public void fastFailuresDoNotCountTowardsTheLatencyBaseline() {
+    AtomicInteger calls = new AtomicInteger();
+    ConcurrencyLimiter limiter = ConcurrencyLimiter.limit((region, day) -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new IllegalStateException("Forecast service is down");
+      }
+      return slowForecaster(countingForecaster(new AtomicInteger()), LATENCY)
+          .forecastFor(region, day);
+    }, LimiterOptions.defaults().withInitialLimit(20).withLimits(1, 50));
+
+    assertThrows(IllegalStateException.class,
+        () -> limiter.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(18, limiter.getLimit());
+    for (int i = 0; i < 40; i++) {
+      limiter.forecastFor(Region.LONDON, Day.MONDAY);
+    }
+    assertEquals(18, limiter.getLimit());
+  }
+
+  @Test
+  public void failedRequestsShrinkTheLimit() {
+    ConcurrencyLimiter limiter = ConcurrencyLimiter.limit((region, day) -> {
+      throw new IllegalStateException("Forecast service is down");
+    }, LimiterOptions.defaults().withInitialLimit(20).withLimits(1, 50));
+
+    for (int i = 0; i < 5; i++) {
+      assertThrows(IllegalStateException.class,
+          () -> limiter.forecastFor(Region.LONDON, Day.MONDAY));
+    }
+    assertTrue(limiter.getLimit() < 20);
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void limiterIsExposedAsAnMBean() throws JMException {
+    ConcurrencyLimiter limiter = ConcurrencyLimiter.limit(countingForecaster(new AtomicInteger()),
+        LimiterOptions.defaults().withInitialLimit(7));
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    String name = "limiter test";
+    limiter.registerMBean(name);
+    try {
+      assertEquals(7, server.getAttribute(ConcurrencyLimiter.objectName(name), "Limit"));
+      assertEquals(0,
+          server.getAttribute(ConcurrencyLimiter.objectName(name), "QueueDepth"));
+    } finally {
+      limiter.unregisterMBean(name);
+    }
+    assertFalse(server.isRegistered(ConcurrencyLimiter.objectName(name)));
+  }
+
+  @Test
+  public void invalidOptionsAreRejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> LimiterOptions.defaults().withLimits(0, 10));
+    assertThrows(IllegalArgumentException.class,
+        () -> LimiterOptions.defaults().withInitialLimit(500));
+    assertThrows(IllegalArgumentException.class,
+        () -> LimiterOptions.defaults().withMaxQueueSize(-1));
+  }
+}
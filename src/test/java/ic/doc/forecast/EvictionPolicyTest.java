@@ -0,0 +1,141 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.CachingForecasterProxy.withLimitedCache;
+import static ic.doc.forecast.ForecastCache.dayOf;
+import static ic.doc.forecast.ForecastCache.regionOf;
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import ic.doc.forecast.ForecastCache.Entry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class EvictionPolicyTest {
+
+  private static final int CACHE_SIZE_LIMIT = 8;
+  private static final int NUMBER_OF_REQUESTS = 50_000;
+  private static final double ZIPF_EXPONENT = 0.9;
+  private static final long SEED = 42;
+  private static final double MARGIN = 0.05;
+
+  @Test
+  public void frequencyAwarePoliciesHitMoreOftenOnSkewedWorkloads() {
+    List<Integer> workload = zipfWorkload(new Random(SEED));
+    double fifo = hitRatio(EvictionPolicy.FIFO, workload);
+    double lru = hitRatio(EvictionPolicy.LRU, workload);
+    double lfu = hitRatio(EvictionPolicy.LFU, workload);
+    double windowTinyLfu = hitRatio(EvictionPolicy.WINDOW_TINY_LFU, workload);
+
+    // recency beats insertion order, but frequency beats both by a wide margin
+    assertTrue(lru > fifo);
+    assertTrue(lfu > lru + MARGIN);
+    assertTrue(windowTinyLfu > lru + MARGIN);
+  }
+
+  @Test
+  public void windowTinyLfuResistsScans() {
+    Random random = new Random(SEED);
+    List<Integer> workload = new ArrayList<>();
+    while (workload.size() < NUMBER_OF_REQUESTS) {
+      // a burst of requests for a small hot set, followed by a scan over every query
+      for (int i = 0; i < 50; i++) {
+        workload.add(random.nextInt(CACHE_SIZE_LIMIT / 2));
+      }
+      for (int index = 0; index < ForecastCache.CAPACITY; index++) {
+        workload.add(index);
+      }
+    }
+
+    // scans flush the hot set out of recency-based caches, but are not admitted by W-TinyLFU
+    double lru = hitRatio(EvictionPolicy.LRU, workload);
+    assertTrue(hitRatio(EvictionPolicy.WINDOW_TINY_LFU, workload) > lru + MARGIN);
+  }
+
+  @Test
+  public void everyPolicyKeepsTheStoreWithinItsLimit() {
+    Random random = new Random(SEED);
+    Instant now = Instant.now();
+    for (EvictionPolicy evictionPolicy : EvictionPolicy.values()) {
+      for (int maxSize = 1; maxSize < ForecastCache.CAPACITY; maxSize += 7) {
+        ForecastCache cache = new ForecastCache(maxSize, evictionPolicy,
+            new ForecasterMetrics());
+        for (int i = 0; i < NUMBER_OF_REQUESTS / 10; i++) {
+          int index = random.nextInt(ForecastCache.CAPACITY);
+          Entry entry = cache.get(index);
+          switch (random.nextInt(3)) {
+            case 0 -> cache.recordHit(index);
+            case 1 -> {
+              if (entry != null) {
+                cache.remove(entry);
+              }
+            }
+            default -> {
+              // a new entry is never the one chosen for eviction
+              cache.put(new Entry(index, fixedForecast(regionOf(index), dayOf(index)), now, now,
+                  now));
+              assertNotNull(cache.get(index));
+            }
+          }
+
+          assertTrue(cache.size() <= maxSize);
+          assertEquals(cache.entries().size(), cache.size());
+        }
+      }
+    }
+  }
+
+  /**
+   * Generates a workload of slot indices, where the popularity of each query follows a Zipf
+   * distribution, so that a few queries make up most of the requests.
+   *
+   * @param random the source of randomness
+   * @return the workload
+   */
+  private static List<Integer> zipfWorkload(Random random) {
+    List<Integer> ranking = new ArrayList<>();
+    for (int index = 0; index < ForecastCache.CAPACITY; index++) {
+      ranking.add(index);
+    }
+    Collections.shuffle(ranking, random);
+
+    double[] cumulativeWeights = new double[ForecastCache.CAPACITY];
+    double total = 0;
+    for (int rank = 0; rank < ForecastCache.CAPACITY; rank++) {
+      total += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+      cumulativeWeights[rank] = total;
+    }
+
+    List<Integer> workload = new ArrayList<>(NUMBER_OF_REQUESTS);
+    for (int i = 0; i < NUMBER_OF_REQUESTS; i++) {
+      int rank = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * total);
+      workload.add(ranking.get(rank < 0 ? -rank - 1 : rank));
+    }
+    return workload;
+  }
+
+  /**
+   * Replays a workload of slot indices through a size-limited caching proxy.
+   *
+   * @param evictionPolicy the {@link EvictionPolicy} of the cache
+   * @param workload       the slot indices to request, in order
+   * @return the proportion of requests which hit the cache
+   */
+  private static double hitRatio(EvictionPolicy evictionPolicy, List<Integer> workload) {
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    Forecaster proxy = withLimitedCache(countingForecaster(upstreamCalls), CACHE_SIZE_LIMIT,
+        evictionPolicy);
+    for (int index : workload) {
+      proxy.forecastFor(regionOf(index), dayOf(index));
+    }
+    return 1 - (double) upstreamCalls.get() / workload.size();
+  }
+}
@@ -0,0 +1,145 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.dayOf;
+import static ic.doc.forecast.ForecastCache.indexOf;
+import static ic.doc.forecast.ForecastCache.regionOf;
+import static ic.doc.forecast.ForecastTestUtils.DAYS;
+import static ic.doc.forecast.ForecastTestUtils.REGIONS;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import ic.doc.forecast.ForecastCache.Entry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+public class ForecastCacheTest {
+
+  private static final int CACHE_SIZE_LIMIT = 5;
+  private static final Duration ONE_HOUR = Duration.ofHours(1);
+
+  private final Instant now = Instant.now();
+
+  @Test
+  public void everyQueryHasItsOwnDenselyPackedSlot() {
+    Set<Integer> indices = new HashSet<>();
+    for (Region region : REGIONS) {
+      for (Day day : DAYS) {
+        int index = indexOf(region, day);
+        assertTrue(index >= 0 && index < ForecastCache.CAPACITY);
+        assertEquals(region, regionOf(index));
+        assertEquals(day, dayOf(index));
+        indices.add(index);
+      }
+    }
+    assertEquals(ForecastCache.CAPACITY, indices.size());
+  }
+
+  @Test
+  public void storedEntriesCanBeLookedUpAndRemoved() {
+    ForecastCache cache = new ForecastCache(ForecastCache.CAPACITY);
+    Entry entry = entryFor(Region.LONDON, Day.MONDAY, now);
+
+    cache.put(entry);
+    assertSame(entry, cache.get(entry.index()));
+    assertEquals(1, cache.size());
+
+    // replacing an entry does not grow the store, and the replaced entry can no longer be removed
+    Entry replacement = entryFor(Region.LONDON, Day.MONDAY, now);
+    cache.put(replacement);
+    assertEquals(1, cache.size());
+    assertFalse(cache.remove(entry));
+    assertTrue(cache.remove(replacement));
+    assertNull(cache.get(entry.index()));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void limitedStoreEvictsTheOldestEntriesFirst() {
+    ForecastCache cache = new ForecastCache(CACHE_SIZE_LIMIT);
+    for (int i = 0; i <= CACHE_SIZE_LIMIT; i++) {
+      cache.put(entryFor(regionOf(i), dayOf(i), now));
+    }
+
+    assertEquals(CACHE_SIZE_LIMIT, cache.size());
+    assertNull(cache.get(0));
+    for (int i = 1; i <= CACHE_SIZE_LIMIT; i++) {
+      assertEquals(fixedForecast(regionOf(i), dayOf(i)), cache.get(i).forecast());
+    }
+  }
+
+  @Test
+  public void expiredEntriesAreRemovedFromLimitedStores() {
+    ForecastCache cache = new ForecastCache(CACHE_SIZE_LIMIT);
+    cache.put(entryFor(Region.WALES, Day.FRIDAY, now.minus(ONE_HOUR.multipliedBy(2))));
+    cache.put(entryFor(Region.WALES, Day.SUNDAY, now));
+
+    cache.removeExpired(now);
+    assertEquals(1, cache.size());
+    assertNull(cache.get(indexOf(Region.WALES, Day.FRIDAY)));
+  }
+
+  @Test
+  public void expiredEntriesAreReclaimedFromUnlimitedStores() {
+    ForecastCache cache = new ForecastCache(ForecastCache.CAPACITY);
+    for (int i = 0; i < ForecastCache.CAPACITY; i++) {
+      cache.put(entryFor(regionOf(i), dayOf(i), now.plus(Duration.ofMinutes(i))));
+    }
+
+    // entries are reclaimed as time passes, without ever being looked up again
+    cache.removeExpired(now.plus(ONE_HOUR).plus(Duration.ofMinutes(10)).plusSeconds(30));
+    assertEquals(ForecastCache.CAPACITY - 11, cache.size());
+    cache.removeExpired(now.plus(ONE_HOUR.multipliedBy(3)));
+    assertEquals(0, cache.size());
+    assertTrue(cache.entries().isEmpty());
+  }
+
+  @Test
+  public void replacedEntriesAreRescheduled() {
+    ForecastCache cache = new ForecastCache(CACHE_SIZE_LIMIT);
+    cache.put(entryFor(Region.WALES, Day.FRIDAY, now));
+    Entry replacement = entryFor(Region.WALES, Day.FRIDAY, now.plus(ONE_HOUR));
+    cache.put(replacement);
+
+    cache.removeExpired(now.plus(ONE_HOUR).plusSeconds(30));
+    assertSame(replacement, cache.get(replacement.index()));
+  }
+
+  @Test
+  public void hitsServeExpiredEntriesOnlyWithinTheStaleGracePeriod() {
+    ForecastCache cache = new ForecastCache(ForecastCache.CAPACITY, EvictionPolicy.FIFO,
+        new ForecasterMetrics(), Duration.ofMinutes(5));
+    Entry entry = entryFor(Region.WALES, Day.FRIDAY, now);
+    cache.put(entry);
+
+    // an expired entry is still served within the grace period, but is no longer fresh
+    Instant expired = now.plus(ONE_HOUR).plusSeconds(1);
+    assertSame(entry, cache.hit(entry.index(), expired));
+    assertNull(cache.getFresh(entry.index(), expired));
+    assertSame(entry, cache.getFresh(entry.index(), now));
+
+    // past the grace period, the entry is removed
+    assertNull(cache.hit(entry.index(), expired.plus(Duration.ofMinutes(5))));
+    assertNull(cache.get(entry.index()));
+  }
+
+  /**
+   * Makes a cache entry for a query, holding its fixed {@link Forecast}, which expires an hour
+   * after it was fetched.
+   *
+   * @param region    the {@link Region}
+   * @param day       the {@link Day}
+   * @param timestamp the time at which the entry was fetched
+   * @return the cache entry
+   */
+  private static Entry entryFor(Region region, Day day, Instant timestamp) {
+    Instant expiry = timestamp.plus(ONE_HOUR);
+    return new Entry(indexOf(region, day), fixedForecast(region, day), timestamp, expiry, expiry);
+  }
+}
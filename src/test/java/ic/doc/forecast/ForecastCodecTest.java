@@ -0,0 +1,137 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastTestUtils.DAYS;
+import static ic.doc.forecast.ForecastTestUtils.REGIONS;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static ic.doc.forecast.ForecastTestUtils.randomDay;
+import static ic.doc.forecast.ForecastTestUtils.randomRegion;
+import static ic.doc.forecast.ForecastTestUtils.randomSummary;
+import static ic.doc.forecast.ForecastTestUtils.randomTemperature;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import ic.doc.util.Triple;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ForecastCodecTest {
+
+  private static final List<String> DICTIONARY = List.of("Sunny", "Cloudy", "Rain");
+  private static final int BATCHES = 64;
+  private static final int BATCH_SIZE = 1024;
+
+  private final ForecastCodec codec = new ForecastCodec(DICTIONARY);
+
+  @Test
+  public void forecastsSurviveARoundTrip() {
+    List<Triple<Region, Day, Forecast>> forecasts = List.of(
+        Triple.of(Region.LONDON, Day.MONDAY, new Forecast("Sunny", 25)),
+        Triple.of(Region.WALES, Day.SUNDAY, new Forecast("Drizzle ☔", -3)),
+        Triple.of(Region.GLASGOW, Day.FRIDAY, new Forecast("", Integer.MIN_VALUE, true)),
+        Triple.of(Region.LONDON, Day.TUESDAY, new Forecast("Gale 🌬 \uD800", Integer.MAX_VALUE)),
+        Triple.of(randomRegion(), randomDay(), new Forecast(randomSummary(), randomTemperature())));
+
+    for (ByteBuffer buffer : List.of(ByteBuffer.allocate(256), ByteBuffer.allocateDirect(256))) {
+      for (Triple<Region, Day, Forecast> forecast : forecasts) {
+        codec.encode(forecast.first(), forecast.second(), forecast.third(), buffer);
+      }
+      buffer.flip();
+
+      List<Triple<Region, Day, Forecast>> decoded = new ArrayList<>();
+      for (int i = 0; i < forecasts.size(); i++) {
+        codec.decode(buffer, (region, day, forecast) ->
+            decoded.add(Triple.of(region, day, forecast)));
+      }
+      assertEquals(0, buffer.remaining());
+      assertEquals(forecasts.get(0), decoded.get(0));
+      assertEquals(forecasts.get(1), decoded.get(1));
+      assertEquals(forecasts.get(2), decoded.get(2));
+      assertEquals(new Forecast("Gale 🌬 ?", Integer.MAX_VALUE), decoded.get(3).third());
+      assertEquals(forecasts.get(4), decoded.get(4));
+    }
+  }
+
+  @Test
+  public void encodedSizesAreExact() {
+    List<Forecast> forecasts = List.of(new Forecast("Sunny", 25), new Forecast("Drizzle ☔", -3),
+        new Forecast("Gale 🌬 \uD800", Integer.MAX_VALUE), new Forecast(randomSummary(), 0));
+    for (Forecast forecast : forecasts) {
+      ByteBuffer buffer = ByteBuffer.allocate(64);
+      codec.encode(Region.LONDON, Day.MONDAY, forecast, buffer);
+      assertEquals(codec.encodedSize(forecast), buffer.position());
+    }
+  }
+
+  @Test
+  public void dictionarySummariesAndSmallTemperaturesAreCompact() {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    codec.encode(Region.LONDON, Day.MONDAY, new Forecast("Rain", -12), buffer);
+    assertEquals(3, buffer.position());
+
+    buffer.clear();
+    codec.encode(Region.LONDON, Day.MONDAY, new Forecast("Drizzle", -12), buffer);
+    assertEquals(10, buffer.position());
+  }
+
+  @Test
+  public void gridsSurviveARoundTrip() {
+    ForecastGrid grid = new ForecastGrid();
+    for (Region region : REGIONS) {
+      for (Day day : DAYS) {
+        grid.put(region, day, fixedForecast(region, day));
+      }
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(grid));
+    codec.encode(grid, buffer);
+    assertEquals(0, buffer.remaining());
+    buffer.flip();
+    assertEquals(grid, codec.decodeGrid(buffer));
+    assertEquals(0, buffer.remaining());
+  }
+
+  @Test
+  public void overflowingEncodesLeaveTheBufferUnchanged() {
+    ByteBuffer buffer = ByteBuffer.allocate(8);
+    buffer.put((byte) 1);
+    assertThrows(BufferOverflowException.class,
+        () -> codec.encode(Region.LONDON, Day.MONDAY, new Forecast("Drizzle", 10), buffer));
+    assertEquals(1, buffer.position());
+  }
+
+  @Test
+  public void corruptEncodingsAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(
+        ByteBuffer.wrap(new byte[] {(byte) 63, 0, 0}), (region, day, forecast) -> {}));
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(
+        ByteBuffer.wrap(new byte[] {(byte) 0x80, 0, 3}), (region, day, forecast) -> {}));
+    assertThrows(BufferUnderflowException.class, () -> codec.decode(
+        ByteBuffer.wrap(new byte[] {0, 0, 10, 'a'}), (region, day, forecast) -> {}));
+  }
+
+  @Test
+  public void reusedBuffersRoundTripBatchesOfForecasts() {
+    ForecastCodec plainCodec = new ForecastCodec(List.of());
+    Forecast forecast = new Forecast("Light rain, clearing later", 14);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(plainCodec.encodedSize(forecast) * BATCH_SIZE);
+    int[] checksum = new int[1];
+
+    for (int i = 0; i < BATCHES; i++) {
+      buffer.clear();
+      for (int j = 0; j < BATCH_SIZE; j++) {
+        plainCodec.encode(Region.LONDON, Day.MONDAY, forecast, buffer);
+      }
+      buffer.flip();
+      for (int j = 0; j < BATCH_SIZE; j++) {
+        plainCodec.decode(buffer, (region, day, decoded) -> checksum[0] += decoded.temperature());
+      }
+      assertEquals(0, buffer.remaining());
+    }
+
+    assertEquals(BATCHES * BATCH_SIZE * 14, checksum[0]);
+  }
+}
@@ -0,0 +1,76 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastTestUtils.DAYS;
+import static ic.doc.forecast.ForecastTestUtils.REGIONS;
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ForecastGridTest {
+
+  @Test
+  public void forecastsCanBeLookedUpByRegionAndDay() {
+    ForecastGrid grid = new ForecastGrid();
+    grid.put(Region.LONDON, Day.MONDAY, fixedForecast(Region.LONDON, Day.MONDAY));
+    grid.put(Region.LONDON, Day.MONDAY, fixedForecast(Region.LONDON, Day.MONDAY));
+    grid.put(Region.WALES, Day.SUNDAY, fixedForecast(Region.WALES, Day.SUNDAY));
+
+    assertEquals(2, grid.size());
+    assertEquals(fixedForecast(Region.WALES, Day.SUNDAY), grid.get(Region.WALES, Day.SUNDAY));
+    assertNull(grid.get(Region.WALES, Day.MONDAY));
+    assertNull(grid.get(Region.GLASGOW, Day.MONDAY));
+    assertEquals(1, grid.forRegion(Region.LONDON).size());
+    assertEquals(0, grid.forRegion(Region.GLASGOW).size());
+  }
+
+  @Test
+  public void forecastsAreVisitedInRegionAndThenDayOrder() {
+    ForecastGrid grid = new ForecastGrid();
+    for (int i = REGIONS.length - 1; i >= 0; i--) {
+      for (int j = DAYS.length - 1; j >= 0; j--) {
+        grid.put(REGIONS[i], DAYS[j], fixedForecast(REGIONS[i], DAYS[j]));
+      }
+    }
+
+    List<Integer> temperatures = new ArrayList<>();
+    grid.forEach((region, day, forecast) -> temperatures.add(forecast.temperature()));
+    for (int i = 0; i < temperatures.size(); i++) {
+      assertEquals((Integer) i, temperatures.get(i));
+    }
+  }
+
+  @Test
+  public void defaultBulkQueryAsksForEachForecastInTurn() {
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    Forecaster forecaster = countingForecaster(upstreamCalls);
+    Set<Region> regions = EnumSet.of(Region.LONDON, Region.WALES);
+    Set<Day> days = EnumSet.allOf(Day.class);
+
+    ForecastGrid grid = forecaster.forecastsFor(regions, days);
+    assertEquals(regions.size() * days.size(), grid.size());
+    assertEquals(regions.size() * days.size(), upstreamCalls.get());
+    grid.forEach((region, day, forecast) -> assertEquals(fixedForecast(region, day), forecast));
+  }
+
+  @Test
+  public void nullObjectsAreNotAccepted() {
+    ForecastGrid grid = new ForecastGrid();
+    Forecast forecast = fixedForecast(Region.LONDON, Day.MONDAY);
+    assertThrows(NullPointerException.class, () -> grid.put(null, Day.MONDAY, forecast));
+    assertThrows(NullPointerException.class, () -> grid.put(Region.LONDON, null, forecast));
+    assertThrows(NullPointerException.class, () -> grid.put(Region.LONDON, Day.MONDAY, null));
+
+    Forecaster forecaster = countingForecaster(new AtomicInteger());
+    assertThrows(NullPointerException.class, () -> forecaster.forecastsFor(null, Set.of()));
+    assertThrows(NullPointerException.class, () -> forecaster.forecastsFor(Set.of(), null));
+  }
+}
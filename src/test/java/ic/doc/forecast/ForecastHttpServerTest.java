@@ -0,0 +1,291 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastTestUtils.DAYS;
+import static ic.doc.forecast.ForecastTestUtils.REGIONS;
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static ic.doc.forecast.ForecastTestUtils.randomDay;
+import static ic.doc.forecast.ForecastTestUtils.randomRegion;
+import static ic.doc.forecast.ForecastTestUtils.slowForecaster;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import ic.doc.ManualInstantSource;
+import ic.doc.TestUtils;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class ForecastHttpServerTest {
+
+  private static final int LOAD_TEST_THREADS = 32;
+  private static final int LOAD_TEST_REQUESTS = 250;
+
+  private final ManualInstantSource clock = new ManualInstantSource(Instant.now());
+  private final AtomicInteger upstreamCalls = new AtomicInteger();
+  private final HttpClient client = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1).build();
+  private ForecastHttpServer server;
+
+  @After
+  public void stopServer() throws IOException {
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void singleForecastsAreServedAsJson() throws Exception {
+    startServer(countingForecaster(upstreamCalls));
+
+    HttpResponse<String> response = get("/forecast/london/monday");
+    assertEquals(200, response.statusCode());
+    assertEquals("{\"region\":\"LONDON\",\"day\":\"MONDAY\",\"summary\":\"LONDON on MONDAY\","
+        + "\"temperature\":" + fixedForecast(Region.LONDON, Day.MONDAY).temperature()
+        + ",\"stale\":false}", response.body());
+    assertEquals("application/json; charset=utf-8",
+        response.headers().firstValue("Content-Type").orElseThrow());
+    assertEquals(1, upstreamCalls.get());
+  }
+
+  @Test
+  public void cacheControlFollowsTheRemainingTimeToLive() throws Exception {
+    startServer(countingForecaster(upstreamCalls));
+
+    HttpResponse<String> first = get("/forecast/south-west-england/friday");
+    assertEquals("max-age=3600", first.headers().firstValue("Cache-Control").orElseThrow());
+
+    clock.advance(Duration.ofMinutes(20));
+    HttpResponse<String> second = get("/forecast/SOUTH_WEST_ENGLAND/Friday");
+    assertEquals("max-age=2400", second.headers().firstValue("Cache-Control").orElseThrow());
+    assertEquals(first.headers().firstValue("ETag"), second.headers().firstValue("ETag"));
+    assertEquals(first.body(), second.body());
+    assertEquals(1, upstreamCalls.get());
+  }
+
+  @Test
+  public void matchingEntityTagsAreRevalidatedWithoutABody() throws Exception {
+    startServer(countingForecaster(upstreamCalls));
+    String etag = get("/forecast/wales").headers().firstValue("ETag").orElseThrow();
+
+    HttpResponse<String> response = client.send(request("/forecast/wales")
+        .header("If-None-Match", etag).build(), BodyHandlers.ofString());
+    assertEquals(304, response.statusCode());
+    assertEquals("", response.body());
+    assertEquals(etag, response.headers().firstValue("ETag").orElseThrow());
+
+    HttpResponse<String> changed = client.send(request("/forecast/wales")
+        .header("If-None-Match", "\"0\"").build(), BodyHandlers.ofString());
+    assertEquals(200, changed.statusCode());
+  }
+
+  @Test
+  public void weeksAndGridsContainEveryForecast() throws Exception {
+    startServer(countingForecaster(upstreamCalls));
+
+    String week = get("/forecast/glasgow").body();
+    for (Day day : DAYS) {
+      assertTrue(week.contains("\"" + day + "\":{\"summary\":\"GLASGOW on " + day + "\""));
+    }
+
+    HttpResponse<String> grid = get("/forecast");
+    for (Region region : REGIONS) {
+      for (Day day : DAYS) {
+        assertTrue(grid.body().contains("\"summary\":\"" + region + " on " + day + "\""));
+      }
+    }
+    assertEquals(REGIONS.length * DAYS.length, upstreamCalls.get());
+
+    // nothing changed in the cache, so the grid is served again as it was
+    clock.advance(Duration.ofMinutes(30));
+    HttpResponse<String> cachedGrid = get("/forecast/");
+    assertEquals(grid.body(), cachedGrid.body());
+    assertEquals(grid.headers().firstValue("ETag"), cachedGrid.headers().firstValue("ETag"));
+    assertEquals("max-age=1800", cachedGrid.headers().firstValue("Cache-Control").orElseThrow());
+    assertEquals(REGIONS.length * DAYS.length, upstreamCalls.get());
+  }
+
+  @Test
+  public void badRequestsAndFailuresAreReported() throws Exception {
+    startServer((region, day) -> {
+      throw new IllegalStateException("forecast service unavailable");
+    });
+
+    assertEquals(404, get("/forecast/atlantis").statusCode());
+    assertEquals(404, get("/forecast/london/someday").statusCode());
+    assertEquals(404, get("/forecast/london/monday/noon").statusCode());
+    assertEquals(404, get("/forecasts").statusCode());
+    assertEquals(405, client.send(request("/forecast/london/monday")
+        .POST(BodyPublishers.ofString("sunny")).build(), BodyHandlers.ofString()).statusCode());
+
+    HttpResponse<String> failure = get("/forecast/london/monday");
+    assertEquals(502, failure.statusCode());
+    assertEquals("no-store", failure.headers().firstValue("Cache-Control").orElseThrow());
+  }
+
+  @Test
+  public void connectionsAreKeptAliveBetweenRequests() throws Exception {
+    startServer(countingForecaster(upstreamCalls));
+
+    try (Socket socket = new Socket(server.address().getAddress(), server.address().getPort())) {
+      OutputStream out = socket.getOutputStream();
+      BufferedReader in = new BufferedReader(
+          new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      for (Day day : DAYS) {
+        out.write(("GET /forecast/london/" + day + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        assertTrue(readBody(in).contains("LONDON on " + day));
+      }
+    }
+    assertEquals(DAYS.length, upstreamCalls.get());
+  }
+
+  @Test
+  public void connectionsAreClosedWhenTheClientAsks() throws Exception {
+    startServer(countingForecaster(upstreamCalls));
+
+    for (String request : List.of(
+        "GET /forecast/wales/sunday HTTP/1.1\r\nConnection: close\r\n\r\n",
+        "GET /forecast/wales/sunday HTTP/1.0\r\n\r\n")) {
+      List<String> response = exchange(request);
+      assertEquals("HTTP/1.1 200 OK", response.get(0));
+      assertTrue(response.contains("Connection: close"));
+      assertTrue(response.get(response.size() - 1).contains("WALES on SUNDAY"));
+    }
+  }
+
+  @Test
+  public void malformedRequestsAreRejected() throws Exception {
+    startServer(countingForecaster(upstreamCalls));
+
+    assertEquals("HTTP/1.1 400 Bad Request", exchange("GARBAGE\r\n\r\n").get(0));
+    assertEquals("HTTP/1.1 400 Bad Request",
+        exchange("GET /forecast HTTP/1.1\r\nno colon\r\n\r\n").get(0));
+    assertEquals(0, upstreamCalls.get());
+  }
+
+  @Test
+  public void requestsTruncatedBeforeTheEndOfTheirHeadersAreRejected() throws Exception {
+    startServer(countingForecaster(upstreamCalls));
+
+    try (Socket socket = new Socket(server.address().getAddress(), server.address().getPort())) {
+      socket.getOutputStream().write("GET /forecast/LONDON/MONDAY HTTP/1.1\r\n"
+          .getBytes(StandardCharsets.US_ASCII));
+      socket.shutdownOutput();
+      String response = new String(socket.getInputStream().readAllBytes(),
+          StandardCharsets.UTF_8);
+      assertEquals("HTTP/1.1 400 Bad Request", response.split("\r\n")[0]);
+    }
+    assertEquals(0, upstreamCalls.get());
+  }
+
+  @Test
+  public void serverHandlesConcurrentLoadAgainstASlowUpstream() throws Exception {
+    startServer(slowForecaster(countingForecaster(upstreamCalls), Duration.ofMillis(20)));
+    AtomicInteger failures = new AtomicInteger();
+
+    // every client keeps its connection alive throughout, as a front-end proxy would; throughput
+    // is measured by LoadTest --http, rather than against the wall clock of a shared build machine
+    TestUtils.runConcurrently(LOAD_TEST_THREADS, i -> {
+      try (Socket socket = new Socket(server.address().getAddress(), server.address().getPort())) {
+        OutputStream out = socket.getOutputStream();
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        for (int j = 0; j < LOAD_TEST_REQUESTS; j++) {
+          Region region = randomRegion();
+          Day day = randomDay();
+          out.write(("GET /forecast/" + region + "/" + day + " HTTP/1.1\r\n\r\n")
+              .getBytes(StandardCharsets.US_ASCII));
+          out.flush();
+          if (!readBody(in).contains(region + " on " + day)) {
+            failures.incrementAndGet();
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+
+    assertEquals(0, failures.get());
+    assertTrue(upstreamCalls.get() <= REGIONS.length * DAYS.length);
+  }
+
+  @Test
+  public void closingTheServerClosesOpenConnections() throws Exception {
+    startServer(countingForecaster(upstreamCalls));
+
+    try (Socket socket = new Socket(server.address().getAddress(), server.address().getPort())) {
+      socket.getOutputStream().write("GET /forecast/wales/monday HTTP/1.1\r\n\r\n"
+          .getBytes(StandardCharsets.US_ASCII));
+      BufferedReader in = new BufferedReader(
+          new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      assertTrue(readBody(in).contains("WALES on MONDAY"));
+
+      server.close();
+      int next;
+      try {
+        next = in.read();
+      } catch (IOException e) {
+        next = -1;
+      }
+      assertEquals(-1, next);
+    }
+  }
+
+  private void startServer(Forecaster upstream) throws IOException {
+    server = new ForecastHttpServer(new CachingForecasterProxy(upstream, clock),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+  }
+
+  private static String readBody(BufferedReader in) throws IOException {
+    assertEquals("HTTP/1.1 200 OK", in.readLine());
+    int contentLength = -1;
+    for (String header = in.readLine(); !header.isEmpty(); header = in.readLine()) {
+      if (header.startsWith("Content-Length:")) {
+        contentLength = Integer.parseInt(header.substring(15).trim());
+      }
+    }
+    char[] body = new char[contentLength];
+    for (int read = 0; read < contentLength; ) {
+      read += in.read(body, read, contentLength - read);
+    }
+    return new String(body);
+  }
+
+  private List<String> exchange(String request) throws IOException {
+    try (Socket socket = new Socket(server.address().getAddress(), server.address().getPort())) {
+      socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+      String response = new String(socket.getInputStream().readAllBytes(),
+          StandardCharsets.UTF_8);
+      return List.of(response.split("\r\n"));
+    }
+  }
+
+  private HttpRequest.Builder request(String path) {
+    return HttpRequest.newBuilder(URI.create("http://" + server.address().getHostString() + ":"
+        + server.address().getPort() + path));
+  }
+
+  private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+    return client.send(request(path).build(), BodyHandlers.ofString());
+  }
+}
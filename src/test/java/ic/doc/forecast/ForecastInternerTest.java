@@ -0,0 +1,87 @@
+package ic.doc.forecast;
+
+import static ic.doc.TestUtils.runConcurrently;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Test;
+
+public class ForecastInternerTest {
+
+  @Test
+  public void equalForecastsShareACanonicalInstance() {
+    ForecastInterner interner = new ForecastInterner();
+    Forecast first = interner.intern(new Forecast(new String("Sunny"), 20));
+    Forecast second = interner.intern(new Forecast(new String("Sunny"), 20));
+    Forecast warmer = interner.intern(new Forecast(new String("Sunny"), 25));
+
+    assertSame(first, second);
+    assertNotSame(first, warmer);
+    assertSame(first.summary(), warmer.summary());
+    assertTrue(interner.getBytesSaved() > 0);
+  }
+
+  @Test
+  public void summariesAreInternedWithoutForecasts() {
+    ForecastInterner interner = new ForecastInterner(1024, false);
+    Forecast first = interner.intern(new Forecast(new String("Cloudy"), 10));
+    Forecast second = interner.intern(new Forecast(new String("Cloudy"), 10));
+
+    assertNotSame(first, second);
+    assertEquals(first, second);
+    assertSame(first.summary(), second.summary());
+    assertEquals(1, interner.getSize());
+  }
+
+  @Test
+  public void memoryIsCappedAtTheBudget() {
+    ForecastInterner interner = new ForecastInterner(1024, true);
+    for (int i = 0; i < 1000; i++) {
+      Forecast forecast = new Forecast("Summary " + i, i);
+      assertEquals(forecast, interner.intern(forecast));
+      assertTrue(interner.getBytesUsed() <= interner.getMaxBytes());
+    }
+    assertTrue(interner.getSize() < 1000);
+
+    // summaries interned before the budget ran out are still shared
+    assertSame(interner.intern("Summary 0"), interner.intern(new String("Summary 0")));
+  }
+
+  @Test
+  public void concurrentInterningAgreesOnOneInstance() throws InterruptedException {
+    ForecastInterner interner = new ForecastInterner();
+    Set<Forecast> canonical = ConcurrentHashMap.newKeySet();
+    runConcurrently(16, thread -> {
+      for (int i = 0; i < 1000; i++) {
+        canonical.add(interner.intern(new Forecast(new String("Rain"), i % 4)));
+      }
+    });
+
+    assertEquals(4, canonical.size());
+    assertEquals(5, interner.getSize());
+  }
+
+  @Test
+  public void adaptedForecastsAreInterned() {
+    ForecastInterner interner = new ForecastInterner();
+    Forecaster forecaster = WeatherForecasterAdapter.adapt(new com.weather.Forecaster() {
+      @Override
+      public com.weather.Forecast forecastFor(com.weather.Region region, com.weather.Day day) {
+        return new com.weather.Forecast(new String("Sunny"), 20);
+      }
+    }, null, interner);
+
+    assertSame(forecaster.forecastFor(Region.LONDON, Day.MONDAY),
+        forecaster.forecastFor(Region.WALES, Day.FRIDAY));
+  }
+
+  @Test
+  public void invalidBudgetsAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> new ForecastInterner(0, true));
+  }
+}
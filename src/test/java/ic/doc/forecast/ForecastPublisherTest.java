@@ -0,0 +1,219 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastTestUtils.DAYS;
+import static ic.doc.forecast.ForecastTestUtils.REGIONS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import ic.doc.ManualInstantSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ForecastPublisherTest {
+
+  private static final Duration TIME_TO_LIVE = Duration.ofHours(1);
+  private static final long TIMEOUT_MILLIS = 5_000;
+  private static final long QUIET_MILLIS = 100;
+
+  private final ManualInstantSource clock = new ManualInstantSource(Instant.now());
+  private final AtomicInteger temperature = new AtomicInteger();
+  private final CachingForecasterProxy proxy = new CachingForecasterProxy(
+      (region, day) -> new Forecast(region + " on " + day, temperature.get()), clock);
+
+  @Test
+  public void subscribersArePushedOnlyForecastsWhichChanged() throws InterruptedException {
+    CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    proxy.updates().subscribe(subscriber);
+
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    assertEquals(new ForecastUpdate(Region.LONDON, Day.MONDAY,
+        new Forecast("LONDON on MONDAY", 0)), subscriber.next());
+
+    // refetching the same forecast is not a change
+    expireCache();
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    assertNull(subscriber.nextIfAny());
+
+    temperature.set(12);
+    expireCache();
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    assertEquals(12, subscriber.next().forecast().temperature());
+    assertNull(subscriber.nextIfAny());
+  }
+
+  @Test
+  public void forecastsCachedBeforeSubscribingAreNotPushedAgain() throws InterruptedException {
+    proxy.forecastFor(Region.WALES, Day.FRIDAY);
+    CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    proxy.updates().subscribe(subscriber);
+
+    expireCache();
+    proxy.forecastFor(Region.WALES, Day.FRIDAY);
+    assertNull(subscriber.nextIfAny());
+  }
+
+  @Test
+  public void subscribersOnlyReceiveTheRegionsAndDaysTheySubscribedTo()
+      throws InterruptedException {
+    CollectingSubscriber london = new CollectingSubscriber(Long.MAX_VALUE);
+    CollectingSubscriber mondays = new CollectingSubscriber(Long.MAX_VALUE);
+    CollectingSubscriber londonMondays = new CollectingSubscriber(Long.MAX_VALUE);
+    proxy.updates().updatesFor(Region.LONDON, null).subscribe(london);
+    proxy.updates().updatesFor(null, Day.MONDAY).subscribe(mondays);
+    proxy.updates().updatesFor(Region.LONDON, Day.MONDAY).subscribe(londonMondays);
+
+    proxy.forecastsFor(Set.of(REGIONS), Set.of(DAYS));
+    for (int i = 0; i < DAYS.length; i++) {
+      assertEquals(Region.LONDON, london.next().region());
+    }
+    for (int i = 0; i < REGIONS.length; i++) {
+      assertEquals(Day.MONDAY, mondays.next().day());
+    }
+    assertEquals(Region.LONDON, londonMondays.next().region());
+    assertNull(london.nextIfAny());
+    assertNull(mondays.nextIfAny());
+    assertNull(londonMondays.nextIfAny());
+  }
+
+  @Test
+  public void subscribersAreNeverPushedMoreThanTheyRequested() throws InterruptedException {
+    CollectingSubscriber subscriber = new CollectingSubscriber(1);
+    proxy.updates().subscribe(subscriber);
+
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    proxy.forecastFor(Region.WALES, Day.MONDAY);
+    assertEquals(Region.LONDON, subscriber.next().region());
+    assertNull(subscriber.nextIfAny());
+
+    // only the latest update for each query is held for the subscriber until it requests it
+    temperature.set(30);
+    expireCache();
+    proxy.forecastFor(Region.WALES, Day.MONDAY);
+    subscriber.subscription.request(10);
+    ForecastUpdate update = subscriber.next();
+    assertEquals(Region.WALES, update.region());
+    assertEquals(30, update.forecast().temperature());
+    assertNull(subscriber.nextIfAny());
+  }
+
+  @Test
+  public void slowSubscribersDoNotHoldUpFetches() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    CollectingSubscriber slow = new CollectingSubscriber(Long.MAX_VALUE) {
+      @Override
+      public void onNext(ForecastUpdate item) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.onNext(item);
+      }
+    };
+    proxy.updates().subscribe(slow);
+
+    for (int i = 0; i < 3; i++) {
+      temperature.set(i);
+      expireCache();
+      for (Region region : REGIONS) {
+        for (Day day : DAYS) {
+          assertEquals(i, proxy.forecastFor(region, day).temperature());
+        }
+      }
+    }
+
+    // the subscriber only catches up with the latest forecasts, rather than every one it missed
+    release.countDown();
+    int received = 0;
+    while (slow.nextIfAny() != null) {
+      received++;
+    }
+    assertTrue(received <= 1 + REGIONS.length * DAYS.length);
+  }
+
+  @Test
+  public void cancelledSubscriptionsAreNoLongerPushed() throws InterruptedException {
+    CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    proxy.updates().subscribe(subscriber);
+    subscriber.subscription.cancel();
+
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    assertNull(subscriber.nextIfAny());
+  }
+
+  @Test
+  public void invalidRequestsAreReportedAsErrors() throws InterruptedException {
+    CollectingSubscriber subscriber = new CollectingSubscriber(0);
+    proxy.updates().subscribe(subscriber);
+
+    assertTrue(subscriber.errors.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+        instanceof IllegalArgumentException);
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    assertNull(subscriber.nextIfAny());
+  }
+
+  @Test
+  public void publishersAreCreatedOnceAndRejectNullSubscribers() {
+    assertSame(proxy.updates(), proxy.updates());
+    assertThrows(NullPointerException.class, () -> proxy.updates().subscribe(null));
+  }
+
+  private void expireCache() {
+    clock.advance(TIME_TO_LIVE.plusSeconds(1));
+  }
+
+  private static class CollectingSubscriber implements Flow.Subscriber<ForecastUpdate> {
+
+    private final BlockingQueue<ForecastUpdate> updates = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+    private final long initialRequest;
+    private volatile Flow.Subscription subscription;
+
+    CollectingSubscriber(long initialRequest) {
+      this.initialRequest = initialRequest;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(initialRequest);
+    }
+
+    @Override
+    public void onNext(ForecastUpdate item) {
+      updates.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      errors.add(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    ForecastUpdate next() throws InterruptedException {
+      ForecastUpdate update = updates.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      if (update == null) {
+        throw new AssertionError("No update was pushed");
+      }
+      return update;
+    }
+
+    ForecastUpdate nextIfAny() throws InterruptedException {
+      return updates.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastCache.indexOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import ic.doc.forecast.ForecastCache.Entry;
+import ic.doc.util.Triple;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+public class ForecastSnapshotTest {
+
+  private final Path directory = Files.createTempDirectory("forecast-snapshots");
+  private final Path snapshot = directory.resolve("forecasts.snapshot");
+
+  public ForecastSnapshotTest() throws IOException {
+  }
+
+  @After
+  public void deleteSnapshots() throws IOException {
+    Files.deleteIfExists(snapshot);
+    Files.delete(directory);
+  }
+
+  @Test
+  public void entriesSurviveARoundTrip() throws IOException {
+    Instant timestamp = Instant.parse("2024-06-01T12:34:56.789Z");
+    List<Entry> entries = List.of(
+        entryFor(Region.LONDON, Day.MONDAY, new Forecast("Sunny", 25), timestamp),
+        entryFor(Region.WALES, Day.SUNDAY, new Forecast("Drizzle ☔", -3), timestamp),
+        entryFor(Region.GLASGOW, Day.FRIDAY, new Forecast("", 0), timestamp.plusNanos(1)));
+    ForecastSnapshot.write(snapshot, entries);
+
+    List<Triple<Integer, Forecast, Instant>> read = new ArrayList<>();
+    assertEquals(entries.size(), ForecastSnapshot.read(snapshot,
+        (index, forecast, time) -> read.add(Triple.of(index, forecast, time))));
+    for (int i = 0; i < entries.size(); i++) {
+      assertEquals(entries.get(i).index(), (int) read.get(i).first());
+      assertEquals(entries.get(i).forecast(), read.get(i).second());
+      assertEquals(entries.get(i).timestamp(), read.get(i).third());
+    }
+  }
+
+  @Test
+  public void overwritingASnapshotReplacesIt() throws IOException {
+    Instant timestamp = Instant.now();
+    ForecastSnapshot.write(snapshot, List.of(
+        entryFor(Region.LONDON, Day.MONDAY, new Forecast("Sunny", 25), timestamp),
+        entryFor(Region.WALES, Day.SUNDAY, new Forecast("Rain", 12), timestamp)));
+    ForecastSnapshot.write(snapshot, List.of());
+    assertEquals(0, ForecastSnapshot.read(snapshot, (index, forecast, time) -> {
+    }));
+  }
+
+  @Test
+  public void corruptSnapshotsAreRejected() throws IOException {
+    Files.write(snapshot, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    assertThrows(IOException.class, () -> ForecastSnapshot.read(snapshot, (i, f, t) -> {
+    }));
+
+    // a valid snapshot which has been cut short is also rejected
+    ForecastSnapshot.write(snapshot, List.of(
+        entryFor(Region.LONDON, Day.MONDAY, new Forecast("Sunny", 25), Instant.now())));
+    byte[] contents = Files.readAllBytes(snapshot);
+    Files.write(snapshot, Arrays.copyOf(contents, contents.length - 1));
+    assertThrows(IOException.class, () -> ForecastSnapshot.read(snapshot, (i, f, t) -> {
+    }));
+  }
+
+  @Test
+  public void snapshotsWithCorruptTimestampsAreRejected() throws IOException {
+    ForecastSnapshot.write(snapshot, List.of(
+        entryFor(Region.LONDON, Day.MONDAY, new Forecast("Sunny", 25), Instant.now())));
+    byte[] contents = Files.readAllBytes(snapshot);
+
+    // the epoch seconds of the first entry follow the header and its slot index
+    ByteBuffer.wrap(contents).putLong(9, Long.MAX_VALUE);
+    Files.write(snapshot, contents);
+    assertThrows(IOException.class, () -> ForecastSnapshot.read(snapshot, (i, f, t) -> {
+    }));
+  }
+
+  /**
+   * Makes a cache entry for a query, with no particular expiry.
+   *
+   * @param region    the {@link Region}
+   * @param day       the {@link Day}
+   * @param forecast  the {@link Forecast}
+   * @param timestamp the time at which the entry was fetched
+   * @return the cache entry
+   */
+  private static Entry entryFor(Region region, Day day, Forecast forecast, Instant timestamp) {
+    return new Entry(indexOf(region, day), forecast, timestamp, Instant.MAX, Instant.MAX);
+  }
+}
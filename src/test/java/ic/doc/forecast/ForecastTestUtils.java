@@ -5,8 +5,10 @@ import static ic.doc.TestUtils.inspect;
 import static ic.doc.TestUtils.makeItemList;
 
 import ic.doc.util.Pair;
+import java.time.Duration;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import net.bytebuddy.utility.RandomString;
 
@@ -96,6 +98,70 @@ public class ForecastTestUtils {
     });
   }
 
+  /**
+   * Makes a {@link Forecaster} object which derives its forecasts deterministically from the
+   * queried {@link Region} and {@link Day}, and counts how many times it has been called.
+   *
+   * @param upstreamCalls the counter incremented on every call
+   * @return the counting {@link Forecaster} object
+   */
+  static Forecaster countingForecaster(AtomicInteger upstreamCalls) {
+    return (region, day) -> {
+      upstreamCalls.incrementAndGet();
+      return fixedForecast(region, day);
+    };
+  }
+
+  /**
+   * Makes a {@link Forecaster} object which simulates a slow forecast service, by sleeping for some
+   * time before delegating each call to another {@link Forecaster} object.
+   *
+   * @param forecaster the {@link Forecaster} object to delegate to
+   * @param latency    the time to sleep for before each call
+   * @return the slow {@link Forecaster} object
+   */
+  static Forecaster slowForecaster(Forecaster forecaster, Duration latency) {
+    return (region, day) -> {
+      try {
+        Thread.sleep(latency);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      return forecaster.forecastFor(region, day);
+    };
+  }
+
+  /**
+   * Makes a {@link Forecaster} object which simulates a slow forecast service like the real
+   * {@link com.weather.Forecaster}, which swallows interrupts: if interrupted while sleeping, it
+   * stops sleeping and delegates the call straight away, returning normally.
+   *
+   * @param forecaster the {@link Forecaster} object to delegate to
+   * @param latency    the time to sleep for before each call, unless interrupted
+   * @return the slow {@link Forecaster} object
+   */
+  static Forecaster interruptIgnoringForecaster(Forecaster forecaster, Duration latency) {
+    return (region, day) -> {
+      try {
+        Thread.sleep(latency);
+      } catch (InterruptedException e) {
+        // cut short, as com.weather.Forecaster does
+      }
+      return forecaster.forecastFor(region, day);
+    };
+  }
+
+  /**
+   * Produces the {@link Forecast} object uniquely associated with a {@link Region} and {@link Day}.
+   *
+   * @param region the {@link Region} object
+   * @param day    the {@link Day} object
+   * @return the associated {@link Forecast} object
+   */
+  static Forecast fixedForecast(Region region, Day day) {
+    return new Forecast(region + " on " + day, region.ordinal() * DAYS.length + day.ordinal());
+  }
+
   /**
    * Picks a random {@link Region} object.
    *
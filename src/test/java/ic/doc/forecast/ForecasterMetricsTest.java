@@ -0,0 +1,96 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.CachingForecasterProxy.withLimitedCache;
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import ic.doc.ManualInstantSource;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import org.junit.Test;
+
+public class ForecasterMetricsTest {
+
+  private static final int CACHE_SIZE_LIMIT = 2;
+
+  @Test
+  public void cachingProxiesRecordHitsMissesEvictionsAndExpirations() {
+    ManualInstantSource clock = new ManualInstantSource(Instant.now());
+    ForecasterMetrics metrics = new ForecasterMetrics();
+    CachingForecasterProxy proxy = new CachingForecasterProxy(
+        countingForecaster(new AtomicInteger()), CACHE_SIZE_LIMIT,
+        CacheOptions.defaults().withMetrics(metrics), clock);
+    assertSame(metrics, proxy.metrics());
+
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    proxy.forecastFor(Region.WALES, Day.MONDAY);
+    proxy.forecastFor(Region.WALES, Day.TUESDAY);
+    assertEquals(2, metrics.getHits());
+    assertEquals(3, metrics.getMisses());
+    assertEquals(0.4, metrics.getHitRatio(), 0.001);
+    assertEquals(1, metrics.getEvictions());
+    assertEquals(0, metrics.getExpirations());
+
+    clock.advance(Duration.ofHours(2));
+    proxy.forecastFor(Region.WALES, Day.TUESDAY);
+    assertEquals(4, metrics.getMisses());
+    assertEquals(2, metrics.getExpirations());
+  }
+
+  @Test
+  public void adaptedForecastersRecordUpstreamLatencyPerRegion() {
+    ForecasterMetrics metrics = new ForecasterMetrics();
+    Forecaster forecaster = WeatherForecasterAdapter.adapt(new com.weather.Forecaster() {
+      @Override
+      public com.weather.Forecast forecastFor(com.weather.Region region, com.weather.Day day) {
+        try {
+          Thread.sleep(Duration.ofMillis(5));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return new com.weather.Forecast("Sunny", 20);
+      }
+    }, metrics);
+
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    forecaster.forecastFor(Region.LONDON, Day.FRIDAY);
+    assertEquals(2, metrics.upstreamLatency(Region.LONDON).getCount());
+    assertEquals(0, metrics.upstreamLatency(Region.WALES).getCount());
+    assertTrue(metrics.upstreamLatency(Region.LONDON).getMedianNanos()
+        >= Duration.ofMillis(5).toNanos());
+  }
+
+  @Test
+  public void metricsAreExposedAsMBeans() throws JMException {
+    ForecasterMetrics metrics = new ForecasterMetrics();
+    Forecaster proxy = withLimitedCache(countingForecaster(new AtomicInteger()), CACHE_SIZE_LIMIT,
+        CacheOptions.defaults().withMetrics(metrics), null);
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    proxy.forecastFor(Region.LONDON, Day.MONDAY);
+    metrics.recordUpstreamLatency(Region.WALES, 1234);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    String name = "metrics test";
+    metrics.registerMBeans(name);
+    try {
+      assertEquals(1L,
+          server.getAttribute(ForecasterMetrics.cacheStatisticsName(name), "Hits"));
+      assertEquals(0.5,
+          server.getAttribute(ForecasterMetrics.cacheStatisticsName(name), "HitRatio"));
+      assertEquals(1234L, server.getAttribute(
+          ForecasterMetrics.upstreamLatencyName(name, Region.WALES), "MaxNanos"));
+    } finally {
+      metrics.unregisterMBeans(name);
+    }
+    assertFalse(server.isRegistered(ForecasterMetrics.cacheStatisticsName(name)));
+  }
+}
@@ -0,0 +1,141 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static ic.doc.forecast.ForecastTestUtils.interruptIgnoringForecaster;
+import static ic.doc.forecast.ForecastTestUtils.slowForecaster;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class HedgingForecasterTest {
+
+  private static final HedgingOptions OPTIONS = HedgingOptions.defaults()
+      .withInitialHedgeDelay(Duration.ofMillis(50))
+      .withTimeout(Duration.ofMillis(500));
+  private static final Duration SLOW = Duration.ofSeconds(5);
+
+  @Test
+  public void slowRequestsAreHedgedToTheSecondaryForecaster() {
+    AtomicInteger primaryCalls = new AtomicInteger();
+    AtomicInteger secondaryCalls = new AtomicInteger();
+    Forecaster forecaster = HedgingForecaster.hedge(
+        slowForecaster(countingForecaster(primaryCalls), SLOW),
+        countingForecaster(secondaryCalls), OPTIONS);
+
+    assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+        forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(1, secondaryCalls.get());
+  }
+
+  @Test
+  public void fastRequestsAreNotHedged() {
+    AtomicInteger primaryCalls = new AtomicInteger();
+    AtomicInteger secondaryCalls = new AtomicInteger();
+    Forecaster forecaster = HedgingForecaster.hedge(countingForecaster(primaryCalls),
+        countingForecaster(secondaryCalls), OPTIONS);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(fixedForecast(Region.WALES, Day.FRIDAY),
+          forecaster.forecastFor(Region.WALES, Day.FRIDAY));
+    }
+    assertEquals(10, primaryCalls.get());
+    assertEquals(0, secondaryCalls.get());
+  }
+
+  @Test
+  public void failedRequestsAreRetriedOnTheSecondaryForecaster() {
+    AtomicInteger secondaryCalls = new AtomicInteger();
+    Forecaster forecaster = HedgingForecaster.hedge((region, day) -> {
+      throw new IllegalStateException("Forecast service is down");
+    }, countingForecaster(secondaryCalls), OPTIONS);
+
+    assertEquals(fixedForecast(Region.LONDON, Day.SUNDAY),
+        forecaster.forecastFor(Region.LONDON, Day.SUNDAY));
+    assertEquals(1, secondaryCalls.get());
+  }
+
+  @Test
+  public void requestsFailOnlyOnceBothForecastersHaveFailed() {
+    Forecaster failing = (region, day) -> {
+      throw new IllegalStateException("Forecast service is down");
+    };
+    Forecaster forecaster = HedgingForecaster.hedge(failing, failing, OPTIONS);
+
+    assertThrows(IllegalStateException.class,
+        () -> forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+  }
+
+  @Test
+  public void timedOutRequestsFailWithoutALastKnownForecast() {
+    Forecaster slow = slowForecaster(countingForecaster(new AtomicInteger()), SLOW);
+    Forecaster forecaster = HedgingForecaster.hedge(slow, slow, OPTIONS);
+
+    assertThrows(ForecastUnavailableException.class,
+        () -> forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+  }
+
+  @Test
+  public void timedOutRequestsServeTheLastKnownForecast() {
+    AtomicBoolean down = new AtomicBoolean();
+    Forecaster flaky = (region, day) -> {
+      if (down.get()) {
+        return slowForecaster(countingForecaster(new AtomicInteger()), SLOW)
+            .forecastFor(region, day);
+      }
+      return fixedForecast(region, day);
+    };
+    Forecaster forecaster = HedgingForecaster.hedge(flaky, flaky, OPTIONS);
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+
+    down.set(true);
+    Forecast lastKnown = forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    assertEquals(fixedForecast(Region.LONDON, Day.MONDAY).asStale(), lastKnown);
+    assertTrue(lastKnown.stale());
+    assertThrows(ForecastUnavailableException.class,
+        () -> forecaster.forecastFor(Region.LONDON, Day.TUESDAY));
+  }
+
+  @Test
+  public void hedgeDelayAdaptsToRecentLatencies() {
+    HedgingForecaster forecaster = new HedgingForecaster(countingForecaster(new AtomicInteger()),
+        countingForecaster(new AtomicInteger()), OPTIONS);
+    assertEquals(OPTIONS.initialHedgeDelay(), forecaster.hedgeDelay());
+
+    for (int i = 0; i < 200; i++) {
+      forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    }
+    assertTrue(forecaster.hedgeDelay().compareTo(OPTIONS.initialHedgeDelay()) < 0);
+  }
+
+  @Test
+  public void interruptedRequestsDoNotDragTheHedgeDelayDown() {
+    // the losing primary returns early when interrupted, so it must not count as a fast response
+    HedgingOptions options = OPTIONS.withInitialHedgeDelay(Duration.ofMillis(10))
+        .withHedgePercentile(0.25);
+    HedgingForecaster forecaster = new HedgingForecaster(
+        interruptIgnoringForecaster(countingForecaster(new AtomicInteger()), SLOW),
+        countingForecaster(new AtomicInteger()), options);
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+          forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    }
+    assertTrue(forecaster.hedgeDelay().compareTo(options.initialHedgeDelay()) >= 0);
+  }
+
+  @Test
+  public void invalidOptionsAreRejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> HedgingOptions.defaults().withHedgePercentile(0));
+    assertThrows(IllegalArgumentException.class,
+        () -> HedgingOptions.defaults().withTimeout(Duration.ZERO));
+    assertThrows(NullPointerException.class,
+        () -> HedgingOptions.defaults().withInitialHedgeDelay(null));
+  }
+}
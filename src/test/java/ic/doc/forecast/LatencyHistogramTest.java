@@ -0,0 +1,59 @@
+package ic.doc.forecast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  private static final double PRECISION = 1.0 / 32;
+
+  @Test
+  public void percentilesAreAccurateToTheHistogramPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long nanos = 1; nanos <= 1_000_000; nanos++) {
+      histogram.record(nanos);
+    }
+
+    assertEquals(1_000_000, histogram.getCount());
+    assertEquals(500_000.5, histogram.getMeanNanos(), 0.001);
+    assertEquals(1_000_000, histogram.getMaxNanos());
+    assertWithinPrecision(500_000, histogram.getMedianNanos());
+    assertWithinPrecision(990_000, histogram.getP99Nanos());
+    assertWithinPrecision(999_000, histogram.getP999Nanos());
+    assertEquals(1_000_000, histogram.valueAtPercentile(1));
+  }
+
+  @Test
+  public void extremeLatenciesAreRecorded() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+
+    assertEquals(0, histogram.valueAtPercentile(0));
+    assertEquals(Long.MAX_VALUE, histogram.valueAtPercentile(1));
+  }
+
+  @Test
+  public void emptyHistogramsReportZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMeanNanos(), 0);
+    assertEquals(0, histogram.getP99Nanos());
+    assertThrows(IllegalArgumentException.class, () -> histogram.valueAtPercentile(1.5));
+  }
+
+  /**
+   * Asserts that an estimated latency is no lower than the exact one, and no higher than the
+   * histogram's precision allows.
+   *
+   * @param expected the exact latency
+   * @param actual   the estimated latency
+   */
+  private static void assertWithinPrecision(long expected, long actual) {
+    assertTrue(actual >= expected);
+    assertTrue(actual <= expected * (1 + PRECISION));
+  }
+}
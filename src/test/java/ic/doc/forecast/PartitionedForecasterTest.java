@@ -0,0 +1,143 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastTestUtils.DAYS;
+import static ic.doc.forecast.ForecastTestUtils.REGIONS;
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class PartitionedForecasterTest {
+
+  private static final int NODES = 3;
+
+  private final AtomicInteger upstreamCalls = new AtomicInteger();
+  private final List<PartitionedForecaster> nodes = new ArrayList<>();
+
+  @After
+  public void stopNodes() throws IOException {
+    for (PartitionedForecaster node : nodes) {
+      node.close();
+    }
+  }
+
+  @Test
+  public void eachQueryIsOnlyRequestedByItsOwner() throws IOException {
+    startCluster(countingForecaster(upstreamCalls));
+
+    for (PartitionedForecaster node : nodes) {
+      for (Region region : REGIONS) {
+        for (Day day : DAYS) {
+          assertEquals(fixedForecast(region, day), node.forecastFor(region, day));
+        }
+      }
+    }
+    assertEquals(REGIONS.length * DAYS.length, upstreamCalls.get());
+
+    // every node agrees on the owners, and owns a share of the queries
+    long remoteFetches = 0;
+    for (PartitionedForecaster node : nodes) {
+      assertTrue(node.remoteServes() > 0);
+      assertEquals(0, node.fallbacks());
+      remoteFetches += node.remoteFetches();
+    }
+    assertEquals((NODES - 1) * REGIONS.length * DAYS.length, remoteFetches);
+  }
+
+  @Test
+  public void unreachableOwnersFallBackToTheLocalCache() throws IOException {
+    startCluster(countingForecaster(upstreamCalls));
+    PartitionedForecaster stopped = nodes.get(2);
+    stopped.close();
+
+    PartitionedForecaster node = nodes.get(0);
+    for (Region region : REGIONS) {
+      for (Day day : DAYS) {
+        assertEquals(fixedForecast(region, day), node.forecastFor(region, day));
+      }
+    }
+    assertTrue(node.fallbacks() > 0);
+  }
+
+  @Test
+  public void ownerFailuresArePropagated() throws IOException {
+    startCluster((region, day) -> {
+      throw new IllegalStateException("forecast service unavailable");
+    });
+
+    PartitionedForecaster node = nodes.get(0);
+    for (Region region : REGIONS) {
+      for (Day day : DAYS) {
+        Class<? extends RuntimeException> expected = node.ownerOf(region, day).equals(node.member())
+            ? IllegalStateException.class : ForecastUnavailableException.class;
+        assertThrows(expected, () -> node.forecastFor(region, day));
+      }
+    }
+    assertEquals(0, node.fallbacks());
+
+    // error responses leave the pooled connections usable, so one is kept for each owner
+    assertEquals(NODES - 1, node.connectionsOpened());
+  }
+
+  @Test
+  public void membershipChangesOnlyMoveTheQueriesOfChangedMembers() throws IOException {
+    startCluster(countingForecaster(upstreamCalls));
+    PartitionedForecaster node = nodes.get(0);
+    Map<Integer, ClusterMember> owners = ownersSeenBy(node);
+
+    List<ClusterMember> remaining = List.of(nodes.get(0).member(), nodes.get(1).member());
+    node.setMembers(remaining);
+    Map<Integer, ClusterMember> newOwners = ownersSeenBy(node);
+    for (Map.Entry<Integer, ClusterMember> owner : owners.entrySet()) {
+      if (remaining.contains(owner.getValue())) {
+        assertEquals(owner.getValue(), newOwners.get(owner.getKey()));
+      } else {
+        assertTrue(remaining.contains(newOwners.get(owner.getKey())));
+      }
+    }
+  }
+
+  @Test
+  public void clustersRejectDuplicateMembers() throws IOException {
+    startCluster(countingForecaster(upstreamCalls));
+    ClusterMember member = nodes.get(0).member();
+    assertThrows(IllegalArgumentException.class, () -> nodes.get(0).setMembers(List.of(member,
+        new ClusterMember(member.id(), new InetSocketAddress(member.address().getAddress(), 1)))));
+    assertThrows(IllegalArgumentException.class, () -> nodes.get(0).setMembers(List.of()));
+  }
+
+  private void startCluster(Forecaster upstream) throws IOException {
+    InetAddress loopback = InetAddress.getLoopbackAddress();
+    for (int i = 0; i < NODES; i++) {
+      nodes.add(new PartitionedForecaster("node-" + i, new InetSocketAddress(loopback, 0),
+          new CachingForecasterProxy(upstream, null), null));
+    }
+
+    List<ClusterMember> members = nodes.stream().map(PartitionedForecaster::member).toList();
+    for (PartitionedForecaster node : nodes) {
+      node.setMembers(members);
+    }
+  }
+
+  private static Map<Integer, ClusterMember> ownersSeenBy(PartitionedForecaster node) {
+    Map<Integer, ClusterMember> owners = new HashMap<>();
+    for (Region region : REGIONS) {
+      for (Day day : DAYS) {
+        owners.put(ForecastCache.indexOf(region, day), node.ownerOf(region, day));
+      }
+    }
+    return owners;
+  }
+}
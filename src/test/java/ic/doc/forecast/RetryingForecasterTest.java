@@ -0,0 +1,219 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import ic.doc.ManualInstantSource;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import org.junit.Test;
+
+public class RetryingForecasterTest {
+
+  private static final RetryOptions FAST_RETRIES = RetryOptions.defaults()
+      .withBackoff(Duration.ofMillis(1), Duration.ofMillis(4));
+
+  private final ManualInstantSource clock = new ManualInstantSource(Instant.now());
+  private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+  @Test
+  public void transientFailuresAreRetried() {
+    Forecaster upstream = countingForecaster(upstreamCalls);
+    AtomicInteger attempts = new AtomicInteger();
+    RetryingForecaster forecaster = new RetryingForecaster((region, day) -> {
+      if (attempts.incrementAndGet() < 3) {
+        throw new NullPointerException("forecast cannot be null");
+      }
+      return upstream.forecastFor(region, day);
+    }, FAST_RETRIES, clock);
+
+    assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+        forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(3, attempts.get());
+    assertEquals(2, forecaster.getRetries());
+    assertEquals(0, forecaster.getSuppressed());
+  }
+
+  @Test
+  public void persistentFailuresReportEveryAttempt() {
+    AtomicInteger attempts = new AtomicInteger();
+    RetryingForecaster forecaster = new RetryingForecaster((region, day) -> {
+      throw new IllegalStateException("Attempt " + attempts.incrementAndGet() + " failed");
+    }, FAST_RETRIES.withMaxAttempts(4), clock);
+
+    IllegalStateException failure = assertThrows(IllegalStateException.class,
+        () -> forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals("Attempt 4 failed", failure.getMessage());
+    assertEquals("Attempt 3 failed", failure.getSuppressed()[0].getMessage());
+    assertEquals(4, attempts.get());
+    assertEquals(3, forecaster.getRetries());
+  }
+
+  @Test
+  public void recentlyFailedQueriesAreSuppressedUntilTheirFailureExpires() {
+    AtomicInteger attempts = new AtomicInteger();
+    AtomicBoolean londonIsDown = new AtomicBoolean(true);
+    Forecaster upstream = countingForecaster(upstreamCalls);
+    IllegalStateException outage = new IllegalStateException("Forecast service is down");
+    RetryingForecaster forecaster = new RetryingForecaster((region, day) -> {
+      attempts.incrementAndGet();
+      if (region == Region.LONDON && londonIsDown.get()) {
+        throw outage;
+      }
+      return upstream.forecastFor(region, day);
+    }, FAST_RETRIES.withFailureTtl(Duration.ofSeconds(5)), clock);
+
+    assertThrows(IllegalStateException.class,
+        () -> forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(3, attempts.get());
+
+    // the failing query is suppressed, but other queries still reach the forecast service
+    ForecastUnavailableException suppressed = assertThrows(ForecastUnavailableException.class,
+        () -> forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(3, attempts.get());
+    assertEquals(1, forecaster.getSuppressed());
+    assertEquals(fixedForecast(Region.WALES, Day.MONDAY),
+        forecaster.forecastFor(Region.WALES, Day.MONDAY));
+
+    // every caller gets its own copy of the failure, rather than the instance already thrown
+    ForecastUnavailableException suppressedAgain = assertThrows(
+        ForecastUnavailableException.class,
+        () -> forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    assertNotSame(outage, suppressed.getCause());
+    assertNotSame(suppressed.getCause(), suppressedAgain.getCause());
+    assertEquals(outage.toString(), suppressed.getCause().getMessage());
+    assertEquals(outage.toString(), suppressedAgain.getCause().getMessage());
+    assertArrayEquals(outage.getStackTrace(), suppressedAgain.getCause().getStackTrace());
+    assertEquals(2, forecaster.getSuppressed());
+
+    londonIsDown.set(false);
+    clock.advance(Duration.ofSeconds(6));
+    assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+        forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(2, forecaster.getSuppressed());
+  }
+
+  @Test
+  public void unavailableForecastsAreNeitherRetriedNorCached() {
+    AtomicInteger attempts = new AtomicInteger();
+    ForecastUnavailableException overloaded =
+        new ForecastUnavailableException("Forecast service is overloaded");
+    RetryingForecaster forecaster = new RetryingForecaster((region, day) -> {
+      attempts.incrementAndGet();
+      throw overloaded;
+    }, FAST_RETRIES.withFailureTtl(Duration.ofSeconds(5)), clock);
+
+    for (int i = 1; i <= 3; i++) {
+      assertSame(overloaded, assertThrows(ForecastUnavailableException.class,
+          () -> forecaster.forecastFor(Region.LONDON, Day.MONDAY)));
+      assertEquals(i, attempts.get());
+    }
+    assertEquals(0, forecaster.getRetries());
+    assertEquals(0, forecaster.getSuppressed());
+  }
+
+  @Test
+  public void failuresAreNotCachedWithoutAFailureTtl() {
+    AtomicInteger attempts = new AtomicInteger();
+    RetryingForecaster forecaster = new RetryingForecaster((region, day) -> {
+      attempts.incrementAndGet();
+      throw new IllegalStateException("Forecast service is down");
+    }, FAST_RETRIES.withMaxAttempts(1).withFailureTtl(Duration.ZERO), clock);
+
+    for (int i = 0; i < 3; i++) {
+      assertThrows(IllegalStateException.class,
+          () -> forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    }
+    assertEquals(3, attempts.get());
+    assertEquals(0, forecaster.getSuppressed());
+  }
+
+  @Test
+  public void backoffIsCappedAndJittered() {
+    long maxBackoff = Duration.ofMillis(2).toNanos();
+    List<Long> bounds = new ArrayList<>();
+    List<Long> backoffs = new ArrayList<>();
+    SplittableRandom seeded = new SplittableRandom(0);
+    RandomGenerator recording = new RandomGenerator() {
+      @Override
+      public long nextLong() {
+        return seeded.nextLong();
+      }
+
+      @Override
+      public long nextLong(long bound) {
+        long backoff = seeded.nextLong(bound);
+        bounds.add(bound);
+        backoffs.add(backoff);
+        return backoff;
+      }
+    };
+    RetryingForecaster forecaster = new RetryingForecaster((region, day) -> {
+      throw new IllegalStateException("Forecast service is down");
+    }, RetryOptions.defaults().withMaxAttempts(40)
+        .withBackoff(Duration.ofNanos(1), Duration.ofNanos(maxBackoff)), clock, recording);
+
+    assertThrows(IllegalStateException.class,
+        () -> forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(39, forecaster.getRetries());
+    assertEquals(39, bounds.size());
+
+    // each backoff doubles until it reaches the cap
+    for (int retry = 0; retry < bounds.size(); retry++) {
+      long backoff = retry < 21 ? 1L << retry : maxBackoff;
+      assertEquals(backoff + 1, (long) bounds.get(retry));
+    }
+
+    // and each wait is drawn from the whole range up to the backoff, not just its upper end
+    List<Long> capped = backoffs.subList(21, backoffs.size());
+    assertTrue(capped.stream().anyMatch(backoff -> backoff < maxBackoff / 4));
+    assertTrue(capped.stream().anyMatch(backoff -> backoff > maxBackoff * 3 / 4));
+  }
+
+  @Test
+  public void retryingForecasterIsExposedAsAnMBean() throws JMException {
+    RetryingForecaster forecaster =
+        RetryingForecaster.retry(countingForecaster(upstreamCalls), null);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    String name = "retry test";
+    forecaster.registerMBean(name);
+    try {
+      assertEquals(0L, server.getAttribute(RetryingForecaster.objectName(name),
+          "Retries"));
+      assertEquals(0L, server.getAttribute(RetryingForecaster.objectName(name),
+          "Suppressed"));
+    } finally {
+      forecaster.unregisterMBean(name);
+    }
+    assertFalse(server.isRegistered(RetryingForecaster.objectName(name)));
+  }
+
+  @Test
+  public void invalidOptionsAreRejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> RetryOptions.defaults().withMaxAttempts(0));
+    assertThrows(IllegalArgumentException.class,
+        () -> RetryOptions.defaults().withBackoff(Duration.ZERO, Duration.ofSeconds(1)));
+    assertThrows(IllegalArgumentException.class,
+        () -> RetryOptions.defaults().withBackoff(Duration.ofSeconds(2), Duration.ofSeconds(1)));
+    assertThrows(IllegalArgumentException.class,
+        () -> RetryOptions.defaults().withFailureTtl(Duration.ofSeconds(-1)));
+  }
+}
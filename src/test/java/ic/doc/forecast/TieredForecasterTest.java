@@ -0,0 +1,140 @@
+package ic.doc.forecast;
+
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import ic.doc.ManualInstantSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class TieredForecasterTest {
+
+  private final ManualInstantSource clock = new ManualInstantSource(Instant.now());
+  private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+  @Test
+  public void repeatedLookupsAreServedFromTheL1Cache() {
+    TieredForecaster forecaster = TieredForecaster.tiered(
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock));
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+          forecaster.forecastFor(Region.LONDON, Day.MONDAY));
+    }
+    assertEquals(1, upstreamCalls.get());
+    assertEquals(1, forecaster.getMisses());
+    assertEquals(0, forecaster.getL2Hits());
+    assertEquals(9, forecaster.getL1Hits());
+    assertEquals(0.9, forecaster.getL1HitRatio(), 0.001);
+  }
+
+  @Test
+  public void l1CachesAreSeparateForEachThread() throws InterruptedException {
+    TieredForecaster forecaster = TieredForecaster.tiered(
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock));
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+
+    Thread other = new Thread(() -> {
+      forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+      forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    });
+    other.start();
+    other.join();
+    Thread.ofVirtual().start(() -> forecaster.forecastFor(Region.LONDON, Day.MONDAY)).join();
+
+    assertEquals(1, upstreamCalls.get());
+    assertEquals(2, forecaster.getL2Hits());
+    assertEquals(1, forecaster.getL1Hits());
+    assertEquals(2.0 / 3, forecaster.getL2HitRatio(), 0.001);
+  }
+
+  @Test
+  public void virtualThreadsShareStripedL1Caches() throws InterruptedException {
+    TieredForecaster forecaster = TieredForecaster.tiered(
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock));
+
+    Thread.ofVirtual().start(() -> {
+      for (int i = 0; i < 10; i++) {
+        forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+      }
+    }).join();
+
+    assertEquals(1, upstreamCalls.get());
+    assertEquals(1, forecaster.getMisses());
+    assertEquals(9, forecaster.getL1Hits());
+  }
+
+  @Test
+  public void l2HitsAreCountedEvenIfTheirEntryIsRefreshedMeanwhile() {
+    TieredForecaster forecaster = TieredForecaster.tiered(new CachingForecasterProxy(
+        countingForecaster(upstreamCalls), CacheOptions.defaults()
+            .withTimeToLive(Duration.ofMinutes(10)).withRefreshAhead(Duration.ofMinutes(2))
+            .withRefreshExecutor(Runnable::run), clock));
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+
+    // the entry is due to be refreshed, so is served by the L2 cache, which replaces it at once
+    clock.advance(Duration.ofMinutes(9));
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    assertEquals(2, upstreamCalls.get());
+    assertEquals(1, forecaster.getMisses());
+    assertEquals(1, forecaster.getL2Hits());
+  }
+
+  @Test
+  public void l1EntriesRespectTheTimeToLive() {
+    TieredForecaster forecaster = TieredForecaster.tiered(new CachingForecasterProxy(
+        countingForecaster(upstreamCalls),
+        CacheOptions.defaults().withTimeToLive(Duration.ofMinutes(10)), clock));
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+
+    clock.advance(Duration.ofMinutes(9));
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    assertEquals(1, upstreamCalls.get());
+
+    clock.advance(Duration.ofMinutes(2));
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    assertEquals(2, upstreamCalls.get());
+  }
+
+  @Test
+  public void l1EntriesAreInvalidatedWhenTheL2CacheChanges() {
+    CachingForecasterProxy sharedCache =
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), 1, clock);
+    TieredForecaster forecaster = TieredForecaster.tiered(sharedCache);
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    assertEquals(1, forecaster.getL1Hits());
+
+    // another caller of the shared cache evicts the entry copied into the L1 cache
+    sharedCache.forecastFor(Region.WALES, Day.MONDAY);
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    assertEquals(1, forecaster.getL1Hits());
+    assertEquals(3, upstreamCalls.get());
+  }
+
+  @Test
+  public void l1EntriesSurviveUnrelatedChangesToTheL2Cache() {
+    CachingForecasterProxy sharedCache =
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock);
+    TieredForecaster forecaster = TieredForecaster.tiered(sharedCache);
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+
+    sharedCache.forecastFor(Region.WALES, Day.MONDAY);
+    forecaster.forecastFor(Region.LONDON, Day.MONDAY);
+    assertEquals(1, forecaster.getL1Hits());
+    assertEquals(2, upstreamCalls.get());
+  }
+
+  @Test
+  public void invalidL1SizesAreRejected() {
+    CachingForecasterProxy sharedCache =
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock);
+    assertThrows(IllegalArgumentException.class, () -> new TieredForecaster(sharedCache, 12));
+    assertThrows(IllegalArgumentException.class, () -> new TieredForecaster(sharedCache, 64));
+    assertThrows(NullPointerException.class, () -> new TieredForecaster(null, 16));
+  }
+}
@@ -0,0 +1,73 @@
+package ic.doc.forecast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+  private static final long START = Duration.ofDays(20_000).toNanos();
+  private static final long TICK = 1L << 30;
+
+  @Test
+  public void slotsExpireShortlyAfterTheirExpiryOnEveryLevel() {
+    TimerWheel timerWheel = new TimerWheel();
+    List<Duration> timesToLive = List.of(Duration.ofMillis(1500), Duration.ofSeconds(90),
+        Duration.ofMinutes(45), Duration.ofHours(3), Duration.ofDays(3), Duration.ofDays(30));
+    for (int index = 0; index < timesToLive.size(); index++) {
+      timerWheel.schedule(index, START, START + timesToLive.get(index).toNanos());
+    }
+
+    // advance the wheel in uneven steps, recording when each slot expires
+    Map<Integer, Long> expiredAt = new HashMap<>();
+    long now = START;
+    long step = Duration.ofMillis(700).toNanos();
+    while (now < START + Duration.ofDays(31).toNanos()) {
+      now += step;
+      long cutoff = now;
+      timerWheel.advance(cutoff, index -> expiredAt.put(index, cutoff));
+      step = Math.min(step * 2, Duration.ofSeconds(13).toNanos());
+    }
+
+    assertEquals(timesToLive.size(), expiredAt.size());
+    for (int index = 0; index < timesToLive.size(); index++) {
+      long expiry = START + timesToLive.get(index).toNanos();
+      assertTrue(expiredAt.get(index) > expiry);
+      assertTrue(expiredAt.get(index) <= expiry + TICK + Duration.ofSeconds(13).toNanos());
+    }
+  }
+
+  @Test
+  public void slotsCanBeRescheduledOrCancelled() {
+    TimerWheel timerWheel = new TimerWheel();
+    timerWheel.schedule(0, START, START + TICK);
+    timerWheel.schedule(1, START, START + TICK);
+    timerWheel.schedule(0, START, START + Duration.ofMinutes(10).toNanos());
+    timerWheel.cancel(1);
+
+    List<Integer> expired = new ArrayList<>();
+    timerWheel.advance(START + Duration.ofMinutes(5).toNanos(), expired::add);
+    assertEquals(List.of(), expired);
+    timerWheel.advance(START + Duration.ofMinutes(15).toNanos(), expired::add);
+    assertEquals(List.of(0), expired);
+  }
+
+  @Test
+  public void timeNeverMovesBackwards() {
+    TimerWheel timerWheel = new TimerWheel();
+    timerWheel.schedule(0, START, START + TICK);
+    List<Integer> expired = new ArrayList<>();
+
+    timerWheel.advance(START + 4 * TICK, expired::add);
+    long nextTick = timerWheel.nextTickNanos();
+    timerWheel.advance(START, expired::add);
+    assertEquals(List.of(0), expired);
+    assertEquals(nextTick, timerWheel.nextTickNanos());
+  }
+}
@@ -0,0 +1,174 @@
+package ic.doc.forecast;
+
+import static ic.doc.TestUtils.runConcurrently;
+import static ic.doc.forecast.ForecastTestUtils.countingForecaster;
+import static ic.doc.forecast.ForecastTestUtils.fixedForecast;
+import static ic.doc.forecast.ForecastTestUtils.randomDay;
+import static ic.doc.forecast.ForecastTestUtils.randomRegion;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import ic.doc.ManualInstantSource;
+import ic.doc.forecast.ForecastTrace.Call;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class TraceRecorderTest {
+
+  private final Path directory = Files.createTempDirectory("forecast-traces");
+  private final Path trace = directory.resolve("forecasts.trace");
+  private final ManualInstantSource clock =
+      new ManualInstantSource(Instant.parse("2024-06-01T12:34:56.789012345Z"));
+  private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+  public TraceRecorderTest() throws IOException {
+  }
+
+  @After
+  public void deleteTraces() throws IOException {
+    Files.deleteIfExists(trace);
+    Files.delete(directory);
+  }
+
+  @Test
+  public void callsAreTracedWithTheirQueriesTimesAndOutcomes() throws IOException {
+    CachingForecasterProxy proxy =
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock);
+    Instant start = clock.instant();
+    try (TraceRecorder recorder = new TraceRecorder(proxy, trace)) {
+      assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+          recorder.forecastFor(Region.LONDON, Day.MONDAY));
+      recorder.forecastFor(Region.LONDON, Day.MONDAY);
+      clock.advance(Duration.ofHours(2));
+      recorder.forecastFor(Region.LONDON, Day.MONDAY);
+      recorder.forecastFor(Region.WALES, Day.SUNDAY);
+    }
+
+    List<Call> calls = readTrace();
+    assertEquals(4, calls.size());
+    assertEquals(List.of(Region.LONDON, Region.LONDON, Region.LONDON, Region.WALES),
+        calls.stream().map(Call::region).toList());
+    assertEquals(List.of(Day.MONDAY, Day.MONDAY, Day.MONDAY, Day.SUNDAY),
+        calls.stream().map(Call::day).toList());
+    assertEquals(List.of(false, true, false, false), calls.stream().map(Call::hit).toList());
+    assertEquals(start, calls.get(0).timestamp());
+    assertEquals(start, calls.get(1).timestamp());
+    assertEquals(start.plus(Duration.ofHours(2)), calls.get(2).timestamp());
+    assertTrue(calls.stream().noneMatch(call -> call.latency().isNegative()));
+  }
+
+  @Test
+  public void failedCallsAreTracedAsMisses() throws IOException {
+    CachingForecasterProxy proxy = new CachingForecasterProxy((region, day) -> {
+      throw new IllegalStateException("Forecast service unavailable");
+    }, clock);
+    try (TraceRecorder recorder = new TraceRecorder(proxy, trace)) {
+      assertThrows(IllegalStateException.class,
+          () -> recorder.forecastFor(Region.LONDON, Day.MONDAY));
+    }
+
+    List<Call> calls = readTrace();
+    assertEquals(1, calls.size());
+    assertFalse(calls.get(0).hit());
+  }
+
+  @Test
+  public void concurrentCallsAreEitherTracedOrCountedAsDropped()
+      throws IOException, InterruptedException {
+    CachingForecasterProxy proxy =
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock);
+    int threads = 8;
+    int callsPerThread = 5000;
+    long dropped;
+    try (TraceRecorder recorder = new TraceRecorder(proxy, trace, 64)) {
+      runConcurrently(threads, i -> {
+        for (int j = 0; j < callsPerThread; j++) {
+          recorder.forecastFor(randomRegion(), randomDay());
+        }
+      });
+      dropped = recorder.droppedCalls();
+    }
+
+    List<Call> calls = readTrace();
+    assertEquals(threads * callsPerThread, calls.size() + dropped);
+  }
+
+  @Test
+  public void callsRacingCloseAreEitherTracedOrCountedAsDropped()
+      throws IOException, InterruptedException {
+    CachingForecasterProxy proxy =
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock);
+    int threads = 8;
+    int callsPerThread = 5000;
+    TraceRecorder recorder = new TraceRecorder(proxy, trace, 64);
+    runConcurrently(threads, i -> {
+      for (int j = 0; j < callsPerThread; j++) {
+        if (i == 0 && j == callsPerThread / 2) {
+          try {
+            recorder.close();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+        recorder.forecastFor(randomRegion(), randomDay());
+      }
+    });
+
+    List<Call> calls = readTrace();
+    assertEquals(threads * callsPerThread, calls.size() + recorder.droppedCalls());
+  }
+
+  @Test
+  public void callsAfterClosingAreForwardedButNotTraced() throws IOException {
+    CachingForecasterProxy proxy =
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock);
+    TraceRecorder recorder = new TraceRecorder(proxy, trace);
+    recorder.close();
+
+    assertEquals(fixedForecast(Region.LONDON, Day.MONDAY),
+        recorder.forecastFor(Region.LONDON, Day.MONDAY));
+    assertEquals(1, recorder.droppedCalls());
+    assertEquals(0, readTrace().size());
+  }
+
+  @Test
+  public void bufferSizeMustBeAPowerOfTwo() {
+    CachingForecasterProxy proxy =
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock);
+    assertThrows(IllegalArgumentException.class, () -> new TraceRecorder(proxy, trace, 0));
+    assertThrows(IllegalArgumentException.class, () -> new TraceRecorder(proxy, trace, 100));
+  }
+
+  @Test
+  public void corruptTracesAreRejected() throws IOException {
+    Files.write(trace, new byte[] {1, 2, 3, 4, 5, 6});
+    assertThrows(IOException.class, this::readTrace);
+
+    CachingForecasterProxy proxy =
+        new CachingForecasterProxy(countingForecaster(upstreamCalls), clock);
+    try (TraceRecorder recorder = new TraceRecorder(proxy, trace)) {
+      recorder.forecastFor(Region.LONDON, Day.MONDAY);
+    }
+    byte[] bytes = Files.readAllBytes(trace);
+    Files.write(trace, Arrays.copyOf(bytes, bytes.length - 1));
+    assertThrows(IOException.class, this::readTrace);
+  }
+
+  private List<Call> readTrace() throws IOException {
+    List<Call> calls = new ArrayList<>();
+    assertEquals(ForecastTrace.read(trace, calls::add), calls.size());
+    return calls;
+  }
+}